@@ -0,0 +1,499 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.audit.impl;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.forgerock.json.JsonValue;
+import org.forgerock.openidm.audit.impl.EventBufferingConfiguration.OverflowPolicy;
+import org.forgerock.openidm.core.IdentityServer;
+import org.forgerock.openidm.util.JsonUtil;
+import org.forgerock.services.context.Context;
+import org.forgerock.services.context.RootContext;
+import org.forgerock.util.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Buffers the events published to an audit event handler and writes them in batches on a dedicated thread, taking
+ * the writes off the request threads.
+ * <p>
+ * Events are held in a bounded, lock-free queue. An event published while the queue is full is handled according
+ * to the configured {@link OverflowPolicy}: the publisher waits for room, the event is dropped, or the event is
+ * appended to a spill file which is written once the queue has drained. Spilled events may be written after events
+ * published later, and a spill file left by a previous run is written on start up. Dropped events are counted and
+ * reported in a warning at most once per {@value #DROP_WARNING_INTERVAL_SECONDS} seconds; dropping an event does not
+ * fail its publication.
+ * <p>
+ * The buffer statistics are registered as an MBean and reported by the health service.
+ */
+public class AuditEventBuffer implements AuditEventBufferMBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditEventBuffer.class);
+
+    /** The MBean domain and type of the buffers, the handler name is the {@code name} key of the MBean */
+    public static final String MBEAN_NAME_PREFIX = "org.forgerock.openidm.audit:type=AuditEventBuffer";
+
+    private static final String DEFAULT_SPILL_DIRECTORY = "audit/spill";
+    private static final String TOPIC = "topic";
+    private static final String CONTENT = "content";
+    private static final long SHUTDOWN_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+    private static final long DROP_WARNING_INTERVAL_SECONDS = 60;
+
+    /**
+     * Writes batches of buffered events.
+     */
+    interface BatchWriter {
+        /**
+         * Writes the events. Failures to write single events are logged rather than thrown.
+         *
+         * @param events the events to write
+         * @return the number of events written
+         */
+        int write(List<AuditEvent> events);
+    }
+
+    /**
+     * An event waiting in the buffer.
+     */
+    static final class AuditEvent {
+        private final Context context;
+        private final String topic;
+        private final JsonValue content;
+
+        AuditEvent(Context context, String topic, JsonValue content) {
+            this.context = context;
+            this.topic = topic;
+            this.content = content;
+        }
+
+        Context getContext() {
+            return context;
+        }
+
+        String getTopic() {
+            return topic;
+        }
+
+        JsonValue getContent() {
+            return content;
+        }
+    }
+
+    private final String name;
+    private final BatchWriter writer;
+    private final int capacity;
+    private final int maxBatchedEvents;
+    private final long writeIntervalNanos;
+    private final OverflowPolicy overflowPolicy;
+    private final File spillFile;
+
+    private final ConcurrentLinkedQueue<AuditEvent> queue = new ConcurrentLinkedQueue<>();
+    /** Free slots of the queue, released once the events taken from it have been written */
+    private final Semaphore slots;
+
+    private final LongAdder droppedEvents = new LongAdder();
+    private final LongAdder spilledEvents = new LongAdder();
+    private final LongAdder writtenEvents = new LongAdder();
+    private final LongAdder failedEvents = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushNanos = new LongAdder();
+    private volatile long lastFlushNanos;
+    /** Dropped events at the last drop warning, and its time */
+    private final AtomicLong droppedEventsWarned = new AtomicLong();
+    private volatile long lastDropWarningNanos = System.nanoTime()
+            - TimeUnit.SECONDS.toNanos(DROP_WARNING_INTERVAL_SECONDS);
+
+    private final Object spillLock = new Object();
+    /** Writer appending to the spill file, guarded by spillLock */
+    private Writer spillWriter;
+
+    private volatile boolean running;
+    private volatile Thread flusher;
+
+    /**
+     * Creates the buffer of an audit event handler.
+     *
+     * @param name the name of the handler
+     * @param config the buffering configuration
+     * @param writer writes the batches of buffered events
+     */
+    AuditEventBuffer(String name, EventBufferingConfiguration config, BatchWriter writer) {
+        this.name = name;
+        this.writer = writer;
+        this.capacity = Math.max(1, config.getMaxSize());
+        this.maxBatchedEvents = Math.max(1, config.getMaxBatchedEvents());
+        this.writeIntervalNanos = Duration.duration(config.getWriteInterval()).to(TimeUnit.NANOSECONDS);
+        this.overflowPolicy = OverflowPolicy.valueOf(config.getOverflowPolicy().toUpperCase());
+        this.slots = new Semaphore(capacity);
+        if (overflowPolicy == OverflowPolicy.SPILL) {
+            File directory = new File(config.getSpillDirectory() != null
+                    ? config.getSpillDirectory()
+                    : DEFAULT_SPILL_DIRECTORY);
+            if (!directory.isAbsolute()) {
+                directory = IdentityServer.getFileForWorkingPath(directory.getPath());
+            }
+            this.spillFile = new File(directory, name + ".spill");
+        } else {
+            this.spillFile = null;
+        }
+    }
+
+    /**
+     * Starts the thread writing the buffered events and registers the buffer MBean.
+     */
+    void start() {
+        running = true;
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                flushLoop();
+            }
+        }, "audit-event-buffer-" + name);
+        thread.setDaemon(true);
+        flusher = thread;
+        thread.start();
+        registerMBean();
+        logger.info("Buffering audit events of {} with capacity {}, overflow policy {}", name, capacity,
+                overflowPolicy);
+    }
+
+    /**
+     * Stops the thread writing the buffered events once it has written the events waiting in the buffer, and
+     * unregisters the buffer MBean. Events in the spill file are kept for the next start up.
+     */
+    void stop() {
+        running = false;
+        final Thread thread = flusher;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(SHUTDOWN_TIMEOUT);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // events published while stopping
+        flush();
+        synchronized (spillLock) {
+            closeSpillWriter();
+        }
+        unregisterMBean();
+    }
+
+    /**
+     * Buffers an event to be written.
+     *
+     * @param context the context the event was published in
+     * @param topic the audit event topic
+     * @param content the audit event content
+     * @return false if the event was dropped
+     */
+    boolean publish(Context context, String topic, JsonValue content) {
+        final AuditEvent event = new AuditEvent(context, topic, content);
+        if (!running) {
+            writeBatch(Collections.singletonList(event));
+            return true;
+        }
+        if (!slots.tryAcquire()) {
+            switch (overflowPolicy) {
+            case DROP:
+                dropped(topic);
+                return false;
+            case SPILL:
+                return spill(event);
+            default:
+                slots.acquireUninterruptibly();
+                break;
+            }
+        }
+        queue.offer(event);
+        if (capacity - slots.availablePermits() >= maxBatchedEvents) {
+            // a full batch is waiting, no need to wait for the write interval
+            LockSupport.unpark(flusher);
+        }
+        return true;
+    }
+
+    private void dropped(String topic) {
+        droppedEvents.increment();
+        logger.debug("Audit event buffer of {} is full, dropping {} event", name, topic);
+        final long now = System.nanoTime();
+        final long lastWarning = lastDropWarningNanos;
+        if (now - lastWarning >= TimeUnit.SECONDS.toNanos(DROP_WARNING_INTERVAL_SECONDS)) {
+            synchronized (droppedEventsWarned) {
+                if (lastDropWarningNanos == lastWarning) {
+                    lastDropWarningNanos = now;
+                    final long total = droppedEvents.sum();
+                    logger.warn("Audit event buffer of {} is full, {} events dropped since the last warning, "
+                            + "{} in total", name, total - droppedEventsWarned.getAndSet(total), total);
+                }
+            }
+        }
+    }
+
+    private void flushLoop() {
+        while (running) {
+            try {
+                if (flush() == 0 && !replaySpill()) {
+                    LockSupport.parkNanos(this, writeIntervalNanos);
+                }
+            } catch (RuntimeException e) {
+                logger.error("Unable to write buffered audit events of {}", name, e);
+                LockSupport.parkNanos(this, writeIntervalNanos);
+            }
+        }
+    }
+
+    /**
+     * Writes the events waiting in the buffer.
+     *
+     * @return the number of events taken from the buffer
+     */
+    int flush() {
+        int total = 0;
+        while (true) {
+            final List<AuditEvent> batch = new ArrayList<>(maxBatchedEvents);
+            AuditEvent event;
+            while (batch.size() < maxBatchedEvents && (event = queue.poll()) != null) {
+                batch.add(event);
+            }
+            if (batch.isEmpty()) {
+                return total;
+            }
+            try {
+                writeBatch(batch);
+            } finally {
+                slots.release(batch.size());
+            }
+            total += batch.size();
+            // events spilled meanwhile reach the disk even if the buffer never drains
+            flushSpillWriter();
+        }
+    }
+
+    private void writeBatch(List<AuditEvent> batch) {
+        final long start = System.nanoTime();
+        int written;
+        try {
+            written = writer.write(batch);
+        } catch (RuntimeException e) {
+            logger.error("Unable to write {} audit events of {}", batch.size(), name, e);
+            written = 0;
+        }
+        final long elapsed = System.nanoTime() - start;
+        writtenEvents.add(written);
+        failedEvents.add(batch.size() - written);
+        lastFlushNanos = elapsed;
+        flushNanos.add(elapsed);
+        flushes.increment();
+    }
+
+    private boolean spill(AuditEvent event) {
+        synchronized (spillLock) {
+            try {
+                if (spillWriter == null) {
+                    spillFile.getParentFile().mkdirs();
+                    spillWriter = new BufferedWriter(
+                            new OutputStreamWriter(new FileOutputStream(spillFile, true), UTF_8));
+                }
+                spillWriter.write(JsonUtil.writeValueAsString(json(object(
+                        field(TOPIC, event.getTopic()),
+                        field(CONTENT, event.getContent().getObject())))));
+                spillWriter.write('\n');
+                spilledEvents.increment();
+                return true;
+            } catch (IOException e) {
+                logger.error("Unable to spill {} audit event of {} to {}", event.getTopic(), name, spillFile, e);
+                dropped(event.getTopic());
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Writes the events spilled to disk, if any, interleaved with the events waiting in the buffer.
+     *
+     * @return true if spilled events were written
+     */
+    private boolean replaySpill() {
+        if (spillFile == null) {
+            return false;
+        }
+        final File replayFile = new File(spillFile.getPath() + ".replay");
+        synchronized (spillLock) {
+            if (!replayFile.exists()) {
+                closeSpillWriter();
+                if (!spillFile.exists() || !spillFile.renameTo(replayFile)) {
+                    return false;
+                }
+            }
+        }
+        logger.debug("Writing audit events of {} spilled to {}", name, spillFile);
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(replayFile), UTF_8))) {
+            List<AuditEvent> batch = new ArrayList<>(maxBatchedEvents);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                try {
+                    final JsonValue spilled = JsonUtil.parseStringified(line);
+                    batch.add(new AuditEvent(new RootContext(), spilled.get(TOPIC).asString(), spilled.get(CONTENT)));
+                } catch (RuntimeException e) {
+                    logger.warn("Skipping unreadable audit event spilled to {}", replayFile, e);
+                    failedEvents.increment();
+                }
+                if (batch.size() == maxBatchedEvents) {
+                    writeBatch(batch);
+                    batch = new ArrayList<>(maxBatchedEvents);
+                    flush();
+                }
+            }
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+            }
+        } catch (IOException e) {
+            logger.error("Unable to read audit events spilled to {}", replayFile, e);
+            return false;
+        }
+        if (!replayFile.delete()) {
+            logger.warn("Unable to delete {}", replayFile);
+        }
+        return true;
+    }
+
+    private void flushSpillWriter() {
+        synchronized (spillLock) {
+            if (spillWriter != null) {
+                try {
+                    spillWriter.flush();
+                } catch (IOException e) {
+                    logger.warn("Unable to flush {}", spillFile, e);
+                }
+            }
+        }
+    }
+
+    private void closeSpillWriter() {
+        if (spillWriter != null) {
+            try {
+                spillWriter.close();
+            } catch (IOException e) {
+                logger.warn("Unable to close {}", spillFile, e);
+            }
+            spillWriter = null;
+        }
+    }
+
+    private ObjectName getObjectName() throws Exception {
+        return new ObjectName(MBEAN_NAME_PREFIX + ",name=" + ObjectName.quote(name));
+    }
+
+    private void registerMBean() {
+        try {
+            final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName objectName = getObjectName();
+            if (mBeanServer.isRegistered(objectName)) {
+                // left over by the handler being replaced
+                mBeanServer.unregisterMBean(objectName);
+            }
+            mBeanServer.registerMBean(this, objectName);
+        } catch (Exception e) {
+            logger.warn("Failed to register audit event buffer MBean of {}", name, e);
+        }
+    }
+
+    private void unregisterMBean() {
+        try {
+            final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName objectName = getObjectName();
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to unregister audit event buffer MBean of {}", name, e);
+        }
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return capacity - slots.availablePermits();
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public long getDroppedEvents() {
+        return droppedEvents.sum();
+    }
+
+    @Override
+    public long getSpilledEvents() {
+        return spilledEvents.sum();
+    }
+
+    @Override
+    public long getWrittenEvents() {
+        return writtenEvents.sum();
+    }
+
+    @Override
+    public long getFailedEvents() {
+        return failedEvents.sum();
+    }
+
+    @Override
+    public long getLastFlushLatency() {
+        return TimeUnit.NANOSECONDS.toMillis(lastFlushNanos);
+    }
+
+    @Override
+    public double getAverageFlushLatency() {
+        final long count = flushes.sum();
+        return count == 0 ? 0 : flushNanos.sum() / (count * 1000000.0);
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.audit.impl;
+
+/**
+ * Provide JMX / MBean access for monitoring of the asynchronous audit event buffers.
+ */
+public interface AuditEventBufferMBean {
+
+    /**
+     * Gets the number of events waiting in the buffer.
+     * @return the number of buffered events.
+     */
+    int getQueueDepth();
+
+    /**
+     * Gets the maximum number of events held in the buffer.
+     * @return the buffer capacity.
+     */
+    int getCapacity();
+
+    /**
+     * Gets the number of events discarded because the buffer was full or the spill file could not be written.
+     * @return the number of dropped events.
+     */
+    long getDroppedEvents();
+
+    /**
+     * Gets the number of events spilled to disk because the buffer was full.
+     * @return the number of spilled events.
+     */
+    long getSpilledEvents();
+
+    /**
+     * Gets the number of events written by the handler.
+     * @return the number of written events.
+     */
+    long getWrittenEvents();
+
+    /**
+     * Gets the number of events the handler failed to write.
+     * @return the number of failed events.
+     */
+    long getFailedEvents();
+
+    /**
+     * Gets the time taken to write the last batch of events.
+     * @return the latency of the last flush in milliseconds.
+     */
+    long getLastFlushLatency();
+
+    /**
+     * Gets the average time taken to write a batch of events.
+     * @return the average flush latency in milliseconds.
+     */
+    double getAverageFlushLatency();
+}
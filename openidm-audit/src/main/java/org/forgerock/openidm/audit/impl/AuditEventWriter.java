@@ -0,0 +1,164 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.audit.impl;
+
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+import static org.forgerock.json.resource.Requests.newActionRequest;
+import static org.forgerock.json.resource.Requests.newCreateRequest;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.forgerock.audit.AuditingContext;
+import org.forgerock.json.JsonValue;
+import org.forgerock.json.resource.ActionResponse;
+import org.forgerock.json.resource.BadRequestException;
+import org.forgerock.json.resource.ConnectionFactory;
+import org.forgerock.json.resource.NotSupportedException;
+import org.forgerock.json.resource.ResourceException;
+import org.forgerock.json.resource.ResourcePath;
+import org.forgerock.json.resource.ResourceResponse;
+import org.forgerock.openidm.audit.impl.AuditEventBuffer.AuditEvent;
+import org.forgerock.util.promise.Promise;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes the batches of buffered audit events to a router target.
+ * <p>
+ * If enabled, the events of each topic are created with a single {@code bulk} action of the JDBC repository, which
+ * inserts them in one transaction. Targets that do not support the action, as reported by a
+ * {@link NotSupportedException} or {@link BadRequestException}, get the events created one by one from then on,
+ * all creates being issued before waiting for their completion.
+ */
+class AuditEventWriter implements AuditEventBuffer.BatchWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditEventWriter.class);
+
+    private static final String ACTION_BULK = "bulk";
+
+    private final ConnectionFactory connectionFactory;
+    private final ResourcePath resourcePath;
+    private final boolean createWithEventIds;
+    private volatile boolean bulkSupported;
+
+    /**
+     * Creates the writer.
+     *
+     * @param connectionFactory the factory of the router connections
+     * @param resourcePath the path of the router target, below which the events are created by topic
+     * @param createWithEventIds whether the events are created with their audit event id
+     * @param bulk whether to try the {@code bulk} action
+     */
+    AuditEventWriter(ConnectionFactory connectionFactory, ResourcePath resourcePath, boolean createWithEventIds,
+            boolean bulk) {
+        this.connectionFactory = connectionFactory;
+        this.resourcePath = resourcePath;
+        this.createWithEventIds = createWithEventIds;
+        this.bulkSupported = bulk;
+    }
+
+    @Override
+    public int write(List<AuditEvent> events) {
+        final Map<String, List<AuditEvent>> eventsByTopic = new LinkedHashMap<>();
+        for (final AuditEvent event : events) {
+            List<AuditEvent> topicEvents = eventsByTopic.get(event.getTopic());
+            if (topicEvents == null) {
+                topicEvents = new ArrayList<>();
+                eventsByTopic.put(event.getTopic(), topicEvents);
+            }
+            topicEvents.add(event);
+        }
+        int created = 0;
+        for (final Map.Entry<String, List<AuditEvent>> topicEvents : eventsByTopic.entrySet()) {
+            created += bulkSupported
+                    ? createInBulk(topicEvents.getKey(), topicEvents.getValue())
+                    : createEach(topicEvents.getValue());
+        }
+        return created;
+    }
+
+    private int createInBulk(String topic, List<AuditEvent> events) {
+        final List<Object> operations = new ArrayList<>(events.size());
+        for (final AuditEvent event : events) {
+            operations.add(object(
+                    field("operation", "create"),
+                    field(ResourceResponse.FIELD_CONTENT_ID, createWithEventIds ? getEventId(event) : null),
+                    field("value", event.getContent().getObject())));
+        }
+        final ActionResponse response;
+        try {
+            response = connectionFactory.getConnection().action(new AuditingContext(events.get(0).getContext()),
+                    newActionRequest(resourcePath.concat(topic), ACTION_BULK)
+                            .setContent(json(object(field("operations", operations)))));
+        } catch (NotSupportedException | BadRequestException e) {
+            logger.info("{} does not support the {} action, creating audit events one by one",
+                    resourcePath, ACTION_BULK);
+            logger.debug("Bulk action on {} failed", resourcePath, e);
+            bulkSupported = false;
+            return createEach(events);
+        } catch (ResourceException e) {
+            logger.warn("Unable to write {} {} audit events", events.size(), topic, e);
+            return 0;
+        }
+        int created = 0;
+        for (final JsonValue result : response.getJsonContent().get("results")) {
+            if (result.isDefined("code")) {
+                logger.warn("Unable to write {} audit event {}: {}", topic,
+                        result.get(ResourceResponse.FIELD_CONTENT_ID).asString(),
+                        result.get("message").asString());
+            } else {
+                created++;
+            }
+        }
+        return created;
+    }
+
+    private int createEach(List<AuditEvent> events) {
+        final List<Promise<ResourceResponse, ResourceException>> promises = new ArrayList<>(events.size());
+        for (final AuditEvent event : events) {
+            try {
+                promises.add(connectionFactory.getConnection().createAsync(new AuditingContext(event.getContext()),
+                        newCreateRequest(resourcePath.concat(event.getTopic()),
+                                createWithEventIds ? getEventId(event) : null,
+                                event.getContent())));
+            } catch (ResourceException e) {
+                promises.add(e.<ResourceResponse>asPromise());
+            }
+        }
+        int created = 0;
+        for (int i = 0; i < promises.size(); i++) {
+            try {
+                promises.get(i).getOrThrow();
+                created++;
+            } catch (ResourceException e) {
+                logger.warn("Unable to write {} audit event", events.get(i).getTopic(), e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.warn("Interrupted writing {} audit event", events.get(i).getTopic());
+            }
+        }
+        return created;
+    }
+
+    private static String getEventId(AuditEvent event) {
+        return event.getContent().get(ResourceResponse.FIELD_CONTENT_ID).asString();
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.audit.impl;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * Configuration of the asynchronous event buffer of the repository and router audit event handlers.
+ * <p>
+ * Example of valid JSON configuration:
+ * <pre>
+ *  "buffering" : {
+ *    "enabled" : true,
+ *    "maxSize" : 10000,
+ *    "maxBatchedEvents" : 100,
+ *    "writeInterval" : "100 millis",
+ *    "overflowPolicy" : "spill",
+ *    "spillDirectory" : "&amp;{launcher.working.location}/audit/spill"
+ *  }
+ * </pre>
+ *
+ * @see AuditEventBuffer
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class EventBufferingConfiguration {
+
+    /**
+     * What to do with an event published while the buffer is full.
+     */
+    public enum OverflowPolicy {
+        /** Wait on the publishing thread for room in the buffer. */
+        BLOCK,
+        /** Discard the event. */
+        DROP,
+        /** Append the event to a file on disk, written once the buffer has drained. */
+        SPILL
+    }
+
+    /** Whether events are buffered and written asynchronously */
+    private boolean enabled = false;
+
+    /** Maximum number of events held in the buffer */
+    private int maxSize = 10000;
+
+    /** Maximum number of events written in a batch */
+    private int maxBatchedEvents = 100;
+
+    /** Maximum delay before buffered events are written, e.g. "100 millis" */
+    private String writeInterval = "100 millis";
+
+    /** What to do with events when the buffer is full: block, drop or spill */
+    private String overflowPolicy = OverflowPolicy.BLOCK.name();
+
+    /** Directory of the files holding events spilled to disk */
+    private String spillDirectory;
+
+    /**
+     * Returns whether events are buffered and written asynchronously.
+     *
+     * @return true if buffering is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sets whether events are buffered and written asynchronously.
+     *
+     * @param enabled true to enable buffering
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Returns the maximum number of events held in the buffer.
+     *
+     * @return the buffer capacity
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Sets the maximum number of events held in the buffer.
+     *
+     * @param maxSize the buffer capacity
+     */
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the maximum number of events written in a batch.
+     *
+     * @return the batch size
+     */
+    public int getMaxBatchedEvents() {
+        return maxBatchedEvents;
+    }
+
+    /**
+     * Sets the maximum number of events written in a batch.
+     *
+     * @param maxBatchedEvents the batch size
+     */
+    public void setMaxBatchedEvents(int maxBatchedEvents) {
+        this.maxBatchedEvents = maxBatchedEvents;
+    }
+
+    /**
+     * Returns the maximum delay before buffered events are written.
+     *
+     * @return the write interval as a duration string
+     */
+    public String getWriteInterval() {
+        return writeInterval;
+    }
+
+    /**
+     * Sets the maximum delay before buffered events are written.
+     *
+     * @param writeInterval the write interval as a duration string, e.g. "100 millis"
+     */
+    public void setWriteInterval(String writeInterval) {
+        this.writeInterval = writeInterval;
+    }
+
+    /**
+     * Returns what to do with events when the buffer is full.
+     *
+     * @return the overflow policy
+     */
+    public String getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Sets what to do with events when the buffer is full.
+     *
+     * @param overflowPolicy block, drop or spill
+     */
+    public void setOverflowPolicy(String overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Returns the directory of the files holding events spilled to disk.
+     *
+     * @return the spill directory
+     */
+    public String getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    /**
+     * Sets the directory of the files holding events spilled to disk.
+     *
+     * @param spillDirectory the spill directory
+     */
+    public void setSpillDirectory(String spillDirectory) {
+        this.spillDirectory = spillDirectory;
+    }
+}
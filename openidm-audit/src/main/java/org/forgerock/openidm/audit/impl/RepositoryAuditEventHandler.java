@@ -14,13 +14,14 @@
  * "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015-2016 ForgeRock AS.
- * Portions Copyright 2018 Wren Security.
+ * Portions Copyright 2018-2026 Wren Security.
  */
 package org.forgerock.openidm.audit.impl;
 
 import static org.forgerock.json.resource.Requests.copyOfQueryRequest;
 import static org.forgerock.json.resource.Requests.newCreateRequest;
 import static org.forgerock.json.resource.Requests.newReadRequest;
+import static org.forgerock.json.resource.Responses.newResourceResponse;
 import static org.forgerock.util.promise.Promises.newResultPromise;
 
 import javax.inject.Inject;
@@ -43,6 +44,8 @@ import org.forgerock.util.promise.Promise;
 /**
  * Audit event handler for Repository.  This is implemented to use the router where the resourcePath is
  * hardcoded to be "repo/audit".
+ * <p>
+ * If buffering is enabled, events are written asynchronously in batches by an {@link AuditEventBuffer}.
  */
 public class RepositoryAuditEventHandler extends AuditEventHandlerBase {
 
@@ -62,6 +65,9 @@ public class RepositoryAuditEventHandler extends AuditEventHandlerBase {
      */
     private final ConnectionFactory connectionFactory;
 
+    /** The buffer of events written asynchronously, null if buffering is disabled */
+    private final AuditEventBuffer eventBuffer;
+
     @Inject
     public RepositoryAuditEventHandler(
             final RepositoryAuditEventHandlerConfiguration configuration,
@@ -70,22 +76,37 @@ public class RepositoryAuditEventHandler extends AuditEventHandlerBase {
         super(configuration.getName(), eventTopicsMetaData, configuration.getTopics(), configuration.isEnabled());
         this.resourcePath = ResourcePath.valueOf(configuration.getResourcePath());
         this.connectionFactory = connectionFactory;
+        final EventBufferingConfiguration buffering = configuration.getBuffering();
+        this.eventBuffer = buffering != null && buffering.isEnabled()
+                ? new AuditEventBuffer(configuration.getName(), buffering,
+                        new AuditEventWriter(connectionFactory, resourcePath, true, true))
+                : null;
     }
 
     @Override
     public void startup() throws ResourceException {
-        // do nothing
+        if (eventBuffer != null) {
+            eventBuffer.start();
+        }
     }
 
     @Override
     public void shutdown() throws ResourceException {
-        // do nothing
+        if (eventBuffer != null) {
+            eventBuffer.stop();
+        }
     }
 
     @Override
     public Promise<ResourceResponse, ResourceException> publishEvent(final Context context,
             final String auditEventTopic,
             final JsonValue auditEventContent) {
+        if (eventBuffer != null) {
+            final String auditEventId = auditEventContent.get(ResourceResponse.FIELD_CONTENT_ID).asString();
+            // an event dropped by a full buffer is counted and reported by the buffer, not to the audited operation
+            eventBuffer.publish(context, auditEventTopic, auditEventContent);
+            return newResourceResponse(auditEventId, null, auditEventContent).asPromise();
+        }
         try {
             final String auditEventId = auditEventContent.get(ResourceResponse.FIELD_CONTENT_ID).asString();
             return newResultPromise(connectionFactory.getConnection().create(new AuditingContext(context),
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015-2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.openidm.audit.impl;
@@ -28,6 +29,8 @@ import org.forgerock.audit.events.handlers.EventHandlerConfiguration;
 public class RepositoryAuditEventHandlerConfiguration extends EventHandlerConfiguration {
     private static final String REPO_AUDIT_PATH = "repo/audit";
 
+    private EventBufferingConfiguration buffering = new EventBufferingConfiguration();
+
     /**
      * Returns the fixed path to repository audits.
      * @return #REPO_AUDIT_PATH
@@ -37,6 +40,24 @@ public class RepositoryAuditEventHandlerConfiguration extends EventHandlerConfig
         return REPO_AUDIT_PATH;
     }
 
+    /**
+     * Returns the configuration of the asynchronous event buffer.
+     *
+     * @return the buffering configuration
+     */
+    public EventBufferingConfiguration getBuffering() {
+        return buffering;
+    }
+
+    /**
+     * Sets the configuration of the asynchronous event buffer.
+     *
+     * @param buffering the buffering configuration
+     */
+    public void setBuffering(EventBufferingConfiguration buffering) {
+        this.buffering = buffering;
+    }
+
     @Override
     public boolean isUsableForQueries() {
         return true;
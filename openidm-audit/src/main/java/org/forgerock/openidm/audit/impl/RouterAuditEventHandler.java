@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015-2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 package org.forgerock.openidm.audit.impl;
 
@@ -51,6 +52,8 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Audit event handler that logs to a router target.
+ * <p>
+ * If buffering is enabled, events are written asynchronously in batches by an {@link AuditEventBuffer}.
  */
 public class RouterAuditEventHandler extends AuditEventHandlerBase {
     /** Logger */
@@ -63,6 +66,9 @@ public class RouterAuditEventHandler extends AuditEventHandlerBase {
     /** the DependencyProvider to provide access to the ConnectionFactory */
     private final ConnectionFactory connectionFactory;
 
+    /** the buffer of events written asynchronously, null if buffering is disabled */
+    private final AuditEventBuffer eventBuffer;
+
     @Inject
     public RouterAuditEventHandler(
             final RouterAuditEventHandlerConfiguration configuration,
@@ -71,17 +77,28 @@ public class RouterAuditEventHandler extends AuditEventHandlerBase {
         super(configuration.getName(), eventTopicsMetaData, configuration.getTopics(), configuration.isEnabled());
         this.resourcePath = ResourcePath.valueOf(configuration.getResourcePath());
         this.connectionFactory = connectionFactory;
+        final EventBufferingConfiguration buffering = configuration.getBuffering();
+        this.eventBuffer = buffering != null && buffering.isEnabled()
+                ? new AuditEventBuffer(configuration.getName(), buffering,
+                        // the bulk action is only offered by the repository
+                        new AuditEventWriter(connectionFactory, resourcePath, false,
+                                resourcePath.size() > 0 && "repo".equals(resourcePath.get(0))))
+                : null;
         logger.info("Audit logging to: {}", resourcePath.toString());
     }
 
     @Override
     public void startup() throws ResourceException {
-        // do nothing
+        if (eventBuffer != null) {
+            eventBuffer.start();
+        }
     }
 
     @Override
     public void shutdown() throws ResourceException {
-        // do nothing
+        if (eventBuffer != null) {
+            eventBuffer.stop();
+        }
     }
 
     @Override
@@ -92,6 +109,12 @@ public class RouterAuditEventHandler extends AuditEventHandlerBase {
             final String auditEventId = auditEventContent.get(ResourceResponse.FIELD_CONTENT_ID).asString();
             routerAuditContent.put(EVENT_ID, auditEventId);
 
+            if (eventBuffer != null) {
+                // an event dropped by a full buffer is counted and reported by the buffer, not to the audited operation
+                eventBuffer.publish(context, auditEventTopic, routerAuditContent);
+                return newResourceResponse(auditEventId, null, auditEventContent).asPromise();
+            }
+
             return connectionFactory.getConnection()
                     .createAsync(new AuditingContext(context),
                             newCreateRequest(resourcePath.concat(auditEventTopic), null, routerAuditContent))
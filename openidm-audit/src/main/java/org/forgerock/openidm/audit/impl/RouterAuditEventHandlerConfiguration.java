@@ -2,6 +2,7 @@
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
  * Copyright 2015-2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  *
  * The contents of this file are subject to the terms
  * of the Common Development and Distribution License
@@ -33,7 +34,10 @@ import com.fasterxml.jackson.annotation.JsonProperty;
  * This configuration object can be created from JSON. Example of valid JSON configuration:
  * <pre>
  *  {
- *    "resourcePath" : "system/auditdb"
+ *    "resourcePath" : "system/auditdb",
+ *    "buffering" : {
+ *      "enabled" : true
+ *    }
  *  }
  * </pre>
  */
@@ -42,6 +46,8 @@ public class RouterAuditEventHandlerConfiguration extends EventHandlerConfigurat
     @JsonProperty(required=true)
     private String resourcePath;
 
+    private EventBufferingConfiguration buffering = new EventBufferingConfiguration();
+
     /**
      * Returns the resourcePath where the audit events will be sent.
      *
@@ -60,6 +66,24 @@ public class RouterAuditEventHandlerConfiguration extends EventHandlerConfigurat
         this.resourcePath = resourcePath;
     }
 
+    /**
+     * Returns the configuration of the asynchronous event buffer.
+     *
+     * @return the buffering configuration
+     */
+    public EventBufferingConfiguration getBuffering() {
+        return buffering;
+    }
+
+    /**
+     * Sets the configuration of the asynchronous event buffer.
+     *
+     * @param buffering the buffering configuration
+     */
+    public void setBuffering(EventBufferingConfiguration buffering) {
+        this.buffering = buffering;
+    }
+
     @Override
     public boolean isUsableForQueries() {
         return true;
@@ -0,0 +1,160 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.audit.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.json.JsonValue;
+import org.forgerock.openidm.audit.impl.AuditEventBuffer.AuditEvent;
+import org.forgerock.services.context.RootContext;
+import org.testng.annotations.Test;
+
+public class AuditEventBufferTest {
+
+    private static final String ACCESS = "access";
+
+    @Test
+    public void testEventsAreWrittenInBatches() throws Exception {
+        final RecordingWriter writer = new RecordingWriter(null);
+        final AuditEventBuffer buffer = new AuditEventBuffer("batches", config(10, 3, "BLOCK", null), writer);
+        buffer.start();
+        for (int i = 0; i < 7; i++) {
+            assertThat(buffer.publish(new RootContext(), ACCESS, event(i))).isTrue();
+        }
+        buffer.stop();
+
+        assertThat(writer.events).hasSize(7);
+        for (final int batchSize : writer.batchSizes) {
+            assertThat(batchSize).isLessThanOrEqualTo(3);
+        }
+        assertThat(buffer.getWrittenEvents()).isEqualTo(7);
+        assertThat(buffer.getQueueDepth()).isEqualTo(0);
+    }
+
+    @Test
+    public void testEventsAreWrittenSynchronouslyWhenStopped() throws Exception {
+        final RecordingWriter writer = new RecordingWriter(null);
+        final AuditEventBuffer buffer = new AuditEventBuffer("stopped", config(10, 3, "BLOCK", null), writer);
+
+        assertThat(buffer.publish(new RootContext(), ACCESS, event(0))).isTrue();
+        assertThat(writer.events).hasSize(1);
+    }
+
+    @Test
+    public void testDropWhenFull() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final RecordingWriter writer = new RecordingWriter(release);
+        final AuditEventBuffer buffer = new AuditEventBuffer("drop", config(2, 1, "DROP", null), writer);
+        buffer.start();
+        try {
+            assertThat(buffer.publish(new RootContext(), ACCESS, event(0))).isTrue();
+            assertThat(buffer.publish(new RootContext(), ACCESS, event(1))).isTrue();
+            // both slots are held until the blocked writer completes
+            assertThat(buffer.publish(new RootContext(), ACCESS, event(2))).isFalse();
+            assertThat(buffer.getDroppedEvents()).isEqualTo(1);
+        } finally {
+            release.countDown();
+            buffer.stop();
+        }
+        assertThat(writer.events).hasSize(2);
+    }
+
+    @Test
+    public void testSpillWhenFullAndReplay() throws Exception {
+        final File spillDirectory = Files.createTempDirectory(getClass().getSimpleName()).toFile();
+        final CountDownLatch release = new CountDownLatch(1);
+        final RecordingWriter writer = new RecordingWriter(release);
+        final AuditEventBuffer buffer = new AuditEventBuffer("spill",
+                config(2, 1, "SPILL", spillDirectory.getAbsolutePath()), writer);
+        buffer.start();
+        try {
+            assertThat(buffer.publish(new RootContext(), ACCESS, event(0))).isTrue();
+            assertThat(buffer.publish(new RootContext(), ACCESS, event(1))).isTrue();
+            assertThat(buffer.publish(new RootContext(), ACCESS, event(2))).isTrue();
+            assertThat(buffer.getSpilledEvents()).isEqualTo(1);
+            assertThat(new File(spillDirectory, "spill.spill")).exists();
+
+            release.countDown();
+            final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+            while (buffer.getWrittenEvents() < 3 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+        } finally {
+            release.countDown();
+            buffer.stop();
+        }
+        assertThat(writer.events).hasSize(3);
+        assertThat(writer.events.get(2).getContent().get("index").asInteger()).isEqualTo(2);
+        assertThat(writer.events.get(2).getTopic()).isEqualTo(ACCESS);
+        assertThat(spillDirectory.list()).isEmpty();
+        assertThat(spillDirectory.delete()).isTrue();
+    }
+
+    private static EventBufferingConfiguration config(int maxSize, int maxBatchedEvents, String overflowPolicy,
+            String spillDirectory) {
+        final EventBufferingConfiguration config = new EventBufferingConfiguration();
+        config.setEnabled(true);
+        config.setMaxSize(maxSize);
+        config.setMaxBatchedEvents(maxBatchedEvents);
+        config.setWriteInterval("10 millis");
+        config.setOverflowPolicy(overflowPolicy);
+        config.setSpillDirectory(spillDirectory);
+        return config;
+    }
+
+    private static JsonValue event(int index) {
+        return json(object(field("_id", "event-" + index), field("index", index)));
+    }
+
+    /**
+     * Records the written events, optionally blocking until released.
+     */
+    private static final class RecordingWriter implements AuditEventBuffer.BatchWriter {
+        private final CountDownLatch release;
+        private final List<AuditEvent> events = Collections.synchronizedList(new ArrayList<AuditEvent>());
+        private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+
+        private RecordingWriter(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public int write(List<AuditEvent> batch) {
+            if (release != null) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            events.addAll(batch);
+            batchSizes.add(batch.size());
+            return batch.size();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.audit.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.json.JsonValue.array;
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+import static org.forgerock.json.resource.Responses.newActionResponse;
+import static org.forgerock.json.resource.Responses.newResourceResponse;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.forgerock.json.JsonValue;
+import org.forgerock.json.resource.ActionRequest;
+import org.forgerock.json.resource.Connection;
+import org.forgerock.json.resource.ConnectionFactory;
+import org.forgerock.json.resource.CreateRequest;
+import org.forgerock.json.resource.NotSupportedException;
+import org.forgerock.json.resource.ResourcePath;
+import org.forgerock.openidm.audit.impl.AuditEventBuffer.AuditEvent;
+import org.forgerock.services.context.Context;
+import org.forgerock.services.context.RootContext;
+import org.mockito.ArgumentCaptor;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class AuditEventWriterTest {
+
+    private static final String ACCESS = "access";
+
+    private Connection connection;
+    private ConnectionFactory connectionFactory;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        connection = mock(Connection.class);
+        connectionFactory = mock(ConnectionFactory.class);
+        when(connectionFactory.getConnection()).thenReturn(connection);
+    }
+
+    @Test
+    public void testEventsOfATopicAreCreatedInBulk() throws Exception {
+        when(connection.action(any(Context.class), any(ActionRequest.class))).thenReturn(newActionResponse(json(
+                object(field("results", array(
+                        object(field("_id", "event-0"), field("_rev", "0"), field("operation", "create")),
+                        object(field("code", 500), field("message", "failed"), field("_id", "event-1"))))))));
+        final AuditEventWriter writer =
+                new AuditEventWriter(connectionFactory, ResourcePath.valueOf("repo/audit"), true, true);
+
+        assertThat(writer.write(events(2))).isEqualTo(1);
+
+        final ArgumentCaptor<ActionRequest> request = ArgumentCaptor.forClass(ActionRequest.class);
+        verify(connection).action(any(Context.class), request.capture());
+        assertThat(request.getValue().getAction()).isEqualTo("bulk");
+        assertThat(request.getValue().getResourcePath()).isEqualTo("repo/audit/access");
+        final JsonValue operations = request.getValue().getContent().get("operations");
+        assertThat(operations.size()).isEqualTo(2);
+        assertThat(operations.get(1).get("_id").asString()).isEqualTo("event-1");
+        verify(connection, never()).createAsync(any(Context.class), any(CreateRequest.class));
+    }
+
+    @Test
+    public void testEventsAreCreatedOneByOneWithoutBulkSupport() throws Exception {
+        when(connection.action(any(Context.class), any(ActionRequest.class)))
+                .thenThrow(new NotSupportedException("Action operations are not supported"));
+        when(connection.createAsync(any(Context.class), any(CreateRequest.class)))
+                .thenReturn(newResourceResponse("event", "0", json(object())).asPromise());
+        final AuditEventWriter writer =
+                new AuditEventWriter(connectionFactory, ResourcePath.valueOf("repo/audit"), true, true);
+
+        assertThat(writer.write(events(2))).isEqualTo(2);
+        assertThat(writer.write(events(1))).isEqualTo(1);
+
+        verify(connection, times(1)).action(any(Context.class), any(ActionRequest.class));
+        verify(connection, times(3)).createAsync(any(Context.class), any(CreateRequest.class));
+    }
+
+    private static List<AuditEvent> events(int count) {
+        final AuditEvent[] events = new AuditEvent[count];
+        for (int i = 0; i < count; i++) {
+            events[i] = new AuditEvent(new RootContext(), ACCESS, json(object(field("_id", "event-" + i))));
+        }
+        return Arrays.asList(events);
+    }
+}
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2014-2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.openidm.audit.impl;
@@ -23,29 +24,39 @@ import static org.forgerock.json.JsonValue.object;
 import static org.forgerock.json.resource.Requests.newQueryRequest;
 import static org.forgerock.json.resource.ResourceResponse.FIELD_CONTENT_ID;
 import static org.forgerock.json.resource.ResourceResponse.FIELD_CONTENT_REVISION;
+import static org.forgerock.json.resource.Responses.newResourceResponse;
 import static org.forgerock.openidm.audit.impl.RouterAuditEventHandler.EVENT_ID;
 import static org.forgerock.util.query.QueryFilter.*;
 import static org.forgerock.util.test.assertj.AssertJPromiseAssert.assertThatPromise;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 
 import org.forgerock.audit.events.EventTopicsMetaDataBuilder;
 import org.forgerock.json.JsonPointer;
 import org.forgerock.json.JsonValue;
+import org.forgerock.json.resource.CreateRequest;
 import org.forgerock.json.resource.MemoryBackend;
 import org.forgerock.json.resource.QueryRequest;
 import org.forgerock.json.resource.QueryResourceHandler;
 import org.forgerock.json.resource.QueryResponse;
+import org.forgerock.json.resource.RequestHandler;
 import org.forgerock.json.resource.ResourceException;
 import org.forgerock.json.resource.ResourcePath;
 import org.forgerock.json.resource.ResourceResponse;
 import org.forgerock.json.resource.Resources;
 import org.forgerock.json.resource.Router;
+import org.forgerock.services.context.Context;
 import org.forgerock.services.context.RootContext;
 import org.forgerock.util.promise.Promise;
 import org.forgerock.util.query.QueryFilter;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -72,6 +83,55 @@ public class RouterAuditEventHandlerTest {
                 Resources.newInternalConnectionFactory(router));
     }
 
+    @Test
+    public void testDroppedEventDoesNotFailThePublication() throws Exception {
+        // given a buffer of one event, held by a blocked write
+        final CountDownLatch release = new CountDownLatch(1);
+        final RequestHandler target = mock(RequestHandler.class);
+        when(target.handleCreate(any(Context.class), any(CreateRequest.class))).thenAnswer(
+                new Answer<Promise<ResourceResponse, ResourceException>>() {
+                    @Override
+                    public Promise<ResourceResponse, ResourceException> answer(InvocationOnMock invocation)
+                            throws InterruptedException {
+                        release.await();
+                        return newResourceResponse(TEST_ID, null, json(object())).asPromise();
+                    }
+                });
+        final Router router = new Router();
+        router.addRoute(Router.uriTemplate(AUDIT_DB_PATH + ACCESS), target);
+        final EventBufferingConfiguration buffering = new EventBufferingConfiguration();
+        buffering.setEnabled(true);
+        buffering.setMaxSize(1);
+        buffering.setMaxBatchedEvents(1);
+        buffering.setWriteInterval("10 millis");
+        buffering.setOverflowPolicy("DROP");
+        final RouterAuditEventHandlerConfiguration config = new RouterAuditEventHandlerConfiguration();
+        config.setResourcePath("audit/db");
+        config.setName("router");
+        config.setTopics(Collections.singleton(ACCESS));
+        config.setBuffering(buffering);
+        final RouterAuditEventHandler handler = new RouterAuditEventHandler(
+                config, EventTopicsMetaDataBuilder.coreTopicSchemas().build(),
+                Resources.newInternalConnectionFactory(router));
+        handler.startup();
+        try {
+            assertThatPromise(handler.publishEvent(new RootContext(), ACCESS,
+                    json(object(field(FIELD_CONTENT_ID, "event-0"))))).succeeded();
+
+            // when
+            final Promise<ResourceResponse, ResourceException> promise = handler.publishEvent(new RootContext(),
+                    ACCESS, json(object(field("somedata", "foo"), field(FIELD_CONTENT_ID, "event-1"))));
+
+            // then
+            assertThatPromise(promise).succeeded();
+            assertThat(promise.getOrThrow().getId()).isEqualTo("event-1");
+            assertThat(promise.getOrThrow().getContent().get("somedata").asString()).isEqualTo("foo");
+        } finally {
+            release.countDown();
+            handler.shutdown();
+        }
+    }
+
     @Test
     public void testReadEntry() throws Exception {
         // given
@@ -12,7 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2013-2016 ForgeRock AS
- * Portions Copyright 2020 Wren Security
+ * Portions Copyright 2020-2026 Wren Security
  */
 
 package org.forgerock.openidm.auth;
@@ -87,6 +87,8 @@ import org.forgerock.openidm.auth.api.GetAuthTokenActionRequest;
 import org.forgerock.openidm.auth.api.GetAuthTokenActionResponse;
 import org.forgerock.openidm.auth.api.LogoutActionResponse;
 import org.forgerock.openidm.auth.api.ReauthenticateActionResponse;
+import org.forgerock.openidm.auth.modules.AuthorizationCache;
+import org.forgerock.openidm.auth.modules.AuthorizationCacheFilter;
 import org.forgerock.openidm.auth.modules.IDMAuthModule;
 import org.forgerock.openidm.auth.modules.IDMAuthModuleWrapper;
 import org.forgerock.openidm.config.enhanced.EnhancedConfig;
@@ -102,6 +104,7 @@ import org.forgerock.openidm.idp.impl.ProviderConfigMapper;
 import org.forgerock.openidm.idp.impl.api.IdentityProviderServiceResourceWithNoSecret;
 import org.forgerock.openidm.keystore.SharedKeyService;
 import org.forgerock.openidm.router.IDMConnectionFactory;
+import org.forgerock.openidm.router.RouterFilterRegistration;
 import org.forgerock.openidm.util.HeaderUtil;
 import org.forgerock.openidm.util.JettyPropertyUtil;
 import org.forgerock.script.ScriptRegistry;
@@ -226,6 +229,12 @@ public class AuthenticationService implements SingletonResourceProvider, Identit
     /** The authenticators to delegate to.*/
     private List<Authenticator> authenticators = new ArrayList<>();
 
+    /** The security contexts computed by the auth modules, shared by all of them. */
+    private final AuthorizationCache authorizationCache = new AuthorizationCache();
+
+    /** The router filter invalidating the cached security contexts when their resources are written. */
+    private final AuthorizationCacheFilter authorizationCacheFilter = new AuthorizationCacheFilter(authorizationCache);
+
     // ----- Declarative Service Implementation
 
     @Reference
@@ -263,6 +272,30 @@ public class AuthenticationService implements SingletonResourceProvider, Identit
         identityProviderService = null;
     }
 
+    /**
+     * Adds the authorization cache invalidation filter to the router filter chain.
+     *
+     * @param filterRegistration the router filter registration service
+     */
+    @Reference(
+            name = "RouterFilterRegistration",
+            service = RouterFilterRegistration.class,
+            unbind = "unbindRouterFilterRegistration",
+            cardinality = ReferenceCardinality.OPTIONAL,
+            policy = ReferencePolicy.DYNAMIC)
+    void bindRouterFilterRegistration(RouterFilterRegistration filterRegistration) {
+        filterRegistration.addFilter(authorizationCacheFilter);
+    }
+
+    /**
+     * Removes the authorization cache invalidation filter from the router filter chain.
+     *
+     * @param filterRegistration the router filter registration service
+     */
+    void unbindRouterFilterRegistration(RouterFilterRegistration filterRegistration) {
+        filterRegistration.removeFilter(authorizationCacheFilter);
+    }
+
     /** An on-demand Provider for the ConnectionFactory */
     private final Provider<ConnectionFactory> connectionFactoryProvider =
             new Provider<ConnectionFactory>() {
@@ -528,6 +561,7 @@ public class AuthenticationService implements SingletonResourceProvider, Identit
             throws AuthenticationException, IdentityProviderServiceException {
         logger.info("Activating Authentication Service with configuration {}", context.getProperties());
         config = enhancedConfig.getConfigurationAsJson(context);
+        authorizationCache.registerMBean();
         identityProviderConfigChanged();
         logger.debug("OpenIDM Config for Authentication {} is activated.", config.get(Constants.SERVICE_PID));
     }
@@ -542,6 +576,8 @@ public class AuthenticationService implements SingletonResourceProvider, Identit
         logger.debug("OpenIDM Config for Authentication {} is deactivated.", config.get(Constants.SERVICE_PID));
         config = null;
         authenticators.clear();
+        authorizationCache.configure(null);
+        authorizationCache.unregisterMBean();
 
         // remove CAF filter from CHF filter wrapper
         if (authFilterWrapper != null) {
@@ -571,6 +607,7 @@ public class AuthenticationService implements SingletonResourceProvider, Identit
         final JsonValue serverAuthContext = moduleConfig.get(SERVER_AUTH_CONTEXT_KEY).required();
         final JsonValue sessionConfig = serverAuthContext.get(AuthenticationService.SESSION_MODULE_KEY);
         final JsonValue authModulesConfig = serverAuthContext.get(AuthenticationService.AUTH_MODULES_KEY);
+        authorizationCache.configure(serverAuthContext.get(AuthorizationCache.CONFIG_KEY));
 
         if (sessionConfig.get(AUTH_MODULE_PROPERTIES_KEY).get(JwtSessionModule.HMAC_SIGNING_KEY).isNull()) {
             try {
@@ -642,7 +679,8 @@ public class AuthenticationService implements SingletonResourceProvider, Identit
         }
 
         // wrap all auth modules in our wrapper to apply the IDM business logic
-        return configureModule(new IDMAuthModuleWrapper(module, connectionFactory, cryptoService, scriptRegistry))
+        return configureModule(new IDMAuthModuleWrapper(module, connectionFactory, cryptoService, scriptRegistry,
+                authorizationCache))
                 .withSettings(moduleProperties.asMap());
     }
 
@@ -0,0 +1,491 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.auth.modules;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.forgerock.json.JsonValue;
+import org.forgerock.util.encode.Base64;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded cache of the security contexts computed by the {@link IDMAuthModuleWrapper}s, that is the result of the
+ * user detail query, of the role calculation and of the augmentation script.
+ * <p>
+ * Entries are keyed by authentication module, principal and session JWT, so a security context is only reused by
+ * the requests of the session it was computed for. Requests without a session JWT share the entry of their
+ * principal. An entry expires {@code ttlSeconds} after it was computed, is recomputed when the authenticator
+ * returns another revision of the user resource, and is invalidated when the user resource, or any resource below
+ * it such as its role relationships, is written through the router. A write to any of the {@code roleResources}
+ * or to a container of user resources invalidates every entry, while writes to other resources, e.g. the audit
+ * logs, are ignored. Once the cache holds {@code maxEntries}, the least recently used entry is evicted.
+ * <p>
+ * A cache hit restores the authentication id and the authorization context as left by the augmentation script,
+ * including the component, roles and user id set by the auth module wrapper. The augmentation script is not run
+ * again, so any other effect it has, e.g. on the request context, only applies to the request that computed the
+ * entry.
+ * <p>
+ * The cache is disabled unless configured in the {@code authorizationCache} of the {@code serverAuthContext}:
+ * <pre>
+ * "authorizationCache" : {
+ *     "enabled" : true,
+ *     "maxEntries" : 10000,
+ *     "ttlSeconds" : 60,
+ *     "roleResources" : [ "managed/role", "internal/role" ]
+ * }
+ * </pre>
+ * The cache statistics are registered as an MBean and reported by the health service.
+ */
+public class AuthorizationCache implements AuthorizationCacheMBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuthorizationCache.class);
+
+    /** The MBean name of the cache */
+    public static final String MBEAN_NAME = "org.forgerock.openidm.auth:type=AuthorizationCache";
+
+    /** The configuration key of the cache within the {@code serverAuthContext} */
+    public static final String CONFIG_KEY = "authorizationCache";
+
+    private static final String ENABLED = "enabled";
+    private static final String MAX_ENTRIES = "maxEntries";
+    private static final String TTL_SECONDS = "ttlSeconds";
+    private static final String ROLE_RESOURCES = "roleResources";
+
+    private static final int DEFAULT_MAX_ENTRIES = 10000;
+    private static final long DEFAULT_TTL_SECONDS = 60;
+    private static final List<String> DEFAULT_ROLE_RESOURCES = Arrays.asList("managed/role", "internal/role");
+
+    private static final String REPO_PREFIX = "repo/";
+
+    /** Guards the writes to the cache and its indexes, reads of {@link #entries} do not lock */
+    private final Object lock = new Object();
+
+    /** Cached security contexts by key */
+    private final ConcurrentMap<String, CachedAuthorization> entries = new ConcurrentHashMap<>();
+
+    /** Keys of the cached entries by user resource path; guarded by {@link #lock} */
+    private final Map<String, Set<String>> keysByResource = new HashMap<>();
+
+    /** Containers of the user resources, writes below them invalidate entries; guarded by {@link #lock} */
+    private final Set<String> containers = new HashSet<>();
+
+    /**
+     * The generation of the last invalidation of each user resource, or of a resource below it, since
+     * {@link #minGeneration}; guarded by {@link #lock}
+     */
+    private final Map<String, Long> invalidatedGenerations = new HashMap<>();
+
+    /** Incremented on every invalidation */
+    private final AtomicLong generation = new AtomicLong();
+
+    /** The generation of the last invalidation of every entry; guarded by {@link #lock} */
+    private long minGeneration;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    private volatile boolean enabled = false;
+    private volatile int maxEntries = DEFAULT_MAX_ENTRIES;
+    private volatile long ttlNanos = TimeUnit.SECONDS.toNanos(DEFAULT_TTL_SECONDS);
+    private volatile List<String> roleResources = DEFAULT_ROLE_RESOURCES;
+
+    /**
+     * Applies the cache configuration and discards all cached entries.
+     *
+     * @param config the {@code authorizationCache} configuration, null if not configured
+     */
+    public void configure(JsonValue config) {
+        final JsonValue cacheConfig = config != null ? config : new JsonValue(null);
+        synchronized (lock) {
+            enabled = cacheConfig.get(ENABLED).defaultTo(false).asBoolean();
+            maxEntries = cacheConfig.get(MAX_ENTRIES).defaultTo(DEFAULT_MAX_ENTRIES).asInteger();
+            ttlNanos = TimeUnit.SECONDS.toNanos(cacheConfig.get(TTL_SECONDS).defaultTo(DEFAULT_TTL_SECONDS).asLong());
+            roleResources = cacheConfig.get(ROLE_RESOURCES).defaultTo(DEFAULT_ROLE_RESOURCES).asList(String.class);
+            containers.clear();
+            clear();
+        }
+    }
+
+    /**
+     * Registers the container of the user resources the security contexts of an auth module are computed from,
+     * so that the writes below it invalidate the contexts being computed before any of them is cached.
+     *
+     * @param resourceContainer the path of the container of the user resources
+     */
+    void addContainer(String resourceContainer) {
+        synchronized (lock) {
+            containers.add(normalize(resourceContainer));
+        }
+    }
+
+    /**
+     * Builds the key of the security context of a principal authenticated by a module.
+     *
+     * @param moduleId the id of the authenticating module
+     * @param principal the authenticated principal
+     * @param sessionJwt the session JWT of the request, or null if none
+     * @return the cache key
+     */
+    static String key(String moduleId, String principal, String sessionJwt) {
+        // the JWT is hashed, so that the cache does not keep the session tokens
+        return moduleId + '\u0000' + principal + '\u0000' + (sessionJwt != null ? digest(sessionJwt) : "");
+    }
+
+    private static String digest(String value) {
+        try {
+            return Base64.encode(MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the current generation, to be passed to {@link #put(String, String, String, String, Map, long)} once
+     * the security context has been computed.
+     *
+     * @return the generation of the cache
+     */
+    long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Returns a cached security context and counts the hit or miss.
+     *
+     * @param key the cache key
+     * @param revision the revision of the user resource known to the request, or null if unknown
+     * @return the security context, or null if not cached, expired or of another revision
+     */
+    CachedAuthorization get(String key, String revision) {
+        CachedAuthorization cached = entries.get(key);
+        if (cached != null && (cached.isExpired() || (revision != null && !revision.equals(cached.revision)))) {
+            synchronized (lock) {
+                if (entries.remove(key, cached)) {
+                    unindex(key, cached);
+                }
+            }
+            cached = null;
+        }
+        if (cached != null) {
+            cached.lastAccess = System.nanoTime();
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return cached;
+    }
+
+    /**
+     * Caches a security context, unless the resource it depends on has been invalidated since its computation
+     * started.
+     *
+     * @param key the cache key
+     * @param resourcePath the path of the user resource, or null if the context does not depend on a resource
+     * @param revision the revision of the user resource, or null if unknown
+     * @param authenticationId the authentication id
+     * @param authorizationId the authorization context, copied
+     * @param computeGeneration the generation before the security context was computed
+     */
+    void put(String key, String resourcePath, String revision, String authenticationId,
+            Map<String, Object> authorizationId, long computeGeneration) {
+        final CachedAuthorization authorization = new CachedAuthorization(
+                resourcePath != null ? normalize(resourcePath) : null, revision, authenticationId,
+                new JsonValue(authorizationId).copy().asMap(), System.nanoTime() + ttlNanos);
+        synchronized (lock) {
+            if (computeGeneration < minGeneration) {
+                return;
+            }
+            if (authorization.resourcePath != null) {
+                final Long invalidated = invalidatedGenerations.get(authorization.resourcePath);
+                if (invalidated != null && computeGeneration < invalidated) {
+                    return;
+                }
+            }
+            final CachedAuthorization previous = entries.put(key, authorization);
+            if (previous != null) {
+                unindex(key, previous);
+            }
+            if (authorization.resourcePath != null) {
+                Set<String> keys = keysByResource.get(authorization.resourcePath);
+                if (keys == null) {
+                    keys = new HashSet<>();
+                    keysByResource.put(authorization.resourcePath, keys);
+                }
+                keys.add(key);
+                containers.add(parent(authorization.resourcePath));
+            }
+            if (entries.size() > maxEntries) {
+                evictLeastRecentlyUsed();
+            }
+        }
+    }
+
+    private void evictLeastRecentlyUsed() {
+        String eldestKey = null;
+        CachedAuthorization eldest = null;
+        for (Map.Entry<String, CachedAuthorization> entry : entries.entrySet()) {
+            if (eldest == null || entry.getValue().lastAccess - eldest.lastAccess < 0) {
+                eldestKey = entry.getKey();
+                eldest = entry.getValue();
+            }
+        }
+        if (eldest != null && entries.remove(eldestKey, eldest)) {
+            unindex(eldestKey, eldest);
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Invalidates the security contexts depending on a resource that has been written.
+     *
+     * @param resourcePath the path of the written resource on the router
+     * @param created whether the resource has been created, so that it cannot be a container of cached resources
+     */
+    public void invalidate(String resourcePath, boolean created) {
+        if (!enabled) {
+            return;
+        }
+        final String path = normalize(resourcePath);
+        for (String roleResource : roleResources) {
+            if (isSameOrBelow(path, normalize(roleResource))) {
+                logger.debug("Invalidating all cached authorizations after a write to {}", resourcePath);
+                invalidateAll();
+                return;
+            }
+        }
+        synchronized (lock) {
+            if (!created && containers.contains(path)) {
+                // a write to the whole container
+                invalidations.add(entries.size());
+                clear();
+                return;
+            }
+            if (!isBelowContainer(path)) {
+                // no security context depends on the resource
+                return;
+            }
+            final long invalidatedGeneration = generation.incrementAndGet();
+            if (invalidatedGenerations.size() >= maxEntries) {
+                // forget the invalidated resources, rejecting every context being computed instead
+                invalidatedGenerations.clear();
+                minGeneration = invalidatedGeneration;
+            }
+            for (String ancestor = path; ancestor != null; ancestor = parent(ancestor)) {
+                invalidatedGenerations.put(ancestor, invalidatedGeneration);
+                final Set<String> keys = keysByResource.remove(ancestor);
+                if (keys != null) {
+                    for (String key : keys) {
+                        entries.remove(key);
+                    }
+                    invalidations.add(keys.size());
+                }
+            }
+        }
+    }
+
+    /**
+     * Invalidates all cached security contexts.
+     */
+    public void invalidateAll() {
+        synchronized (lock) {
+            invalidations.add(entries.size());
+            clear();
+        }
+    }
+
+    private void clear() {
+        minGeneration = generation.incrementAndGet();
+        entries.clear();
+        keysByResource.clear();
+        invalidatedGenerations.clear();
+    }
+
+    private boolean isBelowContainer(String path) {
+        for (String container : containers) {
+            if (isSameOrBelow(path, container)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void unindex(String key, CachedAuthorization authorization) {
+        if (authorization.resourcePath != null) {
+            final Set<String> keys = keysByResource.get(authorization.resourcePath);
+            if (keys != null) {
+                keys.remove(key);
+                if (keys.isEmpty()) {
+                    keysByResource.remove(authorization.resourcePath);
+                }
+            }
+        }
+    }
+
+    /**
+     * Normalizes a resource path, so that the managed objects and the repository objects are named alike.
+     *
+     * @param resourcePath the resource path
+     * @return the path without its leading slash and {@code repo/} prefix
+     */
+    static String normalize(String resourcePath) {
+        String path = resourcePath.startsWith("/") ? resourcePath.substring(1) : resourcePath;
+        if (path.startsWith(REPO_PREFIX)) {
+            path = path.substring(REPO_PREFIX.length());
+        }
+        return path;
+    }
+
+    private static String parent(String path) {
+        final int separator = path.lastIndexOf('/');
+        return separator > 0 ? path.substring(0, separator) : null;
+    }
+
+    private static boolean isSameOrBelow(String path, String ancestor) {
+        return path.equals(ancestor) || path.startsWith(ancestor + "/");
+    }
+
+    /**
+     * Registers the cache MBean.
+     */
+    public void registerMBean() {
+        try {
+            final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName objectName = new ObjectName(MBEAN_NAME);
+            if (mBeanServer.isRegistered(objectName)) {
+                // left over by the service being replaced
+                mBeanServer.unregisterMBean(objectName);
+            }
+            mBeanServer.registerMBean(this, objectName);
+        } catch (Exception e) {
+            logger.warn("Failed to register authorization cache MBean", e);
+        }
+    }
+
+    /**
+     * Unregisters the cache MBean.
+     */
+    public void unregisterMBean() {
+        try {
+            final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName objectName = new ObjectName(MBEAN_NAME);
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to unregister authorization cache MBean", e);
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public int getSize() {
+        return entries.size();
+    }
+
+    @Override
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public double getHitRatio() {
+        final long hitCount = hits.sum();
+        final long total = hitCount + misses.sum();
+        return total > 0 ? (double) hitCount / total : 0;
+    }
+
+    @Override
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    /**
+     * A computed security context.
+     */
+    static final class CachedAuthorization {
+        private final String resourcePath;
+        private final String revision;
+        private final String authenticationId;
+        private final Map<String, Object> authorization;
+        private final long expiresAt;
+        private volatile long lastAccess = System.nanoTime();
+
+        private CachedAuthorization(String resourcePath, String revision, String authenticationId,
+                Map<String, Object> authorization, long expiresAt) {
+            this.resourcePath = resourcePath;
+            this.revision = revision;
+            this.authenticationId = authenticationId;
+            this.authorization = authorization;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired() {
+            return System.nanoTime() - expiresAt >= 0;
+        }
+
+        String getAuthenticationId() {
+            return authenticationId;
+        }
+
+        /**
+         * Returns a copy of the authorization context, so that the request may alter it.
+         *
+         * @return the authorization context
+         */
+        Map<String, Object> getAuthorization() {
+            return new JsonValue(authorization).copy().asMap();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.auth.modules;
+
+import org.forgerock.json.resource.ActionRequest;
+import org.forgerock.json.resource.ActionResponse;
+import org.forgerock.json.resource.CreateRequest;
+import org.forgerock.json.resource.DeleteRequest;
+import org.forgerock.json.resource.Filter;
+import org.forgerock.json.resource.PatchRequest;
+import org.forgerock.json.resource.QueryRequest;
+import org.forgerock.json.resource.QueryResourceHandler;
+import org.forgerock.json.resource.QueryResponse;
+import org.forgerock.json.resource.ReadRequest;
+import org.forgerock.json.resource.Request;
+import org.forgerock.json.resource.RequestHandler;
+import org.forgerock.json.resource.ResourceException;
+import org.forgerock.json.resource.ResourceResponse;
+import org.forgerock.json.resource.UpdateRequest;
+import org.forgerock.services.context.Context;
+import org.forgerock.util.promise.ExceptionHandler;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.ResultHandler;
+
+/**
+ * Router filter invalidating the {@link AuthorizationCache} entries depending on the resources written by create,
+ * update, patch, delete and action requests, once they complete. Reads and queries are passed through.
+ */
+public class AuthorizationCacheFilter implements Filter {
+
+    private final AuthorizationCache cache;
+
+    /**
+     * Creates the filter.
+     *
+     * @param cache the cache to invalidate
+     */
+    public AuthorizationCacheFilter(AuthorizationCache cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    public Promise<ActionResponse, ResourceException> filterAction(Context context, ActionRequest request,
+            RequestHandler next) {
+        return invalidateOnCompletion(request, next.handleAction(context, request));
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> filterCreate(Context context, final CreateRequest request,
+            RequestHandler next) {
+        return next.handleCreate(context, request)
+                .thenOnResult(new ResultHandler<ResourceResponse>() {
+                    @Override
+                    public void handleResult(ResourceResponse response) {
+                        // a created relationship changes the resource it belongs to
+                        cache.invalidate(response.getId() != null
+                                ? request.getResourcePath() + "/" + response.getId()
+                                : request.getResourcePath(), true);
+                    }
+                })
+                .thenOnException(new ExceptionHandler<ResourceException>() {
+                    @Override
+                    public void handleException(ResourceException exception) {
+                        cache.invalidate(request.getResourcePath(), true);
+                    }
+                });
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> filterDelete(Context context, DeleteRequest request,
+            RequestHandler next) {
+        return invalidateOnCompletion(request, next.handleDelete(context, request));
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> filterPatch(Context context, PatchRequest request,
+            RequestHandler next) {
+        return invalidateOnCompletion(request, next.handlePatch(context, request));
+    }
+
+    @Override
+    public Promise<QueryResponse, ResourceException> filterQuery(Context context, QueryRequest request,
+            QueryResourceHandler handler, RequestHandler next) {
+        return next.handleQuery(context, request, handler);
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> filterRead(Context context, ReadRequest request,
+            RequestHandler next) {
+        return next.handleRead(context, request);
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> filterUpdate(Context context, UpdateRequest request,
+            RequestHandler next) {
+        return invalidateOnCompletion(request, next.handleUpdate(context, request));
+    }
+
+    private <R> Promise<R, ResourceException> invalidateOnCompletion(final Request request,
+            Promise<R, ResourceException> promise) {
+        // a failed request may have written part of its changes
+        return promise.thenAlways(new Runnable() {
+            @Override
+            public void run() {
+                cache.invalidate(request.getResourcePath(), false);
+            }
+        });
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.auth.modules;
+
+/**
+ * Provide JMX / MBean access for monitoring of the authorization cache of the authentication modules.
+ */
+public interface AuthorizationCacheMBean {
+
+    /**
+     * Gets whether the authorization cache is enabled.
+     * @return true if the security contexts are cached.
+     */
+    boolean isEnabled();
+
+    /**
+     * Gets the number of cached security contexts.
+     * @return the number of entries.
+     */
+    int getSize();
+
+    /**
+     * Gets the maximum number of cached security contexts.
+     * @return the cache capacity.
+     */
+    int getMaxEntries();
+
+    /**
+     * Gets the number of authenticated requests served from the cache.
+     * @return the number of hits.
+     */
+    long getHits();
+
+    /**
+     * Gets the number of authenticated requests whose security context was computed.
+     * @return the number of misses.
+     */
+    long getMisses();
+
+    /**
+     * Gets the ratio of hits over the cacheable authenticated requests.
+     * @return the hit ratio between 0 and 1, 0 if there was no request.
+     */
+    double getHitRatio();
+
+    /**
+     * Gets the number of entries removed because the cache was full.
+     * @return the number of evictions.
+     */
+    long getEvictions();
+
+    /**
+     * Gets the number of entries removed because their resource was written.
+     * @return the number of invalidations.
+     */
+    long getInvalidations();
+}
@@ -14,7 +14,7 @@
  * "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2014-2016 ForgeRock AS.
- * Portions Copyright 2018-2020 Wren Security
+ * Portions Copyright 2018-2026 Wren Security
  */
 package org.forgerock.openidm.auth.modules;
 
@@ -45,6 +45,7 @@ import org.forgerock.caf.authentication.api.AsyncServerAuthModule;
 import org.forgerock.caf.authentication.api.AuthenticationException;
 import org.forgerock.caf.authentication.api.MessageInfoContext;
 import org.forgerock.caf.authentication.framework.AuditTrail;
+import org.forgerock.http.protocol.Cookie;
 import org.forgerock.http.protocol.Request;
 import org.forgerock.json.JsonPointer;
 import org.forgerock.json.JsonValue;
@@ -54,6 +55,7 @@ import org.forgerock.json.resource.Requests;
 import org.forgerock.json.resource.ResourceException;
 import org.forgerock.json.resource.ResourceResponse;
 import org.forgerock.json.resource.Responses;
+import org.forgerock.openidm.auth.modules.AuthorizationCache.CachedAuthorization;
 import org.forgerock.openidm.crypto.CryptoService;
 import org.forgerock.openidm.util.ContextUtil;
 import org.forgerock.openidm.util.HeaderUtil;
@@ -99,11 +101,17 @@ public class IDMAuthModuleWrapper implements AsyncServerAuthModule {
     /** Key in Messages Map for the cached resource detail */
     public static final String AUTHENTICATED_RESOURCE = "org.forgerock.openidm.authentication.resource";
 
+    /** Name of the cookie holding the session JWT */
+    static final String SESSION_JWT_COOKIE = "session-jwt";
+
     private final ConnectionFactory connectionFactory;
     private final CryptoService cryptoService;
     private final ScriptRegistry scriptRegistry;
     private final AugmentationScriptExecutor augmentationScriptExecutor;
 
+    /** the cache of the computed security contexts, null if none */
+    private final AuthorizationCache authorizationCache;
+
     /** an security context augmentation script, if configured */
     private ScriptEntry augmentScript = null;
 
@@ -128,8 +136,23 @@ public class IDMAuthModuleWrapper implements AsyncServerAuthModule {
      */
     public IDMAuthModuleWrapper(AsyncServerAuthModule authModule,
             ConnectionFactory connectionFactory, CryptoService cryptoService, ScriptRegistry scriptRegistry) {
+        this(authModule, connectionFactory, cryptoService, scriptRegistry, null);
+    }
+
+    /**
+     * Constructs a new instance of the IDMAuthModuleWrapper caching the computed security contexts.
+     *
+     * @param authModule The auth module wrapped by this module.
+     * @param connectionFactory
+     * @param cryptoService
+     * @param scriptRegistry
+     * @param authorizationCache The cache of the computed security contexts, shared by the auth modules.
+     */
+    public IDMAuthModuleWrapper(AsyncServerAuthModule authModule,
+            ConnectionFactory connectionFactory, CryptoService cryptoService, ScriptRegistry scriptRegistry,
+            AuthorizationCache authorizationCache) {
         this(authModule, connectionFactory, cryptoService, scriptRegistry,
-                new RoleCalculatorFactory(), new AugmentationScriptExecutor());
+                new RoleCalculatorFactory(), new AugmentationScriptExecutor(), authorizationCache);
     }
 
     /**
@@ -144,12 +167,31 @@ public class IDMAuthModuleWrapper implements AsyncServerAuthModule {
             ConnectionFactory connectionFactory, CryptoService cryptoService, ScriptRegistry scriptRegistry,
             RoleCalculatorFactory roleCalculatorFactory,
             AugmentationScriptExecutor augmentationScriptExecutor) {
+        this(authModule, connectionFactory, cryptoService, scriptRegistry, roleCalculatorFactory,
+                augmentationScriptExecutor, null);
+    }
+
+    /**
+     * Constructs a new instance of the IDMAuthModuleWrapper with the provided parameters and cache, for test use.
+     *
+     * @param authModule The auth module wrapped by this module.
+     * @param roleCalculatorFactory An instance of the RoleCalculatorFactory.
+     * @param augmentationScriptExecutor An instance of the AugmentationScriptExecutor.
+     * @param authorizationCache The cache of the computed security contexts, or null.
+     */
+    IDMAuthModuleWrapper(
+            AsyncServerAuthModule authModule,
+            ConnectionFactory connectionFactory, CryptoService cryptoService, ScriptRegistry scriptRegistry,
+            RoleCalculatorFactory roleCalculatorFactory,
+            AugmentationScriptExecutor augmentationScriptExecutor,
+            AuthorizationCache authorizationCache) {
         this.authModule = authModule;
         this.connectionFactory = connectionFactory;
         this.cryptoService = cryptoService;
         this.scriptRegistry = scriptRegistry;
         this.roleCalculatorFactory = roleCalculatorFactory;
         this.augmentationScriptExecutor = augmentationScriptExecutor;
+        this.authorizationCache = authorizationCache;
     }
 
     /**
@@ -216,6 +258,9 @@ public class IDMAuthModuleWrapper implements AsyncServerAuthModule {
         logClientIPHeader = properties.get("clientIPHeader").asString();
 
         queryOnResource = properties.get(QUERY_ON_RESOURCE).asString();
+        if (authorizationCache != null && queryOnResource != null) {
+            authorizationCache.addContainer(queryOnResource);
+        }
 
         String queryId = properties.get(QUERY_ID).asString();
         String authenticationId = properties.get(PROPERTY_MAPPING).get(AUTHENTICATION_ID).asString();
@@ -339,6 +384,23 @@ public class IDMAuthModuleWrapper implements AsyncServerAuthModule {
                         // ... with successful authenticating module name
                         securityContextMapper.setModuleId(getModuleId());
 
+                        // ... with the security context computed for an earlier request of the session, if cached;
+                        // it holds the resource, user id and roles set below and the result of the augmentation
+                        // script, which is not run again
+                        final String cacheKey = authorizationCache != null && authorizationCache.isEnabled()
+                                ? AuthorizationCache.key(getModuleId(), principalName, getSessionJwt(messageInfo))
+                                : null;
+                        final long cacheGeneration = cacheKey != null ? authorizationCache.generation() : 0;
+                        if (cacheKey != null) {
+                            final CachedAuthorization cached =
+                                    authorizationCache.get(cacheKey, getAuthenticatedRevision(messageInfo));
+                            if (cached != null) {
+                                securityContextMapper.setAuthenticationId(cached.getAuthenticationId());
+                                securityContextMapper.setAuthorizationId(cached.getAuthorization());
+                                return authStatus;
+                            }
+                        }
+
                         // ... with user details
 
                         try {
@@ -352,18 +414,31 @@ public class IDMAuthModuleWrapper implements AsyncServerAuthModule {
                             securityContextMapper.setResource(queryOnResource);
 
                             // set "user id" (authorization.id) if not already set
+                            String resourceId = null;
                             if (resource != null) {
                                 // assign authorization id from resource if present
-                                securityContextMapper.setUserId(
-                                        resource.getId() != null
-                                                ? resource.getId()
-                                                : resource.getContent().get(FIELD_CONTENT_ID).asString());
+                                resourceId = resource.getId() != null
+                                        ? resource.getId()
+                                        : resource.getContent().get(FIELD_CONTENT_ID).asString();
+                                securityContextMapper.setUserId(resourceId);
                             }
 
                             // run the augmentation script, if configured (will no-op if none specified)
                             augmentationScriptExecutor.executeAugmentationScript(augmentScript, messageInfo, properties,
                                     securityContextMapper);
 
+                            // cache the security context, unless the user detail could not be found
+                            if (cacheKey != null && (resource != null || queryOnResource == null)) {
+                                authorizationCache.put(cacheKey,
+                                        resource != null && queryOnResource != null
+                                                ? queryOnResource + "/" + resourceId
+                                                : null,
+                                        resource != null ? resource.getRevision() : null,
+                                        securityContextMapper.getAuthenticationId(),
+                                        securityContextMapper.getAuthorizationId(),
+                                        cacheGeneration);
+                            }
+
                         } catch (ResourceException e) {
                             // store failure reason
                             messageInfo.getRequestContextMap().put(
@@ -413,6 +488,28 @@ public class IDMAuthModuleWrapper implements AsyncServerAuthModule {
         return queryExecutor.apply(request);
     }
 
+    /**
+     * Gets the revision of the resource stored in the MessageInfo by the Authenticator.
+     *
+     * @param messageInfo
+     * @return the revision, null if the resource was not stored
+     */
+    private String getAuthenticatedRevision(MessageInfoContext messageInfo) {
+        return new JsonValue(messageInfo.getRequestContextMap().get(AUTHENTICATED_RESOURCE))
+                .get(FIELD_CONTENT_REVISION).asString();
+    }
+
+    /**
+     * Gets the session JWT sent with the request.
+     *
+     * @param messageInfo
+     * @return the session JWT, null if the request has no session cookie
+     */
+    private String getSessionJwt(MessageInfoContext messageInfo) {
+        final List<Cookie> cookies = messageInfo.getRequest().getCookies().get(SESSION_JWT_COOKIE);
+        return cookies == null || cookies.isEmpty() ? null : cookies.get(0).getValue();
+    }
+
     private void setClientIPAddress(MessageInfoContext messageInfo) {
         Request request = messageInfo.getRequest();
         String ipAddress;
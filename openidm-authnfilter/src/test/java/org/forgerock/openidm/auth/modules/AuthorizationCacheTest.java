@@ -0,0 +1,224 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.auth.modules;
+
+import static org.forgerock.json.JsonValue.array;
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.forgerock.json.JsonValue;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests {@link AuthorizationCache}
+ */
+public class AuthorizationCacheTest {
+
+    private static final String USER = "managed/user/bjensen";
+
+    private AuthorizationCache cache;
+
+    @BeforeMethod
+    public void setUp() {
+        cache = new AuthorizationCache();
+        cache.configure(config(100, 60));
+    }
+
+    @Test
+    public void testDisabledByDefault() {
+        final AuthorizationCache defaultCache = new AuthorizationCache();
+        defaultCache.configure(null);
+
+        assertFalse(defaultCache.isEnabled());
+        assertTrue(cache.isEnabled());
+    }
+
+    @Test
+    public void testHitAndMiss() {
+        final String key = AuthorizationCache.key("MANAGED_USER", "bjensen", "jwt");
+
+        assertNull(cache.get(key, "1"));
+        put(key, USER, "1");
+
+        final AuthorizationCache.CachedAuthorization cached = cache.get(key, "1");
+        assertNotNull(cached);
+        assertEquals(cached.getAuthenticationId(), "bjensen");
+        assertEquals(cached.getAuthorization().get("id"), "bjensen");
+        assertNull(cache.get(AuthorizationCache.key("MANAGED_USER", "bjensen", "other"), "1"));
+        assertEquals(cache.getHits(), 1);
+        assertEquals(cache.getMisses(), 2);
+    }
+
+    @Test
+    public void testAuthorizationIsCopied() {
+        final String key = AuthorizationCache.key("MANAGED_USER", "bjensen", "jwt");
+        put(key, USER, "1");
+
+        cache.get(key, null).getAuthorization().put("id", "changed");
+
+        assertEquals(cache.get(key, null).getAuthorization().get("id"), "bjensen");
+    }
+
+    @Test
+    public void testRevisionMismatchIsMiss() {
+        final String key = AuthorizationCache.key("MANAGED_USER", "bjensen", "jwt");
+        put(key, USER, "1");
+
+        assertNull(cache.get(key, "2"));
+        assertEquals(cache.getSize(), 0);
+    }
+
+    @Test
+    public void testExpiredEntryIsMiss() {
+        cache.configure(config(100, 0));
+        final String key = AuthorizationCache.key("MANAGED_USER", "bjensen", "jwt");
+        put(key, USER, "1");
+
+        assertNull(cache.get(key, "1"));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted() {
+        cache.configure(config(2, 60));
+        final String first = AuthorizationCache.key("MANAGED_USER", "user1", null);
+        final String second = AuthorizationCache.key("MANAGED_USER", "user2", null);
+        final String third = AuthorizationCache.key("MANAGED_USER", "user3", null);
+        put(first, "managed/user/user1", "1");
+        put(second, "managed/user/user2", "1");
+        cache.get(first, null);
+
+        put(third, "managed/user/user3", "1");
+
+        assertEquals(cache.getSize(), 2);
+        assertEquals(cache.getEvictions(), 1);
+        assertNotNull(cache.get(first, null));
+        assertNull(cache.get(second, null));
+    }
+
+    @Test
+    public void testWriteToUserInvalidatesItsEntries() {
+        final String key = AuthorizationCache.key("MANAGED_USER", "bjensen", "jwt");
+        final String other = AuthorizationCache.key("MANAGED_USER", "scarter", "jwt");
+        put(key, USER, "1");
+        put(other, "managed/user/scarter", "1");
+
+        cache.invalidate("/" + USER, false);
+
+        assertNull(cache.get(key, null));
+        assertNotNull(cache.get(other, null));
+        assertEquals(cache.getInvalidations(), 1);
+    }
+
+    @Test
+    public void testWriteToRelationshipInvalidatesUser() {
+        final String key = AuthorizationCache.key("INTERNAL_USER", "openidm-admin", null);
+        put(key, "internal/user/openidm-admin", "1");
+
+        cache.invalidate("repo/internal/user/openidm-admin/authzRoles/1", true);
+
+        assertNull(cache.get(key, null));
+    }
+
+    @Test
+    public void testWriteToContainerInvalidatesAll() {
+        final String key = AuthorizationCache.key("MANAGED_USER", "bjensen", "jwt");
+        put(key, USER, "1");
+
+        cache.invalidate("managed/user/scarter", true);
+        assertNotNull(cache.get(key, null));
+
+        cache.invalidate("managed/user", false);
+        assertNull(cache.get(key, null));
+    }
+
+    @Test
+    public void testWriteToRoleInvalidatesAll() {
+        final String key = AuthorizationCache.key("MANAGED_USER", "bjensen", "jwt");
+        final String other = AuthorizationCache.key("STATIC_USER", "anonymous", null);
+        put(key, USER, "1");
+        put(other, null, null);
+
+        cache.invalidate("managed/role/admins", false);
+
+        assertEquals(cache.getSize(), 0);
+    }
+
+    @Test
+    public void testStalePutIsRejected() {
+        final String key = AuthorizationCache.key("MANAGED_USER", "bjensen", "jwt");
+        cache.addContainer("managed/user");
+        final long generation = cache.generation();
+
+        cache.invalidate(USER, false);
+        cache.put(key, USER, "1", "bjensen", authorization("bjensen"), generation);
+
+        assertNull(cache.get(key, null));
+    }
+
+    @Test
+    public void testPutAfterWriteToOtherResourceIsAccepted() {
+        final String key = AuthorizationCache.key("MANAGED_USER", "bjensen", "jwt");
+        cache.addContainer("managed/user");
+        final long generation = cache.generation();
+
+        cache.invalidate("managed/user/scarter", false);
+        cache.invalidate("audit/access/1", true);
+        cache.put(key, USER, "1", "bjensen", authorization("bjensen"), generation);
+
+        assertNotNull(cache.get(key, null));
+    }
+
+    @Test
+    public void testWriteOutsideContainersIsIgnored() {
+        final long generation = cache.generation();
+
+        cache.invalidate("repo/audit/access/1", true);
+        cache.invalidate("config/sync", false);
+
+        assertEquals(cache.generation(), generation);
+    }
+
+    private void put(String key, String resourcePath, String revision) {
+        final String principal = key.split("\u0000")[1];
+        cache.put(key, resourcePath, revision, principal, authorization(principal), cache.generation());
+    }
+
+    private static Map<String, Object> authorization(String id) {
+        final Map<String, Object> authorization = new HashMap<>();
+        authorization.put("id", id);
+        authorization.put("roles", Arrays.asList("internal/role/openidm-authorized"));
+        return authorization;
+    }
+
+    private static JsonValue config(int maxEntries, int ttlSeconds) {
+        return json(object(
+                field("enabled", true),
+                field("maxEntries", maxEntries),
+                field("ttlSeconds", ttlSeconds),
+                field("roleResources", array("managed/role", "internal/role"))));
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.benchmarks;
+
+import static org.forgerock.json.resource.Router.uriTemplate;
+
+import org.forgerock.json.JsonValue;
+import org.forgerock.json.resource.ConnectionFactory;
+import org.forgerock.json.resource.MemoryBackend;
+import org.forgerock.json.resource.Requests;
+import org.forgerock.json.resource.ResourceException;
+import org.forgerock.json.resource.Resources;
+import org.forgerock.json.resource.Router;
+import org.forgerock.services.context.Context;
+import org.forgerock.services.context.RootContext;
+
+/**
+ * Stand-in for the router of a running server, serving each resource container from memory.
+ * <p>
+ * The containers support create, read, update, delete and query filter requests, which is all the benchmarked code
+ * needs from the managed objects, the connectors and the repository.
+ */
+public class InMemoryResources {
+
+    private final Router router = new Router();
+    private final ConnectionFactory connectionFactory = Resources.newInternalConnectionFactory(router);
+    private final Context context = new RootContext();
+
+    /**
+     * Creates the resources.
+     *
+     * @param containers the resource containers to serve, e.g. {@code "managed/user"} or {@code "repo/link"}
+     */
+    public InMemoryResources(String... containers) {
+        for (String container : containers) {
+            router.addRoute(uriTemplate(container), new MemoryBackend());
+        }
+    }
+
+    /**
+     * Returns a connection factory to the resources.
+     *
+     * @return the connection factory
+     */
+    public ConnectionFactory getConnectionFactory() {
+        return connectionFactory;
+    }
+
+    /**
+     * Creates a resource.
+     *
+     * @param container the resource container
+     * @param id the id of the resource
+     * @param content the content of the resource
+     * @throws ResourceException if the resource could not be created
+     */
+    public void create(String container, String id, JsonValue content) throws ResourceException {
+        connectionFactory.getConnection().create(context, Requests.newCreateRequest(container, id, content));
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.benchmarks;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.forgerock.openidm.util.Scripts;
+import org.forgerock.script.ScriptRegistry;
+
+/**
+ * Stand-in for the script registry, for benchmarks that configure no script on their measured path.
+ * <p>
+ * Mappings reference default scripts (e.g. {@code roles/onRecon.groovy}) even when none is configured, so the
+ * registry hands out no script engine entry for them; executing such a script fails.
+ */
+public final class NoScriptRegistry {
+
+    private NoScriptRegistry() {
+        // prevent instantiation
+    }
+
+    /**
+     * Initializes {@link Scripts} with a registry that resolves every script to an empty entry.
+     */
+    public static void install() {
+        Scripts.init((ScriptRegistry) Proxy.newProxyInstance(NoScriptRegistry.class.getClassLoader(),
+                new Class<?>[] { ScriptRegistry.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getDeclaringClass() == Object.class) {
+                            switch (method.getName()) {
+                            case "equals":
+                                return proxy == args[0];
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            default:
+                                return NoScriptRegistry.class.getSimpleName();
+                            }
+                        }
+                        if ("takeScript".equals(method.getName())) {
+                            return null;
+                        }
+                        throw new UnsupportedOperationException("Scripts are not available in the benchmarks");
+                    }
+                }));
+    }
+}
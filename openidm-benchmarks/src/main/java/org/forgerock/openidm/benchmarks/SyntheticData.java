@@ -0,0 +1,196 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.benchmarks;
+
+import static org.forgerock.json.JsonValue.array;
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.forgerock.json.JsonValue;
+
+/**
+ * Generates reproducible users, target accounts, links and mapping configurations.
+ * <p>
+ * Users carry the usual managed user attributes plus a number of generated attributes, so that the mapping
+ * configuration can map any number of properties. The same seed always yields the same data.
+ */
+public class SyntheticData {
+
+    private static final String[] GIVEN_NAMES = { "Barbara", "John", "Maria", "Sam", "Ada", "Kim", "Olga", "Ravi" };
+    private static final String[] SURNAMES = { "Jensen", "Smith", "Garcia", "Carter", "Lovelace", "Nguyen", "Ivanova" };
+
+    private final long seed;
+    private final int attributes;
+
+    /**
+     * Creates a generator.
+     *
+     * @param seed the seed of the generated values
+     * @param attributes the number of generated attributes of a user, in addition to the usual ones
+     */
+    public SyntheticData(long seed, int attributes) {
+        this.seed = seed;
+        this.attributes = attributes;
+    }
+
+    /**
+     * Returns the id of a user.
+     *
+     * @param index the index of the user
+     * @return the id
+     */
+    public String userId(int index) {
+        return String.format("user-%08d", index);
+    }
+
+    /**
+     * Returns the id of the account of a user.
+     *
+     * @param index the index of the user
+     * @return the id
+     */
+    public String accountId(int index) {
+        return String.format("uid=user.%d,ou=People,dc=example,dc=com", index);
+    }
+
+    /**
+     * Generates a user.
+     *
+     * @param index the index of the user
+     * @return the user, including its {@code _id}
+     */
+    public JsonValue user(int index) {
+        final Random random = new Random(seed + index);
+        final String givenName = GIVEN_NAMES[random.nextInt(GIVEN_NAMES.length)];
+        final String surname = SURNAMES[random.nextInt(SURNAMES.length)];
+        final JsonValue user = json(object(
+                field("_id", userId(index)),
+                field("userName", "user." + index),
+                field("givenName", givenName),
+                field("sn", surname),
+                field("mail", givenName.toLowerCase() + "." + index + "@example.com"),
+                field("telephoneNumber", String.format("+1 555 %07d", random.nextInt(10000000))),
+                field("accountStatus", random.nextInt(10) == 0 ? "inactive" : "active")));
+        for (int i = 0; i < attributes; i++) {
+            // roughly one value in five is missing, to exercise the mapping defaults
+            if (random.nextInt(5) != 0) {
+                user.put(attribute(i), Long.toString(random.nextLong(), Character.MAX_RADIX));
+            }
+        }
+        return user;
+    }
+
+    /**
+     * Generates the target account of a user.
+     *
+     * @param index the index of the user
+     * @return the account, including its {@code _id}
+     */
+    public JsonValue account(int index) {
+        final JsonValue user = user(index);
+        return json(object(
+                field("_id", accountId(index)),
+                field("uid", user.get("userName").getObject()),
+                field("givenName", user.get("givenName").getObject()),
+                field("sn", user.get("sn").getObject()),
+                field("cn", user.get("givenName").asString() + " " + user.get("sn").asString()),
+                field("mail", user.get("mail").getObject())));
+    }
+
+    /**
+     * Generates the link between a user and its account.
+     *
+     * @param index the index of the user
+     * @param linkType the link type, usually the mapping name
+     * @param linkQualifier the link qualifier
+     * @return the link, including its {@code _id}
+     */
+    public JsonValue link(int index, String linkType, String linkQualifier) {
+        return json(object(
+                field("_id", linkId(index)),
+                field("linkType", linkType),
+                field("linkQualifier", linkQualifier),
+                field("firstId", userId(index)),
+                field("secondId", accountId(index))));
+    }
+
+    /**
+     * Returns the id of the link of a user.
+     *
+     * @param index the index of the user
+     * @return the id
+     */
+    public String linkId(int index) {
+        return String.format("link-%08d", index);
+    }
+
+    /**
+     * Generates a mapping configuration between users and accounts, without any script.
+     * <p>
+     * The usual attributes are mapped as in the samples, followed by one property per generated attribute. Every
+     * fifth generated property has a query filter condition and every property of a generated attribute has a
+     * default value.
+     *
+     * @param name the mapping name
+     * @param source the source resource container
+     * @param target the target resource container
+     * @param sourceIdsCaseSensitive whether the source ids of the links are case sensitive
+     * @return the mapping configuration
+     */
+    public JsonValue mappingConfig(String name, String source, String target, boolean sourceIdsCaseSensitive) {
+        final List<Object> properties = new ArrayList<>();
+        properties.add(property("userName", "uid"));
+        properties.add(property("givenName", "givenName"));
+        properties.add(property("sn", "sn"));
+        properties.add(property("mail", "mail"));
+        properties.add(property("telephoneNumber", "telephoneNumber"));
+        for (int i = 0; i < attributes; i++) {
+            final JsonValue property = json(property(attribute(i), "extension/" + attribute(i)));
+            property.put("default", "none");
+            if (i % 5 == 0) {
+                property.put("condition", "/object/accountStatus eq \"active\"");
+            }
+            properties.add(property.getObject());
+        }
+        return json(object(
+                field("name", name),
+                field("source", source),
+                field("target", target),
+                field("sourceIdsCaseSensitive", sourceIdsCaseSensitive),
+                field("taskThreads", 0),
+                field("properties", properties),
+                field("policies", array(
+                        object(field("situation", "CONFIRMED"), field("action", "UPDATE")),
+                        object(field("situation", "FOUND"), field("action", "LINK")),
+                        object(field("situation", "ABSENT"), field("action", "CREATE")),
+                        object(field("situation", "MISSING"), field("action", "CREATE")),
+                        object(field("situation", "SOURCE_MISSING"), field("action", "DELETE")),
+                        object(field("situation", "UNQUALIFIED"), field("action", "DELETE"))))));
+    }
+
+    private static Object property(String source, String target) {
+        return object(field("source", source), field("target", target));
+    }
+
+    private static String attribute(int index) {
+        return "attribute" + index;
+    }
+}
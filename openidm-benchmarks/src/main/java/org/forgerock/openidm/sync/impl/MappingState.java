@@ -0,0 +1,157 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.sync.impl;
+
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.forgerock.json.JsonValue;
+import org.forgerock.openidm.benchmarks.InMemoryResources;
+import org.forgerock.openidm.benchmarks.NoScriptRegistry;
+import org.forgerock.openidm.benchmarks.SyntheticData;
+import org.forgerock.services.context.Context;
+import org.forgerock.services.context.RootContext;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * A mapping from managed users to LDAP accounts, with a source reconciliation in progress over synthetic users.
+ * <p>
+ * Three users in four are linked to an existing account and assess as {@code CONFIRMED}; the others have no link
+ * nor correlation query and assess as {@code ABSENT}. The links are prefetched and the target accounts preloaded,
+ * as a reconciliation does, so the measured paths do not query the in-memory resources.
+ * <p>
+ * The benchmarks live in the package of the sync implementation to reach its package private classes.
+ */
+@State(Scope.Benchmark)
+public class MappingState {
+
+    static final String MAPPING = "managedUser_systemLdapAccounts";
+    static final String SOURCE = "managed/user";
+    static final String TARGET = "system/ldap/account";
+
+    /** Number of users */
+    @Param("10000")
+    public int users;
+
+    /** Number of generated attributes of a user, each mapped by a property of the mapping */
+    @Param("20")
+    public int attributes;
+
+    /** Whether the source ids of the links are case sensitive, which avoids normalizing them */
+    @Param("true")
+    public boolean caseSensitiveIds;
+
+    ObjectMapping mapping;
+    Context context;
+    ReconciliationContext reconContext;
+    Map<String, Link> links;
+    String[] sourceIds;
+    JsonValue[] sources;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        NoScriptRegistry.install();
+        final SyntheticData data = new SyntheticData(42L, attributes);
+        final InMemoryResources resources = new InMemoryResources(SOURCE, TARGET, "repo/link");
+        mapping = new ObjectMapping(resources.getConnectionFactory(),
+                data.mappingConfig(MAPPING, SOURCE, TARGET, caseSensitiveIds));
+        mapping.initRelationships(Collections.singletonList(mapping));
+        context = new RootContext();
+
+        sourceIds = new String[users];
+        sources = new JsonValue[users];
+        final List<String> targetIds = new ArrayList<>();
+        final List<JsonValue> targets = new ArrayList<>();
+        for (int i = 0; i < users; i++) {
+            sourceIds[i] = data.userId(i);
+            sources[i] = data.user(i);
+            if (i % 4 != 0) {
+                targetIds.add(data.accountId(i));
+                targets.add(data.account(i));
+                resources.create("repo/link", data.linkId(i), data.link(i, MAPPING, Link.DEFAULT_LINK_QUALIFIER));
+            }
+        }
+
+        ObjectSetContext.push(context);
+        try {
+            links = Link.getLinksForMapping(mapping, Link.DEFAULT_LINK_QUALIFIER);
+        } finally {
+            ObjectSetContext.pop();
+        }
+
+        reconContext = new ReconciliationContext(ReconciliationService.ReconAction.recon, mapping, context,
+                json(object()), null, null);
+        reconContext.setSourceIds(Arrays.asList(sourceIds));
+        reconContext.setTargets(new ResultIterable(targetIds, targets));
+    }
+
+    /**
+     * Prepares the source sync operation of a user, as the source phase of a reconciliation does.
+     *
+     * @param index the index of the user
+     * @return the sync operation
+     */
+    SourceSyncOperation newSourceSyncOperation(int index) {
+        final SourceSyncOperation op = new SourceSyncOperation(mapping, context);
+        op.reconContext = reconContext;
+        op.setLinkQualifier(Link.DEFAULT_LINK_QUALIFIER);
+        op.sourceObjectAccessor = new LazyObjectAccessor(mapping.getConnectionFactory(), SOURCE, sourceIds[index],
+                sources[index]);
+        op.initializeLink(findLink(index));
+        op.reconId = reconContext.getReconId();
+        return op;
+    }
+
+    /**
+     * Looks up the prefetched link of a user.
+     *
+     * @param index the index of the user
+     * @return the link, null if the user is not linked
+     */
+    Link findLink(int index) {
+        return links.get(mapping.getLinkType().normalizeSourceId(sourceIds[index]));
+    }
+
+    /**
+     * Cycles through the users, separately for each benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        /**
+         * Returns the index of the next user.
+         *
+         * @param users the number of users
+         * @return the index
+         */
+        int next(int users) {
+            final int index = next;
+            next = index + 1 == users ? 0 : index + 1;
+            return index;
+        }
+    }
+}
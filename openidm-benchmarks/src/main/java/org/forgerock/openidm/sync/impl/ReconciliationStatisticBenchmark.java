@@ -0,0 +1,72 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.sync.impl;
+
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.openidm.audit.util.Status;
+import org.forgerock.openidm.sync.ReconAction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Updates of the reconciliation statistics made for every source object, from as many threads as the default number
+ * of reconciliation task threads. The statistics are renewed every iteration, as they grow with the number of
+ * processed objects.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(10)
+public class ReconciliationStatisticBenchmark {
+
+    /**
+     * Fresh statistics of the reconciliation in progress.
+     */
+    @State(Scope.Benchmark)
+    public static class Statistics {
+        ReconciliationStatistic statistic;
+
+        @Setup(Level.Iteration)
+        public void setUp(MappingState state) {
+            statistic = new ReconciliationStatistic(state.reconContext);
+        }
+    }
+
+    @Benchmark
+    public void sourceObjectProcessed(MappingState state, Statistics statistics, MappingState.Cursor cursor) {
+        final int index = cursor.next(state.users);
+        final long startNanoTime = System.nanoTime();
+        final ReconciliationStatistic statistic = statistics.statistic;
+        statistic.addDuration(ReconciliationStatistic.DurationMetric.sourceLinkQuery, startNanoTime);
+        statistic.addDuration(ReconciliationStatistic.DurationMetric.updateTargetObject, startNanoTime);
+        statistic.getSourceStat().processed(state.sourceIds[index], null, true, null, false,
+                Situation.CONFIRMED, ReconAction.UPDATE);
+        statistic.processStatus(Status.SUCCESS);
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.sync.impl;
+
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.openidm.sync.SynchronizationException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Preparation of source sync operations and assessment of their situation, as done for every source object of a
+ * reconciliation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SyncOperationBenchmark {
+
+    @Benchmark
+    public SourceSyncOperation newSourceSyncOperation(MappingState state, MappingState.Cursor cursor) {
+        return state.newSourceSyncOperation(cursor.next(state.users));
+    }
+
+    @Benchmark
+    public Situation assessSituation(MappingState state, MappingState.Cursor cursor)
+            throws SynchronizationException {
+        final SourceSyncOperation op = state.newSourceSyncOperation(cursor.next(state.users));
+        op.assessSituation();
+        return op.situation;
+    }
+}
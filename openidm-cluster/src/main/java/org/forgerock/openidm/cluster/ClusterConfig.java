@@ -2,6 +2,7 @@
 * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
 *
 * Copyright (c) 2013-2015 ForgeRock AS. All Rights Reserved
+* Portions Copyright 2026 Wren Security.
 *
 * The contents of this file are subject to the terms
 * of the Common Development and Distribution License
@@ -24,6 +25,7 @@
 */
 package org.forgerock.openidm.cluster;
 
+import java.util.LinkedHashMap;
 import java.util.Properties;
 
 import org.forgerock.json.JsonValue;
@@ -41,6 +43,7 @@ public class ClusterConfig {
     private final static String INSTANCE_CHECK_IN_INTERVAL = "instanceCheckInInterval";
     private final static String INSTANCE_CHECK_IN_OFFSET = "instanceCheckInOffset";
     private final static String ENABLED = "enabled";
+    private final static String EVENT_TRANSPORT = "eventTransport";
     
     private String instanceId = "instance0";
     private long instanceTimeout = 30000;
@@ -48,6 +51,7 @@ public class ClusterConfig {
     private long instanceCheckInInterval = 5000;
     private long instanceCheckInOffset = 0;
     private boolean enabled = true;
+    private JsonValue eventTransport = new JsonValue(new LinkedHashMap<String, Object>());
     
     public ClusterConfig(JsonValue config) {
         if (!config.isNull()) {
@@ -77,6 +81,10 @@ public class ClusterConfig {
             } else if (!value.isNull() && value.isString()) {
                 setEnabled(Boolean.parseBoolean(value.asString()));
             }
+            value = config.get(EVENT_TRANSPORT);
+            if (!value.isNull()) {
+                setEventTransport(value);
+            }
         }
     }
     
@@ -137,4 +145,17 @@ public class ClusterConfig {
     public void setEnabled(boolean enabled) {
         this.enabled = enabled;
     }
+
+    /**
+     * Returns the configuration of the transport of cluster events between instances.
+     *
+     * @return the transport configuration, an empty object for the repository transport
+     */
+    public JsonValue getEventTransport() {
+        return eventTransport;
+    }
+
+    public void setEventTransport(JsonValue eventTransport) {
+        this.eventTransport = eventTransport;
+    }
 }
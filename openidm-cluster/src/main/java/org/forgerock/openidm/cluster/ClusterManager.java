@@ -12,13 +12,11 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Portions copyright 2013-2016 ForgeRock AS.
- * Portions Copyright 2020 Wren Security
+ * Portions Copyright 2020-2026 Wren Security
  */
 package org.forgerock.openidm.cluster;
 
-import static org.forgerock.json.JsonValue.field;
 import static org.forgerock.json.JsonValue.json;
-import static org.forgerock.json.JsonValue.object;
 import static org.forgerock.json.resource.Requests.newCreateRequest;
 import static org.forgerock.json.resource.Requests.newDeleteRequest;
 import static org.forgerock.json.resource.Requests.newQueryRequest;
@@ -29,15 +27,22 @@ import static org.forgerock.openidm.core.IdentityServer.NODE_ID;
 import static org.forgerock.openidm.util.ResourceUtil.notSupported;
 
 import java.text.ParseException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
 import org.forgerock.json.JsonValue;
@@ -126,7 +131,7 @@ public class ClusterManager implements RequestHandler, ClusterManagementService
     /**
      * Resource name when issuing cluster event requests directly with the Repository Service
      */
-    private static final ResourcePath EVENTS_RESOURCE_CONTAINER = new ResourcePath("cluster", "events");
+    static final ResourcePath EVENTS_RESOURCE_CONTAINER = new ResourcePath("cluster", "events");
 
     /**
      * The instance ID
@@ -156,6 +161,33 @@ public class ClusterManager implements RequestHandler, ClusterManagementService
      */
     private ClusterManagerThread clusterManagerThread = null;
 
+    /**
+     * The transport of the events stored in the repository, polled at each check-in
+     */
+    private ClusterTransport repoTransport;
+
+    /**
+     * The transport of the events sent to other instances, the repository unless pushing is configured
+     */
+    private ClusterTransport eventTransport;
+
+    /**
+     * The single thread dispatching the events received from other instances, whether pushed or polled, so that
+     * the listeners see them one at a time
+     */
+    private ExecutorService eventDispatcher;
+
+    /**
+     * The other instances of the cluster, as of the last check-in, to which the events are sent
+     */
+    private volatile List<InstanceState> peers;
+
+    /**
+     * The events sent within the instance timeout, replayed to the instances that joined the cluster before this
+     * instance knew of them. Guards the replacement of the peers.
+     */
+    private final Deque<SentEvent> recentEvents = new ArrayDeque<>();
+
     /**
      * The Cluster Manager Configuration
      */
@@ -202,11 +234,41 @@ public class ClusterManager implements RequestHandler, ClusterManagementService
                     "No property of '" + NODE_ID + "' could be found in configuration.");
         }
         clusterConfig = clstrCfg;
+        repoTransport = new RepoClusterTransport(repoService);
+        eventTransport = repoTransport;
         if (clusterConfig.isEnabled()) {
             enabled = true;
             clusterManagerThread = new ClusterManagerThread(clusterConfig.getInstanceCheckInInterval(),
             		clusterConfig.getInstanceCheckInOffset());
+            eventTransport = createEventTransport(clusterConfig.getEventTransport());
+            eventDispatcher = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "cluster-event-dispatcher");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+
+    private ClusterTransport createEventTransport(JsonValue config) {
+        String type = config.get("type").defaultTo(RepoClusterTransport.TYPE).asString();
+        if (RepoClusterTransport.TYPE.equals(type)) {
+            return repoTransport;
+        } else if (SocketClusterTransport.TYPE.equals(type)) {
+            return new SocketClusterTransport(instanceId, config, new ClusterEventListener() {
+                @Override
+                public boolean handleEvent(ClusterEvent event) {
+                    if (!dispatchEvent(event)) {
+                        // retry at the next check-in, as for a pending event of the repository
+                        repoTransport.send(new InstanceState(instanceId), event);
+                    }
+                    return true;
+                }
+            }, repoTransport);
         }
+        throw new IllegalStateException("Unknown cluster event transport type '" + type + "'");
     }
 
     @Deactivate
@@ -214,11 +276,18 @@ public class ClusterManager implements RequestHandler, ClusterManagementService
         logger.debug("Deactivating Cluster Management Service {}", compContext);
         if (clusterConfig.isEnabled()) {
             clusterManagerThread.shutdown();
+            eventTransport.stop();
+            eventDispatcher.shutdown();
+            synchronized (recentEvents) {
+                peers = null;
+                recentEvents.clear();
+            }
             synchronized (repoLock) {
                 try {
                     InstanceState state = getInstanceState(instanceId);
                     state.updateShutdown();
                     state.setState(InstanceState.STATE_DOWN);
+                    state.setEventAddress(null);
                     updateInstanceState(instanceId, state);
                 } catch (ResourceException e) {
                     logger.warn("Failed to update instance shutdown timestamp", e);
@@ -243,6 +312,7 @@ public class ClusterManager implements RequestHandler, ClusterManagementService
             if (clusterConfig.isEnabled() && !clusterManagerThread.isRunning()) {
                 // Start thread
                 logger.info("Starting Cluster Management");
+                eventTransport.start();
                 clusterManagerThread.startup();
             }
         }
@@ -255,6 +325,7 @@ public class ClusterManager implements RequestHandler, ClusterManagementService
                 logger.info("Stopping Cluster Management");
                 // Start thread
                 clusterManagerThread.shutdown();
+                eventTransport.stop();
                 checkOut();
             }
         }
@@ -404,22 +475,87 @@ public class ClusterManager implements RequestHandler, ClusterManagementService
     }
 
     /**
-     * Gets a list of all instances in the cluster
+     * Gets the states of all instances in the cluster
      *
-     * @return a list of Map objects representing each instance in the cluster
+     * @return a list of the InstanceState of each instance in the cluster
      * @throws ResourceException
      */
-    private List<Map<String, Object>> getInstances() throws ResourceException {
-        List<Map<String, Object>> instanceList = new ArrayList<Map<String, Object>>();
+    private List<InstanceState> getInstanceStates() throws ResourceException {
+        List<InstanceState> instanceList = new ArrayList<InstanceState>();
         QueryRequest queryRequest = newQueryRequest(STATES_RESOURCE_CONTAINER.toString())
                 .setQueryId(QUERY_INSTANCES);
         List<ResourceResponse> results = repoService.query(queryRequest);
         for (ResourceResponse resource : results) {
-            instanceList.add(getInstanceMap(resource.getContent()));
+            JsonValue content = resource.getContent();
+            instanceList.add(new InstanceState(content.get("instanceId").asString(), content.asMap()));
         }
         return instanceList;
     }
 
+    /**
+     * Reads the states of the other instances in the cluster and keeps them for sending the events until the next
+     * check-in. The instances that joined or restarted since the previous check-in are sent the recent events
+     * sent after their startup, which the previous states did not send to them.
+     *
+     * @return the states of the other instances
+     * @throws ResourceException
+     */
+    private List<InstanceState> refreshPeers() throws ResourceException {
+        List<InstanceState> others = new ArrayList<InstanceState>();
+        for (InstanceState instance : getInstanceStates()) {
+            if (!instance.getInstanceId().equals(instanceId)) {
+                others.add(instance);
+            }
+        }
+        Map<InstanceState, List<ClusterEvent>> missed = new HashMap<>();
+        synchronized (recentEvents) {
+            List<InstanceState> previous = peers;
+            peers = others;
+            pruneRecentEvents(System.currentTimeMillis());
+            if (previous != null && !recentEvents.isEmpty()) {
+                Map<String, Long> previousStartups = new HashMap<>();
+                for (InstanceState instance : previous) {
+                    previousStartups.put(instance.getInstanceId(), instance.getStartup());
+                }
+                for (InstanceState instance : others) {
+                    Long previousStartup = previousStartups.get(instance.getInstanceId());
+                    if (previousStartup == null || previousStartup != instance.getStartup()) {
+                        // allow for the clocks of the instances to differ by up to a check-in interval
+                        long since = instance.getStartup() - clusterConfig.getInstanceCheckInInterval();
+                        List<ClusterEvent> events = new ArrayList<>();
+                        for (SentEvent sent : recentEvents) {
+                            if (sent.sentAt >= since) {
+                                events.add(sent.event);
+                            }
+                        }
+                        if (!events.isEmpty()) {
+                            missed.put(instance, events);
+                        }
+                    }
+                }
+            }
+        }
+        for (Map.Entry<InstanceState, List<ClusterEvent>> entry : missed.entrySet()) {
+            logger.debug("Sending {} recent cluster events to instance {} which joined the cluster",
+                    entry.getValue().size(), entry.getKey().getInstanceId());
+            for (ClusterEvent event : entry.getValue()) {
+                eventTransport.send(entry.getKey(), event);
+            }
+        }
+        return others;
+    }
+
+    /**
+     * Discards the recent events sent before the instance timeout, guarded by the recent events.
+     *
+     * @param now the current time
+     */
+    private void pruneRecentEvents(long now) {
+        while (!recentEvents.isEmpty() && now - recentEvents.peekFirst().sentAt > clusterConfig.getInstanceTimeout()) {
+            recentEvents.removeFirst();
+        }
+    }
+
     private InstanceState getInstanceState(String instanceId) throws ResourceException {
         synchronized (repoLock) {
             ResourcePath resourcePath = STATES_RESOURCE_CONTAINER.child(instanceId);
@@ -482,6 +618,7 @@ public class ClusterManager implements RequestHandler, ClusterManagementService
                 state.clearShutdown();
                 firstCheckin = false;
             }
+            state.setEventAddress(eventTransport.getAddress());
             switch (state.getState()) {
             case InstanceState.STATE_RUNNING:
                 // just update the timestamp
@@ -536,6 +673,7 @@ public class ClusterManager implements RequestHandler, ClusterManagementService
             case InstanceState.STATE_RUNNING:
                 // just update the timestamp
                 state.setState(InstanceState.STATE_DOWN);
+                state.setEventAddress(null);
                 updateInstanceState(instanceId, state);
                 logger.debug("Instance {} state updated successfully");
                 break;
@@ -676,18 +814,20 @@ public class ClusterManager implements RequestHandler, ClusterManagementService
     @Override
     public void sendEvent(ClusterEvent event) {
         try {
-            // Loop through instances, creating a pending event for each instance in the cluster
-            for (Map<String, Object> instanceMap : getInstances()) {
-                String instanceId = (String) instanceMap.get("instanceId");
-                if (!instanceId.equals(this.instanceId)) {
-                    JsonValue newEvent = json(object(
-                            field("type", "event"),
-                            field("instanceId", instanceId),
-                            field("event", event.toJsonValue().getObject())));
-                    CreateRequest createRequest = newCreateRequest(EVENTS_RESOURCE_CONTAINER.toString(), newEvent);
-                    ResourceResponse result = repoService.create(createRequest);
-                    logger.debug("Creating cluster event {}", result.getId());
-                }
+            // Send the event to each other instance in the cluster, as known at the last check-in, keeping it for
+            // the instances joining before the next one
+            List<InstanceState> instances;
+            synchronized (recentEvents) {
+                long now = System.currentTimeMillis();
+                pruneRecentEvents(now);
+                recentEvents.addLast(new SentEvent(now, event));
+                instances = peers;
+            }
+            if (instances == null) {
+                instances = refreshPeers();
+            }
+            for (InstanceState instance : instances) {
+                eventTransport.send(instance, event);
             }
         } catch (ResourceException e) {
             logger.error("Error sending cluster event " + event.toJsonValue(), e);
@@ -711,24 +851,8 @@ public class ClusterManager implements RequestHandler, ClusterManagementService
                 logger.debug("Found pending cluster event {}", resource.getId());
                 JsonValue eventMap = resource.getContent().get("event");
                 ClusterEvent event = new ClusterEvent(eventMap);
-                boolean success = false;
-                String listenerId = event.getListenerId();
-                // Check if a listener ID is specified
-                if (listenerId != null) {
-                    // Send the event to the corresponding listener
-                    ClusterEventListener listener = listeners.get(listenerId);
-                    if (listener != null) {
-                        success = listener.handleEvent(event);
-                    } else {
-                        logger.warn("No listener {} available to receive event {}", listenerId, event.toJsonValue());
-                        success = true;
-                    }
-                } else {
-                    // Send event to all listeners
-                    success = sendEventToListeners(event);
-                }
                 // If the event was successfully processed, delete it
-                if (success) {
+                if (dispatchEvent(event)) {
                     try {
                         logger.debug("Deleting cluster event {}", resource.getId());
                         DeleteRequest deleteRequest = newDeleteRequest(
@@ -745,6 +869,61 @@ public class ClusterManager implements RequestHandler, ClusterManagementService
         }
     }
 
+    /**
+     * Dispatches an event received from another instance on the dispatcher thread, waiting for its listeners to
+     * handle it.
+     *
+     * @param event the ClusterEvent to handle
+     * @return true if the event was handled appropriately or has no listener, false otherwise
+     */
+    private boolean dispatchEvent(final ClusterEvent event) {
+        if (eventDispatcher == null) {
+            return dispatchToListeners(event);
+        }
+        try {
+            return eventDispatcher.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return dispatchToListeners(event);
+                }
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            logger.error("Error dispatching cluster event " + event.toJsonValue(), e.getCause());
+            return false;
+        } catch (RejectedExecutionException e) {
+            logger.debug("Cluster management stopped, not dispatching event {}", event.toJsonValue());
+            return false;
+        }
+    }
+
+    /**
+     * Dispatches an event received from another instance to its listener, or to all listeners if it does not
+     * name one.
+     *
+     * @param event the ClusterEvent to handle
+     * @return true if the event was handled appropriately or has no listener, false otherwise
+     */
+    private boolean dispatchToListeners(ClusterEvent event) {
+        String listenerId = event.getListenerId();
+        // Check if a listener ID is specified
+        if (listenerId != null) {
+            // Send the event to the corresponding listener
+            ClusterEventListener listener = listeners.get(listenerId);
+            if (listener != null) {
+                return listener.handleEvent(event);
+            } else {
+                logger.warn("No listener {} available to receive event {}", listenerId, event.toJsonValue());
+                return true;
+            }
+        } else {
+            // Send event to all listeners
+            return sendEventToListeners(event);
+        }
+    }
+
     private void deleteEvent(JsonValue eventMap) {
         String eventId = eventMap.get("_id").asString();
         try {
@@ -757,6 +936,19 @@ public class ClusterManager implements RequestHandler, ClusterManagementService
         }
     }
 
+    /**
+     * An event sent to the other instances.
+     */
+    private static final class SentEvent {
+        private final long sentAt;
+        private final ClusterEvent event;
+
+        SentEvent(long sentAt, ClusterEvent event) {
+            this.sentAt = sentAt;
+            this.event = event;
+        }
+    }
+
     /**
      * A thread for managing this instance's lease and detecting cluster events.
      */
@@ -815,6 +1007,9 @@ public class ClusterManager implements RequestHandler, ClusterManagementService
                         // Check for pending cluster events
                         processPendingEvents();
 
+                        // Refresh the instances to send the events to
+                        refreshPeers();
+
                         // Find failed instances
                         logger.debug("Finding failed instances");
                         Map<String, InstanceState> failedInstances = findFailedInstances();
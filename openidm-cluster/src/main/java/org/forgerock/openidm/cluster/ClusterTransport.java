@@ -0,0 +1,51 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.cluster;
+
+/**
+ * Delivers cluster events to the other instances of the cluster.
+ * <p>
+ * The transport is selected by the {@code type} of the {@code eventTransport} cluster configuration:
+ * {@value RepoClusterTransport#TYPE} (the default) stores the events in the repository, where the peers poll them
+ * at their check-in interval, and {@value SocketClusterTransport#TYPE} pushes them to the peers over TCP.
+ */
+interface ClusterTransport {
+
+    /**
+     * Starts accepting events from the other instances, if the transport receives events itself.
+     */
+    void start();
+
+    /**
+     * Stops accepting events and hands any event not yet acknowledged by a peer over to the repository.
+     */
+    void stop();
+
+    /**
+     * Returns the address the other instances push events to, published in the state of this instance.
+     *
+     * @return the "host:port" address, or null if events are only exchanged through the repository
+     */
+    String getAddress();
+
+    /**
+     * Sends an event to another instance. Delivery is asynchronous and at least once.
+     *
+     * @param peer the last known state of the receiving instance
+     * @param event the event
+     */
+    void send(InstanceState peer, ClusterEvent event);
+}
@@ -2,6 +2,7 @@
 * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
 *
 * Copyright (c) 2013-2014 ForgeRock AS. All Rights Reserved
+* Portions Copyright 2026 Wren Security.
 *
 * The contents of this file are subject to the terms
 * of the Common Development and Distribution License
@@ -44,6 +45,7 @@ public class InstanceState {
     public final static String PROP_TIMESTAMP_RECOVERY_STARTED  = "recoveryStarted";
     public final static String PROP_TIMESTAMP_RECOVERY_FINISHED = "recoveryFinished";
     public final static String PROP_RECOVERY_ATTEMPTS           = "recoveryAttempts";
+    public final static String PROP_EVENT_ADDRESS               = "eventAddress";
     public final static String PROP_TYPE                        = "type";
     public final static String PROP_REV                         = "_rev";
     public final static String PROP_ID                          = "_id";
@@ -59,6 +61,7 @@ public class InstanceState {
     private long recoveryFinished;
     private long recoveringTimestamp;
     private String recoveringInstanceId;
+    private String eventAddress;
     private String rev;
     private String id;
     
@@ -82,6 +85,7 @@ public class InstanceState {
             Long.parseLong((String)map.get(PROP_TIMESTAMP_RECOVERY_FINISHED)));
         this.recoveryAttempts = ((map.get(PROP_RECOVERY_ATTEMPTS) == null) ? 0 : 
             (Integer)map.get(PROP_RECOVERY_ATTEMPTS));
+        this.eventAddress = (String)map.get(PROP_EVENT_ADDRESS);
         this.rev = (String)map.get(PROP_REV);
         this.id = (String)map.get(PROP_ID);
     }
@@ -113,6 +117,7 @@ public class InstanceState {
         map.put(PROP_TIMESTAMP_RECOVERY_STARTED, pad(getRecoveryStarted()));
         map.put(PROP_TIMESTAMP_RECOVERY_FINISHED, pad(getRecoveryFinished()));
         map.put(PROP_RECOVERY_ATTEMPTS, getRecoveryAttempts());
+        map.put(PROP_EVENT_ADDRESS, getEventAddress());
         map.put(PROP_REV, getRevision());
         map.put(PROP_ID, id);
         map.put(PROP_TYPE, "state");
@@ -204,6 +209,19 @@ public class InstanceState {
     public String getRevision() {
         return rev;
     }
+
+    /**
+     * Returns the host and port other instances push cluster events to.
+     *
+     * @return the "host:port" address, or null if the instance only reads its events from the repository
+     */
+    public String getEventAddress() {
+        return eventAddress;
+    }
+
+    public void setEventAddress(String eventAddress) {
+        this.eventAddress = eventAddress;
+    }
     
     public void clearShutdown() {
         shutdown = 0L;
@@ -0,0 +1,79 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.cluster;
+
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+import static org.forgerock.json.resource.Requests.newCreateRequest;
+
+import org.forgerock.json.JsonValue;
+import org.forgerock.json.resource.CreateRequest;
+import org.forgerock.json.resource.ResourceException;
+import org.forgerock.json.resource.ResourceResponse;
+import org.forgerock.openidm.repo.RepositoryService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stores one pending event document per receiving instance in the repository. The receiving instance processes
+ * and deletes its pending events at its next check-in.
+ */
+class RepoClusterTransport implements ClusterTransport {
+
+    private static final Logger logger = LoggerFactory.getLogger(RepoClusterTransport.class);
+
+    /** Transport type of the cluster configuration */
+    static final String TYPE = "repo";
+
+    private final RepositoryService repoService;
+
+    RepoClusterTransport(RepositoryService repoService) {
+        this.repoService = repoService;
+    }
+
+    @Override
+    public void start() {
+        // peers write to the repository directly
+    }
+
+    @Override
+    public void stop() {
+        // nothing pending
+    }
+
+    @Override
+    public String getAddress() {
+        return null;
+    }
+
+    @Override
+    public void send(InstanceState peer, ClusterEvent event) {
+        try {
+            JsonValue newEvent = json(object(
+                    field("type", "event"),
+                    field("instanceId", peer.getInstanceId()),
+                    field("event", event.toJsonValue().getObject())));
+            CreateRequest createRequest =
+                    newCreateRequest(ClusterManager.EVENTS_RESOURCE_CONTAINER.toString(), newEvent);
+            ResourceResponse result = repoService.create(createRequest);
+            logger.debug("Creating cluster event {}", result.getId());
+        } catch (ResourceException e) {
+            logger.error("Error sending cluster event " + event.toJsonValue() + " to instance "
+                    + peer.getInstanceId(), e);
+        }
+    }
+}
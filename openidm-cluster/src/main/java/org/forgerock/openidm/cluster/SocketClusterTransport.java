@@ -0,0 +1,637 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.cluster;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.forgerock.json.JsonValue;
+import org.forgerock.json.JsonValueException;
+import org.forgerock.openidm.util.JsonUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pushes cluster events to the other instances over plain TCP connections.
+ * <p>
+ * Every instance listens on the configured port and publishes its "host:port" address in its instance state. A
+ * sending instance keeps one connection per peer, authenticated by a challenge on the shared secret, and streams
+ * the events over it as soon as they are sent. The receiving instance queues them for a single dispatcher thread
+ * and acknowledges them in batches, once it has queued the events buffered so far or every
+ * {@value #ACK_BATCH_SIZE} events, so that a slow listener does not hold the acknowledgements back. The events
+ * that do not fit in the queue of {@value #DISPATCH_QUEUE_SIZE} events, or that are still queued when the
+ * transport stops, are stored in the repository for this instance to process at its next check-in.
+ * <p>
+ * Events are handed over to the fallback transport, i.e. the repository, when the peer has no published address,
+ * when its connection fails, and for the events not yet acknowledged when a connection fails, when the oldest of
+ * them is not acknowledged within the acknowledgement timeout, or when the transport stops. TCP keep-alive is
+ * enabled on the connections, so that a vanished peer is eventually detected even without pending events. A failed
+ * peer is only connected to again after the retry interval. Delivery is at least once, as with the repository.
+ * <p>
+ * Configuration, within {@code eventTransport} of the cluster configuration:
+ * <pre>
+ * "eventTransport" : {
+ *     "type" : "socket",
+ *     "sharedSecret" : "...",        // required, identical on all instances
+ *     "bindAddress" : "0.0.0.0",
+ *     "port" : 0,                    // 0 for any free port
+ *     "host" : "idm1.example.com",   // published host, defaults to the bind address or the local host address
+ *     "connectTimeout" : 2000,
+ *     "ackTimeout" : 10000,
+ *     "retryInterval" : 5000
+ * }
+ * </pre>
+ */
+class SocketClusterTransport implements ClusterTransport {
+
+    private static final Logger logger = LoggerFactory.getLogger(SocketClusterTransport.class);
+
+    /** Transport type of the cluster configuration */
+    static final String TYPE = "socket";
+
+    private static final int FRAME_EVENT = 1;
+    private static final int FRAME_ACK = 2;
+    private static final int NONCE_LENGTH = 16;
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int MAX_EVENT_LENGTH = 16 * 1024 * 1024;
+
+    /** Maximum number of events a receiver dispatches before acknowledging them */
+    static final int ACK_BATCH_SIZE = 64;
+
+    /** Maximum number of received events waiting to be dispatched */
+    static final int DISPATCH_QUEUE_SIZE = 1024;
+
+    private final String instanceId;
+    private final ClusterEventListener receiver;
+    private final ClusterTransport fallback;
+    private final String bindAddress;
+    private final int port;
+    private final String host;
+    private final SecretKeySpec sharedSecret;
+    private final int connectTimeout;
+    private final long ackTimeout;
+    private final long retryInterval;
+    private final SecureRandom random = new SecureRandom();
+
+    /** Connections to the peers, by instance id, guarded by itself when replaced */
+    private final Map<String, PeerChannel> peers = new ConcurrentHashMap<>();
+
+    /** Connections from the peers */
+    private final Set<Socket> inbound = Collections.newSetFromMap(new ConcurrentHashMap<Socket, Boolean>());
+
+    /** Events received from the peers and not dispatched yet, guarded by itself when the dispatcher changes */
+    private final BlockingQueue<ClusterEvent> received = new LinkedBlockingQueue<>(DISPATCH_QUEUE_SIZE);
+
+    private Thread dispatcher;
+    private volatile ServerSocket serverSocket;
+    private volatile String address;
+
+    /**
+     * Creates the transport.
+     *
+     * @param instanceId the id of this instance
+     * @param config the {@code eventTransport} configuration
+     * @param receiver the listener dispatching the events received from the peers
+     * @param fallback the transport of the events that cannot be pushed
+     * @throws JsonValueException if the configuration is invalid
+     */
+    SocketClusterTransport(String instanceId, JsonValue config, ClusterEventListener receiver,
+            ClusterTransport fallback) {
+        this.instanceId = instanceId;
+        this.receiver = receiver;
+        this.fallback = fallback;
+        bindAddress = config.get("bindAddress").defaultTo("0.0.0.0").asString();
+        port = (int) longValue(config.get("port"), 0);
+        host = config.get("host").asString();
+        JsonValue secret = config.get("sharedSecret").required();
+        if (secret.asString().isEmpty()) {
+            throw new JsonValueException(secret, "The shared secret must not be empty");
+        }
+        sharedSecret = new SecretKeySpec(secret.asString().getBytes(StandardCharsets.UTF_8), MAC_ALGORITHM);
+        connectTimeout = (int) longValue(config.get("connectTimeout"), 2000);
+        ackTimeout = longValue(config.get("ackTimeout"), 10000);
+        retryInterval = longValue(config.get("retryInterval"), 5000);
+    }
+
+    private static long longValue(JsonValue value, long defaultValue) {
+        if (value.isNull()) {
+            return defaultValue;
+        }
+        // numbers are strings in the shipped cluster configuration
+        return value.isString() ? Long.parseLong(value.asString()) : value.asLong();
+    }
+
+    @Override
+    public synchronized void start() {
+        if (serverSocket != null) {
+            return;
+        }
+        final ServerSocket server;
+        try {
+            server = new ServerSocket();
+            server.setReuseAddress(true);
+            server.bind(new InetSocketAddress(bindAddress, port));
+        } catch (IOException e) {
+            logger.error("Failed to listen for cluster events on {}:{}, receiving them through the repository",
+                    bindAddress, port, e);
+            return;
+        }
+        serverSocket = server;
+        address = publishedHost(server) + ":" + server.getLocalPort();
+        logger.info("Listening for cluster events on {}", address);
+        synchronized (received) {
+            dispatcher = newThread("cluster-events-dispatcher", new Runnable() {
+                @Override
+                public void run() {
+                    dispatchReceived();
+                }
+            });
+            dispatcher.start();
+        }
+        newThread("cluster-events-acceptor", new Runnable() {
+            @Override
+            public void run() {
+                accept(server);
+            }
+        }).start();
+    }
+
+    private String publishedHost(ServerSocket server) {
+        if (host != null) {
+            return host;
+        }
+        if (!server.getInetAddress().isAnyLocalAddress()) {
+            return server.getInetAddress().getHostAddress();
+        }
+        try {
+            return InetAddress.getLocalHost().getHostAddress();
+        } catch (UnknownHostException e) {
+            logger.warn("Failed to resolve the local host address, configure the published host of the "
+                    + "cluster event transport", e);
+            return InetAddress.getLoopbackAddress().getHostAddress();
+        }
+    }
+
+    @Override
+    public void stop() {
+        final ServerSocket server;
+        synchronized (this) {
+            server = serverSocket;
+            serverSocket = null;
+            address = null;
+        }
+        closeQuietly(server);
+        for (Socket socket : inbound) {
+            closeQuietly(socket);
+        }
+        final Thread stopped;
+        final List<ClusterEvent> undispatched = new ArrayList<>();
+        synchronized (received) {
+            stopped = dispatcher;
+            dispatcher = null;
+            received.drainTo(undispatched);
+        }
+        if (stopped != null) {
+            stopped.interrupt();
+        }
+        for (ClusterEvent event : undispatched) {
+            fallback.send(new InstanceState(instanceId), event);
+        }
+        synchronized (peers) {
+            for (PeerChannel channel : peers.values()) {
+                channel.close(null);
+            }
+            peers.clear();
+        }
+    }
+
+    @Override
+    public String getAddress() {
+        return address;
+    }
+
+    @Override
+    public void send(InstanceState peer, ClusterEvent event) {
+        final String peerAddress = peer.getEventAddress();
+        if (peerAddress == null || serverSocket == null) {
+            fallback.send(peer, event);
+            return;
+        }
+        PeerChannel channel;
+        synchronized (peers) {
+            channel = peers.get(peer.getInstanceId());
+            if (channel != null && !channel.address.equals(peerAddress)) {
+                // the peer restarted with another address
+                channel.close(null);
+                channel = null;
+            } else if (channel != null && channel.isRetryDue()) {
+                channel = null;
+            }
+            if (channel == null) {
+                channel = new PeerChannel(peer, peerAddress);
+                peers.put(peer.getInstanceId(), channel);
+                channel.start();
+            }
+        }
+        if (!channel.offer(event)) {
+            fallback.send(peer, event);
+        }
+    }
+
+    /**
+     * Returns the number of events sent to a peer and not acknowledged yet.
+     *
+     * @param peerInstanceId the id of the peer
+     * @return the number of events, 0 if there is no connection to the peer
+     */
+    int getPendingCount(String peerInstanceId) {
+        PeerChannel channel = peers.get(peerInstanceId);
+        return channel == null ? 0 : channel.getPendingCount();
+    }
+
+    private void accept(ServerSocket server) {
+        while (!server.isClosed()) {
+            final Socket socket;
+            try {
+                socket = server.accept();
+            } catch (IOException e) {
+                if (!server.isClosed()) {
+                    logger.warn("Failed to accept a cluster event connection", e);
+                }
+                continue;
+            }
+            inbound.add(socket);
+            newThread("cluster-events-from-" + socket.getRemoteSocketAddress(), new Runnable() {
+                @Override
+                public void run() {
+                    receive(socket);
+                }
+            }).start();
+        }
+    }
+
+    private void receive(Socket socket) {
+        String peerId = null;
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setKeepAlive(true);
+            socket.setSoTimeout(connectTimeout);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            byte[] nonce = new byte[NONCE_LENGTH];
+            random.nextBytes(nonce);
+            out.write(nonce);
+            out.flush();
+            peerId = in.readUTF();
+            byte[] mac = new byte[mac(nonce).length];
+            in.readFully(mac);
+            if (!MessageDigest.isEqual(mac, mac(nonce))) {
+                logger.warn("Rejected cluster events of instance {} from {}, the shared secret does not match",
+                        peerId, socket.getRemoteSocketAddress());
+                return;
+            }
+            socket.setSoTimeout(0);
+            logger.debug("Receiving cluster events from instance {}", peerId);
+
+            int unacknowledged = 0;
+            while (true) {
+                int frame = in.readInt();
+                if (frame != FRAME_EVENT) {
+                    throw new IOException("Unexpected frame " + frame);
+                }
+                long sequence = in.readLong();
+                queue(readEvent(in));
+                // acknowledge once all events received so far are queued, so a burst costs one round trip
+                if (++unacknowledged >= ACK_BATCH_SIZE || in.available() == 0) {
+                    out.writeInt(FRAME_ACK);
+                    out.writeLong(sequence);
+                    out.flush();
+                    unacknowledged = 0;
+                }
+            }
+        } catch (EOFException e) {
+            logger.debug("Instance {} closed its cluster event connection", peerId);
+        } catch (IOException | RuntimeException e) {
+            if (serverSocket != null) {
+                logger.info("Cluster event connection from instance {} failed: {}", peerId, e.toString());
+            }
+        } finally {
+            inbound.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+
+    /**
+     * Queues a received event for the dispatcher, or stores it in the repository for the next check-in of this
+     * instance if the queue is full or the transport stopped.
+     *
+     * @param event the received event
+     */
+    private void queue(ClusterEvent event) {
+        synchronized (received) {
+            if (dispatcher != null && received.offer(event)) {
+                return;
+            }
+        }
+        logger.debug("Cluster event {} for instance {} could not be queued for dispatch, processing it at the "
+                + "next check-in", event.getType(), event.getInstanceId());
+        fallback.send(new InstanceState(instanceId), event);
+    }
+
+    private void dispatchReceived() {
+        try {
+            while (true) {
+                dispatch(received.take());
+            }
+        } catch (InterruptedException e) {
+            // stopped
+        }
+    }
+
+    private void dispatch(ClusterEvent event) {
+        try {
+            receiver.handleEvent(event);
+        } catch (RuntimeException e) {
+            logger.error("Error processing cluster event {} for instance {}", event.getType(),
+                    event.getInstanceId(), e);
+        }
+    }
+
+    private static ClusterEvent readEvent(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_EVENT_LENGTH) {
+            throw new IOException("Invalid event length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new ClusterEvent(JsonUtil.parseStringified(new String(bytes, StandardCharsets.UTF_8)));
+    }
+
+    private static void writeEvent(DataOutputStream out, Pending pending) throws IOException {
+        byte[] bytes = JsonUtil.writeValueAsString(pending.event.toJsonValue()).getBytes(StandardCharsets.UTF_8);
+        out.writeInt(FRAME_EVENT);
+        out.writeLong(pending.sequence);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private byte[] mac(byte[] nonce) {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(sharedSecret);
+            return mac.doFinal(nonce);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to authenticate the cluster event connection", e);
+        }
+    }
+
+    private static Thread newThread(String name, Runnable runnable) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * An event waiting to be written or acknowledged.
+     */
+    private static final class Pending {
+        private final long sequence;
+        private final ClusterEvent event;
+        /** When the event was written, guarded by the channel */
+        private long writtenAt;
+
+        Pending(long sequence, ClusterEvent event) {
+            this.sequence = sequence;
+            this.event = event;
+        }
+    }
+
+    /**
+     * The connection to a peer: a writer thread streams the queued events and a reader thread discards the events
+     * as their acknowledgements arrive. Once closed, a channel hands all its events over to the fallback transport
+     * and accepts no more.
+     */
+    private final class PeerChannel implements Runnable {
+        private final InstanceState peer;
+        private final String address;
+        private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+        // guarded by this
+        private final Deque<Pending> unacknowledged = new ArrayDeque<>();
+        private long nextSequence;
+        private boolean closed;
+        private long closedAt;
+        private Socket socket;
+        private Thread writer;
+
+        PeerChannel(InstanceState peer, String address) {
+            this.peer = peer;
+            this.address = address;
+        }
+
+        void start() {
+            writer = newThread("cluster-events-to-" + peer.getInstanceId(), this);
+            writer.start();
+        }
+
+        synchronized boolean offer(ClusterEvent event) {
+            if (closed) {
+                return false;
+            }
+            queue.add(new Pending(nextSequence++, event));
+            return true;
+        }
+
+        synchronized boolean isRetryDue() {
+            return closed && System.currentTimeMillis() - closedAt >= retryInterval;
+        }
+
+        synchronized int getPendingCount() {
+            return unacknowledged.size() + queue.size();
+        }
+
+        @Override
+        public void run() {
+            try {
+                Socket connected = connect();
+                synchronized (this) {
+                    if (closed) {
+                        closeQuietly(connected);
+                        return;
+                    }
+                    socket = connected;
+                }
+                final DataInputStream in = new DataInputStream(new BufferedInputStream(connected.getInputStream()));
+                newThread("cluster-event-acks-from-" + peer.getInstanceId(), new Runnable() {
+                    @Override
+                    public void run() {
+                        readAcknowledgements(in);
+                    }
+                }).start();
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connected.getOutputStream()));
+                while (true) {
+                    // wake up while idle to check the acknowledgement deadline
+                    Pending pending = queue.poll(Math.max(1, ackTimeout / 4), TimeUnit.MILLISECONDS);
+                    if (isAcknowledgementOverdue()) {
+                        close(new IOException("No acknowledgement within " + ackTimeout + " ms"));
+                        if (pending != null) {
+                            fallback.send(peer, pending.event);
+                        }
+                        return;
+                    }
+                    if (pending == null) {
+                        continue;
+                    }
+                    synchronized (this) {
+                        if (closed) {
+                            fallback.send(peer, pending.event);
+                            return;
+                        }
+                        pending.writtenAt = System.currentTimeMillis();
+                        unacknowledged.add(pending);
+                    }
+                    writeEvent(out, pending);
+                    if (queue.isEmpty()) {
+                        out.flush();
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                close(e);
+            } catch (InterruptedException e) {
+                // closed
+            }
+        }
+
+        private synchronized boolean isAcknowledgementOverdue() {
+            return !unacknowledged.isEmpty()
+                    && System.currentTimeMillis() - unacknowledged.peekFirst().writtenAt > ackTimeout;
+        }
+
+        private Socket connect() throws IOException {
+            int separator = address.lastIndexOf(':');
+            if (separator < 0) {
+                throw new IOException("Invalid cluster event address " + address);
+            }
+            Socket connecting = new Socket();
+            try {
+                connecting.connect(new InetSocketAddress(address.substring(0, separator),
+                        Integer.parseInt(address.substring(separator + 1))), connectTimeout);
+                connecting.setTcpNoDelay(true);
+                connecting.setKeepAlive(true);
+                connecting.setSoTimeout(connectTimeout);
+                DataInputStream in = new DataInputStream(connecting.getInputStream());
+                byte[] nonce = new byte[NONCE_LENGTH];
+                in.readFully(nonce);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connecting.getOutputStream()));
+                out.writeUTF(instanceId);
+                out.write(mac(nonce));
+                out.flush();
+                connecting.setSoTimeout(0);
+                return connecting;
+            } catch (IOException | RuntimeException e) {
+                closeQuietly(connecting);
+                throw e;
+            }
+        }
+
+        private void readAcknowledgements(DataInputStream in) {
+            try {
+                while (true) {
+                    int frame = in.readInt();
+                    if (frame != FRAME_ACK) {
+                        throw new IOException("Unexpected frame " + frame);
+                    }
+                    long sequence = in.readLong();
+                    synchronized (this) {
+                        while (!unacknowledged.isEmpty() && unacknowledged.peekFirst().sequence <= sequence) {
+                            unacknowledged.removeFirst();
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                close(e);
+            }
+        }
+
+        /**
+         * Closes the channel and hands the events not acknowledged yet over to the fallback transport.
+         *
+         * @param failure the failure of the connection, or null if the transport stops or the peer moved
+         */
+        void close(Exception failure) {
+            final List<Pending> undelivered = new ArrayList<>();
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                closedAt = System.currentTimeMillis();
+                undelivered.addAll(unacknowledged);
+                unacknowledged.clear();
+                queue.drainTo(undelivered);
+                closeQuietly(socket);
+            }
+            if (writer != null && writer != Thread.currentThread()) {
+                writer.interrupt();
+            }
+            if (failure != null) {
+                logger.info("Failed to push cluster events to instance {} at {}, sending them through the "
+                        + "repository for {} ms: {}", peer.getInstanceId(), address, retryInterval,
+                        failure.toString());
+            }
+            for (Pending pending : undelivered) {
+                fallback.send(peer, pending.event);
+            }
+        }
+    }
+}
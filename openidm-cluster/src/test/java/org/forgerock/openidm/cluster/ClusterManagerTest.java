@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015-2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 package org.forgerock.openidm.cluster;
 
@@ -21,6 +22,8 @@ import static org.forgerock.json.JsonValue.object;
 import static org.forgerock.json.test.assertj.AssertJJsonValueAssert.assertThat;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.assertj.core.api.Assertions;
 import org.forgerock.openidm.repo.RepositoryService;
@@ -28,6 +31,7 @@ import org.forgerock.openidm.router.IDMConnectionFactory;
 import org.forgerock.openidm.router.IDMConnectionFactoryWrapper;
 import org.forgerock.services.context.RootContext;
 import org.forgerock.json.JsonValue;
+import org.forgerock.json.resource.CreateRequest;
 import org.forgerock.json.resource.ReadRequest;
 import org.forgerock.json.resource.RequestHandler;
 import org.forgerock.json.resource.Requests;
@@ -110,6 +114,51 @@ public class ClusterManagerTest {
     	Assertions.assertThat(node.isStarted()).isTrue();
     }
 
+    @Test
+    public void testEventsAreReplayedToJoiningInstances() throws Exception {
+        final List<JsonValue> storedEvents = new CopyOnWriteArrayList<>();
+        final MockRepositoryService repoService = new MockRepositoryService() {
+            @Override
+            public ResourceResponse create(CreateRequest request) throws ResourceException {
+                if (request.getResourcePath().equals(ClusterManager.EVENTS_RESOURCE_CONTAINER.toString())) {
+                    storedEvents.add(request.getContent().copy());
+                }
+                return super.create(request);
+            }
+        };
+        final ClusterManager sender = createClusterManager(repoService,
+                new IDMConnectionFactoryWrapper(Resources.newInternalConnectionFactory(repoService)),
+                json(object(
+                        field("instanceId", "sender-node"),
+                        field("instanceTimeout", "30000"),
+                        field("instanceRecoveryTimeout", "30000"),
+                        field("instanceCheckInInterval", "200"),
+                        field("instanceCheckInOffset", "0"),
+                        field("enabled", true))));
+        sender.startClusterManagement();
+        try {
+            // the sender knows of no other instance when it sends the event
+            Thread.sleep(500);
+            final InstanceState joined = new InstanceState("joined-node");
+            sender.sendEvent(new ClusterEvent(ClusterEventType.RECOVERY_INITIATED, "sender-node", "scheduler",
+                    json(object())));
+            Assertions.assertThat(storedEvents).isEmpty();
+
+            // the instance started before the event was sent, but its state is only read at the next check-in
+            repoService.create(Requests.newCreateRequest("cluster/states", "joined-node", json(joined.toMap())));
+
+            final long deadline = System.currentTimeMillis() + 10000;
+            while (storedEvents.isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Assertions.assertThat(storedEvents).hasSize(1);
+            assertThat(storedEvents.get(0)).stringAt("instanceId").isEqualTo("joined-node");
+            assertThat(storedEvents.get(0)).stringAt("event/listenerId").isEqualTo("scheduler");
+        } finally {
+            sender.stopClusterManagement();
+        }
+    }
+
     @Test(expectedExceptions = IllegalStateException.class)
     public void testNoClusterNodeIdInConfig() throws Exception  {
         final ClusterManager clusterManager = new ClusterManager();
@@ -0,0 +1,275 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.cluster;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.json.JsonValue;
+import org.forgerock.json.JsonValueException;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests {@link SocketClusterTransport}
+ */
+public class SocketClusterTransportTest {
+
+    private final BlockingQueue<ClusterEvent> received = new LinkedBlockingQueue<>();
+    private final RecordingTransport fallback = new RecordingTransport();
+    private SocketClusterTransport sender;
+    private SocketClusterTransport receiver;
+
+    @BeforeMethod
+    public void setUp() {
+        received.clear();
+        fallback.sent.clear();
+        sender = newTransport("node1", "secret");
+        receiver = newTransport("node2", "secret");
+        sender.start();
+        receiver.start();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        sender.stop();
+        receiver.stop();
+    }
+
+    @Test
+    public void testEventsArePushedAndAcknowledged() throws Exception {
+        final InstanceState peer = peer(receiver.getAddress());
+        for (int i = 0; i < 200; i++) {
+            sender.send(peer, event(i));
+        }
+
+        for (int i = 0; i < 200; i++) {
+            final ClusterEvent event = received.poll(10, TimeUnit.SECONDS);
+            assertThat(event).isNotNull();
+            assertThat(event.getDetails().get("sequence").asInteger()).isEqualTo(i);
+        }
+        awaitAcknowledged("node2");
+        assertThat(fallback.sent).isEmpty();
+    }
+
+    @Test
+    public void testPeerWithoutAddressUsesFallback() {
+        sender.send(peer(null), event(1));
+
+        assertThat(fallback.sent).hasSize(1);
+        assertThat(received).isEmpty();
+    }
+
+    @Test
+    public void testUnreachablePeerUsesFallback() throws Exception {
+        final int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        sender.send(peer("127.0.0.1:" + port), event(1));
+
+        awaitFallback(1);
+        // the peer is not retried before the retry interval
+        sender.send(peer("127.0.0.1:" + port), event(2));
+        assertThat(fallback.sent).hasSize(2);
+    }
+
+    @Test
+    public void testWrongSharedSecretUsesFallback() throws Exception {
+        final SocketClusterTransport intruder = newTransport("node3", "other");
+        intruder.start();
+        try {
+            intruder.send(peer(receiver.getAddress()), event(1));
+
+            awaitFallback(1);
+            assertThat(received).isEmpty();
+        } finally {
+            intruder.stop();
+        }
+    }
+
+    @Test
+    public void testSlowListenerDoesNotDelayAcknowledgements() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final SocketClusterTransport stalled = newTransport("node2", "secret", 60000, new ClusterEventListener() {
+            @Override
+            public boolean handleEvent(ClusterEvent event) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return true;
+            }
+        });
+        final SocketClusterTransport impatient = newTransport("node3", "secret", 200, null);
+        stalled.start();
+        impatient.start();
+        try {
+            impatient.send(peer(stalled.getAddress()), event(1));
+            impatient.send(peer(stalled.getAddress()), event(2));
+
+            final long deadline = System.currentTimeMillis() + 10000;
+            while (impatient.getPendingCount("node2") > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(impatient.getPendingCount("node2")).isEqualTo(0);
+            // well past the acknowledgement timeout, the events are still not handed over to the repository
+            Thread.sleep(500);
+            assertThat(fallback.sent).isEmpty();
+        } finally {
+            release.countDown();
+            impatient.stop();
+            stalled.stop();
+        }
+    }
+
+    @Test
+    public void testUnacknowledgedEventsUseFallback() throws Exception {
+        // a peer accepting the connection and the events without ever acknowledging them
+        final ServerSocket silent = new ServerSocket(0);
+        final Thread peer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try (Socket socket = silent.accept()) {
+                    socket.getOutputStream().write(new byte[16]);
+                    socket.getOutputStream().flush();
+                    final InputStream in = socket.getInputStream();
+                    while (in.read() >= 0) {
+                        // discard
+                    }
+                } catch (IOException e) {
+                    // closed
+                }
+            }
+        });
+        peer.start();
+        final SocketClusterTransport impatient = newTransport("node3", "secret", 200, null);
+        impatient.start();
+        try {
+            impatient.send(peer("127.0.0.1:" + silent.getLocalPort()), event(1));
+
+            awaitFallback(1);
+            assertThat(impatient.getPendingCount("node2")).isEqualTo(0);
+        } finally {
+            impatient.stop();
+            silent.close();
+        }
+    }
+
+    @Test
+    public void testStoppedTransportUsesFallback() {
+        sender.stop();
+
+        sender.send(peer(receiver.getAddress()), event(1));
+
+        assertThat(fallback.sent).hasSize(1);
+    }
+
+    @Test(expectedExceptions = JsonValueException.class)
+    public void testSharedSecretIsRequired() {
+        new SocketClusterTransport("node1", json(object(field("type", "socket"))), null, fallback);
+    }
+
+    private SocketClusterTransport newTransport(String instanceId, String sharedSecret) {
+        return newTransport(instanceId, sharedSecret, 10000, new ClusterEventListener() {
+            @Override
+            public boolean handleEvent(ClusterEvent event) {
+                received.add(event);
+                return true;
+            }
+        });
+    }
+
+    private SocketClusterTransport newTransport(String instanceId, String sharedSecret, long ackTimeout,
+            ClusterEventListener listener) {
+        final JsonValue config = json(object(
+                field("type", "socket"),
+                field("sharedSecret", sharedSecret),
+                field("bindAddress", "127.0.0.1"),
+                field("port", "0"),
+                field("ackTimeout", ackTimeout),
+                field("retryInterval", 60000)));
+        return new SocketClusterTransport(instanceId, config, listener, fallback);
+    }
+
+    private static InstanceState peer(String address) {
+        final InstanceState peer = new InstanceState("node2");
+        peer.setEventAddress(address);
+        return peer;
+    }
+
+    private static ClusterEvent event(int sequence) {
+        return new ClusterEvent(ClusterEventType.RECOVERY_INITIATED, "node1", "scheduler",
+                json(object(field("sequence", sequence))));
+    }
+
+    private void awaitAcknowledged(String peerId) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (sender.getPendingCount(peerId) > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(sender.getPendingCount(peerId)).isEqualTo(0);
+    }
+
+    private void awaitFallback(int count) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (fallback.sent.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(fallback.sent).hasSize(count);
+    }
+
+    /**
+     * Records the events handed over to the repository.
+     */
+    private static final class RecordingTransport implements ClusterTransport {
+        private final List<ClusterEvent> sent = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public String getAddress() {
+            return null;
+        }
+
+        @Override
+        public void send(InstanceState peer, ClusterEvent event) {
+            sent.add(event);
+        }
+    }
+}
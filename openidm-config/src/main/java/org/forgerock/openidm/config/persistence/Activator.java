@@ -2,6 +2,7 @@
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
  * Copyright 2011-2015 ForgeRock AS. All Rights Reserved
+ * Portions Copyright 2026 Wren Security.
  *
  * The contents of this file are subject to the terms
  * of the Common Development and Distribution License
@@ -45,6 +46,7 @@ public class Activator implements BundleActivator {
     final static Logger logger = LoggerFactory.getLogger(Activator.class);
 
     JSONConfigInstaller installer;
+    RepoPersistenceManager persistenceMgr;
     
     public void start(BundleContext context) {
         logger.debug("Config Bundle starting");
@@ -60,7 +62,7 @@ public class Activator implements BundleActivator {
         // persistence manager plug-in to store and manipulate configuration
         Hashtable<String, String> persistenceProp = new Hashtable<String, String>();
         persistenceProp.put("service.cmRanking", "0");
-        RepoPersistenceManager persistenceMgr = new RepoPersistenceManager(context);
+        persistenceMgr = new RepoPersistenceManager(context);
         context.registerService(new String[] {PersistenceManager.class.getName(), ConfigPersisterMarker.class.getName()},
                 persistenceMgr, persistenceProp);
         logger.debug("Repository persistence manager service registered");
@@ -85,6 +87,9 @@ public class Activator implements BundleActivator {
         if (installer != null) {
             installer.stop(context);
         }
+        if (persistenceMgr != null) {
+            persistenceMgr.stop();
+        }
         logger.debug("Config Bundle stopped");
     }
 }
\ No newline at end of file
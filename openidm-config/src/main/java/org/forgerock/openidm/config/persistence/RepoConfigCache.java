@@ -0,0 +1,205 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.config.persistence;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.forgerock.json.JsonValue;
+import org.forgerock.json.resource.ResourceResponse;
+
+/**
+ * In-memory snapshot of the configuration objects stored in the repository, keyed by repository id.
+ * <p>
+ * The snapshot is loaded in bulk and then kept up to date by the writes of the persistence manager. Each entry holds
+ * the repository content of the configuration, including its revision. Once loaded, the snapshot is authoritative:
+ * a configuration missing from it does not exist in the repository. Invalidating an entry, for a configuration
+ * written by another instance, also ends the authority of the snapshot, as the configuration may be new; the cached
+ * entries are still used until the snapshot is loaded again.
+ * <p>
+ * An entry read from the repository is only cached if no invalidation happened while it was being read, so a
+ * concurrent invalidation is never overwritten by the older content.
+ */
+class RepoConfigCache {
+
+    /** Cached repository content, by repository id */
+    private final ConcurrentMap<String, Map<String, Object>> configs = new ConcurrentHashMap<>();
+
+    /** Ids of the entries invalidated since the snapshot was loaded, to be read again from the repository */
+    private final Set<String> stale = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /** Incremented on every invalidation */
+    private final AtomicLong generation = new AtomicLong();
+
+    /** Whether the snapshot holds every configuration of the repository */
+    private volatile boolean loaded = false;
+
+    /**
+     * Returns the current generation, to be passed to {@link #put(String, ResourceResponse, long)} or
+     * {@link #remove(String, long)} once the repository has been read or written.
+     *
+     * @return the generation of the snapshot
+     */
+    long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Returns whether the snapshot holds every configuration of the repository.
+     *
+     * @return true if the snapshot has been loaded and not invalidated as a whole since
+     */
+    boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Replaces the snapshot with the configurations read in bulk from the repository.
+     *
+     * @param resources all of the configurations of the repository
+     * @param idPrefix the prefix of the repository ids of the configurations
+     * @param loadGeneration the generation before the configurations were read
+     * @return false if the snapshot has been invalidated while the configurations were read
+     */
+    boolean load(List<ResourceResponse> resources, String idPrefix, long loadGeneration) {
+        synchronized (generation) {
+            if (generation.get() != loadGeneration) {
+                return false;
+            }
+            configs.clear();
+            stale.clear();
+            for (ResourceResponse resource : resources) {
+                configs.put(idPrefix + resource.getId(), withRevision(resource));
+            }
+            loaded = true;
+            return true;
+        }
+    }
+
+    /**
+     * Returns whether the snapshot knows if the configuration exists.
+     *
+     * @param id the repository id of the configuration
+     * @return true if {@link #get(String)} is authoritative for the configuration
+     */
+    boolean isKnown(String id) {
+        return !stale.contains(id) && (loaded || configs.containsKey(id));
+    }
+
+    /**
+     * Returns a copy of the cached repository content of a configuration.
+     *
+     * @param id the repository id of the configuration
+     * @return the content, or null if the configuration is not cached
+     */
+    Map<String, Object> get(String id) {
+        final Map<String, Object> content = configs.get(id);
+        return content != null ? copy(content) : null;
+    }
+
+    /**
+     * Returns the ids of the cached configurations, without their prefix.
+     *
+     * @param idPrefix the prefix of the repository ids of the configurations
+     * @return the ids
+     */
+    List<String> ids(String idPrefix) {
+        final List<String> ids = new ArrayList<>();
+        for (String id : configs.keySet()) {
+            ids.add(id.startsWith(idPrefix) ? id.substring(idPrefix.length()) : id);
+        }
+        return ids;
+    }
+
+    /**
+     * Caches the repository content of a configuration, unless the snapshot has been invalidated since the content
+     * was read or written.
+     *
+     * @param id the repository id of the configuration
+     * @param resource the configuration as returned by the repository
+     * @param readGeneration the generation before the repository was read or written
+     */
+    void put(String id, ResourceResponse resource, long readGeneration) {
+        final Map<String, Object> content = withRevision(resource);
+        synchronized (generation) {
+            if (generation.get() == readGeneration) {
+                configs.put(id, content);
+                stale.remove(id);
+            }
+        }
+    }
+
+    /**
+     * Records that a configuration does not exist in the repository, unless the snapshot has been invalidated since
+     * the repository was read or written.
+     *
+     * @param id the repository id of the configuration
+     * @param readGeneration the generation before the repository was read or written
+     */
+    void remove(String id, long readGeneration) {
+        synchronized (generation) {
+            if (generation.get() == readGeneration) {
+                configs.remove(id);
+                stale.remove(id);
+            }
+        }
+    }
+
+    /**
+     * Invalidates the entry of a configuration, to be read again from the repository, and the listing of the
+     * snapshot, to be loaded again.
+     *
+     * @param id the repository id of the configuration
+     */
+    void invalidate(String id) {
+        synchronized (generation) {
+            generation.incrementAndGet();
+            loaded = false;
+            configs.remove(id);
+            stale.add(id);
+        }
+    }
+
+    /**
+     * Invalidates the whole snapshot, to be loaded again from the repository.
+     */
+    void invalidateAll() {
+        synchronized (generation) {
+            generation.incrementAndGet();
+            loaded = false;
+            configs.clear();
+            stale.clear();
+        }
+    }
+
+    private static Map<String, Object> withRevision(ResourceResponse resource) {
+        final Map<String, Object> content = new JsonValue(resource.getContent().getObject()).copy().asMap();
+        if (resource.getRevision() != null) {
+            content.put(ResourceResponse.FIELD_CONTENT_REVISION, resource.getRevision());
+        }
+        return content;
+    }
+
+    private static Map<String, Object> copy(Map<String, Object> content) {
+        return new JsonValue(content).copy().asMap();
+    }
+}
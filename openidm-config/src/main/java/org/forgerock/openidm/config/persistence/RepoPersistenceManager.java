@@ -2,6 +2,7 @@
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
  * Copyright 2011-2016 ForgeRock AS. All rights reserved.
+ * Portions Copyright 2026 Wren Security.
  *
  * The contents of this file are subject to the terms
  * of the Common Development and Distribution License
@@ -27,6 +28,7 @@ import java.io.IOException;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Dictionary;
 import java.util.Enumeration;
 import java.util.HashMap;
@@ -36,6 +38,7 @@ import java.util.Map;
 import java.util.Vector;
 
 import org.apache.felix.cm.PersistenceManager;
+import org.forgerock.json.JsonPointer;
 import org.forgerock.json.JsonValue;
 import org.forgerock.json.resource.CreateRequest;
 import org.forgerock.json.resource.DeleteRequest;
@@ -47,23 +50,30 @@ import org.forgerock.json.resource.Requests;
 import org.forgerock.json.resource.ResourceResponse;
 import org.forgerock.json.resource.ResourceException;
 import org.forgerock.json.resource.UpdateRequest;
+import org.forgerock.openidm.cluster.ClusterEvent;
+import org.forgerock.openidm.cluster.ClusterEventListener;
+import org.forgerock.openidm.cluster.ClusterEventType;
+import org.forgerock.openidm.cluster.ClusterManagementService;
 import org.forgerock.openidm.config.enhanced.InternalErrorException;
 import org.forgerock.openidm.config.enhanced.InvalidException;
 import org.forgerock.openidm.config.enhanced.JSONEnhancedConfig;
 import org.forgerock.openidm.config.installer.JSONPrettyPrint;
 import org.forgerock.openidm.repo.RepoBootService;
+import org.forgerock.util.query.QueryFilter;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
 import org.osgi.framework.Filter;
 import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceReference;
 import org.osgi.util.tracker.ServiceTracker;
+import org.osgi.util.tracker.ServiceTrackerCustomizer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
 
-public class RepoPersistenceManager implements PersistenceManager, ConfigPersisterMarker {
+public class RepoPersistenceManager implements PersistenceManager, ConfigPersisterMarker, ClusterEventListener {
 
     // The ID URI prefix for configuration
     private static final String CONFIG_CONTEXT_PREFIX = "config/";
@@ -77,6 +87,10 @@ public class RepoPersistenceManager implements PersistenceManager, ConfigPersist
     private static final String FACTORY_PID = "factory__pid";
     private static final String SERVICE_PID = "servicePid";
 
+    // The cluster event listener id and the id of the invalidated configuration in the event details
+    private static final String EVENT_LISTENER_ID = "configPersistence";
+    private static final String EVENT_CONFIG_ID = "id";
+
     final static Logger logger = LoggerFactory.getLogger(RepoPersistenceManager.class);
 
     private static JSONPrettyPrint prettyPrint = new JSONPrettyPrint();
@@ -97,9 +111,52 @@ public class RepoPersistenceManager implements PersistenceManager, ConfigPersist
     @SuppressWarnings("rawtypes")
     Map<String, Dictionary> tempStore = new HashMap<>();
 
+    // Snapshot of the configurations in the repository, saving a repository read on each load and exists call
+    final RepoConfigCache cache = new RepoConfigCache();
+
+    // Tracks the cluster service, to invalidate the snapshot on configuration changes of other instances
+    private final ServiceTracker<ClusterManagementService, ClusterManagementService> clusterTracker;
+    private volatile ClusterManagementService clusterManagementService;
+
     public RepoPersistenceManager(final BundleContext ctx) {
         this.ctx = ctx;
         logger.debug("Bootstrapping Repository Persistence Manager");
+        clusterTracker = new ServiceTracker<>(ctx, ClusterManagementService.class,
+                new ServiceTrackerCustomizer<ClusterManagementService, ClusterManagementService>() {
+                    @Override
+                    public ClusterManagementService addingService(
+                            ServiceReference<ClusterManagementService> reference) {
+                        final ClusterManagementService service = ctx.getService(reference);
+                        service.register(EVENT_LISTENER_ID, RepoPersistenceManager.this);
+                        clusterManagementService = service;
+                        // changes made by other instances before the registration were not notified
+                        cache.invalidateAll();
+                        return service;
+                    }
+
+                    @Override
+                    public void modifiedService(ServiceReference<ClusterManagementService> reference,
+                            ClusterManagementService service) {
+                    }
+
+                    @Override
+                    public void removedService(ServiceReference<ClusterManagementService> reference,
+                            ClusterManagementService service) {
+                        service.unregister(EVENT_LISTENER_ID);
+                        if (clusterManagementService == service) {
+                            clusterManagementService = null;
+                        }
+                        ctx.ungetService(reference);
+                    }
+                });
+        clusterTracker.open();
+    }
+
+    /**
+     * Stops tracking the cluster service.
+     */
+    public void stop() {
+        clusterTracker.close();
     }
 
     /**
@@ -160,9 +217,7 @@ public class RepoPersistenceManager implements PersistenceManager, ConfigPersist
         if (isReady(0) && requireRepository) {
             String id = pidToId(pid);
             try {
-                ReadRequest readRequest = Requests.newReadRequest(id);
-                ResourceResponse existing = repo.read(readRequest);
-                exists = (existing != null);
+                exists = (readConfig(id) != null);
             } catch (NotFoundException ex) {
                 exists = false;
             } catch (ResourceException ex) {
@@ -204,9 +259,8 @@ public class RepoPersistenceManager implements PersistenceManager, ConfigPersist
         try {
             if (isReady(0) && requireRepository) {
                 String id = pidToId(pid);
-                ReadRequest readRequest = Requests.newReadRequest(id);
-                ResourceResponse existing = repo.read(readRequest);
-                Map<String, Object> existingConfig = existing.getContent().asMap();
+                JsonValue existing = new JsonValue(readConfig(id));
+                Map<String, Object> existingConfig = existing.asMap();
                 Object configMap = existingConfig.get(JSONEnhancedConfig.JSON_CONFIG_PROPERTY);
                 if (configMap != null) {
                     ((Map)configMap).remove(ResourceResponse.FIELD_CONTENT_ID);
@@ -214,10 +268,10 @@ public class RepoPersistenceManager implements PersistenceManager, ConfigPersist
                 String configString = serializeConfig(configMap);
                 existingConfig.put(JSONEnhancedConfig.JSON_CONFIG_PROPERTY, configString);
                 // OPENIDM-6538 Convert the map form of this property to a simple String
-                if (existing.getContent().get(FACTORY_PID).isMap()
-                        && existing.getContent().get(FACTORY_PID).isDefined(SERVICE_PID)
-                        && existing.getContent().get(FACTORY_PID).get(SERVICE_PID).isString()) {
-                    existingConfig.put(FACTORY_PID, existing.getContent().get(FACTORY_PID).get(SERVICE_PID).asString());
+                if (existing.get(FACTORY_PID).isMap()
+                        && existing.get(FACTORY_PID).isDefined(SERVICE_PID)
+                        && existing.get(FACTORY_PID).get(SERVICE_PID).isString()) {
+                    existingConfig.put(FACTORY_PID, existing.get(FACTORY_PID).get(SERVICE_PID).asString());
                 }
                 logger.debug("Config loaded {} {}", pid, existing);
                 result = mapToDict(existingConfig);
@@ -274,15 +328,19 @@ public class RepoPersistenceManager implements PersistenceManager, ConfigPersist
 
                     if (!hasMore) {
                         if (requireRepository && repo != null && dbIter == null) {
-                            QueryRequest r = Requests.newQueryRequest("/config");
-                            r.setQueryId("query-all-ids");
-                            logger.debug("Attempt query query-all-ids");
-                            final List<Map<String, Object>> queryResult = new ArrayList<Map<String, Object>>();
-                            List<ResourceResponse> results = repo.query(r);
-                            for (ResourceResponse resource : results) {
-                                queryResult.add(resource.getContent().asMap());
+                            if (loadCache()) {
+                                dbIter = cache.ids(CONFIG_CONTEXT_PREFIX).iterator();
+                            } else {
+                                QueryRequest r = Requests.newQueryRequest("/config");
+                                r.setQueryId("query-all-ids");
+                                logger.debug("Attempt query query-all-ids");
+                                final List<String> queryResult = new ArrayList<String>();
+                                List<ResourceResponse> results = repo.query(r);
+                                for (ResourceResponse resource : results) {
+                                    queryResult.add(resource.getContent().get("_id").asString());
+                                }
+                                dbIter = queryResult.iterator();
                             }
-                            dbIter = queryResult.iterator();
                         }
                         if (dbIter != null) {
                             hasMore = dbIter.hasNext();
@@ -304,8 +362,7 @@ public class RepoPersistenceManager implements PersistenceManager, ConfigPersist
                     if (memIter.hasNext()) {
                         return memIter.next();
                     } else {
-                        Map entry = (Map) dbIter.next();
-                        String entryId = (String) entry.get("_id");
+                        String entryId = (String) dbIter.next();
                         return load(entryId);
                     }
                 } catch (RuntimeException ex) {
@@ -357,8 +414,7 @@ public class RepoPersistenceManager implements PersistenceManager, ConfigPersist
 
                 Map<String,Object> existing = null;
                 try {
-                    ReadRequest readRequest = Requests.newReadRequest(id);
-                    existing = repo.read(readRequest).getContent().asMap();
+                    existing = readConfig(id);
                 } catch (NotFoundException ex) {
                     // Just detect that it doesn't exist
                 }
@@ -376,12 +432,15 @@ public class RepoPersistenceManager implements PersistenceManager, ConfigPersist
                         boolean retry;
                         do {
                             retry = false;
+                            long generation = cache.generation();
                             try {
                                 UpdateRequest r = Requests.newUpdateRequest(id, new JsonValue(obj));
                                 r.setRevision(rev);
-                                repo.update(r);
+                                cache.put(id, repo.update(r), generation);
+                                sendInvalidationEvent(id);
                             } catch (PreconditionFailedException ex) {
                                 logger.debug("Concurrent change during update, retrying {} {}", pid, rev);
+                                cache.invalidate(id);
                                 ReadRequest readRequest = Requests.newReadRequest(id);
                                 existing = repo.read(readRequest).getContent().asMap();
                                 rev = (String) existing.get("_rev");
@@ -398,7 +457,11 @@ public class RepoPersistenceManager implements PersistenceManager, ConfigPersist
                     String newResourceId = id.substring(CONFIG_CONTEXT_PREFIX.length());
                     CreateRequest createRequest = Requests.newCreateRequest(CONFIG_CONTEXT_PREFIX, new JsonValue(obj));
                     createRequest.setNewResourceId(newResourceId);
-                    obj = repo.create(createRequest).getContent().asMap();
+                    long generation = cache.generation();
+                    ResourceResponse created = repo.create(createRequest);
+                    cache.put(id, created, generation);
+                    sendInvalidationEvent(id);
+                    obj = created.getContent().asMap();
                     logger.debug("Stored new config in repository {} {}", pid, obj);
                 }
             } else {
@@ -434,21 +497,24 @@ public class RepoPersistenceManager implements PersistenceManager, ConfigPersist
                 do {
                     retry = false;
                     try {
-
-                        ReadRequest readRequest = Requests.newReadRequest(id);
-                        Map<String, Object> existing = repo.read(readRequest).getContent().asMap();
+                        Map<String, Object> existing = readConfig(id);
                         if (existing != null) {
                             rev = (String) existing.get("_rev");
                             DeleteRequest r = Requests.newDeleteRequest(id);
                             r.setRevision(rev);
+                            long generation = cache.generation();
                             repo.delete(r);
+                            cache.remove(id, generation);
+                            sendInvalidationEvent(id);
                             logger.debug("Deleted {}", pid);
                         }
                     } catch (PreconditionFailedException ex) {
                         logger.debug("Concurrent change during delete, retrying {} {}", pid, rev);
+                        cache.invalidate(id);
                         retry = true;
                     } catch (NotFoundException ex) {
                         // If it doesn't exists (anymore) that's fine
+                        cache.invalidate(id);
                     }
                 } while (retry);
 
@@ -458,6 +524,93 @@ public class RepoPersistenceManager implements PersistenceManager, ConfigPersist
         }
     }
 
+    /**
+     * Reads the repository content of a configuration from the snapshot, or from the repository if the snapshot does
+     * not know the configuration.
+     *
+     * @param id the repository id of the configuration
+     * @return a copy of the repository content, including the revision
+     * @throws NotFoundException if the configuration does not exist
+     * @throws ResourceException if the configuration could not be read from the repository
+     */
+    Map<String, Object> readConfig(String id) throws ResourceException {
+        if (cache.isKnown(id)) {
+            Map<String, Object> cached = cache.get(id);
+            if (cached == null) {
+                throw new NotFoundException("Configuration " + id + " not found");
+            }
+            return cached;
+        }
+        long generation = cache.generation();
+        try {
+            ResourceResponse existing = repo.read(Requests.newReadRequest(id));
+            cache.put(id, existing, generation);
+            return existing.getContent().asMap();
+        } catch (NotFoundException ex) {
+            cache.remove(id, generation);
+            throw ex;
+        }
+    }
+
+    /**
+     * Loads the snapshot of all configurations in bulk, unless already loaded.
+     *
+     * @return false if the configurations could not be queried, the snapshot is then filled as they are read
+     */
+    private boolean loadCache() {
+        if (cache.isLoaded()) {
+            return true;
+        }
+        long generation = cache.generation();
+        try {
+            QueryRequest r = Requests.newQueryRequest("/config");
+            r.setQueryFilter(QueryFilter.<JsonPointer>alwaysTrue());
+            List<ResourceResponse> results = repo.query(r);
+            if (cache.load(results, CONFIG_CONTEXT_PREFIX, generation)) {
+                logger.debug("Loaded {} configurations from repository", results.size());
+                return true;
+            }
+            logger.debug("Configuration changed while loading from repository, not caching");
+        } catch (ResourceException | RuntimeException ex) {
+            logger.debug("Failed to load configurations in bulk, reading them one by one", ex);
+        }
+        return false;
+    }
+
+    /**
+     * Notifies the other instances of the cluster that a configuration has been written.
+     *
+     * @param id the repository id of the configuration
+     */
+    private void sendInvalidationEvent(String id) {
+        ClusterManagementService cluster = clusterManagementService;
+        if (cluster != null && cluster.isEnabled()) {
+            cluster.sendEvent(new ClusterEvent(ClusterEventType.CUSTOM, cluster.getInstanceId(), EVENT_LISTENER_ID,
+                    new JsonValue(Collections.singletonMap(EVENT_CONFIG_ID, (Object) id))));
+        }
+    }
+
+    @Override
+    public boolean handleEvent(ClusterEvent event) {
+        switch (event.getType()) {
+            case CUSTOM:
+                String id = event.getDetails().get(EVENT_CONFIG_ID).asString();
+                if (id != null) {
+                    logger.debug("Configuration {} changed on instance {}", id, event.getInstanceId());
+                    cache.invalidate(id);
+                } else {
+                    cache.invalidateAll();
+                }
+                return true;
+            case INSTANCE_RUNNING:
+                // changes may have been missed while this instance was not running
+                cache.invalidateAll();
+                return true;
+            default:
+                return true;
+        }
+    }
+
     /**
      * Convert OSGi pid to an ID suitable for addressing the repository
      * @param pid the OSGi pid
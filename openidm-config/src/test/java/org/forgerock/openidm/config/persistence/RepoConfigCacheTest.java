@@ -0,0 +1,129 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.config.persistence;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+import static org.forgerock.json.resource.Responses.newResourceResponse;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.forgerock.json.resource.ResourceResponse;
+import org.testng.annotations.Test;
+
+public class RepoConfigCacheTest {
+
+    private static final String PREFIX = "config/";
+
+    @Test
+    public void testLoadedSnapshotIsAuthoritative() {
+        RepoConfigCache cache = new RepoConfigCache();
+
+        assertThat(cache.load(Arrays.asList(config("router", "1"), config("audit", "2")), PREFIX,
+                cache.generation())).isTrue();
+
+        assertThat(cache.isLoaded()).isTrue();
+        assertThat(cache.ids(PREFIX)).containsOnly("router", "audit");
+        assertThat(cache.isKnown("config/router")).isTrue();
+        assertThat(cache.get("config/router")).containsEntry("_rev", "1");
+        assertThat(cache.isKnown("config/missing")).isTrue();
+        assertThat(cache.get("config/missing")).isNull();
+    }
+
+    @Test
+    public void testCachedContentIsCopied() {
+        RepoConfigCache cache = new RepoConfigCache();
+        cache.put("config/router", config("router", "1"), cache.generation());
+
+        Map<String, Object> content = cache.get("config/router");
+        content.remove("_rev");
+
+        assertThat(cache.get("config/router")).containsEntry("_rev", "1");
+    }
+
+    @Test
+    public void testInvalidatedEntryIsReadAgain() {
+        RepoConfigCache cache = new RepoConfigCache();
+        cache.load(Arrays.asList(config("router", "1")), PREFIX, cache.generation());
+
+        cache.invalidate("config/router");
+        assertThat(cache.isKnown("config/router")).isFalse();
+
+        cache.put("config/router", config("router", "2"), cache.generation());
+        assertThat(cache.isKnown("config/router")).isTrue();
+        assertThat(cache.get("config/router")).containsEntry("_rev", "2");
+    }
+
+    @Test
+    public void testInvalidationRequiresReload() {
+        RepoConfigCache cache = new RepoConfigCache();
+        cache.load(Arrays.asList(config("router", "1"), config("audit", "1")), PREFIX, cache.generation());
+
+        // a configuration created on another instance
+        cache.invalidate("config/endpoint");
+
+        assertThat(cache.isLoaded()).isFalse();
+        assertThat(cache.isKnown("config/endpoint")).isFalse();
+        assertThat(cache.isKnown("config/audit")).isTrue();
+
+        assertThat(cache.load(Arrays.asList(config("router", "1"), config("audit", "1"), config("endpoint", "1")),
+                PREFIX, cache.generation())).isTrue();
+        assertThat(cache.ids(PREFIX)).containsOnly("router", "audit", "endpoint");
+    }
+
+    @Test
+    public void testReadConcurrentWithInvalidationIsNotCached() {
+        RepoConfigCache cache = new RepoConfigCache();
+        cache.load(Arrays.asList(config("router", "1")), PREFIX, cache.generation());
+
+        long generation = cache.generation();
+        cache.invalidate("config/router");
+        cache.put("config/router", config("router", "1"), generation);
+
+        assertThat(cache.isKnown("config/router")).isFalse();
+    }
+
+    @Test
+    public void testLoadConcurrentWithInvalidationIsDiscarded() {
+        RepoConfigCache cache = new RepoConfigCache();
+
+        long generation = cache.generation();
+        cache.invalidateAll();
+
+        assertThat(cache.load(Arrays.asList(config("router", "1")), PREFIX, generation)).isFalse();
+        assertThat(cache.isLoaded()).isFalse();
+        assertThat(cache.isKnown("config/router")).isFalse();
+    }
+
+    @Test
+    public void testEntriesAreOnlyAuthoritativeOnceLoaded() {
+        RepoConfigCache cache = new RepoConfigCache();
+        cache.put("config/router", config("router", "1"), cache.generation());
+
+        assertThat(cache.isKnown("config/router")).isTrue();
+        assertThat(cache.isKnown("config/audit")).isFalse();
+
+        cache.remove("config/router", cache.generation());
+        assertThat(cache.isKnown("config/router")).isFalse();
+    }
+
+    private static ResourceResponse config(String id, String revision) {
+        return newResourceResponse(id, revision, json(object(field("_id", id), field("jsonconfig", "{}"))));
+    }
+}
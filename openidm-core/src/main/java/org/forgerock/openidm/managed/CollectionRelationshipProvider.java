@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015-2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.openidm.managed;
@@ -141,6 +142,16 @@ class CollectionRelationshipProvider extends RelationshipProvider implements Col
         }
     }
 
+    /** {@inheritDoc} */
+    @Override
+    protected JsonValue toRelationshipValue(final String resourceFullPath, final List<ResourceResponse> relationships) {
+        final JsonValue buf = json(array());
+        for (ResourceResponse relationship : relationships) {
+            buf.add(formatRelationship(relationship, resourceFullPath).getContent().getObject());
+        }
+        return buf;
+    }
+
     @Override
     public Promise<JsonValue, ResourceException> setRelationshipValueForResource(final boolean clearExisting, Context context, String resourceId,
             JsonValue relationships) {
@@ -12,7 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Portions copyright 2011-2016 ForgeRock AS.
- * Portions Copyright 2020 Wren Security
+ * Portions Copyright 2020-2026 Wren Security
  */
 package org.forgerock.openidm.managed;
 
@@ -25,6 +25,11 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.forgerock.api.models.ApiDescription;
@@ -136,6 +141,12 @@ public class ManagedObjectService implements RequestHandler, Describable<ApiDesc
 
     private final Router managedRouter = new Router();
 
+    /** Config key of the number of threads fetching the relationship fields, the number of processors if unset */
+    private static final String RELATIONSHIP_THREADS = "relationshipThreads";
+
+    /** Fetches the relationship fields of managed objects concurrently */
+    private ThreadPoolExecutor relationshipExecutor;
+
     /**
      * RequestHandler to handle requests for both a {@link ManagedObjectSet} and its nested
      * {@link RelationshipProvider}s.
@@ -237,8 +248,10 @@ public class ManagedObjectService implements RequestHandler, Describable<ApiDesc
     @Activate
     protected void activate(ComponentContext context) throws Exception {
         JsonValue configuration = enhancedConfig.getConfigurationAsJson(context);
+        relationshipExecutor = newRelationshipExecutor(getRelationshipThreads(configuration));
         for (JsonValue managedObjectConfig : configuration.get("objects").expect(List.class)) {
-            final ManagedObjectSet objectSet = new ManagedObjectSet(scriptRegistry, cryptoService, syncRoute, connectionFactory, managedObjectConfig);
+            final ManagedObjectSet objectSet = new ManagedObjectSet(scriptRegistry, cryptoService, syncRoute,
+                    connectionFactory, managedObjectConfig, relationshipExecutor);
             if (managedRoutes.containsKey(objectSet.getName())) {
                 throw new ComponentException("Duplicate definition of managed object type: " + objectSet.getName());
             }
@@ -257,10 +270,12 @@ public class ManagedObjectService implements RequestHandler, Describable<ApiDesc
     @Modified
     protected void modified(ComponentContext context) throws Exception {
         JsonValue configuration = enhancedConfig.getConfigurationAsJson(context);
+        resizeRelationshipExecutor(getRelationshipThreads(configuration));
 
         Set<String> routesToKeep = new HashSet<String>();
         for (JsonValue value : configuration.get("objects").expect(List.class)) {
-            ManagedObjectSet objectSet = new ManagedObjectSet(scriptRegistry, cryptoService, syncRoute, connectionFactory, value);
+            ManagedObjectSet objectSet = new ManagedObjectSet(scriptRegistry, cryptoService, syncRoute,
+                    connectionFactory, value, relationshipExecutor);
             if (routesToKeep.contains(objectSet.getName())) {
                 throw new ComponentException("Duplicate definition of managed object type: " + objectSet.getName());
             }
@@ -292,6 +307,40 @@ public class ManagedObjectService implements RequestHandler, Describable<ApiDesc
     protected void deactivate(ComponentContext context) {
         managedRouter.removeAllRoutes();
         managedRoutes.clear();
+        if (relationshipExecutor != null) {
+            relationshipExecutor.shutdown();
+            relationshipExecutor = null;
+        }
+    }
+
+    private static int getRelationshipThreads(JsonValue configuration) {
+        return Math.max(1, configuration.get(RELATIONSHIP_THREADS)
+                .defaultTo(Runtime.getRuntime().availableProcessors()).asInteger());
+    }
+
+    private static ThreadPoolExecutor newRelationshipExecutor(int threads) {
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        final Thread thread = new Thread(runnable, "managed-relationships-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+
+    private void resizeRelationshipExecutor(int threads) {
+        // the maximum size may never be below the core size
+        if (threads > relationshipExecutor.getMaximumPoolSize()) {
+            relationshipExecutor.setMaximumPoolSize(threads);
+            relationshipExecutor.setCorePoolSize(threads);
+        } else {
+            relationshipExecutor.setCorePoolSize(threads);
+            relationshipExecutor.setMaximumPoolSize(threads);
+        }
     }
 
     @Override
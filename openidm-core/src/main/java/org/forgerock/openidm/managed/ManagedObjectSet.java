@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2011-2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 package org.forgerock.openidm.managed;
 
@@ -34,7 +35,11 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -191,6 +196,20 @@ class ManagedObjectSet implements CollectionResourceProvider, ScriptListener, Ma
     /** Map of relationship property names and their accompanying sets */
     private final Map<JsonPointer, RelationshipProvider> relationshipProviders = new HashMap<>();
 
+    /** The maximum number of query results of which relationships are fetched together */
+    private static final int RELATIONSHIP_FETCH_SIZE = 100;
+
+    /** Runs the relationship providers on the calling thread */
+    private static final Executor CALLER_RUNS = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    /** Executes the relationship providers of a fetch concurrently */
+    private final Executor relationshipExecutor;
+
     /** Flag for indicating if policy enforcement is enabled */
     private final boolean enforcePolicies;
 
@@ -211,8 +230,27 @@ class ManagedObjectSet implements CollectionResourceProvider, ScriptListener, Ma
     public ManagedObjectSet(final ScriptRegistry scriptRegistry, final CryptoService cryptoService,
             final AtomicReference<RouteService> syncRoute, IDMConnectionFactory connectionFactory, JsonValue config)
             throws JsonValueException, ScriptException {
+        this(scriptRegistry, cryptoService, syncRoute, connectionFactory, config, CALLER_RUNS);
+    }
+
+    /**
+     * Constructs a new managed object set.
+     *
+     * @param scriptRegistry the script registry
+     * @param cryptoService the cryptographic service
+     * @param syncRoute a reference to the RouteService on "sync"
+     * @param connectionFactory the router connection factory
+     * @param config configuration object to use to initialize managed object set.
+     * @param relationshipExecutor the executor to fetch the relationship fields with
+     * @throws JsonValueException when the configuration is malformed
+     * @throws ScriptException when the script configuration is malformed or the script is
+     * invalid.
+     */
+    public ManagedObjectSet(final ScriptRegistry scriptRegistry, final CryptoService cryptoService,
+            final AtomicReference<RouteService> syncRoute, IDMConnectionFactory connectionFactory, JsonValue config,
+            final Executor relationshipExecutor) throws JsonValueException, ScriptException {
         this(scriptRegistry, cryptoService, syncRoute, connectionFactory, config,
-                new RouterActivityLogger(connectionFactory));
+                new RouterActivityLogger(connectionFactory), relationshipExecutor);
     }
 
     /**
@@ -240,7 +278,38 @@ class ManagedObjectSet implements CollectionResourceProvider, ScriptListener, Ma
             final AtomicReference<RouteService> syncRoute, final IDMConnectionFactory connectionFactory,
             final JsonValue config, final ActivityLogger activityLogger)
             throws JsonValueException, ScriptException {
+        this(scriptRegistry, cryptoService, syncRoute, connectionFactory, config, activityLogger, CALLER_RUNS);
+    }
+
+    /**
+     * Constructs a new managed object set.
+     *
+     * @param scriptRegistry
+     *            the script registry
+     * @param cryptoService
+     *            the cryptographic service
+     * @param syncRoute
+     *            a reference to the RouteService on "sync"
+     * @param connectionFactory
+     *            the router connection factory
+     * @param config
+     *            configuration object to use to initialize managed object set.
+     * @param activityLogger
+     *            The {@link ActivityLogger} to use for audit logging
+     * @param relationshipExecutor
+     *            the executor to fetch the relationship fields with
+     * @throws JsonValueException
+     *             when the configuration is malformed
+     * @throws ScriptException
+     *             when the script configuration is malformed or the script is
+     *             invalid.
+     */
+    ManagedObjectSet(final ScriptRegistry scriptRegistry, final CryptoService cryptoService,
+            final AtomicReference<RouteService> syncRoute, final IDMConnectionFactory connectionFactory,
+            final JsonValue config, final ActivityLogger activityLogger, final Executor relationshipExecutor)
+            throws JsonValueException, ScriptException {
         this.cryptoService = cryptoService;
+        this.relationshipExecutor = relationshipExecutor;
         this.syncRoute = syncRoute;
         this.connectionFactory = connectionFactory;
         this.activityLogger = activityLogger;
@@ -652,7 +721,10 @@ class ManagedObjectSet implements CollectionResourceProvider, ScriptListener, Ma
                             oldObject.asMap().putAll(relationships.asMap());
                             logger.debug("In updateRelationshipFields, adding relationships {} to managed object {}.",
                                     relationships.toString(), resourceId);
-                        } catch (ExecutionException | InterruptedException e) {
+                        } catch (ExecutionException e) {
+                            throw new InternalServerErrorException(e.getMessage(), e);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
                             throw new InternalServerErrorException(e.getMessage(), e);
                         }
                     }
@@ -888,10 +960,30 @@ class ManagedObjectSet implements CollectionResourceProvider, ScriptListener, Ma
     private JsonValue fetchRelationshipFields(final Context context, final String resourceId,
             final List<JsonPointer> requestFields)
             throws ExecutionException, InterruptedException, ResourceException {
-        EventEntry measure = Publisher.start(Name.get("openidm/internal/managed/set/fetchRealtionshipFields"), resourceId, context);
+        return fetchRelationshipFields(context, Collections.singletonList(resourceId), requestFields).get(resourceId);
+    }
+
+    /**
+     * Fetch the current relationship(s) of several resources for relationship fields set to be returned by default
+     * or specified in the request fields. Each relationship provider reads the relationships of all resources at
+     * once, and the providers are run concurrently.
+     *
+     * @param context The current context
+     * @param resourceIds The ids of the resources to fetch relationships of
+     * @param requestFields The fields requested in the initial request
+     * @return {@link JsonValue} maps containing all relationship fields and their values, by resource id
+     * @throws ResourceException 
+     */
+    private Map<String, JsonValue> fetchRelationshipFields(final Context context, final List<String> resourceIds,
+            final List<JsonPointer> requestFields)
+            throws ExecutionException, InterruptedException, ResourceException {
+        EventEntry measure = Publisher.start(Name.get("openidm/internal/managed/set/fetchRealtionshipFields"), resourceIds, context);
 
         try {
-            final JsonValue joined = json(object());
+            final Map<String, JsonValue> joined = new LinkedHashMap<>();
+            for (String resourceId : resourceIds) {
+                joined.put(resourceId, json(object()));
+            }
 
             /*
              * Create set only containing the head of request fields
@@ -906,6 +998,7 @@ class ManagedObjectSet implements CollectionResourceProvider, ScriptListener, Ma
                 }
             }
 
+            final Map<JsonPointer, FutureTask<Map<String, JsonValue>>> fetches = new LinkedHashMap<>();
             for (Map.Entry<JsonPointer, RelationshipProvider> entry : relationshipProviders.entrySet()) {
                 final JsonPointer field = entry.getKey();
                 final RelationshipProvider provider = entry.getValue();
@@ -913,19 +1006,56 @@ class ManagedObjectSet implements CollectionResourceProvider, ScriptListener, Ma
                 if (requestFields.contains(SchemaField.FIELD_ALL_RELATIONSHIPS)
                         || provider.getSchemaField().isReturnedByDefault()
                         || fieldHeads.contains(field)) { // only check head of request fields (see above)
-                    try {
-                        joined.put(field, provider.getRelationshipValueForResource(context,
-                                resourceId).getOrThrow().getObject());
-                    } catch (NotFoundException e) {
-                        logger.debug("No {} relationships found for {}", field, resourceId);
-                        joined.put(field, null);
-                    }
+                    fetches.put(field, new FutureTask<>(new Callable<Map<String, JsonValue>>() {
+                        @Override
+                        public Map<String, JsonValue> call() throws ResourceException {
+                            return provider.getRelationshipValuesForResources(context, resourceIds);
+                        }
+                    }));
                 } else {
                     // relationship was not requested or set to return by default
                     logger.debug("Relationship field {} skipped", field);
                 }
             }
 
+            // Hand all but the last provider to the executor and run the last one on this thread
+            FutureTask<Map<String, JsonValue>> last = null;
+            for (FutureTask<Map<String, JsonValue>> fetch : fetches.values()) {
+                if (last != null) {
+                    try {
+                        relationshipExecutor.execute(last);
+                    } catch (RejectedExecutionException e) {
+                        last.run();
+                    }
+                }
+                last = fetch;
+            }
+            if (last != null) {
+                last.run();
+            }
+
+            try {
+                for (Map.Entry<JsonPointer, FutureTask<Map<String, JsonValue>>> fetch : fetches.entrySet()) {
+                    final Map<String, JsonValue> values = fetch.getValue().get();
+                    for (Map.Entry<String, JsonValue> resource : joined.entrySet()) {
+                        final JsonValue value = values.get(resource.getKey());
+                        if (value == null) {
+                            logger.debug("No {} relationships found for {}", fetch.getKey(), resource.getKey());
+                        }
+                        resource.getValue().put(fetch.getKey(), value != null ? value.getObject() : null);
+                    }
+                }
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof ResourceException) {
+                    throw (ResourceException) e.getCause();
+                }
+                throw e;
+            } finally {
+                for (FutureTask<Map<String, JsonValue>> fetch : fetches.values()) {
+                    fetch.cancel(false);
+                }
+            }
+
             return joined;
         } finally {
             measure.end();
@@ -1272,11 +1402,14 @@ class ManagedObjectSet implements CollectionResourceProvider, ScriptListener, Ma
                 repoRequest.setAdditionalParameter(key, request.getAdditionalParameter(key));
             }
         	
+            // Results are held back until a page of them can have their relationship fields fetched together
+            final boolean queryAllIds = ServerConstants.QUERY_ALL_IDS.equals(request.getQueryId());
+            final List<ResourceResponse> pending = new ArrayList<>();
+            final boolean[] proceed = new boolean[] { true };
         	QueryResponse queryResponse = connectionFactory.getConnection().query(managedContext, repoRequest,
             		new QueryResourceHandler() {
                 @Override
                 public boolean handleResource(ResourceResponse resource) {
-                    ResourceResponse resourceResponse = null;
                     // Check if the onRetrieve script should be run
                     if (onRetrieve) {
                         try {
@@ -1286,28 +1419,28 @@ class ManagedObjectSet implements CollectionResourceProvider, ScriptListener, Ma
                             return false;
                         }
                     }
-                    if (ServerConstants.QUERY_ALL_IDS.equals(request.getQueryId())) {
+                    if (queryAllIds) {
                         // Don't populate relationships if this is a query-all-ids query.
-                        resourceResponse = resource;    
-                    } else {
-                        // Populate the relationship fields
+                        results.add(resource.getContent().asMap());
+                        return handler.handleResource(prepareResponse(managedContext, resource, request.getFields()));
+                    }
+                    pending.add(resource);
+                    if (pending.size() >= RELATIONSHIP_FETCH_SIZE) {
                         try {
-                            JsonValue relationships = fetchRelationshipFields(managedContext, resource.getId(), request.getFields());
-                            resource.getContent().asMap().putAll(relationships.asMap());
-                            resourceResponse = prepareResponse(managedContext, resource, request.getFields());
+                            proceed[0] = handleQueryResults(managedContext, request, pending, results, handler);
                         } catch (ResourceException e) {
                             ex[0] = e;
                             return false;
-                        } catch (Exception e) {
-                            ex[0] = new InternalServerErrorException(e.getMessage(), e);
-                            return false;
                         }
                     }
-                    results.add(resourceResponse.getContent().asMap());
-                    return handler.handleResource(prepareResponse(managedContext, resourceResponse, request.getFields()));
+                    return proceed[0];
                 }
             });
-        	
+
+            if (ex[0] == null && proceed[0] && !pending.isEmpty()) {
+                handleQueryResults(managedContext, request, pending, results, handler);
+            }
+
         	if(ex[0] != null) {
             	return ex[0].asPromise();
         	}
@@ -1325,6 +1458,47 @@ class ManagedObjectSet implements CollectionResourceProvider, ScriptListener, Ma
         }
     }
 
+    /**
+     * Populates the relationship fields of a page of query results and passes them on to the query handler.
+     *
+     * @param context the current context
+     * @param request the query request
+     * @param resources the query results, cleared once handled
+     * @param results the query results handled so far, for the activity log
+     * @param handler the query handler
+     * @return false if the query handler does not accept any more results
+     * @throws ResourceException if the relationship fields could not be fetched
+     */
+    private boolean handleQueryResults(final Context context, final QueryRequest request,
+            final List<ResourceResponse> resources, final List<Map<String, Object>> results,
+            final QueryResourceHandler handler) throws ResourceException {
+        try {
+            final List<String> resourceIds = new ArrayList<>(resources.size());
+            for (ResourceResponse resource : resources) {
+                resourceIds.add(resource.getId());
+            }
+            final Map<String, JsonValue> relationships =
+                    fetchRelationshipFields(context, resourceIds, request.getFields());
+            for (ResourceResponse resource : resources) {
+                // Populate the relationship fields
+                resource.getContent().asMap().putAll(relationships.get(resource.getId()).asMap());
+                final ResourceResponse resourceResponse = prepareResponse(context, resource, request.getFields());
+                results.add(resourceResponse.getContent().asMap());
+                if (!handler.handleResource(prepareResponse(context, resourceResponse, request.getFields()))) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (ExecutionException e) {
+            throw new InternalServerErrorException(e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InternalServerErrorException(e.getMessage(), e);
+        } finally {
+            resources.clear();
+        }
+    }
+
     @Override
     public Promise<ActionResponse, ResourceException> actionInstance(Context context, String resourceId,
     		ActionRequest request) {
@@ -14,7 +14,7 @@
  * "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015-2016 ForgeRock AS.
- * Portions Copyright 2018 Wren Security.
+ * Portions Copyright 2018-2026 Wren Security.
  */
 package org.forgerock.openidm.managed;
 
@@ -28,9 +28,13 @@ import static org.forgerock.openidm.sync.impl.SynchronizationService.SyncService
 import static org.forgerock.openidm.util.RelationshipUtil.*;
 import static org.forgerock.openidm.util.ResourceUtil.*;
 import static org.forgerock.util.promise.Promises.newResultPromise;
+import static org.forgerock.util.query.QueryFilter.and;
+import static org.forgerock.util.query.QueryFilter.equalTo;
+import static org.forgerock.util.query.QueryFilter.or;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -50,6 +54,8 @@ import org.forgerock.json.resource.DeleteRequest;
 import org.forgerock.json.resource.InternalServerErrorException;
 import org.forgerock.json.resource.PatchRequest;
 import org.forgerock.json.resource.PreconditionFailedException;
+import org.forgerock.json.resource.QueryRequest;
+import org.forgerock.json.resource.QueryResourceHandler;
 import org.forgerock.json.resource.ReadRequest;
 import org.forgerock.json.resource.Request;
 import org.forgerock.json.resource.RequestHandler;
@@ -61,12 +67,16 @@ import org.forgerock.json.resource.UpdateRequest;
 import org.forgerock.openidm.audit.util.ActivityLogger;
 import org.forgerock.openidm.audit.util.Status;
 import org.forgerock.openidm.patch.JsonValuePatch;
+import org.forgerock.openidm.smartevent.EventEntry;
+import org.forgerock.openidm.smartevent.Name;
+import org.forgerock.openidm.smartevent.Publisher;
 import org.forgerock.services.context.Context;
 import org.forgerock.util.AsyncFunction;
 import org.forgerock.util.Function;
 import org.forgerock.util.promise.NeverThrowsException;
 import org.forgerock.util.promise.Promise;
 import org.forgerock.util.promise.ResultHandler;
+import org.forgerock.util.query.QueryFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -105,6 +115,9 @@ public abstract class RelationshipProvider {
 
     /** An optimized relationship query ID */
     protected static final String RELATIONSHIP_QUERY_ID = "find-relationships-for-resource";
+
+    /** The maximum number of resources of which relationships are read with a single query */
+    protected static final int BATCH_SIZE = 50;
     
     /** A query field representing the full path of the managed object instance of this relationship field  */
     protected static final String QUERY_FIELD_RESOURCE_PATH = "fullResourceId";
@@ -205,41 +218,54 @@ public abstract class RelationshipProvider {
                 
                 @Override
                 public ResourceResponse apply(final ResourceResponse raw) {
-                    final JsonValue rawContent = raw.getContent();
-                    final JsonValue formatted = json(object());
-                    final Map<String, Object> properties = new LinkedHashMap<>();
-                    final Map<String, Object> repoProperties = rawContent.get(REPO_FIELD_PROPERTIES).asMap();
-                    final String ref;
-
-                    // set the field reference
-                    if (schemaField.isReverseRelationship()
-                            && !rawContent.get(REPO_FIELD_FIRST_ID).asString().equals(resourceFullPath)) {
-                        ref = rawContent.get(REPO_FIELD_FIRST_ID).asString();
-                    } else {
-                        ref = rawContent.get(REPO_FIELD_SECOND_ID).asString();
-                    }
+                    return formatRelationship(raw, resourceFullPath);
+                }
+            };
+    }
 
-                    if (repoProperties != null) {
-                        properties.putAll(repoProperties);
-                    }
+    /**
+     * Formats a relationship from the repository to that expected by the provider consumer, as the resource
+     * {@code resourceFullPath} sees it.
+     *
+     * @param raw the relationship from the repository
+     * @param resourceFullPath the full path of the resource holding the relationship field
+     * @return the formatted relationship, without _id or _rev
+     * @see #formatResponseNoException(Context, Request)
+     */
+    protected ResourceResponse formatRelationship(final ResourceResponse raw, final String resourceFullPath) {
+        final JsonValue rawContent = raw.getContent();
+        final JsonValue formatted = json(object());
+        final Map<String, Object> properties = new LinkedHashMap<>();
+        final Map<String, Object> repoProperties = rawContent.get(REPO_FIELD_PROPERTIES).asMap();
+        final String ref;
+
+        // set the field reference
+        if (schemaField.isReverseRelationship()
+                && !rawContent.get(REPO_FIELD_FIRST_ID).asString().equals(resourceFullPath)) {
+            ref = rawContent.get(REPO_FIELD_FIRST_ID).asString();
+        } else {
+            ref = rawContent.get(REPO_FIELD_SECOND_ID).asString();
+        }
 
-                    properties.put(FIELD_CONTENT_ID, raw.getId());
-                    properties.put(FIELD_CONTENT_REVISION, raw.getRevision());
+        if (repoProperties != null) {
+            properties.putAll(repoProperties);
+        }
 
-                    formatted.put(SchemaField.FIELD_REFERENCE, ref);
-                    formatted.put(SchemaField.FIELD_PROPERTIES, properties);
+        properties.put(FIELD_CONTENT_ID, raw.getId());
+        properties.put(FIELD_CONTENT_REVISION, raw.getRevision());
 
-                    // If has error, append error flag and message.
-                    if (rawContent.get(REFERENCE_ERROR).defaultTo(false).asBoolean()) {
-                        formatted.put(REFERENCE_ERROR, true);
-                        formatted.put(REFERENCE_ERROR_MESSAGE,
-                                rawContent.get(REFERENCE_ERROR_MESSAGE).defaultTo("").asString());
-                    }
+        formatted.put(SchemaField.FIELD_REFERENCE, ref);
+        formatted.put(SchemaField.FIELD_PROPERTIES, properties);
 
-                    // Return the resource without _id or _rev
-                    return newResourceResponse(null, null, formatted);
-                }
-            };
+        // If has error, append error flag and message.
+        if (rawContent.get(REFERENCE_ERROR).defaultTo(false).asBoolean()) {
+            formatted.put(REFERENCE_ERROR, true);
+            formatted.put(REFERENCE_ERROR_MESSAGE,
+                    rawContent.get(REFERENCE_ERROR_MESSAGE).defaultTo("").asString());
+        }
+
+        // Return the resource without _id or _rev
+        return newResourceResponse(null, null, formatted);
     }
 
     /**
@@ -339,6 +365,115 @@ public abstract class RelationshipProvider {
     public abstract Promise<JsonValue, ResourceException> getRelationshipValueForResource(Context context, 
             String resourceId);
 
+    /**
+     * Get the full relationship representation for this provider of several resources at once. The relationships
+     * are read with one repository query per {@link #BATCH_SIZE} resources instead of one query per resource.
+     *
+     * @param context Context of this request
+     * @param resourceIds Ids of the resources to fetch relationships on
+     *
+     * @return The full representation of the relationship by resource id, as returned by
+     *         {@link #getRelationshipValueForResource(Context, String)}; a null value if there is none
+     * @throws ResourceException if the relationships could not be queried
+     */
+    public Map<String, JsonValue> getRelationshipValuesForResources(final Context context,
+            final Collection<String> resourceIds) throws ResourceException {
+        EventEntry measure = Publisher.start(
+                Name.get("openidm/internal/relationship/getRelationshipValuesForResources"), resourceIds, context);
+
+        try {
+            // Relationships by full path of the referring resource
+            final Map<String, List<ResourceResponse>> relationships = new LinkedHashMap<>();
+            for (String resourceId : resourceIds) {
+                relationships.put(resourceContainer.child(resourceId).toString(), new ArrayList<ResourceResponse>());
+            }
+
+            final List<String> resourcePaths = new ArrayList<>(relationships.keySet());
+            for (int i = 0; i < resourcePaths.size(); i += BATCH_SIZE) {
+                final QueryRequest queryRequest = Requests.newQueryRequest(REPO_RESOURCE_PATH).setQueryFilter(
+                        relationshipsFilter(resourcePaths.subList(i, Math.min(i + BATCH_SIZE, resourcePaths.size()))));
+                getConnection().query(context, queryRequest, new QueryResourceHandler() {
+                    @Override
+                    public boolean handleResource(ResourceResponse relationship) {
+                        final JsonValue content = relationship.getContent();
+                        final String firstId = content.get(REPO_FIELD_FIRST_ID).asString();
+                        if (addReferrer(relationships, relationship, firstId,
+                                content.get(REPO_FIELD_FIRST_PROPERTY_NAME).asString())) {
+                            return true;
+                        }
+                        if (schemaField.isReverseRelationship()) {
+                            addReferrer(relationships, relationship, content.get(REPO_FIELD_SECOND_ID).asString(),
+                                    content.get(REPO_FIELD_SECOND_PROPERTY_NAME).asString());
+                        }
+                        return true;
+                    }
+                });
+            }
+
+            final Map<String, JsonValue> values = new LinkedHashMap<>();
+            for (String resourceId : resourceIds) {
+                final String resourceFullPath = resourceContainer.child(resourceId).toString();
+                values.put(resourceId, toRelationshipValue(resourceFullPath, relationships.get(resourceFullPath)));
+            }
+            return values;
+        } finally {
+            measure.end();
+        }
+    }
+
+    /**
+     * Adds a relationship to those of its referring resource, if the resource was queried and the relationship
+     * is held by this provider's field.
+     *
+     * @return true if the relationship was added
+     */
+    private boolean addReferrer(final Map<String, List<ResourceResponse>> relationships,
+            final ResourceResponse relationship, final String resourceFullPath, final String propertyName) {
+        final List<ResourceResponse> referrerRelationships = relationships.get(resourceFullPath);
+        if (referrerRelationships != null && schemaField.getName().equals(propertyName)) {
+            referrerRelationships.add(relationship);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Builds the filter matching the relationships of this provider's field held by any of the given resources.
+     * Matches both ends of the relationship for reverse relationships, as
+     * {@link CollectionRelationshipProvider#queryCollection} does for a single resource.
+     *
+     * @param resourcePaths the full paths of the resources
+     * @return the filter
+     */
+    private QueryFilter<JsonPointer> relationshipsFilter(final List<String> resourcePaths) {
+        final List<QueryFilter<JsonPointer>> firstIds = new ArrayList<>(resourcePaths.size());
+        final List<QueryFilter<JsonPointer>> secondIds = new ArrayList<>(resourcePaths.size());
+        for (String resourcePath : resourcePaths) {
+            firstIds.add(equalTo(new JsonPointer(REPO_FIELD_FIRST_ID), resourcePath));
+            secondIds.add(equalTo(new JsonPointer(REPO_FIELD_SECOND_ID), resourcePath));
+        }
+        final QueryFilter<JsonPointer> firstFilter = and(
+                equalTo(new JsonPointer(REPO_FIELD_FIRST_PROPERTY_NAME), schemaField.getName()),
+                or(firstIds));
+        if (!schemaField.isReverseRelationship()) {
+            return firstFilter;
+        }
+        final QueryFilter<JsonPointer> secondFilter = and(
+                equalTo(new JsonPointer(REPO_FIELD_SECOND_PROPERTY_NAME), schemaField.getName()),
+                or(secondIds));
+        return or(firstFilter, secondFilter);
+    }
+
+    /**
+     * Converts the relationships of a resource queried from the repository to the full relationship
+     * representation of this provider.
+     *
+     * @param resourceFullPath the full path of the resource holding the relationship field
+     * @param relationships the relationships of the resource, as stored in the repository
+     * @return the full representation of the relationship, or null if there is none
+     */
+    protected abstract JsonValue toRelationshipValue(String resourceFullPath, List<ResourceResponse> relationships);
+
     /**
      * Set the supplied {@link JsonValue} as the current state of this relationship. This will support updating any 
      * existing relationship (_id is present) and remove any relationship not present in the value from the repository.
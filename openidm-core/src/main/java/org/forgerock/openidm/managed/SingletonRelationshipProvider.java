@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015-2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 package org.forgerock.openidm.managed;
 
@@ -129,34 +130,58 @@ class SingletonRelationshipProvider extends RelationshipProvider implements Sing
             
             getConnection().query(context, queryRequest, relationships);
 
-            if (relationships.isEmpty()) {
+            final ResourceResponse relationship = toSingletonRelationship(resourceFullPath, relationships);
+            if (relationship == null) {
                 return new NotFoundException().asPromise();
-            } else if (relationships.size() == 1) {
-                return newResultPromise(formatResponse(context, queryRequest).apply(relationships.get(0)));
             } else {
-                // This is a singleton relationship with more than 1 reference - this is an error.
-                // Collect all the erroneous references and add them to the error message.
-                List<String> errorReferences = new ArrayList<>();
-                for (ResourceResponse relationship : relationships) {
-                    JsonValue content = relationship.getContent();
-                    if (schemaField.isReverseRelationship() &&
-                            content.get(REPO_FIELD_FIRST_ID).defaultTo("").asString().equals(resourceFullPath)) {
-                        errorReferences.add(content.get(REPO_FIELD_SECOND_ID).asString());
-                    } else {
-                        errorReferences.add(content.get(REPO_FIELD_FIRST_ID).asString());
-                    }
-                }
-                ResourceResponse relationship = relationships.get(0);
-                relationship.getContent().add(RelationshipUtil.REFERENCE_ERROR, true);
-                relationship.getContent().add(RelationshipUtil.REFERENCE_ERROR_MESSAGE,
-                        "Multiple references found for singleton relationship " + errorReferences);
-                return newResultPromise(formatResponse(context, queryRequest).apply(relationship));
+                return newResultPromise(relationship);
             }
         } catch (ResourceException e) {
             return e.asPromise();
         }
     }
 
+    /** {@inheritDoc} */
+    @Override
+    protected JsonValue toRelationshipValue(final String resourceFullPath, final List<ResourceResponse> relationships) {
+        final ResourceResponse relationship = toSingletonRelationship(resourceFullPath, relationships);
+        return relationship != null ? relationship.getContent() : null;
+    }
+
+    /**
+     * Returns the relationship of a resource, flagging a reference error if the resource has more than one.
+     *
+     * @param resourceFullPath the full path of the resource holding the relationship field
+     * @param relationships the relationships of the resource, as stored in the repository
+     * @return the formatted relationship, or null if there is none
+     */
+    private ResourceResponse toSingletonRelationship(final String resourceFullPath,
+            final List<ResourceResponse> relationships) {
+        if (relationships.isEmpty()) {
+            return null;
+        } else if (relationships.size() == 1) {
+            return formatRelationship(relationships.get(0), resourceFullPath);
+        } else {
+            // This is a singleton relationship with more than 1 reference - this is an error.
+            // Collect all the erroneous references and add them to the error message.
+            List<String> errorReferences = new ArrayList<>();
+            for (ResourceResponse relationship : relationships) {
+                JsonValue content = relationship.getContent();
+                if (schemaField.isReverseRelationship() &&
+                        content.get(REPO_FIELD_FIRST_ID).defaultTo("").asString().equals(resourceFullPath)) {
+                    errorReferences.add(content.get(REPO_FIELD_SECOND_ID).asString());
+                } else {
+                    errorReferences.add(content.get(REPO_FIELD_FIRST_ID).asString());
+                }
+            }
+            ResourceResponse relationship = relationships.get(0);
+            relationship.getContent().add(RelationshipUtil.REFERENCE_ERROR, true);
+            relationship.getContent().add(RelationshipUtil.REFERENCE_ERROR_MESSAGE,
+                    "Multiple references found for singleton relationship " + errorReferences);
+            return formatRelationship(relationship, resourceFullPath);
+        }
+    }
+
     @Override
     public Promise<JsonValue, ResourceException> setRelationshipValueForResource(final boolean clearExisting,
             final Context context, final String resourceId, final JsonValue value) {
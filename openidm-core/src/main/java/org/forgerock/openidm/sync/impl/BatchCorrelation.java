@@ -0,0 +1,133 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.sync.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.forgerock.json.JsonValue;
+import org.forgerock.openidm.sync.SynchronizationException;
+import org.forgerock.services.context.Context;
+import org.forgerock.util.Reject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Correlates the unlinked source objects of a batch of source recon entries up front, with one target query
+ * per link qualifier instead of one per source object.
+ * <p>
+ * The results are handed to the {@link SourceSyncOperation}s through the {@link ReconciliationContext}.
+ * Source objects that could not be batched, or whose matches in the batch may differ from the target's
+ * own matching, are correlated individually as before.
+ */
+class BatchCorrelation {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BatchCorrelation.class);
+
+    private final ObjectMapping objectMapping;
+    private final ReconciliationContext reconContext;
+    private final Map<String, Map<String, Link>> allLinks;
+    private final Correlation correlation;
+    private final boolean correlateEmptyTargetSet;
+
+    /**
+     * Creates the batch correlation for a source recon phase.
+     *
+     * @param objectMapping the mapping
+     * @param reconContext the context of the reconciliation run
+     * @param allLinks the prefetched links, by link qualifier and normalized source id
+     */
+    BatchCorrelation(ObjectMapping objectMapping, ReconciliationContext reconContext,
+            Map<String, Map<String, Link>> allLinks) {
+        this.objectMapping = Reject.checkNotNull(objectMapping);
+        this.reconContext = Reject.checkNotNull(reconContext);
+        this.allLinks = Reject.checkNotNull(allLinks);
+        this.correlation = objectMapping.getPlan().getCorrelation();
+        this.correlateEmptyTargetSet = objectMapping.getPlan().isCorrelateEmptyTargetSet();
+    }
+
+    /**
+     * Loads the source objects of the entries and correlates the unlinked ones.
+     *
+     * @param entries the source recon entries
+     * @param context Context
+     * @return the entries with their source objects loaded, to be reconciled in place of the given entries
+     * @throws SynchronizationException if loading a source object failed
+     */
+    List<ResultEntry> correlate(List<ResultEntry> entries, Context context) throws SynchronizationException {
+        List<ResultEntry> loaded = new ArrayList<>(entries.size());
+        Map<String, Map<String, JsonValue>> unlinked = new HashMap<>();
+        for (ResultEntry entry : entries) {
+            JsonValue source = entry.getValue();
+            if (source == null) {
+                final long sourceObjectQueryStart = ObjectMapping.startNanoTime(reconContext);
+                source = new LazyObjectAccessor(objectMapping.getConnectionFactory(),
+                        objectMapping.getSourceObjectSet(), entry.getId()).getObject();
+                ObjectMapping.addDuration(reconContext, ReconciliationStatistic.DurationMetric.sourceObjectQuery,
+                        sourceObjectQueryStart);
+                if (source == null) {
+                    // Deleted since the source query, leave it to the source recon to assess
+                    loaded.add(entry);
+                    continue;
+                }
+            }
+            loaded.add(new ResultEntry(entry.getId(), source));
+
+            String normalizedSourceId = objectMapping.getLinkType().normalizeSourceId(entry.getId());
+            for (String linkQualifier : objectMapping.getLinkQualifiers(source, null, false, context, reconContext)) {
+                Map<String, Link> links = allLinks.get(linkQualifier);
+                if (correlation.hasCorrelation(linkQualifier)
+                        && (links == null || links.get(normalizedSourceId) == null)) {
+                    Map<String, JsonValue> sources = unlinked.get(linkQualifier);
+                    if (sources == null) {
+                        sources = new LinkedHashMap<>();
+                        unlinked.put(linkQualifier, sources);
+                    }
+                    sources.put(entry.getId(), source);
+                }
+            }
+        }
+
+        if (!correlateEmptyTargetSet && reconContext.getTargets() != null && reconContext.getTargets().isEmpty()) {
+            // Sources are not correlated against an empty target set
+            return loaded;
+        }
+        for (Map.Entry<String, Map<String, JsonValue>> sources : unlinked.entrySet()) {
+            try {
+                reconContext.addBatchCorrelations(sources.getKey(),
+                        correlation.correlateBatch(sources.getValue(), sources.getKey(), context, reconContext));
+            } catch (SynchronizationException e) {
+                LOGGER.warn("Batched correlation failed for mapping {}, correlating individually",
+                        objectMapping.getName(), e);
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Discards the correlation results of the entries that were not used by the source recon.
+     *
+     * @param entries the source recon entries of the batch
+     */
+    void release(List<ResultEntry> entries) {
+        for (ResultEntry entry : entries) {
+            reconContext.removeBatchCorrelations(entry.getId());
+        }
+    }
+}
@@ -0,0 +1,415 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.sync.impl;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A compact, read-mostly set of object identifiers used as the reconciliation working set.
+ * <p>
+ * Identifiers are kept as sorted runs of UTF-8 encoded bytes, each run guarded by a bloom filter
+ * so that lookups of absent ids rarely need a binary search. Identifiers are added while the set
+ * is being populated; once the estimated heap footprint of the pending identifiers exceeds the
+ * configured budget they are sorted and spilled to a memory-mapped file. After {@link #seal()} the
+ * set is immutable and safe for concurrent reads by the reconciliation worker threads.
+ * <p>
+ * {@link #close()} must be called to release the spill files.
+ */
+class CompactIdSet extends AbstractSet<String> implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(CompactIdSet.class);
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** Estimated heap overhead of a pending identifier: array header plus list reference */
+    private static final int PENDING_ENTRY_OVERHEAD = 24;
+
+    /** Upper bound for a single run so that it can be addressed by one mapped buffer */
+    static final long MAX_RUN_BYTES = 1L << 30;
+
+    /** Bloom filter bits per identifier, ~1% false positive rate with {@link #BLOOM_HASHES} hashes */
+    private static final int BLOOM_BITS_PER_ENTRY = 10;
+    private static final int BLOOM_HASHES = 7;
+
+    private static final Comparator<byte[]> UNSIGNED_ORDER = new Comparator<byte[]>() {
+        @Override
+        public int compare(byte[] left, byte[] right) {
+            int length = Math.min(left.length, right.length);
+            for (int i = 0; i < length; i++) {
+                int diff = (left[i] & 0xff) - (right[i] & 0xff);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            return left.length - right.length;
+        }
+    };
+
+    private final long heapBudget;
+    private final File spillDirectory;
+
+    private final List<Run> runs = new ArrayList<>();
+    private final List<File> spillFiles = new ArrayList<>();
+    private List<byte[]> pending = new ArrayList<>();
+    private long pendingBytes;
+    private volatile boolean sealed;
+    private int size;
+
+    /**
+     * Creates an empty set.
+     *
+     * @param heapBudget the approximate number of heap bytes pending identifiers may occupy before being
+     *                   spilled to disk
+     * @param spillDirectory the directory for spill files, or null for the system temporary directory
+     */
+    CompactIdSet(long heapBudget, File spillDirectory) {
+        this.heapBudget = Math.max(1, Math.min(heapBudget, MAX_RUN_BYTES));
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * Adds an identifier to the set. Only permitted before the set is sealed.
+     *
+     * @param id the identifier to add
+     * @return true, duplicates are only detected when the pending identifiers are sorted
+     * @throws IllegalStateException if the set has been sealed or the spill file could not be written
+     */
+    @Override
+    public boolean add(String id) {
+        if (sealed) {
+            throw new IllegalStateException("Identifier set is sealed");
+        }
+        byte[] bytes = id.getBytes(UTF_8);
+        pending.add(bytes);
+        pendingBytes += bytes.length + PENDING_ENTRY_OVERHEAD;
+        if (pendingBytes >= heapBudget) {
+            try {
+                spill();
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to spill reconciliation identifiers to disk", e);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Completes population of the set. Remaining pending identifiers are kept on heap in compact form.
+     *
+     * @return this set
+     */
+    CompactIdSet seal() {
+        if (!sealed) {
+            List<byte[]> entries = sortedUniqueEntries();
+            if (!entries.isEmpty()) {
+                runs.add(new Run(encode(entries)));
+                size += entries.size();
+            }
+            pending = null;
+            pendingBytes = 0;
+            sealed = true;
+        }
+        return this;
+    }
+
+    /**
+     * @return the number of runs that have been spilled to memory-mapped files
+     */
+    int getSpilledRunCount() {
+        return spillFiles.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof String)) {
+            return false;
+        }
+        checkSealed();
+        byte[] key = ((String) o).getBytes(UTF_8);
+        return containsKey(key, runs.size());
+    }
+
+    /**
+     * Returns the position of an identifier in the iteration order of the sealed set.
+     *
+     * @param o the identifier
+     * @return the position, or -1 if the set does not contain the identifier
+     */
+    int indexOf(Object o) {
+        if (!(o instanceof String)) {
+            return -1;
+        }
+        checkSealed();
+        byte[] key = ((String) o).getBytes(UTF_8);
+        long hash = hash(key);
+        int base = 0;
+        for (Run run : runs) {
+            int index = run.indexOf(key, hash);
+            if (index >= 0) {
+                return base + index;
+            }
+            base += run.count;
+        }
+        return -1;
+    }
+
+    @Override
+    public int size() {
+        checkSealed();
+        return size;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        checkSealed();
+        return new Iterator<String>() {
+            private int run = 0;
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                while (run < runs.size() && index >= runs.get(run).count) {
+                    run++;
+                    index = 0;
+                }
+                return run < runs.size();
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return new String(runs.get(run).get(index++), UTF_8);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Releases the spilled runs and deletes their files.
+     */
+    @Override
+    public void close() {
+        runs.clear();
+        pending = null;
+        for (File file : spillFiles) {
+            if (!file.delete()) {
+                // Mapped files can not be deleted on some platforms until the mapping is garbage collected
+                file.deleteOnExit();
+            }
+        }
+        spillFiles.clear();
+    }
+
+    private void checkSealed() {
+        if (!sealed) {
+            throw new IllegalStateException("Identifier set has not been sealed");
+        }
+    }
+
+    private boolean containsKey(byte[] key, int runCount) {
+        long hash = hash(key);
+        for (int i = 0; i < runCount; i++) {
+            if (runs.get(i).contains(key, hash)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sorts the pending identifiers, dropping duplicates and identifiers already present in earlier runs.
+     */
+    private List<byte[]> sortedUniqueEntries() {
+        Collections.sort(pending, UNSIGNED_ORDER);
+        List<byte[]> entries = new ArrayList<>(pending.size());
+        byte[] previous = null;
+        for (byte[] entry : pending) {
+            if ((previous == null || UNSIGNED_ORDER.compare(previous, entry) != 0)
+                    && !containsKey(entry, runs.size())) {
+                entries.add(entry);
+            }
+            previous = entry;
+        }
+        return entries;
+    }
+
+    private void spill() throws IOException {
+        List<byte[]> entries = sortedUniqueEntries();
+        pending = new ArrayList<>();
+        pendingBytes = 0;
+        if (entries.isEmpty()) {
+            return;
+        }
+        ByteBuffer encoded = encode(entries);
+        File file = File.createTempFile("recon-ids", ".run", spillDirectory);
+        spillFiles.add(file);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                FileChannel channel = raf.getChannel()) {
+            while (encoded.hasRemaining()) {
+                channel.write(encoded);
+            }
+            runs.add(new Run(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())));
+        }
+        size += entries.size();
+        logger.debug("Spilled {} reconciliation identifiers to {}", entries.size(), file);
+    }
+
+    /**
+     * Encodes sorted entries as {@code count, offsets[count + 1], bytes}.
+     */
+    private static ByteBuffer encode(List<byte[]> entries) {
+        long dataLength = 0;
+        for (byte[] entry : entries) {
+            dataLength += entry.length;
+        }
+        long total = 4L + 4L * (entries.size() + 1) + dataLength;
+        if (total > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Identifier run too large: " + total + " bytes");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) total);
+        buffer.putInt(entries.size());
+        int offset = 0;
+        for (byte[] entry : entries) {
+            buffer.putInt(offset);
+            offset += entry.length;
+        }
+        buffer.putInt(offset);
+        for (byte[] entry : entries) {
+            buffer.put(entry);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static long hash(byte[] key) {
+        // 64 bit FNV-1a followed by a murmur3 finalizer
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * A sorted run of identifiers in the encoded layout, on heap or memory-mapped.
+     * Only absolute reads are performed on the buffer so it may be shared between threads.
+     */
+    private static final class Run {
+        private final ByteBuffer buffer;
+        private final int count;
+        private final int dataStart;
+        private final long[] bloom;
+        private final long bloomBits;
+
+        Run(ByteBuffer buffer) {
+            this.buffer = buffer;
+            this.count = buffer.getInt(0);
+            this.dataStart = 4 + 4 * (count + 1);
+            long words = Math.max(1, ((long) count * BLOOM_BITS_PER_ENTRY + 63) / 64);
+            this.bloom = new long[(int) Math.min(words, Integer.MAX_VALUE - 8)];
+            this.bloomBits = bloom.length * 64L;
+            for (int i = 0; i < count; i++) {
+                long h = hash(get(i));
+                for (int k = 0; k < BLOOM_HASHES; k++) {
+                    long bit = bitIndex(h, k);
+                    bloom[(int) (bit >>> 6)] |= 1L << bit;
+                }
+            }
+        }
+
+        boolean contains(byte[] key, long hash) {
+            return indexOf(key, hash) >= 0;
+        }
+
+        int indexOf(byte[] key, long hash) {
+            for (int k = 0; k < BLOOM_HASHES; k++) {
+                long bit = bitIndex(hash, k);
+                if ((bloom[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                    return -1;
+                }
+            }
+            int low = 0;
+            int high = count - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = compareAt(mid, key);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+
+        byte[] get(int index) {
+            int start = buffer.getInt(4 + 4 * index);
+            int end = buffer.getInt(8 + 4 * index);
+            byte[] bytes = new byte[end - start];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = buffer.get(dataStart + start + i);
+            }
+            return bytes;
+        }
+
+        private int compareAt(int index, byte[] key) {
+            int start = dataStart + buffer.getInt(4 + 4 * index);
+            int length = dataStart + buffer.getInt(8 + 4 * index) - start;
+            int common = Math.min(length, key.length);
+            for (int i = 0; i < common; i++) {
+                int diff = (buffer.get(start + i) & 0xff) - (key[i] & 0xff);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            return length - key.length;
+        }
+
+        private long bitIndex(long hash, int k) {
+            long combined = (hash >>> 32) + k * (hash & 0xffffffffL);
+            return (combined & Long.MAX_VALUE) % bloomBits;
+        }
+    }
+}
@@ -12,25 +12,38 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015-2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.openidm.sync.impl;
 
+import static org.forgerock.json.JsonValue.array;
 import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.resource.QueryRequest.FIELD_QUERY_FILTER;
+import static org.forgerock.json.resource.http.HttpUtils.PARAM_QUERY_FILTER;
 
 import javax.script.ScriptException;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import org.forgerock.json.JsonPointer;
 import org.forgerock.json.JsonValue;
 import org.forgerock.json.JsonValueException;
+import org.forgerock.json.resource.QueryFilters;
 import org.forgerock.json.resource.QueryRequest;
 import org.forgerock.json.resource.QueryResourceHandler;
 import org.forgerock.json.resource.QueryResponse;
 import org.forgerock.json.resource.ResourceException;
+import org.forgerock.json.resource.Requests;
 import org.forgerock.json.resource.ResourceResponse;
+import org.forgerock.openidm.filter.JsonValueFilterVisitor;
 import org.forgerock.openidm.sync.SynchronizationException;
 import org.forgerock.openidm.util.RequestUtil;
 import org.forgerock.openidm.util.Script;
@@ -38,6 +51,7 @@ import org.forgerock.openidm.util.Scripts;
 import org.forgerock.script.exception.ScriptThrownException;
 import org.forgerock.services.context.Context;
 import org.forgerock.util.Reject;
+import org.forgerock.util.query.QueryFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,6 +62,8 @@ class Correlation {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Correlation.class);
 
+    private static final JsonValueFilterVisitor JSONVALUE_FILTER_VISITOR = new JsonValueFilterVisitor();
+
     private enum CorrelationType {
         correlationQuery,
         correlationScript,
@@ -60,6 +76,12 @@ class Correlation {
      */
     private Map<String, Script> correlationQueries;
 
+    /**
+     * The link qualifiers of the correlation queries declaring that the target compares values exactly as
+     * they are, i.e. without case folding or normalization, so that their matches can be evaluated locally.
+     */
+    private Set<String> exactMatchQualifiers;
+
     /**
      * A correlation script which will return a Map object where the keys are {@link String} instances representing link qualifiers and the
      * values are the correlation query results.
@@ -89,15 +111,14 @@ class Correlation {
             throw new JsonValueException(config, "Cannot configure both correlationQuery and correlationScript in a single mapping");
         } else if (!correlationQueryValue.isNull()) {
             correlationQueries = new HashMap<>();
+            exactMatchQualifiers = new HashSet<>();
             type = CorrelationType.correlationQuery;
             if (correlationQueryValue.isList()) {
                 for (JsonValue correlationQuery : correlationQueryValue) {
-                    correlationQueries.put(correlationQuery.get("linkQualifier").defaultTo(Link.DEFAULT_LINK_QUALIFIER).asString(),
-                            Scripts.newScript(correlationQuery));
+                    addCorrelationQuery(correlationQuery);
                 }
             } else if (correlationQueryValue.isMap()) {
-                correlationQueries.put(correlationQueryValue.get("linkQualifier").defaultTo(Link.DEFAULT_LINK_QUALIFIER).asString(),
-                        Scripts.newScript(correlationQueryValue));
+                addCorrelationQuery(correlationQueryValue);
             }
         } else if (!correlationScriptValue.isNull()) {
             type = CorrelationType.correlationScript;
@@ -107,6 +128,14 @@ class Correlation {
         }
     }
 
+    private void addCorrelationQuery(JsonValue correlationQuery) {
+        String linkQualifier = correlationQuery.get("linkQualifier").defaultTo(Link.DEFAULT_LINK_QUALIFIER).asString();
+        correlationQueries.put(linkQualifier, Scripts.newScript(correlationQuery));
+        if (correlationQuery.get("exactMatch").defaultTo(false).asBoolean()) {
+            exactMatchQualifiers.add(linkQualifier);
+        }
+    }
+
     /**
      * Returns true if there is a correlation query or script configured for the given link qualifier, false otherwise.
      *
@@ -163,6 +192,116 @@ class Correlation {
         }
     }
 
+    /**
+     * Correlates a batch of source objects with a single query against the target object set.
+     * <p>
+     * Only correlation queries that consist solely of a query filter can be batched. The filters of all source
+     * objects are OR'ed into one query, and each candidate returned is matched back to the source objects by
+     * evaluating their filters against it. As the target may apply matching rules (e.g. case insensitivity or
+     * normalization) that the local evaluation does not, a source object may match more candidates on the target
+     * than locally. Source objects without a local match are therefore left out of the result so that they are
+     * correlated individually, and so are the source objects with a single local match, unless the correlation
+     * query declares {@code exactMatch} and every candidate matched one of the filters locally. Only a source
+     * object with several local matches is ambiguous however the target matches.
+     *
+     * @param sources the source objects keyed by source id
+     * @param linkQualifier the link qualifier
+     * @param context Context
+     * @param reconContext Recon context or {@code null}
+     * @return the correlation results keyed by source id, for the source objects with at least one match
+     * @throws SynchronizationException if the batched query failed
+     */
+    Map<String, JsonValue> correlateBatch(Map<String, JsonValue> sources, String linkQualifier, Context context,
+            ReconciliationContext reconContext) throws SynchronizationException {
+        if (type != CorrelationType.correlationQuery || correlationQueries.get(linkQualifier) == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, QueryFilter<JsonPointer>> filters = new LinkedHashMap<>();
+        for (Map.Entry<String, JsonValue> source : sources.entrySet()) {
+            Map<String, Object> scope = new HashMap<>();
+            scope.put("source", source.getValue().asMap());
+            scope.put("linkQualifier", linkQualifier);
+            final long startNanoTime = ObjectMapping.startNanoTime(reconContext);
+            try {
+                JsonValue query = execScript(type.toString(), correlationQueries.get(linkQualifier), scope, context);
+                QueryFilter<JsonPointer> filter = getQueryFilter(query);
+                if (filter == null) {
+                    // The correlation query is not a plain query filter, so none of the sources can be batched
+                    return Collections.emptyMap();
+                }
+                filters.put(source.getKey(), filter);
+            } catch (ScriptException | IllegalArgumentException e) {
+                // Leave the source to individual correlation which reports the failure
+                LOGGER.debug("{} {} could not be batched for {}", objectMapping.getName(), type, source.getKey(), e);
+            } finally {
+                ObjectMapping.addDuration(reconContext, ReconciliationStatistic.DurationMetric.correlationQuery,
+                        startNanoTime);
+            }
+        }
+        if (filters.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        final long startNanoTime = ObjectMapping.startNanoTime(reconContext);
+        List<Object> candidates;
+        try {
+            candidates = queryTargetObjectSet(Requests.newQueryRequest(objectMapping.getTargetObjectSet())
+                    .setQueryFilter(QueryFilter.or(new ArrayList<>(filters.values()))));
+        } finally {
+            ObjectMapping.addDuration(reconContext, ReconciliationStatistic.DurationMetric.correlationQuery,
+                    startNanoTime);
+        }
+
+        Map<String, JsonValue> results = new HashMap<>();
+        boolean[] matched = new boolean[candidates.size()];
+        for (Map.Entry<String, QueryFilter<JsonPointer>> filter : filters.entrySet()) {
+            JsonValue matches = json(array());
+            for (int i = 0; i < candidates.size(); i++) {
+                if (filter.getValue().accept(JSONVALUE_FILTER_VISITOR, json(candidates.get(i)))) {
+                    // Each source gets its own copy, as the correlated target may be modified by the sync
+                    matches.add(json(candidates.get(i)).copy().getObject());
+                    matched[i] = true;
+                }
+            }
+            if (matches.size() > 0) {
+                results.put(filter.getKey(), matches);
+            }
+        }
+        boolean exactMatch = exactMatchQualifiers.contains(linkQualifier);
+        for (int i = 0; exactMatch && i < matched.length; i++) {
+            // The target matched a candidate the local evaluation did not, so it does not compare exactly
+            exactMatch = matched[i];
+        }
+        if (!exactMatch) {
+            // A single local match may be one of several on the target
+            Iterator<JsonValue> iterator = results.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().size() < 2) {
+                    iterator.remove();
+                }
+            }
+        }
+        LOGGER.debug("{} correlated {} of {} sources with one query", objectMapping.getName(), results.size(),
+                sources.size());
+        return results;
+    }
+
+    /**
+     * @param query the parameters returned by a correlation query script
+     * @return the parsed query filter, or null if the query has other parameters than the query filter
+     */
+    private QueryFilter<JsonPointer> getQueryFilter(JsonValue query) {
+        if (!query.isMap() || query.size() != 1) {
+            return null;
+        }
+        JsonValue queryFilter = query.isDefined(PARAM_QUERY_FILTER)
+                ? query.get(PARAM_QUERY_FILTER)
+                : query.get(FIELD_QUERY_FILTER);
+        return queryFilter.isString()
+                ? QueryFilters.parse(queryFilter.asString())
+                : null;
+    }
+
     /**
      * Executes a script of a given type with the given scope.
      *
@@ -182,11 +321,17 @@ class Correlation {
             throws SynchronizationException {
         try {
             Map<String, Object> result = new HashMap<>(1);
-            final Collection<Object> list = new ArrayList<>();
-            result.put(QueryResponse.FIELD_RESULT, list);
+            result.put(QueryResponse.FIELD_RESULT, queryTargetObjectSet(RequestUtil.buildQueryRequestFromParameterMap(
+                    objectMapping.getTargetObjectSet(), queryParameters)));
+            return result;
+        } catch (ResourceException ose) {
+            throw new SynchronizationException(ose);
+        }
+    }
 
-            QueryRequest request = RequestUtil.buildQueryRequestFromParameterMap(objectMapping.getTargetObjectSet(),
-                    queryParameters);
+    private List<Object> queryTargetObjectSet(QueryRequest request) throws SynchronizationException {
+        try {
+            final List<Object> list = new ArrayList<>();
             objectMapping.getConnectionFactory().getConnection().query(ObjectSetContext.get(), request,
                     new QueryResourceHandler() {
                         @Override
@@ -195,7 +340,7 @@ class Correlation {
                             return true;
                         }
                     });
-            return result;
+            return list;
         } catch (ResourceException ose) {
             throw new SynchronizationException(ose);
         }
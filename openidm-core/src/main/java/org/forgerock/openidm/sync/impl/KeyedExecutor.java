@@ -0,0 +1,102 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.sync.impl;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Executes tasks on a fixed number of single threaded lanes, assigning each task to a lane by its key.
+ * <p>
+ * Tasks with equal keys run one after the other, in the order they were submitted, while tasks with different keys
+ * may run in parallel. The number of lanes bounds the number of threads shared by all of the submitters.
+ */
+class KeyedExecutor {
+
+    private final ExecutorService[] lanes;
+
+    /**
+     * Creates the lanes.
+     *
+     * @param name prefix of the names of the lane threads
+     * @param lanes number of lanes
+     */
+    KeyedExecutor(final String name, final int lanes) {
+        this.lanes = new ExecutorService[Math.max(1, lanes)];
+        for (int i = 0; i < this.lanes.length; i++) {
+            final String threadName = name + "-" + i;
+            this.lanes[i] = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    final Thread thread = new LaneThread(KeyedExecutor.this, runnable, threadName);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+
+    /**
+     * Queues a task on the lane of its key.
+     *
+     * @param key the key of the task
+     * @param task the task
+     * @param <T> the result type of the task
+     * @return the future result of the task
+     */
+    <T> Future<T> submit(final Object key, final Callable<T> task) {
+        return lanes[(key.hashCode() & Integer.MAX_VALUE) % lanes.length].submit(task);
+    }
+
+    /**
+     * Returns whether the current thread is one of the lanes. A lane must not wait for a task submitted to the lanes,
+     * as that task may be queued behind it.
+     *
+     * @return true if called from a task of this executor
+     */
+    boolean isLaneThread() {
+        final Thread thread = Thread.currentThread();
+        return thread instanceof LaneThread && ((LaneThread) thread).owner == this;
+    }
+
+    /**
+     * Stops the lanes, interrupting the running tasks and cancelling the queued ones.
+     */
+    void shutdown() {
+        for (final ExecutorService lane : lanes) {
+            for (final Runnable queued : lane.shutdownNow()) {
+                if (queued instanceof Future) {
+                    ((Future<?>) queued).cancel(false);
+                }
+            }
+        }
+    }
+
+    /**
+     * A thread of a lane, which knows its executor.
+     */
+    private static final class LaneThread extends Thread {
+        private final KeyedExecutor owner;
+
+        private LaneThread(final KeyedExecutor owner, final Runnable runnable, final String name) {
+            super(runnable, name);
+            this.owner = owner;
+        }
+    }
+}
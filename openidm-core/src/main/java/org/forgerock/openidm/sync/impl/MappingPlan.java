@@ -0,0 +1,198 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.sync.impl;
+
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.forgerock.json.JsonValue;
+import org.forgerock.json.JsonValueException;
+import org.forgerock.openidm.condition.Condition;
+import org.forgerock.openidm.condition.Conditions;
+import org.forgerock.openidm.sync.PropertyMapping;
+import org.forgerock.openidm.util.Script;
+import org.forgerock.openidm.util.Scripts;
+import org.forgerock.script.source.SourceUnit;
+
+/**
+ * The immutable execution plan of an {@link ObjectMapping}, shared by all of its {@link SyncOperation}s.
+ * <p>
+ * The plan holds the scripts, conditions, property mappings, policies and correlation of the mapping, resolved once
+ * from the mapping configuration. A new plan is built with the mapping whenever the mapping configuration changes;
+ * changes to the script sources are picked up by the script entries of the registry.
+ */
+final class MappingPlan {
+
+    /** a script to execute when a target object is to be created */
+    private final Script onCreateScript;
+
+    /** a script to execute when a target object is to be updated */
+    private final Script onUpdateScript;
+
+    /** a script to execute when a target object is to be deleted */
+    private final Script onDeleteScript;
+
+    /** a script to execute when a source object is to be linked to a target object */
+    private final Script onLinkScript;
+
+    /** a script to execute when a source object and a target object are to be unlinked */
+    private final Script onUnlinkScript;
+
+    /** a script to execute when sync has been performed on managed/user object */
+    private final Script postMapping;
+
+    /** a script that determines if a source object is valid to be mapped */
+    private final Script validSource;
+
+    /** a script that determines if a target object is valid to be mapped */
+    private final Script validTarget;
+
+    /** a script that applies the effective assignments as part of the mapping */
+    private final Script defaultMapping;
+
+    /** an additional set of key-value conditions to be met for a source object to be valid to be mapped */
+    private final Condition sourceCondition;
+
+    /** an array of property-mapping objects */
+    private final List<PropertyMapping> properties;
+
+    /** the {@link Policy} objects of each situation, in configuration order */
+    private final Map<Situation, List<Policy>> policies;
+
+    /** the correlation queries or script */
+    private final Correlation correlation;
+
+    /** whether to correlate source objects when the target object set was empty at the outset */
+    private final boolean correlateEmptyTargetSet;
+
+    /**
+     * Resolves the execution plan of a mapping.
+     *
+     * @param objectMapping the mapping
+     * @throws JsonValueException if the configuration is invalid or a script cannot be resolved
+     */
+    MappingPlan(ObjectMapping objectMapping) throws JsonValueException {
+        final JsonValue config = objectMapping.getConfig();
+        validSource = Scripts.newScript(config.get("validSource"));
+        validTarget = Scripts.newScript(config.get("validTarget"));
+        sourceCondition = Conditions.newCondition(config.get("sourceCondition"));
+        onCreateScript = Scripts.newScript(config.get("onCreate"));
+        onUpdateScript = Scripts.newScript(config.get("onUpdate"));
+        onDeleteScript = Scripts.newScript(config.get("onDelete"));
+        onLinkScript = Scripts.newScript(config.get("onLink"));
+        onUnlinkScript = Scripts.newScript(config.get("onUnlink"));
+        defaultMapping = Scripts.newScript(config.get("defaultMapping").defaultTo(
+                json(object(field(SourceUnit.ATTR_TYPE, "text/javascript"),
+                        field(SourceUnit.ATTR_NAME, "roles/defaultMapping.js")))));
+        postMapping = Scripts.newScript(config.get("postMapping").defaultTo(
+                json(object(field(SourceUnit.ATTR_TYPE, "groovy"),
+                        field(SourceUnit.ATTR_NAME, "roles/defaultPostMapping.groovy")))));
+
+        final List<PropertyMapping> propertyMappings = new ArrayList<>();
+        for (JsonValue jv : config.get("properties").expect(List.class)) {
+            propertyMappings.add(new PropertyMapping(jv));
+        }
+        properties = Collections.unmodifiableList(propertyMappings);
+
+        final Map<Situation, List<Policy>> situationPolicies = new EnumMap<>(Situation.class);
+        for (JsonValue jv : config.get("policies").expect(List.class)) {
+            final Policy policy = new Policy(jv);
+            List<Policy> policyList = situationPolicies.get(policy.getSituation());
+            if (policyList == null) {
+                policyList = new ArrayList<>();
+                situationPolicies.put(policy.getSituation(), policyList);
+            }
+            policyList.add(policy);
+        }
+        for (Map.Entry<Situation, List<Policy>> entry : situationPolicies.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+        policies = Collections.unmodifiableMap(situationPolicies);
+
+        correlation = new Correlation(objectMapping);
+        correlateEmptyTargetSet = config.get("correlateEmptyTargetSet").defaultTo(false).asBoolean();
+    }
+
+    Script getOnCreateScript() {
+        return onCreateScript;
+    }
+
+    Script getOnUpdateScript() {
+        return onUpdateScript;
+    }
+
+    Script getOnDeleteScript() {
+        return onDeleteScript;
+    }
+
+    Script getOnLinkScript() {
+        return onLinkScript;
+    }
+
+    Script getOnUnlinkScript() {
+        return onUnlinkScript;
+    }
+
+    Script getPostMapping() {
+        return postMapping;
+    }
+
+    Script getValidSource() {
+        return validSource;
+    }
+
+    Script getValidTarget() {
+        return validTarget;
+    }
+
+    Script getDefaultMapping() {
+        return defaultMapping;
+    }
+
+    Condition getSourceCondition() {
+        return sourceCondition;
+    }
+
+    List<PropertyMapping> getProperties() {
+        return properties;
+    }
+
+    Correlation getCorrelation() {
+        return correlation;
+    }
+
+    boolean isCorrelateEmptyTargetSet() {
+        return correlateEmptyTargetSet;
+    }
+
+    /**
+     * Returns all possible policies for a given situation.
+     *
+     * @param situation to get policies for
+     * @return List of policies for given situation
+     */
+    List<Policy> getPolicies(Situation situation) {
+        final List<Policy> situationPolicies = policies.get(situation);
+        return situationPolicies != null ? situationPolicies : Collections.<Policy>emptyList();
+    }
+}
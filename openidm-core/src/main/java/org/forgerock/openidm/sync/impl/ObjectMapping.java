@@ -14,7 +14,7 @@
  * "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2011-2016 ForgeRock AS.
- * Portions Copyright 2018-2020 Wren Security.
+ * Portions Copyright 2018-2026 Wren Security.
  */
 package org.forgerock.openidm.sync.impl;
 
@@ -25,11 +25,11 @@ import static org.forgerock.json.JsonValue.object;
 import static org.forgerock.json.JsonValueFunctions.enumConstant;
 import static org.forgerock.openidm.sync.impl.ReconciliationStatistic.DurationMetric;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -139,6 +139,11 @@ class ObjectMapping {
      */
     private int reconSourceQueryPageSize;
 
+    /**
+     * The number of recon source query pages to fetch ahead of the page being reconciled, if paging is used.
+     */
+    private int reconSourceQueryPrefetch;
+
     /**
      * A {@link List} containing the configured link qualifiers.
      */
@@ -173,12 +178,24 @@ class ObjectMapping {
     /** The number of initial tasks the ReconFeeder should submit to executors */
     private int feedSize;
 
+    /** The number of unlinked source objects to correlate with one target query during source recon, 0 to disable */
+    private int correlationBatchSize;
+
+    /** The configuration of the store holding the source and target ids queried during reconciliation */
+    private final JsonValue reconWorkingSetConfig;
+
+    /** Configuration of how the reconciliation statistics keep the processed ids */
+    private final JsonValue reconStatisticsConfig;
+
     /** a reference to the {@link ConnectionFactory} */
     private final ConnectionFactory connectionFactory;
 
     /** Whether synchronization (automatic propagation of changes as they are detected) is enabled on that mapping */
     private final boolean syncEnabled;
 
+    /** The execution plan shared by the sync operations of this mapping */
+    private final MappingPlan plan;
+
     /**
      * Reconcile a given source ID
      */
@@ -223,11 +240,16 @@ class ObjectMapping {
         prefetchLinks = config.get("prefetchLinks").defaultTo(true).asBoolean();
         taskThreads = config.get("taskThreads").defaultTo(DEFAULT_TASK_THREADS).asInteger();
         feedSize = config.get("feedSize").defaultTo(ReconFeeder.DEFAULT_FEED_SIZE).asInteger();
+        reconWorkingSetConfig = config.get("reconWorkingSet").defaultTo(object());
+        reconStatisticsConfig = config.get("reconStatistics").defaultTo(object());
+        correlationBatchSize = config.get("correlationBatchSize").defaultTo(0).asInteger();
         syncEnabled = config.get("enableSync").defaultTo(true).asBoolean();
         linkingEnabled = config.get("enableLinking").defaultTo(true).asBoolean();
         reconSourceQueryPaging = config.get("reconSourceQueryPaging").defaultTo(false).asBoolean();
         reconSourceQueryPageSize = config.get("reconSourceQueryPageSize")
                 .defaultTo(reconSourceQueryPaging ? ReconFeeder.DEFAULT_FEED_SIZE : 0).asInteger();
+        reconSourceQueryPrefetch = config.get("reconSourceQueryPrefetch").defaultTo(1).asInteger();
+        plan = new MappingPlan(this);
 
         LOGGER.debug("Instantiated {}", name);
     }
@@ -282,6 +304,13 @@ class ObjectMapping {
         return config;
     }
 
+    /**
+     * @return The execution plan shared by the sync operations of the object mapping
+     */
+    MappingPlan getPlan() {
+        return plan;
+    }
+
     /**
      * Returns the complete set of link Qualifiers.
      *
@@ -702,6 +731,7 @@ class ObjectMapping {
         EventEntry measureIdQueries = Publisher.start(EVENT_RECON_ID_QUERIES, reconId, null);
         reconContext.setStage(ReconStage.ACTIVE_QUERY_ENTRIES);
         Context context = ObjectSetContext.get();
+        SourcePagePrefetcher sourcePagePrefetcher = null;
         try {
             // Execute onRecon script.
             executeOnRecon(context, reconContext);
@@ -730,16 +760,14 @@ class ObjectMapping {
             }
 
             // If we will handle a target phase, pre-load all relevant target identifiers
-            Set<String> remainingTargetIds = new LinkedHashSet<>();
-            ResultIterable targetIterable =
-                    new ResultIterable(Collections.<String>emptyList(), Collections.<JsonValue>emptyList());
+            Collection<String> remainingTargetIds = Collections.emptySet();
             if (reconContext.getReconHandler().isRunTargetPhase()) {
                 stats.targetQueryStart();
                 final long targetQueryStart = startNanoTime(reconContext);
 
-                targetIterable = reconContext.queryTarget();
-                remainingTargetIds.addAll(targetIterable.getAllIds());
-                remainingTargetIds = Collections.synchronizedSet(remainingTargetIds);
+                // Only the working set of the context keeps the target ids, the query results are released
+                reconContext.queryTarget();
+                remainingTargetIds = reconContext.getRemainingTargetIds();
 
                 stats.addDuration(DurationMetric.targetQuery, targetQueryStart);
                 stats.targetQueryEnd();
@@ -773,10 +801,23 @@ class ObjectMapping {
 
             boolean queryNextPage = false;
 
+            // If paging, fetch the following pages while the current one is reconciled
+            if (reconSourceQueryPaging && reconSourceQueryPrefetch > 0
+                    && sourceQueryResult.getPagingCookie() != null) {
+                sourcePagePrefetcher = new SourcePagePrefetcher(reconContext, context, reconSourceQueryPageSize,
+                        sourceQueryResult.getPagingCookie(), reconSourceQueryPrefetch);
+                sourcePagePrefetcher.start();
+            }
+
             LOGGER.info("Performing source sync for recon {} on mapping {}", reconId, name);
             do {
                 // Query next page of results if paging
-                if (queryNextPage) {
+                if (queryNextPage && sourcePagePrefetcher != null) {
+                    LOGGER.debug("Taking next prefetched page of source ids");
+                    sourceQueryResult = sourcePagePrefetcher.nextPage();
+                    reconContext.setSourcePage(sourceQueryResult);
+                    sourceIter = sourceQueryResult.getIterator();
+                } else if (queryNextPage) {
                     LOGGER.debug("Querying next page of source ids");
                     final long pagedSourceQueryStart = startNanoTime(reconContext);
                     sourceQueryResult = reconContext.querySourceIter(reconSourceQueryPageSize,
@@ -788,6 +829,11 @@ class ObjectMapping {
                 ReconPhase sourcePhase =
                         new ReconPhase(sourceIter, reconContext, context, allLinks, remainingTargetIds, sourceRecon);
                 sourcePhase.setFeedSize(feedSize);
+                if (correlationBatchSize > 1 && allLinks != null) {
+                    // Batching needs the prefetched links to tell which sources are unlinked
+                    sourcePhase.setBatchSize(correlationBatchSize);
+                    sourcePhase.setBatchCorrelation(new BatchCorrelation(this, reconContext, allLinks));
+                }
                 sourcePhase.execute();
                 queryNextPage = true;
             } while (reconSourceQueryPaging && sourceQueryResult.getPagingCookie() != null); // If paging, loop through next pages
@@ -796,15 +842,14 @@ class ObjectMapping {
             stats.sourcePhaseEnd();
             measureSource.end();
 
-            LOGGER.debug("Remaining targets after source phase : {}", remainingTargetIds);
+            LOGGER.debug("Remaining targets after source phase : {}", remainingTargetIds.size());
 
             if (reconContext.getReconHandler().isRunTargetPhase()) {
                 EventEntry measureTarget = Publisher.start(EVENT_RECON_TARGET, reconId, null);
                 final long targetPhaseStart = startNanoTime(reconContext);
                 reconContext.setStage(ReconStage.ACTIVE_RECONCILING_TARGET);
-                targetIterable = targetIterable.removeNotMatchingEntries(remainingTargetIds);
                 stats.targetPhaseStart();
-                ReconPhase targetPhase = new ReconPhase(targetIterable.iterator(), reconContext, context,
+                ReconPhase targetPhase = new ReconPhase(reconContext.getRemainingTargets(), reconContext, context,
                         allLinks, null, targetRecon);
                 targetPhase.setFeedSize(feedSize);
                 targetPhase.execute();
@@ -847,6 +892,9 @@ class ObjectMapping {
             logReconEndFailure(reconContext, context);
             throw new SynchronizationException("Synchronization failed", e);
         } finally {
+            if (sourcePagePrefetcher != null) {
+                sourcePagePrefetcher.stop();
+            }
             ObjectSetContext.pop(); // pop the TriggerContext
             if (!stats.hasEnded()) {
                 stats.reconEnd();
@@ -915,6 +963,20 @@ class ObjectMapping {
         return taskThreads;
     }
 
+    /**
+     * @return the configuration of the reconciliation working set, never null
+     */
+    JsonValue getReconWorkingSetConfig() {
+        return reconWorkingSetConfig;
+    }
+
+    /**
+     * @return the configuration of the reconciliation statistics, never null
+     */
+    JsonValue getReconStatisticsConfig() {
+        return reconStatisticsConfig;
+    }
+
     /**
      * Creates an entry in the audit log.
      *
@@ -12,20 +12,19 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Portions copyright 2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 package org.forgerock.openidm.sync.impl;
 
 //import java.text.SimpleDateFormat;
 import org.forgerock.openidm.sync.ReconAction;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.io.File;
 import java.util.EnumMap;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.forgerock.openidm.core.ServerConstants;
 import org.forgerock.openidm.util.DateUtil;
@@ -43,9 +42,10 @@ public class PhaseStatistic {
     private ReconciliationStatistic parentStat;
     Phase phase;
     private String name;
-    private Map<Situation, List<String>> ids = Collections.synchronizedMap(new EnumMap<Situation, List<String>>(Situation.class));
-    private AtomicLong processedEntries = new AtomicLong();
-    private List<String> notValid;
+    /** Identifiers per situation, fully populated on construction and read-only afterwards */
+    private final Map<Situation, SituationIds> ids = new EnumMap<Situation, SituationIds>(Situation.class);
+    private final LongAdder processedEntries = new LongAdder();
+    private final SituationIds notValid;
 
     long queryStartTime;
     long queryEndTime;
@@ -54,21 +54,39 @@ public class PhaseStatistic {
     long phaseEndTime;
 
     public PhaseStatistic(ReconciliationStatistic parentStat, Phase phase, String name) {
+        this(parentStat, phase, name, SituationIds.Mode.ALL, 0, null);
+    }
+
+    /**
+     * Creates the statistics of a phase.
+     *
+     * @param parentStat the statistics of the whole reconciliation run
+     * @param phase the phase
+     * @param name the name of the object set the phase processes
+     * @param idsMode how the processed identifiers are kept
+     * @param idsSampleSize maximum number of identifiers kept in memory per situation, unless all are kept
+     * @param idsFilePrefix path prefix of the files all identifiers are written to, if spilled
+     */
+    PhaseStatistic(ReconciliationStatistic parentStat, Phase phase, String name, SituationIds.Mode idsMode,
+            int idsSampleSize, String idsFilePrefix) {
         this.parentStat = parentStat;
         this.phase = phase;
         this.name = name;
-        ids.put(Situation.CONFIRMED, Collections.synchronizedList(new ArrayList<String>()));
-        ids.put(Situation.FOUND, Collections.synchronizedList(new ArrayList<String>()));
-        ids.put(Situation.ABSENT, Collections.synchronizedList(new ArrayList<String>()));
-        ids.put(Situation.AMBIGUOUS, Collections.synchronizedList(new ArrayList<String>()));
-        ids.put(Situation.MISSING, Collections.synchronizedList(new ArrayList<String>()));
-        ids.put(Situation.UNQUALIFIED, Collections.synchronizedList(new ArrayList<String>()));
-        ids.put(Situation.UNASSIGNED, Collections.synchronizedList(new ArrayList<String>()));
-        ids.put(Situation.SOURCE_MISSING, Collections.synchronizedList(new ArrayList<String>()));
-        ids.put(Situation.SOURCE_IGNORED, Collections.synchronizedList(new ArrayList<String>()));
-        ids.put(Situation.TARGET_IGNORED, Collections.synchronizedList(new ArrayList<String>()));
-        ids.put(Situation.FOUND_ALREADY_LINKED, Collections.synchronizedList(new ArrayList<String>()));
-        notValid = Collections.synchronizedList(new ArrayList<String>());
+        for (Situation situation : new Situation[] { Situation.CONFIRMED, Situation.FOUND, Situation.ABSENT,
+                Situation.AMBIGUOUS, Situation.MISSING, Situation.UNQUALIFIED, Situation.UNASSIGNED,
+                Situation.SOURCE_MISSING, Situation.SOURCE_IGNORED, Situation.TARGET_IGNORED,
+                Situation.FOUND_ALREADY_LINKED }) {
+            ids.put(situation, new SituationIds(idsMode, idsSampleSize,
+                    idsFile(idsFilePrefix, situation.name())));
+        }
+        notValid = new SituationIds(idsMode, idsSampleSize, idsFile(idsFilePrefix, "NOTVALID"));
+    }
+
+    private File idsFile(String idsFilePrefix, String key) {
+        if (idsFilePrefix == null) {
+            return null;
+        }
+        return new File(idsFilePrefix + "-" + phase.name().toLowerCase() + "-" + key + SituationIds.SPILL_FILE_SUFFIX);
     }
 
     /**
@@ -92,11 +110,11 @@ public class PhaseStatistic {
         }
         parentStat.processed(sourceId, targetId, linkExisted, linkId, linkCreated, situation, action);
         if (id != null) {
-            processedEntries.incrementAndGet();
+            processedEntries.increment();
             if (situation != null) {
-                List<String> situationIds = ids.get(situation);
+                SituationIds situationIds = ids.get(situation);
                 if (situationIds != null) {
-                    situationIds.add(id); // TODO: option to not keep all results in memory
+                    situationIds.add(id);
                 }
             }
         }
@@ -109,7 +127,7 @@ public class PhaseStatistic {
     }
 
     public long getProcessed() {
-        return processedEntries.get();
+        return processedEntries.sum();
     }
 
     public Map<String, Object> asMap() {
@@ -122,18 +140,12 @@ public class PhaseStatistic {
         results.put("entryListDuration", parentStat.getDuration(queryStartTime, queryEndTime));
         results.put("processed", getProcessed());
 
-        Map<String, Object> nv = new HashMap<String, Object>();
-        nv.put("count", notValid.size());
-        nv.put("ids", notValid);
-        results.put("NOTVALID", nv);
-
-        int entries = 0;
-        for (Entry<Situation, List<String>> e : ids.entrySet()) {
-            Map<String, Object> res = new HashMap<String, Object>();
-            entries += e.getValue().size();
-            res.put("count", e.getValue().size());
-            res.put("ids", e.getValue());
-            results.put(e.getKey().name(), res);
+        results.put("NOTVALID", notValid.asMap());
+
+        long entries = 0;
+        for (Entry<Situation, SituationIds> e : ids.entrySet()) {
+            entries += e.getValue().getCount();
+            results.put(e.getKey().name(), e.getValue().asMap());
         }
         results.put("entries", entries);
 
@@ -141,14 +153,34 @@ public class PhaseStatistic {
     }
 
     public void updateSummary(Map<String, Integer> simpleSummary) {
-        for (Entry<Situation, List<String>> e : ids.entrySet()) {
+        for (Entry<Situation, SituationIds> e : ids.entrySet()) {
             String key = e.getKey().name();
             Integer existing = simpleSummary.get(key);
             if (existing == null) {
                 existing = 0;
             }
-            Integer updated = existing + e.getValue().size();
+            Integer updated = existing + (int) e.getValue().getCount();
             simpleSummary.put(key, updated);
         }
     }
+
+    /**
+     * Completes the files holding all identifiers, if spilled.
+     */
+    void closeIds() {
+        for (SituationIds situationIds : ids.values()) {
+            situationIds.close();
+        }
+        notValid.close();
+    }
+
+    /**
+     * Deletes the files holding all identifiers, if spilled.
+     */
+    void deleteIds() {
+        for (SituationIds situationIds : ids.values()) {
+            situationIds.delete();
+        }
+        notValid.delete();
+    }
 }
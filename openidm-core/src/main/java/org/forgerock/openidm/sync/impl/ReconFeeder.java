@@ -26,7 +26,9 @@ package org.forgerock.openidm.sync.impl;
 
 import org.forgerock.openidm.sync.SynchronizationException;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutionException;
@@ -51,6 +53,7 @@ public abstract class ReconFeeder {
     
     CompletionService<Void> completionService;
     int feedSize = DEFAULT_FEED_SIZE;
+    int batchSize = 1;
     int submitted = 0;
 
     Iterator<ResultEntry> entriesIter;
@@ -65,14 +68,22 @@ public abstract class ReconFeeder {
         this.feedSize = feedSize;
     }
 
+    /**
+     * Sets the number of entries handed to each task. The feed size then counts batches rather than entries.
+     * @param batchSize the number of entries per task, at least 1
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
     void execute() throws SynchronizationException, InterruptedException {
         Executor executor = reconContext.getExcecutor();
         if (executor == null) {
             // Execute single threaded
             while (entriesIter.hasNext()) {
-                ResultEntry entry = entriesIter.next();
+                List<ResultEntry> entries = nextBatch();
                 try {
-                    createTask(entry).call();
+                    createTask(entries).call();
                 } catch (Exception ex) {
                     translateTaskThrowable(ex);
                 }
@@ -104,12 +115,19 @@ public abstract class ReconFeeder {
     void submitNextIfPresent() throws SynchronizationException {
         reconContext.checkCanceled();
         if (entriesIter.hasNext()) {
-            ResultEntry entry = entriesIter.next();
-            completionService.submit(createTask(entry));
+            completionService.submit(createTask(nextBatch()));
             ++submitted;
         }
     }
 
+    List<ResultEntry> nextBatch() {
+        List<ResultEntry> entries = new ArrayList<ResultEntry>(batchSize);
+        while (entries.size() < batchSize && entriesIter.hasNext()) {
+            entries.add(entriesIter.next());
+        }
+        return entries;
+    }
+
     void translateTaskThrowable(Throwable throwable) throws SynchronizationException {
         Throwable cause = throwable.getCause();
         
@@ -124,12 +142,12 @@ public abstract class ReconFeeder {
     }
 
     /**
-     * Create the callable task for the given id
-     * @param id source or target id
-     * @return the task to reconcile the given id
+     * Create the callable task for the given entries
+     * @param entries source or target entries, as many as the batch size unless the last batch
+     * @return the task to reconcile the given entries
      * @throws SynchronizationException if processing fails
      */
     
-    abstract Callable<Void> createTask(ResultEntry entry) throws SynchronizationException;
+    abstract Callable<Void> createTask(List<ResultEntry> entries) throws SynchronizationException;
 
 }
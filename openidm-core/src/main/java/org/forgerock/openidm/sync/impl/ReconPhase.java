@@ -12,12 +12,14 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2012-2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.openidm.sync.impl;
 
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 
@@ -32,6 +34,7 @@ class ReconPhase extends ReconFeeder {
     private final Map<String, Map<String, Link>> allLinks;
     private final Collection<String> remainingIds;
     private final Recon reconById;
+    private BatchCorrelation batchCorrelation;
 
     ReconPhase(Iterator<ResultEntry> resultIter, ReconciliationContext reconContext, Context parentContext,
             Map<String, Map<String, Link>> allLinks, Collection<String> remainingIds, Recon reconById) {
@@ -41,8 +44,47 @@ class ReconPhase extends ReconFeeder {
         this.remainingIds = remainingIds;
         this.reconById = reconById;
     }
+
+    /**
+     * Sets the correlation to run up front for each batch of entries.
+     * @param batchCorrelation the batch correlation, or null to correlate each entry individually
+     */
+    void setBatchCorrelation(BatchCorrelation batchCorrelation) {
+        this.batchCorrelation = batchCorrelation;
+    }
+
     @Override
-    Callable<Void> createTask(ResultEntry objectEntry) throws SynchronizationException {
+    Callable<Void> createTask(final List<ResultEntry> entries) throws SynchronizationException {
+        if (entries.size() == 1 && batchCorrelation == null) {
+            return createTask(entries.get(0));
+        }
+        return new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                List<ResultEntry> batch = entries;
+                try {
+                    if (batchCorrelation != null) {
+                        ObjectSetContext.push(parentContext);
+                        try {
+                            batch = batchCorrelation.correlate(entries, parentContext);
+                        } finally {
+                            ObjectSetContext.pop();
+                        }
+                    }
+                    for (ResultEntry entry : batch) {
+                        createTask(entry).call();
+                    }
+                } finally {
+                    if (batchCorrelation != null) {
+                        batchCorrelation.release(entries);
+                    }
+                }
+                return null;
+            }
+        };
+    }
+
+    private Callable<Void> createTask(ResultEntry objectEntry) {
         return new ReconTask(objectEntry, reconContext, parentContext,
                 allLinks, remainingIds, reconById);
     }
@@ -12,19 +12,30 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Portions copyright 2011-2015 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 package org.forgerock.openidm.sync.impl;
 
+import java.io.Closeable;
+import java.io.File;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
 
+import org.forgerock.openidm.core.IdentityServer;
 import org.forgerock.openidm.sync.SynchronizationException;
 import org.forgerock.services.context.Context;
 import org.forgerock.json.JsonValue;
@@ -36,6 +47,21 @@ import org.forgerock.json.resource.BadRequestException;
  */
 public class ReconciliationContext {
 
+    /** Working set type keeping the queried ids in concurrent hash based collections */
+    static final String WORKING_SET_HASH = "hash";
+
+    /** Working set type keeping the queried ids in compact sorted runs, spilled to disk past the heap budget */
+    static final String WORKING_SET_COMPACT = "compact";
+
+    /** Default heap budget of each compact working set before it spills to disk */
+    static final long DEFAULT_WORKING_SET_HEAP_BUDGET = 64L * 1024 * 1024;
+
+    /** Default number of processed ids kept in memory per situation, unless all ids are kept */
+    static final int DEFAULT_STATISTICS_SAMPLE_SIZE = 100;
+
+    /** Default directory, relative to the working location, of the files holding all processed ids */
+    static final String DEFAULT_STATISTICS_IDS_DIRECTORY = "recon/statistics";
+
     ObjectMapping mapping;
     ReconciliationService service;
 
@@ -63,11 +89,27 @@ public class ReconciliationContext {
     private Map<String, JsonValue> targets;
     // Whether the targets map contains preloaded values
     private boolean hasTargetsValues;
+    // If set, the ids of the targets not handled by the source phase
+    private RemainingTargetIds remainingTargetIds;
     
     private Integer totalSourceEntries;
     private Integer totalTargetEntries;
     private Integer totalLinkEntries;
 
+    // Results of batched correlation queries by source id and link qualifier, until used by the source sync
+    private final Map<String, Map<String, JsonValue>> batchCorrelations =
+            new ConcurrentHashMap<String, Map<String, JsonValue>>();
+
+    // Whether the source ids and targets are kept in a compact working set
+    private final boolean compactWorkingSet;
+    private final long workingSetHeapBudget;
+    private final File workingSetSpillDirectory;
+
+    // How the statistics keep the processed ids
+    private final SituationIds.Mode statisticsIdsMode;
+    private final int statisticsIdsSampleSize;
+    private final File statisticsIdsDirectory;
+
     // Marker value for nulls to use in maps without null value support
     private final static JsonValue NULL_MARKER = new JsonValue(null);
     
@@ -90,6 +132,21 @@ public class ReconciliationContext {
         this.reconAction = reconAction;
         this.mapping = mapping;
         this.reconId = callingContext.getId();
+
+        JsonValue statisticsConfig = mapping.getReconStatisticsConfig();
+        String idsMode = statisticsConfig.get("ids").defaultTo("all").asString();
+        statisticsIdsMode = SituationIds.Mode.forConfig(idsMode);
+        if (statisticsIdsMode == null) {
+            throw new BadRequestException("Unknown reconStatistics ids " + idsMode);
+        }
+        statisticsIdsSampleSize = statisticsConfig.get("sampleSize")
+                .defaultTo(DEFAULT_STATISTICS_SAMPLE_SIZE).asInteger();
+        if (statisticsIdsMode == SituationIds.Mode.SPILL) {
+            statisticsIdsDirectory = IdentityServer.getFileForWorkingPath(
+                    statisticsConfig.get("spillDirectory").defaultTo(DEFAULT_STATISTICS_IDS_DIRECTORY).asString());
+        } else {
+            statisticsIdsDirectory = null;
+        }
         this.reconStat = new ReconciliationStatistic(this);
         this.reconParams = reconParams;
         this.overridingConfig = overridingConfig;
@@ -97,6 +154,24 @@ public class ReconciliationContext {
         
         reconTypeHandler = createReconTypeHandler(reconAction);
 
+        JsonValue workingSetConfig = mapping.getReconWorkingSetConfig();
+        String workingSetType = workingSetConfig.get("type").defaultTo(WORKING_SET_HASH).asString();
+        if (WORKING_SET_COMPACT.equals(workingSetType)) {
+            compactWorkingSet = true;
+        } else if (WORKING_SET_HASH.equals(workingSetType)) {
+            compactWorkingSet = false;
+        } else {
+            throw new BadRequestException("Unknown reconWorkingSet type " + workingSetType);
+        }
+        workingSetHeapBudget = workingSetConfig.get("heapBudget").defaultTo(DEFAULT_WORKING_SET_HEAP_BUDGET).asLong();
+        String spillDirectory = workingSetConfig.get("spillDirectory").asString();
+        if (spillDirectory != null) {
+            workingSetSpillDirectory = IdentityServer.getFileForWorkingPath(spillDirectory);
+            workingSetSpillDirectory.mkdirs();
+        } else {
+            workingSetSpillDirectory = null;
+        }
+
         // Initialize the executor for this recon, or null if no executor should be used
         int noOfThreads = mapping.getTaskThreads();
         if (noOfThreads > 0) {
@@ -191,6 +266,27 @@ public class ReconciliationContext {
         return reconStat;
     }
 
+    /**
+     * @return how the statistics keep the processed ids
+     */
+    SituationIds.Mode getStatisticsIdsMode() {
+        return statisticsIdsMode;
+    }
+
+    /**
+     * @return the number of processed ids the statistics keep in memory per situation, unless they keep all
+     */
+    int getStatisticsIdsSampleSize() {
+        return statisticsIdsSampleSize;
+    }
+
+    /**
+     * @return the directory of the files holding all processed ids, or null if they are not spilled
+     */
+    File getStatisticsIdsDirectory() {
+        return statisticsIdsDirectory;
+    }
+
     /**
      * @return The name of the ObjectMapping associated
      * with the reconciliation run
@@ -272,10 +368,31 @@ public class ReconciliationContext {
      * @throws SynchronizationException if getting the ids to reconcile failed
      */
     ReconQueryResult querySourceIter(int pageSize, String pagingCookie) throws SynchronizationException {
-        ReconQueryResult result = getReconHandler().querySource(pageSize, pagingCookie);
-        setSourceIds(result.getAllIds());
+        ReconQueryResult result = querySourcePage(pageSize, pagingCookie);
+        setSourcePage(result);
         return result;
     }
+
+    /**
+     * Query a page of sources to reconcile without making it the current page
+     * @return the source ids of the page
+     * @throws SynchronizationException if getting the ids to reconcile failed
+     */
+    ReconQueryResult querySourcePage(int pageSize, String pagingCookie) throws SynchronizationException {
+        return getReconHandler().querySource(pageSize, pagingCookie);
+    }
+
+    /**
+     * Make a queried page of sources the current page, whose ids are checked against for source existence
+     * @param page the queried page of source ids
+     */
+    void setSourcePage(ReconQueryResult page) {
+        setSourceIds(page.getAllIds());
+        if (!page.getResultIterable().hasValues()) {
+            // Iterate the page from the working set, so that the queried ids are not kept twice
+            page.setResultIterable(new ResultIterable(sourceIds, null));
+        }
+    }
     
     /**
      * Query (and cache if necessary) targets to reconcile
@@ -292,9 +409,19 @@ public class ReconciliationContext {
      * @param sourceIds the list of all source object ids in the reconciliation scope
      */
     void setSourceIds(Collection<String> sourceIds) {
-        // Choose a hash based collection as we need fast "contains" handling
-        this.sourceIds = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
-        this.sourceIds.addAll(sourceIds);
+        Set<String> ids;
+        if (compactWorkingSet) {
+            CompactIdSet idSet = newCompactIdSet();
+            idSet.addAll(sourceIds);
+            ids = idSet.seal();
+        } else {
+            // Choose a hash based collection as we need fast "contains" handling
+            ids = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+            ids.addAll(sourceIds);
+        }
+        // With paged source queries the ids of the previous page are replaced
+        closeWorkingSet(this.sourceIds);
+        this.sourceIds = ids;
         this.totalSourceEntries = Integer.valueOf(sourceIds.size());
     }
     
@@ -303,18 +430,42 @@ public class ReconciliationContext {
      * If the target system IDs are case insensitive, the ids are kept in normalized (lower case) form
      */
     void setTargets(ResultIterable targetsIterable) {
-        // Choose a hash based map as we need fast "contains" key handling
-        this.targets = new ConcurrentHashMap<String, JsonValue>();
-        hasTargetsValues = true;
-        for (ResultEntry entry : targetsIterable) {
-            if (entry.getValue() == null) {
-                hasTargetsValues = false;
-                targets.put(entry.getId(), NULL_MARKER);
-            } else {
-                targets.put(entry.getId(), entry.getValue());
+        closeWorkingSet(this.targets);
+        if (compactWorkingSet && !targetsIterable.hasValues()) {
+            CompactIdSet ids = newCompactIdSet();
+            for (String id : targetsIterable.getAllIds()) {
+                ids.add(id);
+            }
+            this.targets = new IdSetTargetMap(ids.seal());
+            hasTargetsValues = false;
+        } else {
+            // Choose a hash based map as we need fast "contains" key handling,
+            // preloaded values can not be kept compact
+            this.targets = new ConcurrentHashMap<String, JsonValue>();
+            hasTargetsValues = true;
+            for (ResultEntry entry : targetsIterable) {
+                if (entry.getValue() == null) {
+                    hasTargetsValues = false;
+                    targets.put(entry.getId(), NULL_MARKER);
+                } else {
+                    targets.put(entry.getId(), entry.getValue());
+                }
             }
         }
         this.totalTargetEntries = Integer.valueOf(targets.size());
+        this.remainingTargetIds = new RemainingTargetIds(targets);
+    }
+
+    private CompactIdSet newCompactIdSet() {
+        return new CompactIdSet(workingSetHeapBudget, workingSetSpillDirectory);
+    }
+
+    private static void closeWorkingSet(Object workingSet) {
+        if (workingSet instanceof CompactIdSet) {
+            ((CompactIdSet) workingSet).close();
+        } else if (workingSet instanceof IdSetTargetMap) {
+            ((IdSetTargetMap) workingSet).close();
+        }
     }
     
     /**
@@ -348,6 +499,77 @@ public class ReconciliationContext {
         return targets;
     }
     
+    /**
+     * @return the ids of the targets not handled yet, removing an id records that the source phase handled it.
+     * Null if no bulk target id query was done.
+     */
+    Collection<String> getRemainingTargetIds() {
+        return remainingTargetIds;
+    }
+
+    /**
+     * @return the targets the source phase did not handle, with their preloaded values if any
+     */
+    Iterator<ResultEntry> getRemainingTargets() {
+        final Iterator<String> ids = remainingTargetIds.iterator();
+        final Map<String, JsonValue> values = hasTargetsValues ? targets : null;
+        return new Iterator<ResultEntry>() {
+            @Override
+            public boolean hasNext() {
+                return ids.hasNext();
+            }
+
+            @Override
+            public ResultEntry next() {
+                String id = ids.next();
+                return new ResultEntry(id, values == null ? null : values.get(id));
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Record the results of a batched correlation query
+     * @param linkQualifier the link qualifier the sources were correlated for
+     * @param results the correlation results by source id
+     */
+    void addBatchCorrelations(String linkQualifier, Map<String, JsonValue> results) {
+        for (Map.Entry<String, JsonValue> result : results.entrySet()) {
+            Map<String, JsonValue> byLinkQualifier = batchCorrelations.get(result.getKey());
+            if (byLinkQualifier == null) {
+                byLinkQualifier = new ConcurrentHashMap<String, JsonValue>();
+                Map<String, JsonValue> existing = batchCorrelations.putIfAbsent(result.getKey(), byLinkQualifier);
+                if (existing != null) {
+                    byLinkQualifier = existing;
+                }
+            }
+            byLinkQualifier.put(linkQualifier, result.getValue());
+        }
+    }
+
+    /**
+     * Take the result of a batched correlation query for a source
+     * @param linkQualifier the link qualifier
+     * @param sourceId the source id
+     * @return the correlation results, or null if the source was not correlated in a batch
+     */
+    JsonValue takeBatchCorrelation(String linkQualifier, String sourceId) {
+        Map<String, JsonValue> byLinkQualifier = batchCorrelations.get(sourceId);
+        return byLinkQualifier == null ? null : byLinkQualifier.remove(linkQualifier);
+    }
+
+    /**
+     * Discard any unused results of batched correlation queries for a source
+     * @param sourceId the source id
+     */
+    void removeBatchCorrelations(String sourceId) {
+        batchCorrelations.remove(sourceId);
+    }
+
     /**
      * @return whether getTargets contains preloaded values
      */
@@ -388,8 +610,13 @@ public class ReconciliationContext {
      * past the completion of the reconciliation run
      */
     private synchronized void cleanupState() {
+        closeWorkingSet(sourceIds);
+        closeWorkingSet(targets);
         sourceIds = null;
         targets = null;
+        remainingTargetIds = null;
+        batchCorrelations.clear();
+        reconStat.closeIds();
         if (executor != null) {
             executor.shutdown();
             executor = null;
@@ -424,4 +651,186 @@ public class ReconciliationContext {
     ReconciliationService getService() {
         return service;
     }
+
+    /**
+     * Read-only view of a compact target id set as the targets map, mapping every contained id to the
+     * null marker as no values are preloaded.
+     */
+    private static final class IdSetTargetMap extends AbstractMap<String, JsonValue> implements Closeable {
+        private final CompactIdSet ids;
+
+        IdSetTargetMap(CompactIdSet ids) {
+            this.ids = ids;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return ids.contains(key);
+        }
+
+        @Override
+        public JsonValue get(Object key) {
+            return ids.contains(key) ? NULL_MARKER : null;
+        }
+
+        @Override
+        public int size() {
+            return ids.size();
+        }
+
+        @Override
+        public Set<Map.Entry<String, JsonValue>> entrySet() {
+            return new AbstractSet<Map.Entry<String, JsonValue>>() {
+                @Override
+                public Iterator<Map.Entry<String, JsonValue>> iterator() {
+                    final Iterator<String> idIter = ids.iterator();
+                    return new Iterator<Map.Entry<String, JsonValue>>() {
+                        @Override
+                        public boolean hasNext() {
+                            return idIter.hasNext();
+                        }
+
+                        @Override
+                        public Map.Entry<String, JsonValue> next() {
+                            return new AbstractMap.SimpleImmutableEntry<>(idIter.next(), NULL_MARKER);
+                        }
+
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return ids.size();
+                }
+            };
+        }
+
+        /**
+         * @param id the id
+         * @return the position of the id in the iteration order, or -1 if absent
+         */
+        int indexOf(String id) {
+            return ids.indexOf(id);
+        }
+
+        @Override
+        public void close() {
+            ids.close();
+        }
+    }
+
+    /**
+     * The ids of the targets not handled by the source phase, as a view of the targets. Removing an id records
+     * that it was handled. Only the handled ids are tracked, as one bit per id for a compact target id set.
+     */
+    private static final class RemainingTargetIds extends AbstractCollection<String> {
+        private final Map<String, JsonValue> targets;
+        // Handled ids by position in the compact target id set, or null for a hash based targets map
+        private final AtomicLongArray handledBits;
+        // Handled ids of a hash based targets map, or null for a compact target id set
+        private final Set<String> handledIds;
+        private final AtomicInteger handledCount = new AtomicInteger();
+
+        RemainingTargetIds(Map<String, JsonValue> targets) {
+            this.targets = targets;
+            if (targets instanceof IdSetTargetMap) {
+                handledBits = new AtomicLongArray((targets.size() + 63) / 64);
+                handledIds = null;
+            } else {
+                handledBits = null;
+                handledIds = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+            }
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!(o instanceof String)) {
+                return false;
+            }
+            boolean handled;
+            if (handledBits != null) {
+                int index = ((IdSetTargetMap) targets).indexOf((String) o);
+                handled = index >= 0 && setBit(index);
+            } else {
+                handled = targets.containsKey(o) && handledIds.add((String) o);
+            }
+            if (handled) {
+                handledCount.incrementAndGet();
+            }
+            return handled;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (handledBits != null) {
+                int index = o instanceof String ? ((IdSetTargetMap) targets).indexOf((String) o) : -1;
+                return index >= 0 && !isBitSet(index);
+            }
+            return targets.containsKey(o) && !handledIds.contains(o);
+        }
+
+        @Override
+        public int size() {
+            return targets.size() - handledCount.get();
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            final Iterator<String> ids = targets.keySet().iterator();
+            return new Iterator<String>() {
+                // Position of the next id of the targets, matching the compact id set iteration order
+                private int index = 0;
+                private String next;
+
+                @Override
+                public boolean hasNext() {
+                    while (next == null && ids.hasNext()) {
+                        String id = ids.next();
+                        boolean handled = handledBits != null ? isBitSet(index) : handledIds.contains(id);
+                        index++;
+                        if (!handled) {
+                            next = id;
+                        }
+                    }
+                    return next != null;
+                }
+
+                @Override
+                public String next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    String id = next;
+                    next = null;
+                    return id;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        private boolean setBit(int index) {
+            long mask = 1L << index;
+            while (true) {
+                long word = handledBits.get(index >>> 6);
+                if ((word & mask) != 0) {
+                    return false;
+                }
+                if (handledBits.compareAndSet(index >>> 6, word, word | mask)) {
+                    return true;
+                }
+            }
+        }
+
+        private boolean isBitSet(int index) {
+            return (handledBits.get(index >>> 6) & (1L << index)) != 0;
+        }
+    }
 }
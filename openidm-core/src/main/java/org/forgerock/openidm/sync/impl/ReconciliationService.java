@@ -12,7 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Portions copyright 2012-2015 ForgeRock AS.
- * Portions Copyright 2020 Wren Security
+ * Portions Copyright 2020-2026 Wren Security.
  */
 package org.forgerock.openidm.sync.impl;
 
@@ -22,13 +22,16 @@ import static org.forgerock.openidm.util.ResourceUtil.notSupported;
 import static org.forgerock.util.query.QueryFilter.and;
 import static org.forgerock.util.query.QueryFilter.equalTo;
 
+import java.io.File;
 import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
@@ -149,6 +152,11 @@ public class ReconciliationService
     Map<String, ReconciliationContext> reconRuns =
             Collections.synchronizedMap(new LinkedHashMap<String, ReconciliationContext>());
 
+    /**
+     * Directories of statistics ids files already cleared of the files of unknown runs, guarded by reconRuns
+     */
+    private final Set<File> sweptStatisticsIdsDirectories = new HashSet<File>();
+
     /**
      *  The approximate max number of runs in COMPLETED state to keep in the recon runs list
      */
@@ -433,11 +441,17 @@ public class ReconciliationService
                         ++completedCount;
                         if (completedCount > maxCompletedRuns) {
                             reconRuns.remove(key);
+                            aRun.getStatistics().deleteIds();
                         }
                     }
                 }
             }
             reconRuns.put(reconContext.getReconId(), reconContext);
+            // Runs before a restart are forgotten, delete their files the first time a directory is used
+            File idsDirectory = reconContext.getStatisticsIdsDirectory();
+            if (idsDirectory != null) {
+                sweepStatisticsIds(idsDirectory);
+            }
         }
     }
 
@@ -454,6 +468,9 @@ public class ReconciliationService
             int maxConcurrentFullRecons = 10; // TODO: make configurable
             fullReconExecutor = Executors.newFixedThreadPool(maxConcurrentFullRecons);
 
+            sweepStatisticsIds(IdentityServer.getFileForWorkingPath(
+                    ReconciliationContext.DEFAULT_STATISTICS_IDS_DIRECTORY));
+
             registerMBean();
         } catch (RuntimeException ex) {
             logger.warn("Configuration invalid and could not be parsed, can not start reconciliation service: "
@@ -464,6 +481,19 @@ public class ReconciliationService
         logger.info("Reconciliation service started.");
     }
 
+    /**
+     * Deletes the statistics ids files of unknown runs in a directory, unless already done since activation.
+     *
+     * @param idsDirectory the directory of the statistics ids files
+     */
+    private void sweepStatisticsIds(File idsDirectory) {
+        synchronized (reconRuns) {
+            if (sweptStatisticsIdsDirectories.add(idsDirectory)) {
+                SituationIds.deleteOrphanedSpillFiles(idsDirectory, new HashSet<String>(reconRuns.keySet()));
+            }
+        }
+    }
+
     /* Currently rely on deactivate/activate to be called by DS if config changes instead
     @Modified
     void modified(ComponentContext compContext) {
@@ -12,12 +12,14 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Portions copyright 2012-2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 package org.forgerock.openidm.sync.impl;
 
 import static org.forgerock.openidm.util.DurationStatistics.nanoToMillis;
 import static org.forgerock.util.Reject.checkNotNull;
 
+import java.io.File;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
@@ -27,6 +29,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 import org.forgerock.openidm.audit.util.Status;
 import org.forgerock.openidm.core.ServerConstants;
+import org.forgerock.openidm.smartevent.core.LatencyHistogram;
 import org.forgerock.openidm.sync.ReconAction;
 import org.forgerock.openidm.util.DateUtil;
 import org.forgerock.openidm.util.DurationStatistics;
@@ -94,8 +97,14 @@ public class ReconciliationStatistic {
 
     public ReconciliationStatistic(ReconciliationContext reconContext) {
         this.reconContext = reconContext;
-        sourceStat = new PhaseStatistic(this, PhaseStatistic.Phase.SOURCE, reconContext.getObjectMapping().getSourceObjectSet());
-        targetStat = new PhaseStatistic(this, PhaseStatistic.Phase.TARGET, reconContext.getObjectMapping().getTargetObjectSet());
+        File idsDirectory = reconContext.getStatisticsIdsDirectory();
+        String idsFilePrefix = idsDirectory != null
+                ? new File(idsDirectory, reconContext.getReconId()).getPath()
+                : null;
+        sourceStat = new PhaseStatistic(this, PhaseStatistic.Phase.SOURCE, reconContext.getObjectMapping().getSourceObjectSet(),
+                reconContext.getStatisticsIdsMode(), reconContext.getStatisticsIdsSampleSize(), idsFilePrefix);
+        targetStat = new PhaseStatistic(this, PhaseStatistic.Phase.TARGET, reconContext.getObjectMapping().getTargetObjectSet(),
+                reconContext.getStatisticsIdsMode(), reconContext.getStatisticsIdsSampleSize(), idsFilePrefix);
         for (Status status : Status.values()) {
             statusProcessed.put(status, new AtomicInteger());
         }
@@ -130,6 +139,22 @@ public class ReconciliationStatistic {
         return targetStat;
     }
     
+    /**
+     * Completes the files holding all processed identifiers, if spilled.
+     */
+    void closeIds() {
+        sourceStat.closeIds();
+        targetStat.closeIds();
+    }
+
+    /**
+     * Deletes the files holding all processed identifiers, if spilled.
+     */
+    void deleteIds() {
+        sourceStat.deleteIds();
+        targetStat.deleteIds();
+    }
+
     public void reconStart() {
         startTime = System.currentTimeMillis();
     }
@@ -353,18 +378,18 @@ public class ReconciliationStatistic {
         final Map<String, Map<String, Long>> resultMap = new HashMap<>(durationStat.size() * 2);
         for (final Entry<String, DurationStatistics> entry : durationStat.entrySet()) {
             final Map<String, Long> valueMap = new HashMap<>();
-            final DurationStatistics stats = entry.getValue();
-
-            // normalize mean, which is an approximation, to never be lower than min
-            final long min = nanoToMillis(stats.min());
-            final long mean = Math.max(nanoToMillis(stats.mean()), min);
+            final LatencyHistogram.Snapshot stats = entry.getValue().snapshot();
 
             valueMap.put("count", stats.count());
             valueMap.put("sum", nanoToMillis(stats.sum()));
-            valueMap.put("min", min);
+            valueMap.put("min", nanoToMillis(stats.min()));
             valueMap.put("max", nanoToMillis(stats.max()));
-            valueMap.put("mean", mean);
+            valueMap.put("mean", nanoToMillis(stats.mean()));
             valueMap.put("stdDev", nanoToMillis(stats.stdDev()));
+            valueMap.put("p50", nanoToMillis(stats.percentile(50)));
+            valueMap.put("p95", nanoToMillis(stats.percentile(95)));
+            valueMap.put("p99", nanoToMillis(stats.percentile(99)));
+            valueMap.put("p999", nanoToMillis(stats.percentile(99.9)));
             resultMap.put(entry.getKey(), valueMap);
         }
         return resultMap;
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Portions copyright 2014-2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 package org.forgerock.openidm.sync.impl;
 
@@ -49,6 +50,13 @@ public class ResultIterable implements Iterable<ResultEntry> {
         return allIds;
     }
     
+    /**
+     * @return whether the entries carry their values
+     */
+    public boolean hasValues() {
+        return values != null;
+    }
+
     /**
      * Remove any entries that are not in the supplied ids
      * @param ids of entries to keep
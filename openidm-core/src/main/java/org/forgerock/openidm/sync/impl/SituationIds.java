@@ -0,0 +1,335 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.sync.impl;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The identifiers of the entries a reconciliation phase processed in one situation.
+ * <p>
+ * The count is always exact and cheap to update from concurrent workers. Depending on the {@link Mode} either all
+ * identifiers are kept in memory, or only a bounded random sample of them, optionally along with the full list
+ * written to a gzip compressed file with one identifier per line.
+ * <p>
+ * Workers only queue the identifiers to write. Whichever worker fills a batch writes the queued identifiers if no
+ * other worker is already writing, so workers never wait on the compressed file unless the queue falls far behind.
+ */
+final class SituationIds implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SituationIds.class);
+
+    /** Suffix of the files holding all identifiers */
+    static final String SPILL_FILE_SUFFIX = ".ids.gz";
+
+    /** Number of queued identifiers after which a worker writes them, if no other worker is writing */
+    private static final int SPILL_BATCH_SIZE = 1024;
+
+    /** Number of queued identifiers after which workers wait to write them, bounding the queue */
+    private static final int SPILL_QUEUE_LIMIT = 64 * SPILL_BATCH_SIZE;
+
+    /** How the identifiers are kept, configured by the {@code ids} property of the mapping reconStatistics */
+    enum Mode {
+        /** Keep every identifier in memory */
+        ALL("all"),
+        /** Keep a bounded random sample of the identifiers in memory */
+        SAMPLE("sample"),
+        /** Keep a bounded random sample in memory and write every identifier to a compressed file */
+        SPILL("spill");
+
+        private final String config;
+
+        Mode(String config) {
+            this.config = config;
+        }
+
+        /**
+         * @param config the configured mode
+         * @return the mode, or null if unknown
+         */
+        static Mode forConfig(String config) {
+            for (Mode mode : values()) {
+                if (mode.config.equals(config)) {
+                    return mode;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final LongAdder count = new LongAdder();
+    /** All identifiers, or the sample guarded by its own monitor */
+    private final List<String> ids;
+    /** Maximum size of the sample, or 0 if all identifiers are kept */
+    private final int sampleSize;
+    private final File spillFile;
+    /** Identifiers not yet written to the spill file */
+    private final Queue<String> spillQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger spillQueued = new AtomicInteger();
+    /** Guards the spill writer and file, only one worker writes at a time */
+    private final ReentrantLock spillLock = new ReentrantLock();
+    private Writer spillWriter;
+    private volatile boolean spillStarted;
+    private volatile boolean spillClosed;
+
+    /**
+     * Creates the identifiers of a situation.
+     *
+     * @param mode how the identifiers are kept
+     * @param sampleSize maximum number of identifiers kept in memory unless all are kept
+     * @param spillFile the file all identifiers are written to in {@link Mode#SPILL} mode, created on the first
+     *                  identifier
+     */
+    SituationIds(Mode mode, int sampleSize, File spillFile) {
+        if (mode == Mode.ALL) {
+            this.ids = Collections.synchronizedList(new ArrayList<String>());
+            this.sampleSize = 0;
+        } else {
+            this.ids = new ArrayList<>(Math.min(sampleSize, 1024));
+            this.sampleSize = Math.max(sampleSize, 1);
+        }
+        this.spillFile = mode == Mode.SPILL ? spillFile : null;
+    }
+
+    /**
+     * Records a processed identifier.
+     *
+     * @param id the identifier
+     */
+    void add(String id) {
+        count.increment();
+        if (sampleSize == 0) {
+            ids.add(id);
+        } else {
+            sample(id);
+        }
+        if (spillFile != null) {
+            spill(id);
+        }
+    }
+
+    /**
+     * Reservoir sampling: the n-th identifier replaces a random one of the sample with probability sampleSize/n.
+     * Concurrent workers may see a slightly stale n, which only skews the sample, never the count. Once the sample
+     * is full the monitor is only taken for the few identifiers that enter it.
+     */
+    private void sample(String id) {
+        long n = count.sum();
+        if (n > sampleSize && ThreadLocalRandom.current().nextLong(n) >= sampleSize) {
+            return;
+        }
+        synchronized (ids) {
+            if (ids.size() < sampleSize) {
+                ids.add(id);
+            } else {
+                ids.set(ThreadLocalRandom.current().nextInt(sampleSize), id);
+            }
+        }
+    }
+
+    private void spill(String id) {
+        if (spillClosed) {
+            return;
+        }
+        spillQueue.add(id);
+        int queued = spillQueued.incrementAndGet();
+        if (queued >= SPILL_QUEUE_LIMIT) {
+            spillLock.lock();
+        } else if (queued < SPILL_BATCH_SIZE || !spillLock.tryLock()) {
+            return;
+        }
+        try {
+            writeQueued();
+        } finally {
+            spillLock.unlock();
+        }
+    }
+
+    /**
+     * Writes the queued identifiers to the spill file, the spill lock must be held.
+     */
+    private void writeQueued() {
+        String id;
+        while ((id = spillQueue.poll()) != null) {
+            spillQueued.decrementAndGet();
+            if (spillClosed) {
+                continue;
+            }
+            try {
+                if (spillWriter == null) {
+                    spillFile.getParentFile().mkdirs();
+                    spillWriter = new BufferedWriter(new OutputStreamWriter(
+                            new GZIPOutputStream(new FileOutputStream(spillFile)), StandardCharsets.UTF_8));
+                    spillStarted = true;
+                }
+                spillWriter.write(id);
+                spillWriter.write('\n');
+            } catch (IOException e) {
+                logger.warn("Failed to write reconciliation identifiers to {}, no longer writing them", spillFile, e);
+                closeWriter();
+            }
+        }
+    }
+
+    /**
+     * @return the exact number of identifiers recorded
+     */
+    long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return all identifiers, or a copy of the sample of the identifiers
+     */
+    List<String> getIds() {
+        if (sampleSize == 0) {
+            return ids;
+        }
+        synchronized (ids) {
+            return new ArrayList<>(ids);
+        }
+    }
+
+    /**
+     * @return the file holding all identifiers, or null if none was written
+     */
+    File getSpillFile() {
+        return spillStarted ? spillFile : null;
+    }
+
+    /**
+     * @return the count and identifiers, plus the file holding all identifiers if any
+     */
+    Map<String, Object> asMap() {
+        Map<String, Object> result = new HashMap<String, Object>();
+        result.put("count", getCount());
+        result.put("ids", getIds());
+        File file = getSpillFile();
+        if (file != null) {
+            result.put("idsFile", file.getAbsolutePath());
+        }
+        return result;
+    }
+
+    /**
+     * Completes the file holding all identifiers. Identifiers recorded afterwards are only counted and sampled.
+     */
+    @Override
+    public void close() {
+        if (spillFile == null) {
+            return;
+        }
+        spillLock.lock();
+        try {
+            // write what was queued before closing, anything queued concurrently is dropped
+            writeQueued();
+            closeWriter();
+        } finally {
+            spillLock.unlock();
+        }
+    }
+
+    /**
+     * Stops writing and closes the spill file, the spill lock must be held.
+     */
+    private void closeWriter() {
+        spillClosed = true;
+        if (spillWriter != null) {
+            try {
+                spillWriter.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close reconciliation identifiers file {}", spillFile, e);
+            }
+            spillWriter = null;
+        }
+    }
+
+    /**
+     * Closes and deletes the file holding all identifiers, if any.
+     */
+    void delete() {
+        if (spillFile == null) {
+            return;
+        }
+        spillLock.lock();
+        try {
+            closeWriter();
+            spillQueue.clear();
+            if (spillStarted && !spillFile.delete()) {
+                logger.debug("Failed to delete reconciliation identifiers file {}", spillFile);
+            }
+            spillStarted = false;
+        } finally {
+            spillLock.unlock();
+        }
+    }
+
+    /**
+     * Deletes the files holding all identifiers left in a directory by reconciliation runs that are no longer known,
+     * such as the runs before a restart.
+     *
+     * @param directory the directory of the files
+     * @param reconIds the identifiers of the known reconciliation runs, whose files are kept
+     */
+    static void deleteOrphanedSpillFiles(File directory, Set<String> reconIds) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (!name.endsWith(SPILL_FILE_SUFFIX) || isKnownRun(name, reconIds)) {
+                continue;
+            }
+            if (file.delete()) {
+                logger.debug("Deleted orphaned reconciliation identifiers file {}", file);
+            } else {
+                logger.debug("Failed to delete orphaned reconciliation identifiers file {}", file);
+            }
+        }
+    }
+
+    private static boolean isKnownRun(String fileName, Set<String> reconIds) {
+        for (String reconId : reconIds) {
+            if (fileName.startsWith(reconId + "-")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
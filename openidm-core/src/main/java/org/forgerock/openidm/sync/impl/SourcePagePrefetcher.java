@@ -0,0 +1,131 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.sync.impl;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.forgerock.openidm.sync.SynchronizationException;
+import org.forgerock.openidm.sync.impl.ReconciliationStatistic.DurationMetric;
+import org.forgerock.services.context.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fetches the pages of a paged reconciliation source query on a dedicated thread, ahead of the page
+ * currently being reconciled.
+ * <p>
+ * Pages are handed off through a bounded queue, so the fetcher blocks once the configured number of
+ * pages is waiting to be reconciled. The pages are only activated on the reconciliation context by
+ * the consumer, so the source ids in scope always match the page being processed. The pages are
+ * queried within the context of the reconciliation, as the first page is.
+ */
+class SourcePagePrefetcher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SourcePagePrefetcher.class);
+
+    /** Marker put on the queue after the last page */
+    private static final Object END = new Object();
+
+    private final ReconciliationContext reconContext;
+    private final Context context;
+    private final int pageSize;
+    private final BlockingQueue<Object> pages;
+    private final Thread fetcher;
+
+    /**
+     * Creates the prefetcher; {@link #start()} must be called to begin fetching.
+     *
+     * @param reconContext the context of the reconciliation run
+     * @param context the request context the reconciliation runs within
+     * @param pageSize the source query page size
+     * @param pagingCookie the paging cookie returned with the first page
+     * @param prefetchPages the maximum number of fetched pages waiting to be reconciled
+     */
+    SourcePagePrefetcher(final ReconciliationContext reconContext, final Context context, final int pageSize,
+            final String pagingCookie, final int prefetchPages) {
+        this.reconContext = reconContext;
+        this.context = context;
+        this.pageSize = pageSize;
+        this.pages = new ArrayBlockingQueue<>(prefetchPages);
+        this.fetcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                fetchPages(pagingCookie);
+            }
+        }, "recon-source-prefetch-" + reconContext.getReconId());
+        this.fetcher.setDaemon(true);
+    }
+
+    /**
+     * Starts fetching the pages following the first one.
+     */
+    void start() {
+        fetcher.start();
+    }
+
+    /**
+     * Takes the next page, blocking until it has been fetched.
+     *
+     * @return the next page of source query results
+     * @throws SynchronizationException if the page query failed or the reconciliation was canceled
+     * @throws InterruptedException if interrupted while waiting for the page
+     */
+    ReconQueryResult nextPage() throws SynchronizationException, InterruptedException {
+        Object page = pages.take();
+        if (page instanceof SynchronizationException) {
+            throw (SynchronizationException) page;
+        } else if (page == END) {
+            // The fetcher only stops early when the reconciliation has been canceled
+            reconContext.checkCanceled();
+            throw new SynchronizationException("No further source page available for recon "
+                    + reconContext.getReconId());
+        }
+        return (ReconQueryResult) page;
+    }
+
+    /**
+     * Stops the fetcher thread if it is still running.
+     */
+    void stop() {
+        fetcher.interrupt();
+    }
+
+    private void fetchPages(String pagingCookie) {
+        ObjectSetContext.push(context);
+        try {
+            try {
+                while (pagingCookie != null && !reconContext.isCanceled()) {
+                    LOGGER.debug("Prefetching next page of source ids for recon {}", reconContext.getReconId());
+                    final long pagedSourceQueryStart = ObjectMapping.startNanoTime(reconContext);
+                    ReconQueryResult page = reconContext.querySourcePage(pageSize, pagingCookie);
+                    ObjectMapping.addDuration(reconContext, DurationMetric.sourceQuery, pagedSourceQueryStart);
+                    pages.put(page);
+                    pagingCookie = page.getPagingCookie();
+                }
+                pages.put(END);
+            } catch (SynchronizationException e) {
+                pages.put(e);
+            } catch (RuntimeException e) {
+                pages.put(new SynchronizationException("Failed to query next page of source ids", e));
+            }
+        } catch (InterruptedException e) {
+            LOGGER.debug("Source page prefetch interrupted for recon {}", reconContext.getReconId());
+        } finally {
+            ObjectSetContext.pop();
+        }
+    }
+}
@@ -12,7 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Portions copyright 2011-2016 ForgeRock AS.
- * Portions Copyright 2020 Wren Security
+ * Portions Copyright 2020-2026 Wren Security
  */
 
 package org.forgerock.openidm.sync.impl;
@@ -57,8 +57,8 @@ class SourceSyncOperation extends SyncOperation {
      */
     SourceSyncOperation(ObjectMapping objectMapping, Context context) {
         super(objectMapping, context);
-        correlation = new Correlation(objectMapping);
-        correlateEmptyTargetSet = objectMapping.getConfig().get("correlateEmptyTargetSet").defaultTo(false).asBoolean();
+        correlation = objectMapping.getPlan().getCorrelation();
+        correlateEmptyTargetSet = objectMapping.getPlan().isCorrelateEmptyTargetSet();
     }
 
     @Override
@@ -338,10 +338,16 @@ class SourceSyncOperation extends SyncOperation {
             if (sourceObject == null) {
                 throw new SynchronizationException("Source object " + getSourceObjectId() + " no longer exists");
             }
+            // Use the result of a batched correlation query if the source was correlated in a batch
+            JsonValue batchResult = (sourceObjectOverride == null && reconContext != null)
+                    ? reconContext.takeBatchCorrelation(getLinkQualifier(), getSourceObjectId())
+                    : null;
             Map<String, Object> scope = new HashMap<String, Object>();
             scope.put("source", sourceObject.asMap());
             try {
-                result = correlation.correlate(scope, getLinkQualifier(), getContext(), reconContext);
+                result = batchResult != null
+                        ? batchResult
+                        : correlation.correlate(scope, getLinkQualifier(), getContext(), reconContext);
             } finally {
                 measure.end();
             }
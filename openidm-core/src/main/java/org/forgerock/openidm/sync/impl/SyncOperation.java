@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Portions copyright 2011-2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.openidm.sync.impl;
@@ -20,8 +21,6 @@ import static org.forgerock.json.JsonValue.*;
 import static org.forgerock.json.resource.Requests.*;
 
 import javax.script.ScriptException;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -34,8 +33,6 @@ import org.forgerock.json.resource.NotFoundException;
 import org.forgerock.json.resource.ResourceException;
 import org.forgerock.json.resource.ResourceResponse;
 import org.forgerock.json.resource.UpdateRequest;
-import org.forgerock.openidm.condition.Condition;
-import org.forgerock.openidm.condition.Conditions;
 import org.forgerock.openidm.config.enhanced.InternalErrorException;
 import org.forgerock.openidm.smartevent.EventEntry;
 import org.forgerock.openidm.smartevent.Publisher;
@@ -44,9 +41,7 @@ import org.forgerock.openidm.sync.ReconAction;
 import org.forgerock.openidm.sync.SyncContext;
 import org.forgerock.openidm.sync.SynchronizationException;
 import org.forgerock.openidm.util.Script;
-import org.forgerock.openidm.util.Scripts;
 import org.forgerock.script.exception.ScriptThrownException;
-import org.forgerock.script.source.SourceUnit;
 import org.forgerock.services.context.Context;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -57,41 +52,8 @@ abstract class SyncOperation {
 
     protected final ObjectMapping objectMapping;
 
-    /** a script to execute when a target object is to be created */
-    private final Script onCreateScript;
-
-    /** a script to execute when a target object is to be updated */
-    private final Script onUpdateScript;
-
-    /** a script to execute when a target object is to be deleted */
-    private final Script onDeleteScript;
-
-    /** a script to execute when a source object is to be linked to a target object */
-    private final Script onLinkScript;
-
-    /** a script to execute when a source object and a target object are to be unlinked */
-    private final Script onUnlinkScript;
-
-    /** a script to execute when sync has been performed on managed/user object */
-    private final Script postMapping;
-
-    /** a script that determines if a source object is valid to be mapped */
-    private final Script validSource;
-
-    /** a script that determines if a target object is valid to be mapped */
-    private final Script validTarget;
-
-    /** a script that applies the effective assignments as part of the mapping */
-    private Script defaultMapping;
-
-    /** an additional set of key-value conditions to be met for a source object to be valid to be mapped */
-    private final Condition sourceCondition;
-
-    /** an array of property-mapping objects */
-    private final List<PropertyMapping> properties = new ArrayList<>();
-
-    /** a map of {@link Policy} objects */
-    private Map<String, List<Policy>> policies = new HashMap<>();
+    /** the execution plan of the mapping, shared by its sync operations */
+    private final MappingPlan plan;
 
     /**
      * A reconciliation ID
@@ -161,37 +123,7 @@ abstract class SyncOperation {
         this.context = new SyncContext(context, objectMapping.getName());
         linkObject = new Link(objectMapping);
 
-        final JsonValue config = objectMapping.getConfig();
-        validSource = Scripts.newScript(config.get("validSource"));
-        validTarget = Scripts.newScript(config.get("validTarget"));
-        sourceCondition = Conditions.newCondition(config.get("sourceCondition"));
-        onCreateScript = Scripts.newScript(config.get("onCreate"));
-        onUpdateScript = Scripts.newScript(config.get("onUpdate"));
-        onDeleteScript = Scripts.newScript(config.get("onDelete"));
-        onLinkScript = Scripts.newScript(config.get("onLink"));
-        onUnlinkScript = Scripts.newScript(config.get("onUnlink"));
-        defaultMapping = Scripts.newScript(config.get("defaultMapping").defaultTo(
-                json(object(field(SourceUnit.ATTR_TYPE, "text/javascript"),
-                        field(SourceUnit.ATTR_NAME, "roles/defaultMapping.js")))));
-        postMapping = Scripts.newScript(config.get("postMapping").defaultTo(
-                json(object(field(SourceUnit.ATTR_TYPE, "groovy"),
-                        field(SourceUnit.ATTR_NAME, "roles/defaultPostMapping.groovy")))));
-
-        for (JsonValue jv : config.get("properties").expect(List.class)) {
-            properties.add(new PropertyMapping(jv));
-        }
-
-        for (JsonValue jv : config.get("policies").expect(List.class)) {
-            String situation = jv.get("situation").asString();
-            if (policies.containsKey(situation)) {
-                List<Policy> policy = policies.get(situation);
-                policy.add(new Policy(jv));
-                continue;
-            }
-            List<Policy> policyArrayList = new ArrayList<Policy>();
-            policies.put(situation, policyArrayList);
-            policyArrayList.add(new Policy(jv));
-        }
+        plan = objectMapping.getPlan();
     }
 
     /**
@@ -377,19 +309,6 @@ abstract class SyncOperation {
         }
     }
 
-    /**
-     * Returns all possible policies for a given situation.
-     *
-     * @param situation to get policies for
-     * @return List of policies for given situation
-     */
-    private List<Policy> getPolicies(Situation situation) {
-       if (policies.get(situation.toString()) == null) {
-           return Collections.emptyList();
-       }
-        return policies.get(situation.toString());
-    }
-
     /**
      * Sets the action and active policy based on the current situation.
      *
@@ -399,7 +318,7 @@ abstract class SyncOperation {
         if (situation != null) {
             // start with a reasonable default
             action = situation.getDefaultAction();
-            List<Policy> situationPolicies = getPolicies(situation);
+            List<Policy> situationPolicies = plan.getPolicies(situation);
             for (Policy policy : situationPolicies) {
                 if (policy.getCondition().evaluate(
                         json(object(
@@ -448,7 +367,7 @@ abstract class SyncOperation {
                             targetObjectAccessor = new LazyObjectAccessor(
                                     objectMapping.getConnectionFactory(), objectMapping.getTargetObjectSet(),
                                     createTargetObject.get("_id").asString(), createTargetObject);
-                            execScript("onCreate", onCreateScript);
+                            execScript("onCreate", plan.getOnCreateScript());
 
                             // Allow the early link creation as soon as the target identifier is known
                             String sourceId = getSourceObjectId();
@@ -463,7 +382,7 @@ abstract class SyncOperation {
                             if (!objectMapping.isLinkingEnabled()) {
                                 LOGGER.debug("Linking disabled for {} during {}, skipping additional link processing", sourceId, reconId);
                                 // execute the post defaultPostMapping script to add lastSync attribute to managed user
-                                execScript("postMapping", postMapping);
+                                execScript("postMapping", plan.getPostMapping());
                                 break;
                             }
 
@@ -472,7 +391,7 @@ abstract class SyncOperation {
                                 linkCreated = true;
                                 LOGGER.debug("Pending link for {} during {} has already been created, skipping additional link processing", sourceId, reconId);
                                 // execute the post defaultPostMapping script to add lastSync attribute to managed user
-                                execScript("postMapping", postMapping);
+                                execScript("postMapping", plan.getPostMapping());
                                 break;
                             } else {
                                 LOGGER.debug("Pending link for {} during {} not yet resolved, proceed to link processing", sourceId, reconId);
@@ -516,20 +435,20 @@ abstract class SyncOperation {
                             }
                             // TODO: Detect change of source id, and update link accordingly.
                             if (action == ReconAction.CREATE || action == ReconAction.LINK) {
-                                execScript("postMapping", postMapping);
+                                execScript("postMapping", plan.getPostMapping());
                                 break; // do not update target
                             }
                             if (getSourceObject() != null && getTargetObject() != null) {
                                 applyMappings(context, getSourceObject(), oldValue, getTargetObject(), oldTarget,
                                         linkObject.linkQualifier, reconContext);
-                                execScript("onUpdate", onUpdateScript, oldTarget);
+                                execScript("onUpdate", plan.getOnUpdateScript(), oldTarget);
                                 // only update if target changes
                                 if (!oldTarget.isEqualTo(getTargetObject())) {
                                     updateTargetObject(context, getTargetObject(), targetId, reconContext);
                                 }
                             }
                             // execute the defaultPostMapping script to add lastSync attribute to managed user
-                            execScript("postMapping", postMapping);
+                            execScript("postMapping", plan.getPostMapping());
                             break; // terminate UPDATE
                         case DELETE:
                             if (objectMapping.isLinkingEnabled()) {
@@ -539,7 +458,7 @@ abstract class SyncOperation {
                             }
                             // forgiving; does nothing if no target
                             if (getTargetObjectId() != null && getTargetObject() != null) {
-                                execScript("onDelete", onDeleteScript);
+                                execScript("onDelete", plan.getOnDeleteScript());
                                 deleteTargetObject(context, getTargetObject(), reconContext);
                                 // Represent as not existing anymore so it gets removed from processed targets
                                 targetObjectAccessor = new LazyObjectAccessor(objectMapping.getConnectionFactory(),
@@ -556,7 +475,7 @@ abstract class SyncOperation {
                             // falls through to unlink the deleted target
                         case UNLINK:
                             if (linkObject._id != null) { // forgiving; does nothing if no link exists
-                                execScript("onUnlink", onUnlinkScript);
+                                execScript("onUnlink", plan.getOnUnlinkScript());
 
                                 final long deleteLinkObjectStart = ObjectMapping.startNanoTime(reconContext);
                                 linkObject.delete(context);
@@ -576,7 +495,7 @@ abstract class SyncOperation {
             case NOREPORT:
                 if (!ignorePostAction) {
                     if (null == activePolicy) {
-                        List<Policy> situationPolicies = getPolicies(situation);
+                        List<Policy> situationPolicies = plan.getPolicies(situation);
                         for (Policy policy : situationPolicies) {
                             // assigns the first policy found, as active policy
                             activePolicy = policy;
@@ -611,7 +530,7 @@ abstract class SyncOperation {
             throws SynchronizationException {
         Link linkObject = new Link(objectMapping);
         linkObject.setLinkQualifier(this.linkObject.linkQualifier);
-        execScript("onLink", onLinkScript);
+        execScript("onLink", plan.getOnLinkScript());
         linkObject.sourceId = sourceId;
         linkObject.targetId = targetId;
         linkObject.create(context);
@@ -630,7 +549,7 @@ abstract class SyncOperation {
         JsonValue params = json(object(
                 field("source", sourceObjectAccessor.getObject()),
                 field("linkQualifier", linkQualifier)));
-        return sourceCondition.evaluate(params, context);
+        return plan.getSourceCondition().evaluate(params, context);
     }
 
     /**
@@ -650,6 +569,7 @@ abstract class SyncOperation {
      */
     protected boolean isSourceValid(JsonValue sourceObjectOverride) throws SynchronizationException {
         boolean result = false;
+        final Script validSource = plan.getValidSource();
         if (hasSourceObject() || sourceObjectOverride != null) { // must have a source object to be valid
             if (validSource != null) {
                 final JsonValue sourceObject = (sourceObjectOverride != null)
@@ -692,6 +612,7 @@ abstract class SyncOperation {
 
     protected boolean isTargetValid() throws SynchronizationException {
         boolean result = false;
+        final Script validTarget = plan.getValidTarget();
         if (hasTargetObject()) { // must have a target object to qualify
             if (validTarget != null && getTargetObject() != null) { // forces pulling object into memory
                 Map<String, Object> scope = new HashMap<String, Object>();
@@ -903,7 +824,7 @@ abstract class SyncOperation {
             JsonValue existingTarget, String linkQualifier, ReconciliationContext reconContext) throws SynchronizationException {
         EventEntry measure = Publisher.start(objectMapping.getObjectMappingEventName(), source, null);
         try {
-            for (PropertyMapping property : properties) {
+            for (PropertyMapping property : plan.getProperties()) {
                 final long startNanoTime = ObjectMapping.startNanoTime(reconContext, property.hasTransformScript());
                 property.apply(source, oldSource, target, existingTarget, linkQualifier, context);
                 ObjectMapping.addDuration(reconContext, ReconciliationStatistic.DurationMetric.propertyMappingScript, startNanoTime);
@@ -934,6 +855,7 @@ abstract class SyncOperation {
             JsonValue existingTarget, String linkQualifier, ReconciliationContext reconContext)
             throws SynchronizationException {
         JsonValue result = null;
+        final Script defaultMapping = plan.getDefaultMapping();
         if (defaultMapping != null) {
             Map<String, Object> queryScope = new HashMap<String, Object>();
             queryScope.put("source", source.asMap());
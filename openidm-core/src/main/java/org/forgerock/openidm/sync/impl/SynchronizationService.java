@@ -12,7 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Portions copyright 2011-2016 ForgeRock AS.
- * Portions Copyright 2020 Wren Security
+ * Portions Copyright 2020-2026 Wren Security.
  */
 package org.forgerock.openidm.sync.impl;
 
@@ -31,6 +31,9 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
 
 import org.forgerock.audit.events.AuditEvent;
 import org.forgerock.guava.common.base.Function;
@@ -54,6 +57,7 @@ import org.forgerock.json.resource.ResourceResponse;
 import org.forgerock.json.resource.SingletonResourceProvider;
 import org.forgerock.json.resource.UpdateRequest;
 import org.forgerock.openidm.config.enhanced.EnhancedConfig;
+import org.forgerock.openidm.core.IdentityServer;
 import org.forgerock.openidm.core.ServerConstants;
 import org.forgerock.openidm.quartz.impl.ExecutionException;
 import org.forgerock.openidm.quartz.impl.ScheduledService;
@@ -111,6 +115,9 @@ public class SynchronizationService implements SingletonResourceProvider, Schedu
     /** The resource name action parameter. */
     public static final String ACTION_PARAM_RESOURCE_NAME = "resourceName";
 
+    /** Property setting the number of lanes syncing the mappings of an implicit sync in parallel, 0 to disable */
+    static final String IMPLICIT_SYNC_LANES_PROPERTY = "openidm.sync.implicit.lanes";
+
     /** The Connection Factory */
     @Reference(policy = ReferencePolicy.STATIC)
     protected IDMConnectionFactory connectionFactory;
@@ -138,12 +145,30 @@ public class SynchronizationService implements SingletonResourceProvider, Schedu
     @Reference(policy = ReferencePolicy.DYNAMIC)
     private volatile EnhancedConfig enhancedConfig;
 
+    /** Lanes syncing the mappings of an implicit sync in parallel, null to sync them on the calling thread */
+    private volatile KeyedExecutor implicitSyncLanes;
+
     @Activate
     protected void activate(ComponentContext context) {
+        // Until we have a sync service config, allow enabling it via a property
+        final int lanes = Integer.parseInt(
+                IdentityServer.getInstance().getProperty(IMPLICIT_SYNC_LANES_PROPERTY, "0"));
+        if (lanes > 0) {
+            implicitSyncLanes = new KeyedExecutor("implicitSync", lanes);
+            logger.info("Syncing mappings of implicit synchronization on {} parallel lanes", lanes);
+        }
     }
 
     @Deactivate
     protected void deactivate(ComponentContext context) {
+        if (implicitSyncLanes != null) {
+            implicitSyncLanes.shutdown();
+            implicitSyncLanes = null;
+        }
+    }
+
+    void setImplicitSyncLanes(KeyedExecutor implicitSyncLanes) {
+        this.implicitSyncLanes = implicitSyncLanes;
     }
 
     @Modified
@@ -169,6 +194,11 @@ public class SynchronizationService implements SingletonResourceProvider, Schedu
 
     /**
      * Synchronize all mappings; keeping track of success/failure conditions.
+     * <p>
+     * When the implicit sync lanes are enabled and more than one mapping matches, the mappings are synced in
+     * parallel, keyed by mapping and source object so that the syncs of an object by a mapping stay in order. A
+     * failed mapping then does not skip the following ones. Otherwise the mappings are synced in order on the calling
+     * thread, skipping the remaining mappings once one fails.
      *
      * @param action the {@code SyncAction} to perform
      * @param resourceContainer the source object set
@@ -176,8 +206,8 @@ public class SynchronizationService implements SingletonResourceProvider, Schedu
      * @returns a JsonValue list of ObjectMappings' sync results
      * @throws SynchronizationException on failure to sync one of the mappings
      */
-    private JsonValue syncAllMappings(Context context, SyncAction action, final String resourceContainer, final String resourceId)
-            throws SynchronizationException {
+    private JsonValue syncAllMappings(final Context context, final SyncAction action, final String resourceContainer,
+            final String resourceId) throws SynchronizationException {
         final JsonValue syncDetails = new JsonValue(new ArrayList<Object>());
         SynchronizationException exceptionPending = null;
 
@@ -195,35 +225,28 @@ public class SynchronizationService implements SingletonResourceProvider, Schedu
                         && objectMapping.isSourceObject(resourceContainer, resourceId);
             }
         };
-
-        for (final ObjectMapping mapping : FluentIterable.from(mappings).filter(thatMatchSource)) {
-            JsonValue mappingResults = json(array());
-            MappingSyncResult result = MappingSyncResult.SUCCESSFUL;
-            try {
+        final List<ObjectMapping> matchingMappings = FluentIterable.from(mappings).filter(thatMatchSource).toList();
+
+        final KeyedExecutor lanes = implicitSyncLanes;
+        if (lanes != null && matchingMappings.size() > 1 && !lanes.isLaneThread()) {
+            // a sync running on a lane syncs the mappings it triggers inline, as it must not wait for the lanes
+            exceptionPending = syncMappingsInParallel(lanes, context, action, matchingMappings,
+                    resourceContainer + "/" + resourceId, syncDetails);
+        } else {
+            for (final ObjectMapping mapping : matchingMappings) {
                 if (exceptionPending == null) {
                     // No failures yet, perform sync
-                    // This operation returns a list which will contain more than one result if
-                    // there are multiple targets to sync the source to
-                    mappingResults = action.sync(context, mapping);
+                    try {
+                        // This operation returns a list which will contain more than one result if
+                        // there are multiple targets to sync the source to
+                        addMappingResults(syncDetails, mapping, action.sync(context, mapping),
+                                MappingSyncResult.SUCCESSFUL);
+                    } catch (SynchronizationException e) {
+                        exceptionPending = addFailedMappingResult(syncDetails, mapping, e);
+                    }
                 } else {
                     // we've already failed, skip the sync attempt
-                    result = MappingSyncResult.SKIPPED;
-                }
-            } catch (SynchronizationException e) {
-                // failed to sync; store the exception and mark as failed
-                exceptionPending = new SynchronizationException(e.getMessage(), e.getCause());
-                // the exception detail contains the mapping result
-                JsonValue failedResult = e.getDetail();
-                failedResult.put("cause", exceptionPending.toJsonValue().getObject());
-                mappingResults.add(failedResult);
-                result = MappingSyncResult.FAILED;
-            } finally {
-                // Loop over each result, setting result fields and adding to syncDetails list
-                for (JsonValue mappingResult : mappingResults) {
-                    mappingResult.put("result", result.name());
-                    mappingResult.put("mapping", mapping.getName());
-                    mappingResult.put("targetObjectSet", mapping.getTargetObjectSet());
-                    syncDetails.add(mappingResult);
+                    addMappingResults(syncDetails, mapping, json(array()), MappingSyncResult.SKIPPED);
                 }
             }
         }
@@ -238,6 +261,112 @@ public class SynchronizationService implements SingletonResourceProvider, Schedu
         return syncDetails;
     }
 
+    /**
+     * Syncs the mappings on the implicit sync lanes and waits for all of them, adding their results to the sync
+     * details in mapping order.
+     *
+     * @return the failure of the first failed mapping, null if none failed
+     */
+    private SynchronizationException syncMappingsInParallel(final KeyedExecutor lanes, final Context context,
+            final SyncAction action, final List<ObjectMapping> matchingMappings, final String resourceName,
+            final JsonValue syncDetails) {
+        final List<Future<JsonValue>> futures = new ArrayList<>(matchingMappings.size());
+        for (final ObjectMapping mapping : matchingMappings) {
+            futures.add(lanes.submit(mapping.getName() + ":" + resourceName, new Callable<JsonValue>() {
+                @Override
+                public JsonValue call() throws SynchronizationException {
+                    ObjectSetContext.push(context);
+                    try {
+                        return action.sync(context, mapping);
+                    } finally {
+                        ObjectSetContext.pop();
+                    }
+                }
+            }));
+        }
+
+        SynchronizationException exceptionPending = null;
+        for (int i = 0; i < matchingMappings.size(); i++) {
+            final ObjectMapping mapping = matchingMappings.get(i);
+            SynchronizationException failure = null;
+            try {
+                addMappingResults(syncDetails, mapping, awaitUninterruptibly(futures.get(i)),
+                        MappingSyncResult.SUCCESSFUL);
+            } catch (java.util.concurrent.ExecutionException e) {
+                failure = e.getCause() instanceof SynchronizationException
+                        ? (SynchronizationException) e.getCause()
+                        : newMappingFailure(e.getCause());
+            } catch (CancellationException e) {
+                // the lanes have been shut down
+                failure = newMappingFailure(e);
+            }
+            if (failure != null) {
+                final SynchronizationException mappingException =
+                        addFailedMappingResult(syncDetails, mapping, failure);
+                if (exceptionPending == null) {
+                    exceptionPending = mappingException;
+                }
+            }
+        }
+        return exceptionPending;
+    }
+
+    /**
+     * Waits for the result of a mapping sync, even if interrupted as the sync keeps running on its lane.
+     */
+    private static JsonValue awaitUninterruptibly(Future<JsonValue> future)
+            throws java.util.concurrent.ExecutionException {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Adds the results of a mapping to the sync details.
+     */
+    private static void addMappingResults(JsonValue syncDetails, ObjectMapping mapping, JsonValue mappingResults,
+            MappingSyncResult result) {
+        // Loop over each result, setting result fields and adding to syncDetails list
+        for (JsonValue mappingResult : mappingResults) {
+            mappingResult.put("result", result.name());
+            mappingResult.put("mapping", mapping.getName());
+            mappingResult.put("targetObjectSet", mapping.getTargetObjectSet());
+            syncDetails.add(mappingResult);
+        }
+    }
+
+    /**
+     * Adds the result of a failed mapping to the sync details.
+     *
+     * @return the exception to throw for the failure
+     */
+    private static SynchronizationException addFailedMappingResult(JsonValue syncDetails, ObjectMapping mapping,
+            SynchronizationException e) {
+        final SynchronizationException exceptionPending = new SynchronizationException(e.getMessage(), e.getCause());
+        // the exception detail contains the mapping result
+        JsonValue failedResult = e.getDetail();
+        failedResult.put("cause", exceptionPending.toJsonValue().getObject());
+        addMappingResults(syncDetails, mapping, json(array(failedResult.getObject())), MappingSyncResult.FAILED);
+        return exceptionPending;
+    }
+
+    private static SynchronizationException newMappingFailure(Throwable cause) {
+        final SynchronizationException e = new SynchronizationException(cause.getMessage(), cause);
+        e.setDetail(json(object()));
+        return e;
+    }
+
     private JsonValue notifyCreate(Context context, final String resourceContainer, final String resourceId, final JsonValue object)
             throws SynchronizationException {
         // Handle pending link action if present
@@ -15,21 +15,31 @@
  */
 package org.forgerock.openidm.managed;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.forgerock.json.JsonValue.array;
 import static org.forgerock.json.JsonValue.field;
 import static org.forgerock.json.JsonValue.json;
 import static org.forgerock.json.JsonValue.object;
+import static org.forgerock.json.resource.Responses.newQueryResponse;
 import static org.forgerock.json.resource.Responses.newResourceResponse;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
+import java.util.Arrays;
+import java.util.Map;
+
 import org.forgerock.json.JsonValue;
 import org.forgerock.json.resource.Connection;
 import org.forgerock.json.resource.ConnectionFactory;
+import org.forgerock.json.resource.QueryRequest;
+import org.forgerock.json.resource.QueryResourceHandler;
+import org.forgerock.json.resource.QueryResponse;
 import org.forgerock.json.resource.ReadRequest;
 import org.forgerock.json.resource.ResourcePath;
 import org.forgerock.openidm.audit.util.ActivityLogger;
@@ -37,7 +47,10 @@ import org.forgerock.openidm.util.RelationshipUtil;
 import org.forgerock.services.context.Context;
 import org.forgerock.services.context.RootContext;
 import org.mockito.ArgumentMatcher;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
 
 public class CollectionRelationshipProviderTest {
     private static final ResourcePath REFERRING_OBJECT_ID = new ResourcePath("managed/user/foo");
@@ -152,6 +165,51 @@ public class CollectionRelationshipProviderTest {
         }
     }
 
+    @Test
+    public void testGetRelationshipValuesForResources() throws Exception {
+        RootContext context = new RootContext();
+        Connection connection = mock(Connection.class);
+        when(connectionFactory.getConnection()).thenReturn(connection);
+        when(connection.query(any(Context.class), any(QueryRequest.class), any(QueryResourceHandler.class)))
+                .thenAnswer(new Answer<QueryResponse>() {
+                    @Override
+                    public QueryResponse answer(InvocationOnMock invocation) throws Throwable {
+                        QueryResourceHandler handler = invocation.getArgument(2);
+                        handler.handleResource(newResourceResponse("rel1", "0", json(object(
+                                field("firstId", "managed/user/mgr1"),
+                                field("firstPropertyName", "reports"),
+                                field("secondId", "managed/user/test1"),
+                                field("secondPropertyName", "manager")))));
+                        handler.handleResource(newResourceResponse("rel2", "0", json(object(
+                                field("firstId", "managed/user/differentUser"),
+                                field("firstPropertyName", "manager"),
+                                field("secondId", "managed/user/mgr1"),
+                                field("secondPropertyName", "reports")))));
+                        return newQueryResponse();
+                    }
+                });
+
+        SchemaField schemaField = mock(SchemaField.class);
+        when(schemaField.getName()).thenReturn("reports");
+        when(schemaField.isReverseRelationship()).thenReturn(true);
+        when(schemaField.getReversePropertyName()).thenReturn("manager");
+        CollectionRelationshipProvider provider = new CollectionRelationshipProvider(connectionFactory,
+                ResourcePath.resourcePath("managed/user"), schemaField, activityLogger, managedObjectSyncService);
+
+        Map<String, JsonValue> values =
+                provider.getRelationshipValuesForResources(context, Arrays.asList("mgr1", "mgr2"));
+
+        // one query for both resources
+        verify(connection, times(1)).query(any(Context.class), any(QueryRequest.class),
+                any(QueryResourceHandler.class));
+        assertThat(values.get("mgr1").size()).isEqualTo(2);
+        assertThat(values.get("mgr1").get(0).get(RelationshipUtil.REFERENCE_ID).asString())
+                .isEqualTo("managed/user/test1");
+        assertThat(values.get("mgr1").get(1).get(RelationshipUtil.REFERENCE_ID).asString())
+                .isEqualTo("managed/user/differentUser");
+        assertThat(values.get("mgr2").size()).isEqualTo(0);
+    }
+
     private static class IsRouteMatcher implements ArgumentMatcher<ReadRequest> {
 
         private final String route;
@@ -0,0 +1,105 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.sync.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+public class CompactIdSetTest {
+
+    @Test
+    public void testContainsOnHeap() {
+        CompactIdSet ids = new CompactIdSet(CompactIdSet.MAX_RUN_BYTES, null);
+        try {
+            ids.addAll(createIds(1000));
+            ids.add("Id5");
+            ids.add("\u00fcnicode");
+            ids.seal();
+
+            assertThat(ids.getSpilledRunCount()).isEqualTo(0);
+            assertThat(ids).hasSize(1001);
+            assertThat(ids.contains("Id0")).isTrue();
+            assertThat(ids.contains("Id999")).isTrue();
+            assertThat(ids.contains("\u00fcnicode")).isTrue();
+            assertThat(ids.contains("Id1000")).isFalse();
+            assertThat(ids.contains("id5")).isFalse();
+            assertThat(ids.contains(null)).isFalse();
+        } finally {
+            ids.close();
+        }
+    }
+
+    @Test
+    public void testContainsWhenSpilled() {
+        // Small budget forces several runs to be spilled to disk
+        CompactIdSet ids = new CompactIdSet(4096, null);
+        try {
+            List<String> expected = createIds(5000);
+            ids.addAll(expected);
+            // Duplicates across spilled runs are only counted once
+            ids.addAll(expected.subList(0, 100));
+            ids.seal();
+
+            assertThat(ids.getSpilledRunCount()).isGreaterThan(1);
+            assertThat(ids).hasSize(5000);
+            assertThat(ids).containsOnlyElementsOf(expected);
+            for (String id : expected) {
+                assertThat(ids.contains(id)).isTrue();
+            }
+            assertThat(ids.contains("Id5000")).isFalse();
+        } finally {
+            ids.close();
+        }
+    }
+
+    @Test
+    public void testIndexOfFollowsIterationOrder() {
+        CompactIdSet ids = new CompactIdSet(4096, null);
+        try {
+            ids.addAll(createIds(5000));
+            ids.seal();
+
+            assertThat(ids.getSpilledRunCount()).isGreaterThan(1);
+            int index = 0;
+            for (String id : ids) {
+                assertThat(ids.indexOf(id)).isEqualTo(index++);
+            }
+            assertThat(ids.indexOf("Id5000")).isEqualTo(-1);
+            assertThat(ids.indexOf(null)).isEqualTo(-1);
+        } finally {
+            ids.close();
+        }
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testAddAfterSeal() {
+        CompactIdSet ids = new CompactIdSet(4096, null);
+        ids.seal();
+        ids.add("Id0");
+    }
+
+    private List<String> createIds(int count) {
+        List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add("Id" + i);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.sync.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+import static org.forgerock.json.resource.Responses.newQueryResponse;
+import static org.forgerock.json.resource.Responses.newResourceResponse;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.script.Bindings;
+import javax.script.SimpleBindings;
+
+import org.forgerock.json.JsonValue;
+import org.forgerock.json.resource.Connection;
+import org.forgerock.json.resource.ConnectionFactory;
+import org.forgerock.json.resource.QueryRequest;
+import org.forgerock.json.resource.QueryResourceHandler;
+import org.forgerock.json.resource.QueryResponse;
+import org.forgerock.openidm.util.Scripts;
+import org.forgerock.script.Script;
+import org.forgerock.script.ScriptEntry;
+import org.forgerock.script.ScriptRegistry;
+import org.forgerock.services.context.Context;
+import org.forgerock.services.context.RootContext;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.Test;
+
+public class CorrelationTest {
+
+    @Test
+    public void testCaseFoldedMatchesAreAmbiguous() throws Exception {
+        Correlation correlation = newCorrelation(false,
+                json(object(field("_id", "t1"), field("mail", "a@x"))),
+                json(object(field("_id", "t2"), field("mail", "A@x"))));
+
+        Map<String, JsonValue> results = correlation.correlateBatch(
+                sources("A", "a@x", "B", "A@x"), Link.DEFAULT_LINK_QUALIFIER, new RootContext(), null);
+
+        // the target folds case, so each source matches both targets and neither may be found
+        assertThat(results.keySet()).containsOnly("A", "B");
+        assertThat(results.get("A").size()).isEqualTo(2);
+        assertThat(results.get("B").size()).isEqualTo(2);
+    }
+
+    @Test
+    public void testSingleLocalMatchesAreCorrelatedIndividually() throws Exception {
+        // without exactMatch the target may normalize values into more matches than the local evaluation sees
+        Correlation correlation = newCorrelation(false,
+                json(object(field("_id", "t1"), field("mail", "a@x"))),
+                json(object(field("_id", "t2"), field("mail", "b@x"))));
+
+        Map<String, JsonValue> results = correlation.correlateBatch(
+                sources("A", "a@x", "B", "b@x"), Link.DEFAULT_LINK_QUALIFIER, new RootContext(), null);
+
+        assertThat(results).isEmpty();
+    }
+
+    @Test
+    public void testSingleLocalMatchesOfExactMatchQueriesAreFound() throws Exception {
+        Correlation correlation = newCorrelation(true,
+                json(object(field("_id", "t1"), field("mail", "a@x"))),
+                json(object(field("_id", "t2"), field("mail", "b@x"))));
+
+        Map<String, JsonValue> results = correlation.correlateBatch(
+                sources("A", "a@x", "B", "b@x"), Link.DEFAULT_LINK_QUALIFIER, new RootContext(), null);
+
+        assertThat(results.keySet()).containsOnly("A", "B");
+        assertThat(results.get("A").get(0).get("_id").asString()).isEqualTo("t1");
+        assertThat(results.get("B").get(0).get("_id").asString()).isEqualTo("t2");
+    }
+
+    @Test
+    public void testExactMatchQueriesMatchingMoreOnTheTargetAreCorrelatedIndividually() throws Exception {
+        Correlation correlation = newCorrelation(true,
+                json(object(field("_id", "t1"), field("mail", "a@x"))),
+                json(object(field("_id", "t2"), field("mail", "a@x "))));
+
+        Map<String, JsonValue> results = correlation.correlateBatch(
+                sources("A", "a@x"), Link.DEFAULT_LINK_QUALIFIER, new RootContext(), null);
+
+        assertThat(results).isEmpty();
+    }
+
+    private static Map<String, JsonValue> sources(String... idsAndMails) {
+        Map<String, JsonValue> sources = new LinkedHashMap<>();
+        for (int i = 0; i < idsAndMails.length; i += 2) {
+            sources.put(idsAndMails[i], json(object(field("_id", idsAndMails[i]), field("mail", idsAndMails[i + 1]))));
+        }
+        return sources;
+    }
+
+    /**
+     * Creates the correlation of a mapping correlating sources by mail, against a target returning the given
+     * objects for the batched query.
+     */
+    private static Correlation newCorrelation(boolean exactMatch, final JsonValue... targets) throws Exception {
+        Script script = mock(Script.class);
+        when(script.createBindings()).thenReturn(new SimpleBindings());
+        when(script.eval(any(Bindings.class))).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                Bindings bindings = (Bindings) invocation.getArguments()[0];
+                Map<?, ?> source = (Map<?, ?>) bindings.get("source");
+                return object(field("_queryFilter", "mail eq \"" + source.get("mail") + "\""));
+            }
+        });
+        ScriptEntry scriptEntry = mock(ScriptEntry.class);
+        when(scriptEntry.getScript(any(Context.class))).thenReturn(script);
+        ScriptRegistry scriptRegistry = mock(ScriptRegistry.class);
+        when(scriptRegistry.takeScript(any(JsonValue.class))).thenReturn(scriptEntry);
+        Scripts.init(scriptRegistry);
+
+        Connection connection = mock(Connection.class);
+        when(connection.query(any(Context.class), any(QueryRequest.class), any(QueryResourceHandler.class)))
+                .thenAnswer(new Answer<QueryResponse>() {
+                    @Override
+                    public QueryResponse answer(InvocationOnMock invocation) {
+                        QueryResourceHandler handler = (QueryResourceHandler) invocation.getArguments()[2];
+                        for (JsonValue target : targets) {
+                            handler.handleResource(newResourceResponse(target.get("_id").asString(), null,
+                                    target.copy()));
+                        }
+                        return newQueryResponse();
+                    }
+                });
+        ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+        when(connectionFactory.getConnection()).thenReturn(connection);
+
+        ObjectMapping objectMapping = mock(ObjectMapping.class);
+        when(objectMapping.getName()).thenReturn("source_target");
+        when(objectMapping.getTargetObjectSet()).thenReturn("managed/user");
+        when(objectMapping.getConnectionFactory()).thenReturn(connectionFactory);
+        when(objectMapping.getConfig()).thenReturn(json(object(
+                field("correlationQuery", object(
+                        field("type", "text/javascript"),
+                        field("source", "var qry = {'_queryFilter': 'mail eq \"' + source.mail + '\"'}; qry"),
+                        field("exactMatch", exactMatch))))));
+        return new Correlation(objectMapping);
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.sync.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+public class KeyedExecutorTest {
+
+    @Test
+    public void testTasksOfSameKeyRunInOrder() throws Exception {
+        final KeyedExecutor executor = new KeyedExecutor("test", 4);
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        final List<Future<Integer>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < 100; i++) {
+                final int task = i;
+                futures.add(executor.submit("mapping:managed/user/1", new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        order.add(task);
+                        return task;
+                    }
+                }));
+            }
+            for (Future<Integer> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(order.get(i)).isEqualTo(i);
+        }
+    }
+
+    @Test
+    public void testTasksOfDifferentLanesRunInParallel() throws Exception {
+        final KeyedExecutor executor = new KeyedExecutor("test", 2);
+        final CountDownLatch bothRunning = new CountDownLatch(2);
+        final Callable<Boolean> task = new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                bothRunning.countDown();
+                return bothRunning.await(10, TimeUnit.SECONDS);
+            }
+        };
+        try {
+            // integer keys hash to themselves, so these land on different lanes
+            Future<Boolean> first = executor.submit(0, task);
+            Future<Boolean> second = executor.submit(1, task);
+
+            assertThat(first.get(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(second.get(10, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testLaneThreadIsRecognized() throws Exception {
+        final KeyedExecutor executor = new KeyedExecutor("test", 1);
+        final KeyedExecutor other = new KeyedExecutor("other", 1);
+        try {
+            assertThat(executor.isLaneThread()).isFalse();
+            assertThat(executor.submit("key", new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return executor.isLaneThread();
+                }
+            }).get(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(other.submit("key", new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return executor.isLaneThread();
+                }
+            }).get(10, TimeUnit.SECONDS)).isFalse();
+        } finally {
+            executor.shutdown();
+            other.shutdown();
+        }
+    }
+
+    @Test
+    public void testShutdownCancelsQueuedTasks() throws Exception {
+        final KeyedExecutor executor = new KeyedExecutor("test", 1);
+        final CountDownLatch running = new CountDownLatch(1);
+        executor.submit("key", new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                running.countDown();
+                Thread.sleep(TimeUnit.SECONDS.toMillis(10));
+                return null;
+            }
+        });
+        final Future<Void> queued = executor.submit("key", new Callable<Void>() {
+            @Override
+            public Void call() {
+                return null;
+            }
+        });
+        running.await(10, TimeUnit.SECONDS);
+
+        executor.shutdown();
+
+        assertThat(queued.isCancelled()).isTrue();
+    }
+}
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Portions copyright 2014-2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 package org.forgerock.openidm.sync.impl;
 
@@ -22,6 +23,9 @@ import static org.forgerock.json.JsonValue.json;
 import static org.forgerock.json.JsonValue.object;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.File;
@@ -103,6 +107,22 @@ public class ObjectMappingTest {
         assertThat(testSyncOperation.checkSourceConditions("default")).isFalse();
     }
 
+    @Test
+    public void testPlanIsResolvedOnceAndIndexedBySituation() throws Exception {
+        TestObjectMapping mapping = createObjectMapping("/conf/sync.json");
+        reset(mockScriptRegistry);
+        when(mockScriptRegistry.takeScript(any(JsonValue.class))).thenReturn(mockScriptEntry);
+
+        mapping.getSyncOperation();
+        mapping.getSyncOperation();
+
+        // the sync operations reference the plan of the mapping rather than resolving scripts
+        verify(mockScriptRegistry, never()).takeScript(any(JsonValue.class));
+        assertThat(mapping.getPlan().getPolicies(Situation.ABSENT)).hasSize(2);
+        assertThat(mapping.getPlan().getPolicies(Situation.CONFIRMED)).hasSize(1);
+        assertThat(mapping.getPlan().getPolicies(Situation.LINK_ONLY)).isEmpty();
+    }
+
     @Test
     public void testUpdateActionWithNullTargetObject() throws Exception {
         TestObjectMapping dummyMapping = createObjectMapping(json(
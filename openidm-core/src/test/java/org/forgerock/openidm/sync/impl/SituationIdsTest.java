@@ -0,0 +1,194 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.sync.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import org.testng.annotations.Test;
+
+public class SituationIdsTest {
+
+    @Test
+    public void testAllKeepsEveryId() {
+        SituationIds ids = new SituationIds(SituationIds.Mode.ALL, 10, null);
+        for (int i = 0; i < 1000; i++) {
+            ids.add("Id" + i);
+        }
+
+        assertThat(ids.getCount()).isEqualTo(1000);
+        assertThat(ids.getIds()).hasSize(1000).startsWith("Id0", "Id1");
+        assertThat(ids.getSpillFile()).isNull();
+        assertThat(ids.asMap()).containsOnlyKeys("count", "ids");
+    }
+
+    @Test
+    public void testSampleIsBoundedAndCountExact() throws Exception {
+        final SituationIds ids = new SituationIds(SituationIds.Mode.SAMPLE, 50, null);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            final int thread = t;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 10000; i++) {
+                        ids.add("Id" + thread + "-" + i);
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(1, TimeUnit.MINUTES)).isTrue();
+
+        assertThat(ids.getCount()).isEqualTo(80000);
+        assertThat(ids.getIds()).hasSize(50).doesNotHaveDuplicates();
+        assertThat(ids.asMap().get("count")).isEqualTo(80000L);
+    }
+
+    @Test
+    public void testSampleKeepsFewIdsExactly() {
+        SituationIds ids = new SituationIds(SituationIds.Mode.SAMPLE, 50, null);
+        ids.add("Id0");
+        ids.add("Id1");
+
+        assertThat(ids.getIds()).containsExactly("Id0", "Id1");
+    }
+
+    @Test
+    public void testSpillWritesEveryId() throws Exception {
+        File file = File.createTempFile("recon-ids", ".ids.gz");
+        assertThat(file.delete()).isTrue();
+        SituationIds ids = new SituationIds(SituationIds.Mode.SPILL, 10, file);
+        try {
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                expected.add("Id" + i);
+                ids.add("Id" + i);
+            }
+            ids.close();
+            // ids processed after the run completed are still counted
+            ids.add("Id1000");
+
+            assertThat(ids.getCount()).isEqualTo(1001);
+            assertThat(ids.getIds()).hasSize(10);
+            assertThat(ids.asMap().get("idsFile")).isEqualTo(file.getAbsolutePath());
+            assertThat(readIds(file)).isEqualTo(expected);
+
+            ids.delete();
+            assertThat(file.exists()).isFalse();
+            assertThat(ids.getSpillFile()).isNull();
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testSpillFileOnlyCreatedForProcessedIds() {
+        File file = new File(System.getProperty("java.io.tmpdir"), "recon-ids-unused.ids.gz");
+        SituationIds ids = new SituationIds(SituationIds.Mode.SPILL, 10, file);
+        ids.close();
+
+        assertThat(file.exists()).isFalse();
+        assertThat(ids.asMap()).doesNotContainKey("idsFile");
+    }
+
+    @Test
+    public void testConcurrentSpillWritesEveryId() throws Exception {
+        File file = File.createTempFile("recon-ids", ".ids.gz");
+        assertThat(file.delete()).isTrue();
+        final SituationIds ids = new SituationIds(SituationIds.Mode.SPILL, 10, file);
+        try {
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            for (int t = 0; t < 8; t++) {
+                final int thread = t;
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int i = 0; i < 10000; i++) {
+                            ids.add("Id" + thread + "-" + i);
+                        }
+                    }
+                });
+            }
+            executor.shutdown();
+            assertThat(executor.awaitTermination(1, TimeUnit.MINUTES)).isTrue();
+            ids.close();
+
+            assertThat(ids.getCount()).isEqualTo(80000);
+            assertThat(readIds(file)).hasSize(80000).doesNotHaveDuplicates();
+        } finally {
+            ids.delete();
+        }
+    }
+
+    @Test
+    public void testOrphanedSpillFilesAreDeleted() throws Exception {
+        File directory = File.createTempFile("recon-ids", "");
+        assertThat(directory.delete()).isTrue();
+        assertThat(directory.mkdir()).isTrue();
+        try {
+            File orphaned = new File(directory, "recon1-source-FOUND.ids.gz");
+            File running = new File(directory, "recon2-source-FOUND.ids.gz");
+            File other = new File(directory, "recon1.txt");
+            assertThat(orphaned.createNewFile()).isTrue();
+            assertThat(running.createNewFile()).isTrue();
+            assertThat(other.createNewFile()).isTrue();
+
+            SituationIds.deleteOrphanedSpillFiles(directory, Collections.singleton("recon2"));
+
+            assertThat(orphaned.exists()).isFalse();
+            assertThat(running.exists()).isTrue();
+            assertThat(other.exists()).isTrue();
+        } finally {
+            for (File file : directory.listFiles()) {
+                file.delete();
+            }
+            directory.delete();
+        }
+    }
+
+    @Test
+    public void testModeForConfig() {
+        assertThat(SituationIds.Mode.forConfig("all")).isEqualTo(SituationIds.Mode.ALL);
+        assertThat(SituationIds.Mode.forConfig("sample")).isEqualTo(SituationIds.Mode.SAMPLE);
+        assertThat(SituationIds.Mode.forConfig("spill")).isEqualTo(SituationIds.Mode.SPILL);
+        assertThat(SituationIds.Mode.forConfig("SAMPLE")).isNull();
+    }
+
+    private static List<String> readIds(File file) throws Exception {
+        List<String> result = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new FileInputStream(file)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                result.add(line);
+            }
+        }
+        return result;
+    }
+}
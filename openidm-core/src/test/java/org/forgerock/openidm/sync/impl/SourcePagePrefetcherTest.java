@@ -0,0 +1,63 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.sync.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.forgerock.openidm.sync.TriggerContext;
+import org.forgerock.services.context.Context;
+import org.forgerock.services.context.RootContext;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.Test;
+
+public class SourcePagePrefetcherTest {
+
+    @Test
+    public void testPagesAreQueriedWithinTheReconContext() throws Exception {
+        final Context context = new TriggerContext(new RootContext(), "recon");
+        final List<Context> queryContexts = Collections.synchronizedList(new ArrayList<Context>());
+        final ReconciliationContext reconContext = mock(ReconciliationContext.class);
+        when(reconContext.getReconId()).thenReturn("recon-1");
+        when(reconContext.getStatistics()).thenReturn(mock(ReconciliationStatistic.class));
+        when(reconContext.querySourcePage(anyInt(), anyString())).thenAnswer(new Answer<ReconQueryResult>() {
+            @Override
+            public ReconQueryResult answer(InvocationOnMock invocation) {
+                queryContexts.add(ObjectSetContext.get());
+                return new ReconQueryResult(new ResultIterable(Collections.<String>emptyList(), null), null);
+            }
+        });
+
+        // the first page has been queried by the reconciliation, the prefetcher queries the second one
+        final SourcePagePrefetcher prefetcher = new SourcePagePrefetcher(reconContext, context, 10, "page-2", 1);
+        prefetcher.start();
+        try {
+            assertThat(prefetcher.nextPage()).isNotNull();
+        } finally {
+            prefetcher.stop();
+        }
+
+        assertThat(queryContexts).containsExactly(context);
+    }
+}
@@ -12,11 +12,14 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Portions copyright 2015-2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.openidm.sync.impl;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.forgerock.json.JsonValue.array;
 import static org.forgerock.json.JsonValue.field;
 import static org.forgerock.json.JsonValue.json;
 import static org.forgerock.json.JsonValue.object;
@@ -27,11 +30,13 @@ import static org.forgerock.json.test.assertj.AssertJJsonValueAssert.assertThat;
 import static org.forgerock.openidm.sync.impl.SynchronizationService.ACTION_PARAM_RESOURCE_NAME;
 import static org.forgerock.util.test.assertj.AssertJPromiseAssert.assertThatPromise;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Map;
 
 import org.forgerock.audit.events.AuditEvent;
@@ -49,6 +54,7 @@ import org.forgerock.json.resource.ResourceResponse;
 import org.forgerock.json.resource.ServiceUnavailableException;
 import org.forgerock.openidm.config.enhanced.EnhancedConfig;
 import org.forgerock.openidm.router.IDMConnectionFactory;
+import org.forgerock.openidm.sync.SynchronizationException;
 import org.forgerock.openidm.util.Scripts;
 import org.forgerock.script.ScriptRegistry;
 import org.forgerock.services.context.Context;
@@ -163,4 +169,52 @@ public class SynchronizationServiceTest {
         assertThat(resource).stringAt("linkQualifier").isEqualTo("default");
         assertThat(resource).stringAt("linkType").isEqualTo("testMapping");
     }
+
+    @Test
+    public void testParallelImplicitSyncAggregatesMappingResults() throws Exception {
+        final ObjectMapping failing = mockMapping("managedUser_systemLdapAccounts", "system/ldap/account");
+        final SynchronizationException failure = new SynchronizationException("LDAP unavailable");
+        failure.setDetail(json(object(field("action", "UPDATE"))));
+        when(failing.notifyUpdate(any(Context.class), anyString(), anyString(), any(JsonValue.class),
+                any(JsonValue.class))).thenThrow(failure);
+        final ObjectMapping succeeding = mockMapping("managedUser_systemAdAccounts", "system/ad/account");
+        when(succeeding.notifyUpdate(any(Context.class), anyString(), anyString(), any(JsonValue.class),
+                any(JsonValue.class))).thenReturn(json(array(object(field("action", "UPDATE")))));
+        final Mappings mappings = mock(Mappings.class);
+        when(mappings.iterator()).thenReturn(Arrays.asList(failing, succeeding).iterator());
+
+        final SynchronizationService synchronizationService = new SynchronizationService();
+        synchronizationService.bindMappings(mappings);
+        final KeyedExecutor lanes = new KeyedExecutor("test", 2);
+        synchronizationService.setImplicitSyncLanes(lanes);
+        try {
+            final ActionRequest actionRequest = newActionRequest("", "notifyUpdate")
+                    .setAdditionalParameter(SynchronizationService.ACTION_PARAM_RESOURCE_CONTAINER, "managed/user")
+                    .setAdditionalParameter(SynchronizationService.ACTION_PARAM_RESOURCE_ID, "bjensen")
+                    .setContent(json(object(field("oldValue", object()), field("newValue", object()))));
+            synchronizationService.actionInstance(mock(Context.class), actionRequest).getOrThrow();
+            fail("Expected the failure of the LDAP mapping");
+        } catch (SynchronizationException e) {
+            // the second mapping is not skipped, and the results keep the mapping order
+            assertThat(e.getMessage()).isEqualTo("LDAP unavailable");
+            JsonValue syncDetails = e.getDetail();
+            assertThat(syncDetails.size()).isEqualTo(2);
+            assertThat(syncDetails.get(0).get("mapping").asString()).isEqualTo("managedUser_systemLdapAccounts");
+            assertThat(syncDetails.get(0).get("result").asString()).isEqualTo("FAILED");
+            assertThat(syncDetails.get(1).get("mapping").asString()).isEqualTo("managedUser_systemAdAccounts");
+            assertThat(syncDetails.get(1).get("result").asString()).isEqualTo("SUCCESSFUL");
+            assertThat(syncDetails.get(1).get("targetObjectSet").asString()).isEqualTo("system/ad/account");
+        } finally {
+            lanes.shutdown();
+        }
+    }
+
+    private static ObjectMapping mockMapping(String name, String targetObjectSet) {
+        final ObjectMapping mapping = mock(ObjectMapping.class);
+        when(mapping.getName()).thenReturn(name);
+        when(mapping.getTargetObjectSet()).thenReturn(targetObjectSet);
+        when(mapping.isSyncEnabled()).thenReturn(true);
+        when(mapping.isSourceObject("managed/user", "bjensen")).thenReturn(true);
+        return mapping;
+    }
 }
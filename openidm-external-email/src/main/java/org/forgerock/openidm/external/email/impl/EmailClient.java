@@ -2,7 +2,7 @@
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
  * Copyright (c) 2011-2015 ForgeRock AS. All Rights Reserved
- * Portions Copyright 2018 Wren Security.
+ * Portions Copyright 2018-2026 Wren Security.
  *
  * The contents of this file are subject to the terms
  * of the Common Development and Distribution License
@@ -27,8 +27,10 @@ package org.forgerock.openidm.external.email.impl;
 import com.sun.mail.util.MailSSLSocketFactory;
 import org.forgerock.json.JsonValue;
 import org.forgerock.json.resource.BadRequestException;
+import org.forgerock.util.time.Duration;
 
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 import javax.mail.Message;
 import javax.mail.MessagingException;
 import javax.mail.Session;
@@ -44,12 +46,16 @@ public class EmailClient {
 
     private static final String DEFAULT_HOST = "localhost";
     private static final String DEFAULT_PORT = "25";
+    private static final int DEFAULT_POOL_MAX_SIZE = 5;
+    private static final String DEFAULT_POOL_IDLE_TIMEOUT = "30 seconds";
+    private static final String DEFAULT_POOL_ACQUIRE_TIMEOUT = "30 seconds";
     private String username = null;
     private String password = null;
     private String fromAddr = null;
     private boolean smtpAuth = false;
     private Properties props = new Properties();
     private Session session;
+    private SmtpTransportPool transportPool;
     
     // Keys in the JSON configuration
     public static final String CONFIG_MAIL_SMTP_HOST = "host";
@@ -62,6 +68,10 @@ public class EmailClient {
     public static final String CONFIG_MAIL_SMTP_STARTTLS_ENABLE = "enable";
     public static final String CONFIG_MAIL_FROM = "from";
     public static final String CONFIG_MAIL_DEBUG = "debug";
+    public static final String CONFIG_CONNECTION_POOL = "connectionPool";
+    public static final String CONFIG_CONNECTION_POOL_MAX_SIZE = "maxSize";
+    public static final String CONFIG_CONNECTION_POOL_IDLE_TIMEOUT = "idleTimeout";
+    public static final String CONFIG_CONNECTION_POOL_ACQUIRE_TIMEOUT = "acquireTimeout";
 
     public EmailClient(JsonValue config) throws RuntimeException {
 
@@ -94,6 +104,16 @@ public class EmailClient {
 
         fromAddr = config.get(CONFIG_MAIL_FROM).asString();
         session = Session.getInstance(props);
+
+        JsonValue poolConfig = config.get(CONFIG_CONNECTION_POOL);
+        transportPool = new SmtpTransportPool(session, smtpAuth ? username : null, password,
+                poolConfig.get(CONFIG_CONNECTION_POOL_MAX_SIZE).defaultTo(DEFAULT_POOL_MAX_SIZE).asInteger(),
+                toMillis(poolConfig.get(CONFIG_CONNECTION_POOL_IDLE_TIMEOUT).defaultTo(DEFAULT_POOL_IDLE_TIMEOUT)),
+                toMillis(poolConfig.get(CONFIG_CONNECTION_POOL_ACQUIRE_TIMEOUT).defaultTo(DEFAULT_POOL_ACQUIRE_TIMEOUT)));
+    }
+
+    private static long toMillis(JsonValue duration) {
+        return Duration.duration(duration.asString()).to(TimeUnit.MILLISECONDS);
     }
 
     /**
@@ -115,6 +135,34 @@ public class EmailClient {
      *          {@code subject}, or {@code body} parameters are missing or improperly formatted.
      */
     public void send(JsonValue params) throws BadRequestException {
+        Message message = createMessage(params);
+        try {
+            Transport transport = acquireTransport();
+            boolean reusable = false;
+            try {
+                transport.sendMessage(message, message.getAllRecipients());
+                reusable = true;
+            } finally {
+                releaseTransport(transport, reusable);
+            }
+        } catch (MessagingException e) {
+            throw new BadRequestException(e);
+        }
+    }
+
+    /**
+     * Creates the email according to the parameters in <em>params</em>, as described in {@link #send(JsonValue)}.
+     *
+     * @param   params
+     *          A JsonValue containing the {@code from}, {@code to}, {@code cc}, {@code bcc},
+     *          {@code subject}, and {@code body} parameters.
+     * @return  the message, ready to be sent
+     *
+     * @throws  BadRequestException
+     *          If the one or more of the {@code from}, {@code to}, {@code cc}, {@code bcc},
+     *          {@code subject}, or {@code body} parameters are missing or improperly formatted.
+     */
+    Message createMessage(JsonValue params) throws BadRequestException {
         InternetAddress from = null;
         InternetAddress[] to = null;
         InternetAddress[] cc = null;
@@ -196,22 +244,40 @@ public class EmailClient {
                 throw new BadRequestException("Email type: " + type + " is not handled");
             }
 
-            Transport transport = session.getTransport("smtp");
-
-            if (smtpAuth) {
-                transport.connect(username, password);
-            } else {
-                transport.connect();
-            }
             message.saveChanges();
-            transport.sendMessage(message, message.getAllRecipients());
-            transport.close();
-
+            return message;
         } catch (MessagingException e) {
             throw new BadRequestException(e);
         }
     }
 
+    /**
+     * Acquires a connected SMTP transport from the pool.
+     *
+     * @return the transport, to be released with {@link #releaseTransport(Transport, boolean)}
+     * @throws MessagingException if no transport could be connected
+     */
+    Transport acquireTransport() throws MessagingException {
+        return transportPool.acquire();
+    }
+
+    /**
+     * Returns an SMTP transport to the pool.
+     *
+     * @param transport the transport
+     * @param reusable false if sending failed in a way that may have left the connection unusable
+     */
+    void releaseTransport(Transport transport, boolean reusable) {
+        transportPool.release(transport, reusable);
+    }
+
+    /**
+     * Closes the pooled SMTP connections.
+     */
+    public void close() {
+        transportPool.close();
+    }
+
     public void format() {
     }
 }
@@ -0,0 +1,384 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.external.email.impl;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Transport;
+
+import org.forgerock.json.JsonValue;
+import org.forgerock.json.resource.InternalServerErrorException;
+import org.forgerock.json.resource.ResourceException;
+import org.forgerock.json.resource.ServiceUnavailableException;
+import org.forgerock.openidm.core.IdentityServer;
+import org.forgerock.util.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Queues outbound emails to be sent by worker threads.
+ * <p>
+ * Each worker takes a batch of queued emails and sends them over a single pooled SMTP connection. An email that
+ * fails to be sent is queued again after the retry delay, until the maximum number of attempts is reached; an email
+ * whose recipients are rejected by the SMTP server is not retried. If a spool directory is configured, each accepted
+ * email is written to it until sent, so emails accepted before a shutdown are sent once the service starts again.
+ */
+class EmailQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailQueue.class);
+
+    public static final String CONFIG_ENABLED = "enabled";
+    public static final String CONFIG_CAPACITY = "capacity";
+    public static final String CONFIG_WORKERS = "workers";
+    public static final String CONFIG_BATCH_SIZE = "batchSize";
+    public static final String CONFIG_MAX_ATTEMPTS = "maxAttempts";
+    public static final String CONFIG_RETRY_DELAY = "retryDelay";
+    public static final String CONFIG_SPOOL_DIRECTORY = "spoolDirectory";
+
+    private static final int DEFAULT_CAPACITY = 10000;
+    private static final int DEFAULT_WORKERS = 2;
+    private static final int DEFAULT_BATCH_SIZE = 20;
+    private static final int DEFAULT_MAX_ATTEMPTS = 5;
+    private static final String DEFAULT_RETRY_DELAY = "30 seconds";
+
+    private static final String SPOOL_SUFFIX = ".json";
+    private static final String FAILED_SUFFIX = ".failed";
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final EmailClient emailClient;
+    private final int capacity;
+    private final int workers;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long retryDelayMillis;
+    private final File spoolDirectory;
+
+    private final BlockingQueue<QueuedEmail> queue = new LinkedBlockingQueue<>();
+    /** Number of accepted emails not yet sent or failed, including the ones waiting to be retried */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private ExecutorService workerPool;
+    private ScheduledExecutorService retryScheduler;
+    private volatile boolean running = false;
+
+    /**
+     * Creates the queue.
+     *
+     * @param emailClient the client sending the emails
+     * @param config the queue configuration
+     */
+    EmailQueue(EmailClient emailClient, JsonValue config) {
+        this.emailClient = emailClient;
+        this.capacity = Math.max(1, config.get(CONFIG_CAPACITY).defaultTo(DEFAULT_CAPACITY).asInteger());
+        this.workers = Math.max(1, config.get(CONFIG_WORKERS).defaultTo(DEFAULT_WORKERS).asInteger());
+        this.batchSize = Math.max(1, config.get(CONFIG_BATCH_SIZE).defaultTo(DEFAULT_BATCH_SIZE).asInteger());
+        this.maxAttempts = Math.max(1, config.get(CONFIG_MAX_ATTEMPTS).defaultTo(DEFAULT_MAX_ATTEMPTS).asInteger());
+        this.retryDelayMillis = Duration.duration(config.get(CONFIG_RETRY_DELAY).defaultTo(DEFAULT_RETRY_DELAY)
+                .asString()).to(TimeUnit.MILLISECONDS);
+        final String spool = config.get(CONFIG_SPOOL_DIRECTORY).asString();
+        if (spool != null) {
+            final File directory = new File(spool);
+            this.spoolDirectory = directory.isAbsolute()
+                    ? directory
+                    : IdentityServer.getFileForWorkingPath(spool);
+        } else {
+            this.spoolDirectory = null;
+        }
+    }
+
+    /**
+     * Starts the worker threads, queuing the emails left in the spool directory.
+     */
+    void start() {
+        if (spoolDirectory != null) {
+            if (!spoolDirectory.isDirectory() && !spoolDirectory.mkdirs()) {
+                throw new IllegalStateException("Unable to create email spool directory " + spoolDirectory);
+            }
+            loadSpool();
+        }
+        running = true;
+        retryScheduler = Executors.newSingleThreadScheduledExecutor(newThreadFactory("email-retry"));
+        workerPool = Executors.newFixedThreadPool(workers, newThreadFactory("email-sender"));
+        for (int i = 0; i < workers; i++) {
+            workerPool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    sendLoop();
+                }
+            });
+        }
+        logger.info("Queuing outbound email with {} workers, {} emails pending", workers, pending.get());
+    }
+
+    /**
+     * Stops the worker threads once they have sent their current batch. Emails still queued are kept in the spool
+     * directory, if any, and are otherwise lost.
+     */
+    void stop() {
+        running = false;
+        if (retryScheduler != null) {
+            retryScheduler.shutdownNow();
+        }
+        if (workerPool != null) {
+            workerPool.shutdown();
+            try {
+                if (!workerPool.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    workerPool.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                workerPool.shutdownNow();
+            }
+        }
+        if (pending.get() > 0) {
+            if (spoolDirectory != null) {
+                logger.info("{} queued emails are kept in {} to be sent on start up", pending.get(), spoolDirectory);
+            } else {
+                logger.warn("{} queued emails were not sent", pending.get());
+            }
+        }
+        queue.clear();
+    }
+
+    /**
+     * Accepts an email to be sent.
+     *
+     * @param params the email parameters, as sent with {@link EmailClient#send(JsonValue)}
+     * @return the id of the queued email
+     * @throws ResourceException if the email is invalid, the queue is full or the email could not be spooled
+     */
+    String submit(JsonValue params) throws ResourceException {
+        // validate the email before accepting it
+        emailClient.createMessage(params);
+        if (!running) {
+            throw new ServiceUnavailableException("The email queue is stopped");
+        }
+        if (pending.incrementAndGet() > capacity) {
+            pending.decrementAndGet();
+            throw new ServiceUnavailableException("The email queue is full");
+        }
+        final QueuedEmail email = new QueuedEmail(UUID.randomUUID().toString(), params.copy());
+        try {
+            spool(email);
+        } catch (IOException e) {
+            pending.decrementAndGet();
+            throw new InternalServerErrorException("Unable to spool email", e);
+        }
+        queue.offer(email);
+        return email.id;
+    }
+
+    /**
+     * Returns the number of accepted emails not yet sent or failed.
+     *
+     * @return the number of pending emails
+     */
+    int getPendingCount() {
+        return pending.get();
+    }
+
+    private void sendLoop() {
+        final List<QueuedEmail> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                final QueuedEmail first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                send(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                logger.error("Unexpected failure sending queued emails", e);
+                for (QueuedEmail email : batch) {
+                    retry(email, e);
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Sends a batch of emails over a single connection.
+     */
+    private void send(List<QueuedEmail> batch) {
+        final Transport transport;
+        try {
+            transport = emailClient.acquireTransport();
+        } catch (MessagingException e) {
+            logger.debug("Unable to connect to the SMTP server", e);
+            for (QueuedEmail email : batch) {
+                retry(email, e);
+            }
+            return;
+        }
+        boolean reusable = true;
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                final QueuedEmail email = batch.get(i);
+                if (!reusable) {
+                    retry(email, null);
+                    continue;
+                }
+                try {
+                    final Message message = emailClient.createMessage(email.params);
+                    transport.sendMessage(message, message.getAllRecipients());
+                    sent(email);
+                } catch (ResourceException e) {
+                    // the parameters were valid when accepted, a retry would fail the same way
+                    failed(email, e);
+                } catch (SendFailedException e) {
+                    // rejected recipients, the connection is still usable; a retry would be rejected the same way
+                    // or, with partial sending, deliver the email again to the valid recipients
+                    failed(email, e);
+                } catch (MessagingException e) {
+                    reusable = false;
+                    retry(email, e);
+                }
+            }
+        } finally {
+            emailClient.releaseTransport(transport, reusable);
+        }
+    }
+
+    private void sent(QueuedEmail email) {
+        pending.decrementAndGet();
+        if (email.spoolFile != null && !email.spoolFile.delete()) {
+            logger.warn("Unable to delete spooled email {}", email.spoolFile);
+        }
+        logger.debug("Sent queued email {}", email.id);
+    }
+
+    private void failed(QueuedEmail email, Exception cause) {
+        pending.decrementAndGet();
+        logger.error("Giving up sending email {} after {} attempts", email.id, email.attempts + 1, cause);
+        if (email.spoolFile != null) {
+            final File failedFile = new File(spoolDirectory, email.id + FAILED_SUFFIX);
+            if (!email.spoolFile.renameTo(failedFile)) {
+                logger.warn("Unable to keep failed email {} in {}", email.id, failedFile);
+            }
+        }
+    }
+
+    private void retry(final QueuedEmail email, Exception cause) {
+        if (++email.attempts >= maxAttempts) {
+            failed(email, cause);
+            return;
+        }
+        logger.debug("Retrying email {}, attempt {} of {}", email.id, email.attempts + 1, maxAttempts, cause);
+        if (!running) {
+            // kept in the spool directory, if any
+            return;
+        }
+        try {
+            retryScheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    queue.offer(email);
+                }
+            }, retryDelayMillis * email.attempts, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            // the scheduler is shut down, the email is kept in the spool directory, if any
+            logger.debug("Unable to schedule retry of email {}", email.id, e);
+        }
+    }
+
+    private void spool(QueuedEmail email) throws IOException {
+        if (spoolDirectory != null) {
+            final File file = new File(spoolDirectory, email.id + SPOOL_SUFFIX);
+            mapper.writeValue(file, email.params.getObject());
+            email.spoolFile = file;
+        }
+    }
+
+    private void loadSpool() {
+        final File[] files = spoolDirectory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.isFile() && file.getName().endsWith(SPOOL_SUFFIX);
+            }
+        });
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            final String name = file.getName();
+            try {
+                final QueuedEmail email = new QueuedEmail(name.substring(0, name.length() - SPOOL_SUFFIX.length()),
+                        new JsonValue(mapper.readValue(file, Map.class)));
+                email.spoolFile = file;
+                pending.incrementAndGet();
+                queue.offer(email);
+            } catch (IOException e) {
+                logger.warn("Unable to read spooled email {}", file, e);
+            }
+        }
+    }
+
+    private static ThreadFactory newThreadFactory(final String name) {
+        final AtomicInteger count = new AtomicInteger();
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * An accepted email.
+     */
+    private static final class QueuedEmail {
+        private final String id;
+        private final JsonValue params;
+        /** File the email is spooled to, null if not spooled */
+        private File spoolFile;
+        /** Number of failed attempts, only used by the thread sending or retrying the email */
+        private int attempts = 0;
+
+        private QueuedEmail(String id, JsonValue params) {
+            this.id = id;
+            this.params = params;
+        }
+    }
+}
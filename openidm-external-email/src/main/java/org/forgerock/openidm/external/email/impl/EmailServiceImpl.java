@@ -2,7 +2,7 @@
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
  * Copyright © 2011-2015 ForgeRock AS. All rights reserved.
- * Portions Copyright 2020 Wren Security
+ * Portions Copyright 2020-2026 Wren Security
  *
  * The contents of this file are subject to the terms
  * of the Common Development and Distribution License
@@ -83,12 +83,17 @@ public class EmailServiceImpl implements SingletonResourceProvider {
     final static Logger logger = LoggerFactory.getLogger(EmailServiceImpl.class);
     public static final String PID = "org.forgerock.openidm.external.email";
 
+    private static final String CONFIG_QUEUE = "queue";
+
     /** Enhanced configuration service. */
     @Reference(policy = ReferencePolicy.DYNAMIC)
     private volatile EnhancedConfig enhancedConfig;
 
     EmailClient emailClient;
 
+    /** Queue of emails to be sent asynchronously, null if emails are sent synchronously */
+    EmailQueue emailQueue;
+
     @Action(operationDescription =
     @Operation(
             description = "Send email",
@@ -107,11 +112,16 @@ public class EmailServiceImpl implements SingletonResourceProvider {
         logger.debug("External Email service action called for {} with {}",
                 request.getResourcePath(), request.getContent());
         try {
-            emailClient.send(request.getContent());
+            if (emailQueue != null) {
+                result.put(ResourceResponse.FIELD_CONTENT_ID, emailQueue.submit(request.getContent()));
+                result.put("status", "ACCEPTED");
+            } else {
+                emailClient.send(request.getContent());
+                result.put("status", "OK");
+            }
         } catch (ResourceException e) {
             return e.asPromise();
         }
-        result.put("status", "OK");
         return Promises.newResultPromise(Responses.newActionResponse(new JsonValue(result)));
     }
 
@@ -134,8 +144,14 @@ public class EmailServiceImpl implements SingletonResourceProvider {
     void activate(ComponentContext compContext) {
         logger.debug("Activating Service with configuration {}", compContext.getProperties());
         try {
-            emailClient = new EmailClient(enhancedConfig.getConfigurationAsJson(compContext));
+            final JsonValue config = enhancedConfig.getConfigurationAsJson(compContext);
+            emailClient = new EmailClient(config);
             logger.debug("external email client enabled");
+            final JsonValue queueConfig = config.get(CONFIG_QUEUE);
+            if (queueConfig.get(EmailQueue.CONFIG_ENABLED).defaultTo(false).asBoolean()) {
+                emailQueue = new EmailQueue(emailClient, queueConfig);
+                emailQueue.start();
+            }
         } catch (RuntimeException ex) {
             logger.warn("Configuration invalid, can not start external email client service.", ex);
             throw ex;
@@ -146,6 +162,13 @@ public class EmailServiceImpl implements SingletonResourceProvider {
     @Deactivate
     void deactivate(ComponentContext compContext) {
         logger.debug("Deactivating Service {}", compContext.getProperties());
+        if (emailQueue != null) {
+            emailQueue.stop();
+            emailQueue = null;
+        }
+        if (emailClient != null) {
+            emailClient.close();
+        }
         logger.info("Notification service stopped.");
     }
 }
@@ -0,0 +1,212 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.external.email.impl;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded pool of connected SMTP transports.
+ * <p>
+ * A transport is returned to the pool after sending, so the next message does not pay for the TCP connection, TLS
+ * and authentication handshakes again. Idle transports are health-checked with an SMTP {@code NOOP} before being
+ * reused, and closed once idle for longer than the idle timeout. A pool with a maximum size of 0 connects for every
+ * message.
+ */
+class SmtpTransportPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(SmtpTransportPool.class);
+
+    private final Session session;
+    private final String username;
+    private final String password;
+    private final int maxSize;
+    private final long idleTimeoutMillis;
+    private final long acquireTimeoutMillis;
+
+    /** Permits to hold a transport, in use or idle, null if pooling is disabled */
+    private final Semaphore permits;
+
+    /** Idle transports, the most recently used first, guarded by itself */
+    private final Deque<IdleTransport> idle = new ArrayDeque<>();
+
+    private volatile boolean closed = false;
+
+    /**
+     * Creates a pool of transports.
+     *
+     * @param session the mail session to get the transports from
+     * @param username the user to authenticate as, null to connect without authentication
+     * @param password the password of the user
+     * @param maxSize the maximum number of transports, 0 to disable pooling
+     * @param idleTimeoutMillis the time after which an idle transport is closed
+     * @param acquireTimeoutMillis the maximum time to wait for a transport when all are in use
+     */
+    SmtpTransportPool(Session session, String username, String password, int maxSize, long idleTimeoutMillis,
+            long acquireTimeoutMillis) {
+        this.session = session;
+        this.username = username;
+        this.password = password;
+        this.maxSize = Math.max(0, maxSize);
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.permits = this.maxSize > 0 ? new Semaphore(this.maxSize) : null;
+    }
+
+    /**
+     * Acquires a connected transport, reusing an idle one if it is still healthy.
+     *
+     * @return the transport, to be released once the messages are sent
+     * @throws MessagingException if no transport could be connected, or none became available in time
+     */
+    Transport acquire() throws MessagingException {
+        if (closed) {
+            throw new MessagingException("The SMTP transport pool is closed");
+        }
+        if (permits == null) {
+            return connect();
+        }
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new MessagingException("No SMTP connection available after " + acquireTimeoutMillis + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessagingException("Interrupted waiting for an SMTP connection", e);
+        }
+        try {
+            Transport transport;
+            while ((transport = pollIdle()) != null) {
+                // isConnected sends a NOOP to check the server still accepts commands on the connection
+                if (transport.isConnected()) {
+                    return transport;
+                }
+                logger.debug("Discarding stale SMTP connection");
+                close(transport);
+            }
+            return connect();
+        } catch (MessagingException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Releases an acquired transport.
+     *
+     * @param transport the transport
+     * @param reusable false if sending failed in a way that may have left the connection unusable
+     */
+    void release(Transport transport, boolean reusable) {
+        if (permits == null) {
+            close(transport);
+            return;
+        }
+        try {
+            if (reusable && !closed) {
+                synchronized (idle) {
+                    idle.addFirst(new IdleTransport(transport, System.currentTimeMillis()));
+                }
+            } else {
+                close(transport);
+            }
+        } finally {
+            permits.release();
+        }
+        if (closed) {
+            closeIdle();
+        }
+    }
+
+    /**
+     * Closes the idle transports, transports in use are closed when released.
+     */
+    void close() {
+        closed = true;
+        closeIdle();
+    }
+
+    /**
+     * Returns the number of idle transports.
+     *
+     * @return the number of idle transports
+     */
+    int getIdleCount() {
+        synchronized (idle) {
+            return idle.size();
+        }
+    }
+
+    private Transport pollIdle() {
+        final long now = System.currentTimeMillis();
+        synchronized (idle) {
+            // the least recently used transports are at the end
+            IdleTransport oldest;
+            while ((oldest = idle.peekLast()) != null && now - oldest.since > idleTimeoutMillis) {
+                idle.removeLast();
+                close(oldest.transport);
+            }
+            final IdleTransport recent = idle.pollFirst();
+            return recent != null ? recent.transport : null;
+        }
+    }
+
+    private void closeIdle() {
+        synchronized (idle) {
+            IdleTransport idleTransport;
+            while ((idleTransport = idle.pollFirst()) != null) {
+                close(idleTransport.transport);
+            }
+        }
+    }
+
+    private Transport connect() throws MessagingException {
+        final Transport transport = session.getTransport("smtp");
+        if (username != null) {
+            transport.connect(username, password);
+        } else {
+            transport.connect();
+        }
+        return transport;
+    }
+
+    private static void close(Transport transport) {
+        try {
+            transport.close();
+        } catch (MessagingException e) {
+            logger.debug("Failure closing SMTP connection", e);
+        }
+    }
+
+    private static final class IdleTransport {
+        private final Transport transport;
+        private final long since;
+
+        private IdleTransport(Transport transport, long since) {
+            this.transport = transport;
+            this.since = since;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.external.email.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import javax.mail.Address;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Transport;
+
+import org.forgerock.json.JsonValue;
+import org.forgerock.json.resource.ServiceUnavailableException;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class EmailQueueTest {
+
+    private EmailClient emailClient;
+    private Transport transport;
+    private Message message;
+    private EmailQueue emailQueue;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        emailClient = mock(EmailClient.class);
+        transport = mock(Transport.class);
+        message = mock(Message.class);
+        when(emailClient.createMessage(any(JsonValue.class))).thenReturn(message);
+        when(emailClient.acquireTransport()).thenReturn(transport);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        if (emailQueue != null) {
+            emailQueue.stop();
+        }
+    }
+
+    @Test
+    public void testQueuedEmailsAreSent() throws Exception {
+        emailQueue = new EmailQueue(emailClient, json(object(field("workers", 1))));
+        emailQueue.start();
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(emailQueue.submit(email())).isNotEmpty();
+        }
+
+        verify(transport, timeout(5000).times(10)).sendMessage(eq(message), any(Address[].class));
+        verify(emailClient, timeout(5000).atLeastOnce()).releaseTransport(transport, true);
+        awaitNoPendingEmail();
+    }
+
+    @Test
+    public void testFailedEmailIsRetried() throws Exception {
+        doThrow(new MessagingException("connection lost")).when(transport)
+                .sendMessage(eq(message), any(Address[].class));
+        emailQueue = new EmailQueue(emailClient, json(object(
+                field("workers", 1),
+                field("maxAttempts", 3),
+                field("retryDelay", "10 ms"))));
+        emailQueue.start();
+
+        emailQueue.submit(email());
+
+        verify(transport, timeout(5000).times(3)).sendMessage(eq(message), any(Address[].class));
+        awaitNoPendingEmail();
+        Thread.sleep(100);
+        verify(transport, times(3)).sendMessage(eq(message), any(Address[].class));
+    }
+
+    @Test
+    public void testRejectedRecipientsAreNotRetried() throws Exception {
+        doThrow(new SendFailedException("rejected")).when(transport).sendMessage(eq(message), any(Address[].class));
+        emailQueue = new EmailQueue(emailClient, json(object(
+                field("workers", 1),
+                field("maxAttempts", 3),
+                field("retryDelay", "10 ms"))));
+        emailQueue.start();
+
+        emailQueue.submit(email());
+
+        awaitNoPendingEmail();
+        Thread.sleep(100);
+        verify(transport, times(1)).sendMessage(eq(message), any(Address[].class));
+        verify(emailClient).releaseTransport(transport, true);
+    }
+
+    @Test(expectedExceptions = ServiceUnavailableException.class)
+    public void testFullQueueRejectsEmail() throws Exception {
+        when(emailClient.acquireTransport()).thenThrow(new MessagingException("unavailable"));
+        emailQueue = new EmailQueue(emailClient, json(object(
+                field("capacity", 1),
+                field("retryDelay", "1 minute"))));
+        emailQueue.start();
+
+        emailQueue.submit(email());
+        emailQueue.submit(email());
+    }
+
+    @Test
+    public void testSpooledEmailsAreSentOnStart() throws Exception {
+        final File spoolDirectory = Files.createTempDirectory("email-spool").toFile();
+        Files.write(new File(spoolDirectory, "queued.json").toPath(),
+                "{\"to\":\"bjensen@example.com\",\"subject\":\"Hello\"}".getBytes("UTF-8"));
+        emailQueue = new EmailQueue(emailClient,
+                json(object(field("spoolDirectory", spoolDirectory.getAbsolutePath()))));
+
+        emailQueue.start();
+
+        verify(transport, timeout(5000)).sendMessage(eq(message), any(Address[].class));
+        verify(emailClient, timeout(5000)).releaseTransport(transport, true);
+        assertThat(spoolDirectory.list()).isEmpty();
+    }
+
+    @Test
+    public void testUnsentEmailIsKeptInSpool() throws Exception {
+        when(emailClient.acquireTransport()).thenThrow(new MessagingException("unavailable"));
+        final File spoolDirectory = Files.createTempDirectory("email-spool").toFile();
+        emailQueue = new EmailQueue(emailClient, json(object(
+                field("spoolDirectory", spoolDirectory.getAbsolutePath()),
+                field("retryDelay", "1 minute"))));
+        emailQueue.start();
+
+        final String id = emailQueue.submit(email());
+        emailQueue.stop();
+
+        assertThat(spoolDirectory.list()).containsExactly(id + ".json");
+    }
+
+    private void awaitNoPendingEmail() throws InterruptedException {
+        for (int i = 0; i < 500 && emailQueue.getPendingCount() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertThat(emailQueue.getPendingCount()).isEqualTo(0);
+    }
+
+    private static JsonValue email() {
+        return json(object(
+                field("from", "openidm@example.com"),
+                field("to", "bjensen@example.com"),
+                field("subject", "Hello"),
+                field("body", "Hello Babs")));
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.external.email.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.mail.Message;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class SmtpTransportPoolTest {
+
+    private SmtpServer server;
+    private Session session;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        server = new SmtpServer();
+        server.start();
+        Properties props = new Properties();
+        props.put("mail.smtp.host", "127.0.0.1");
+        props.put("mail.smtp.port", Integer.toString(server.getPort()));
+        session = Session.getInstance(props);
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        server.close();
+    }
+
+    @Test
+    public void testTransportIsReused() throws Exception {
+        SmtpTransportPool pool = new SmtpTransportPool(session, null, null, 2, 60000, 1000);
+
+        for (int i = 0; i < 3; i++) {
+            Transport transport = pool.acquire();
+            Message message = message("Message " + i);
+            transport.sendMessage(message, message.getAllRecipients());
+            pool.release(transport, true);
+        }
+        pool.close();
+
+        assertThat(server.getConnections()).isEqualTo(1);
+        assertThat(server.getMessages()).hasSize(3);
+        assertThat(pool.getIdleCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testUnusableTransportIsNotReused() throws Exception {
+        SmtpTransportPool pool = new SmtpTransportPool(session, null, null, 2, 60000, 1000);
+
+        pool.release(pool.acquire(), false);
+        pool.release(pool.acquire(), true);
+
+        assertThat(server.getConnections()).isEqualTo(2);
+        assertThat(pool.getIdleCount()).isEqualTo(1);
+        pool.close();
+    }
+
+    @Test
+    public void testIdleTransportIsClosed() throws Exception {
+        SmtpTransportPool pool = new SmtpTransportPool(session, null, null, 2, 0, 1000);
+
+        pool.release(pool.acquire(), true);
+        Thread.sleep(10);
+        pool.release(pool.acquire(), true);
+
+        assertThat(server.getConnections()).isEqualTo(2);
+        pool.close();
+    }
+
+    @Test
+    public void testPoolingDisabled() throws Exception {
+        SmtpTransportPool pool = new SmtpTransportPool(session, null, null, 0, 60000, 1000);
+
+        pool.release(pool.acquire(), true);
+        pool.release(pool.acquire(), true);
+
+        assertThat(server.getConnections()).isEqualTo(2);
+        assertThat(pool.getIdleCount()).isEqualTo(0);
+    }
+
+    private Message message(String subject) throws Exception {
+        MimeMessage message = new MimeMessage(session);
+        message.setFrom(new InternetAddress("openidm@example.com"));
+        message.setRecipient(Message.RecipientType.TO, new InternetAddress("bjensen@example.com"));
+        message.setSubject(subject);
+        message.setText("Hello Babs");
+        message.saveChanges();
+        return message;
+    }
+
+    /**
+     * A local SMTP stand-in accepting any message, one connection at a time.
+     */
+    private static final class SmtpServer extends Thread {
+        private final ServerSocket serverSocket;
+        private final AtomicInteger connections = new AtomicInteger();
+        private final List<String> messages = new CopyOnWriteArrayList<>();
+
+        private SmtpServer() throws IOException {
+            serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+            setDaemon(true);
+        }
+
+        int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        int getConnections() {
+            return connections.get();
+        }
+
+        List<String> getMessages() {
+            return messages;
+        }
+
+        void close() throws IOException {
+            serverSocket.close();
+        }
+
+        @Override
+        public void run() {
+            while (!serverSocket.isClosed()) {
+                try (Socket socket = serverSocket.accept()) {
+                    connections.incrementAndGet();
+                    serve(socket);
+                } catch (IOException e) {
+                    // closed
+                }
+            }
+        }
+
+        private void serve(Socket socket) throws IOException {
+            final BufferedReader in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            final OutputStream out = socket.getOutputStream();
+            reply(out, "220 localhost ESMTP");
+            String line;
+            while ((line = in.readLine()) != null) {
+                final String command = line.length() >= 4 ? line.substring(0, 4).toUpperCase() : line.toUpperCase();
+                switch (command) {
+                case "EHLO":
+                    reply(out, "250 localhost");
+                    break;
+                case "DATA":
+                    reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                    final StringBuilder data = new StringBuilder();
+                    while ((line = in.readLine()) != null && !line.equals(".")) {
+                        data.append(line).append('\n');
+                    }
+                    messages.add(data.toString());
+                    reply(out, "250 OK");
+                    break;
+                case "QUIT":
+                    reply(out, "221 Bye");
+                    return;
+                default:
+                    // HELO, MAIL, RCPT, RSET and NOOP
+                    reply(out, "250 OK");
+                }
+            }
+        }
+
+        private static void reply(OutputStream out, String reply) throws IOException {
+            out.write((reply + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+        }
+    }
+}
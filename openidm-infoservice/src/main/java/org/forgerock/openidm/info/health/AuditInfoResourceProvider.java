@@ -0,0 +1,90 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.info.health;
+
+import static org.forgerock.json.JsonValue.array;
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+import static org.forgerock.json.resource.Responses.newResourceResponse;
+
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.forgerock.api.annotations.Handler;
+import org.forgerock.api.annotations.Operation;
+import org.forgerock.api.annotations.Read;
+import org.forgerock.api.annotations.Schema;
+import org.forgerock.api.annotations.SingletonProvider;
+import org.forgerock.json.JsonValue;
+import org.forgerock.json.resource.InternalServerErrorException;
+import org.forgerock.json.resource.ReadRequest;
+import org.forgerock.json.resource.ResourceException;
+import org.forgerock.json.resource.ResourceResponse;
+import org.forgerock.openidm.info.health.api.AuditInfoResource;
+import org.forgerock.services.context.Context;
+import org.forgerock.util.promise.Promise;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Gets Audit Health Info from the asynchronous event buffers of the repository and router audit event handlers.
+ */
+@SingletonProvider(@Handler(
+        id = "auditInfoResourceProvider:0",
+        title = "Health - Audit event buffer statistics",
+        description = "Returns the queue depth, flush latency and drop counters of the audit event buffers.",
+        mvccSupported = false,
+        resourceSchema = @Schema(fromType = AuditInfoResource.class)))
+public class AuditInfoResourceProvider extends AbstractInfoResourceProvider {
+
+    private final static Logger logger = LoggerFactory.getLogger(AuditInfoResourceProvider.class);
+
+    private static final String AUDIT_EVENT_BUFFER_PATTERN = "org.forgerock.openidm.audit:type=AuditEventBuffer,*";
+
+    @Read(operationDescription = @Operation(description = "Read audit event buffer statistics."))
+    @Override
+    public Promise<ResourceResponse, ResourceException> readInstance(Context context, ReadRequest request) {
+        try {
+            final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            final Set<ObjectName> objectNames =
+                    new TreeSet<>(mBeanServer.queryNames(new ObjectName(AUDIT_EVENT_BUFFER_PATTERN), null));
+
+            final JsonValue buffers = json(array());
+            for (final ObjectName objectName : objectNames) {
+                buffers.add(object(
+                        field("name", ObjectName.unquote(objectName.getKeyProperty("name"))),
+                        field("queueDepth", mBeanServer.getAttribute(objectName, "QueueDepth")),
+                        field("capacity", mBeanServer.getAttribute(objectName, "Capacity")),
+                        field("droppedEvents", mBeanServer.getAttribute(objectName, "DroppedEvents")),
+                        field("spilledEvents", mBeanServer.getAttribute(objectName, "SpilledEvents")),
+                        field("writtenEvents", mBeanServer.getAttribute(objectName, "WrittenEvents")),
+                        field("failedEvents", mBeanServer.getAttribute(objectName, "FailedEvents")),
+                        field("lastFlushLatency", mBeanServer.getAttribute(objectName, "LastFlushLatency")),
+                        field("averageFlushLatency", mBeanServer.getAttribute(objectName, "AverageFlushLatency"))
+                ));
+            }
+            return newResourceResponse("", "", json(object(field("buffers", buffers.getObject())))).asPromise();
+        } catch (Exception e) {
+            logger.error("Unable to get audit event buffer mbeans");
+            return new InternalServerErrorException("Unable to get audit event buffer mbeans", e).asPromise();
+        }
+    }
+}
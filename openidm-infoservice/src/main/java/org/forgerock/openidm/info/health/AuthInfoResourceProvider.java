@@ -0,0 +1,82 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.info.health;
+
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+import static org.forgerock.json.resource.Responses.newResourceResponse;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.forgerock.api.annotations.Handler;
+import org.forgerock.api.annotations.Operation;
+import org.forgerock.api.annotations.Read;
+import org.forgerock.api.annotations.Schema;
+import org.forgerock.api.annotations.SingletonProvider;
+import org.forgerock.json.resource.InternalServerErrorException;
+import org.forgerock.json.resource.ReadRequest;
+import org.forgerock.json.resource.ResourceException;
+import org.forgerock.json.resource.ResourceResponse;
+import org.forgerock.openidm.info.health.api.AuthInfoResource;
+import org.forgerock.services.context.Context;
+import org.forgerock.util.promise.Promise;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Gets Auth Health Info from the authorization cache of the authentication modules.
+ */
+@SingletonProvider(@Handler(
+        id = "authInfoResourceProvider:0",
+        title = "Health - Authorization cache statistics",
+        description = "Returns the size, hit ratio, eviction and invalidation counters of the authorization cache.",
+        mvccSupported = false,
+        resourceSchema = @Schema(fromType = AuthInfoResource.class)))
+public class AuthInfoResourceProvider extends AbstractInfoResourceProvider {
+
+    private final static Logger logger = LoggerFactory.getLogger(AuthInfoResourceProvider.class);
+
+    private static final String AUTHORIZATION_CACHE_NAME = "org.forgerock.openidm.auth:type=AuthorizationCache";
+
+    @Read(operationDescription = @Operation(description = "Read authorization cache statistics."))
+    @Override
+    public Promise<ResourceResponse, ResourceException> readInstance(Context context, ReadRequest request) {
+        try {
+            final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName objectName = new ObjectName(AUTHORIZATION_CACHE_NAME);
+            if (!mBeanServer.isRegistered(objectName)) {
+                return newResourceResponse("", "", json(object(field("enabled", false)))).asPromise();
+            }
+            return newResourceResponse("", "", json(object(
+                    field("enabled", mBeanServer.getAttribute(objectName, "Enabled")),
+                    field("size", mBeanServer.getAttribute(objectName, "Size")),
+                    field("maxEntries", mBeanServer.getAttribute(objectName, "MaxEntries")),
+                    field("hits", mBeanServer.getAttribute(objectName, "Hits")),
+                    field("misses", mBeanServer.getAttribute(objectName, "Misses")),
+                    field("hitRatio", mBeanServer.getAttribute(objectName, "HitRatio")),
+                    field("evictions", mBeanServer.getAttribute(objectName, "Evictions")),
+                    field("invalidations", mBeanServer.getAttribute(objectName, "Invalidations"))
+            ))).asPromise();
+        } catch (Exception e) {
+            logger.error("Unable to get authorization cache mbean");
+            return new InternalServerErrorException("Unable to get authorization cache mbean", e).asPromise();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.info.health;
+
+import static org.forgerock.json.JsonValue.array;
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+import static org.forgerock.json.resource.Responses.newResourceResponse;
+
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.forgerock.api.annotations.Handler;
+import org.forgerock.api.annotations.Operation;
+import org.forgerock.api.annotations.Read;
+import org.forgerock.api.annotations.Schema;
+import org.forgerock.api.annotations.SingletonProvider;
+import org.forgerock.json.JsonValue;
+import org.forgerock.json.resource.InternalServerErrorException;
+import org.forgerock.json.resource.ReadRequest;
+import org.forgerock.json.resource.ResourceException;
+import org.forgerock.json.resource.ResourceResponse;
+import org.forgerock.openidm.info.health.api.SelfServiceInfoResource;
+import org.forgerock.services.context.Context;
+import org.forgerock.util.promise.Promise;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Gets Self-Service Health Info from the process stores of the self-service processes.
+ */
+@SingletonProvider(@Handler(
+        id = "selfServiceInfoResourceProvider:0",
+        title = "Health - Self-service process store statistics",
+        description = "Returns the size, eviction and expiration counters of the self-service process stores.",
+        mvccSupported = false,
+        resourceSchema = @Schema(fromType = SelfServiceInfoResource.class)))
+public class SelfServiceInfoResourceProvider extends AbstractInfoResourceProvider {
+
+    private final static Logger logger = LoggerFactory.getLogger(SelfServiceInfoResourceProvider.class);
+
+    private static final String PROCESS_STORE_PATTERN = "org.forgerock.openidm.selfservice:type=ProcessStore,*";
+
+    @Read(operationDescription = @Operation(description = "Read self-service process store statistics."))
+    @Override
+    public Promise<ResourceResponse, ResourceException> readInstance(Context context, ReadRequest request) {
+        try {
+            final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            final Set<ObjectName> objectNames =
+                    new TreeSet<>(mBeanServer.queryNames(new ObjectName(PROCESS_STORE_PATTERN), null));
+
+            final JsonValue processStores = json(array());
+            for (final ObjectName objectName : objectNames) {
+                processStores.add(object(
+                        field("name", ObjectName.unquote(objectName.getKeyProperty("name"))),
+                        field("type", mBeanServer.getAttribute(objectName, "Type")),
+                        field("size", mBeanServer.getAttribute(objectName, "Size")),
+                        field("maxEntries", mBeanServer.getAttribute(objectName, "MaxEntries")),
+                        field("evictions", mBeanServer.getAttribute(objectName, "Evictions")),
+                        field("expirations", mBeanServer.getAttribute(objectName, "Expirations")),
+                        field("hits", mBeanServer.getAttribute(objectName, "Hits")),
+                        field("repositoryReads", mBeanServer.getAttribute(objectName, "RepositoryReads"))
+                ));
+            }
+            return newResourceResponse("", "", json(object(field("processStores", processStores.getObject()))))
+                    .asPromise();
+        } catch (Exception e) {
+            logger.error("Unable to get self-service process store mbeans");
+            return new InternalServerErrorException("Unable to get self-service process store mbeans", e).asPromise();
+        }
+    }
+}
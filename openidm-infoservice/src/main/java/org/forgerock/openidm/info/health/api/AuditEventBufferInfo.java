@@ -0,0 +1,133 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.info.health.api;
+
+import org.forgerock.api.annotations.Description;
+import org.forgerock.api.annotations.ReadOnly;
+
+/**
+ * Api pojo for {@link AuditInfoResource}
+ */
+public class AuditEventBufferInfo {
+    private String name;
+    private int queueDepth;
+    private int capacity;
+    private long droppedEvents;
+    private long spilledEvents;
+    private long writtenEvents;
+    private long failedEvents;
+    private long lastFlushLatency;
+    private double averageFlushLatency;
+
+    /**
+     * Returns the name of the audit event handler.
+     *
+     * @return the name of the audit event handler.
+     */
+    @Description("Name of the audit event handler")
+    @ReadOnly
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the number of events waiting in the buffer.
+     *
+     * @return the number of buffered events.
+     */
+    @Description("Number of events waiting in the buffer")
+    @ReadOnly
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * Returns the maximum number of events held in the buffer.
+     *
+     * @return the buffer capacity.
+     */
+    @Description("Maximum number of events held in the buffer")
+    @ReadOnly
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of events discarded because the buffer was full.
+     *
+     * @return the number of dropped events.
+     */
+    @Description("Number of events discarded because the buffer was full")
+    @ReadOnly
+    public long getDroppedEvents() {
+        return droppedEvents;
+    }
+
+    /**
+     * Returns the number of events spilled to disk because the buffer was full.
+     *
+     * @return the number of spilled events.
+     */
+    @Description("Number of events spilled to disk because the buffer was full")
+    @ReadOnly
+    public long getSpilledEvents() {
+        return spilledEvents;
+    }
+
+    /**
+     * Returns the number of events written by the handler.
+     *
+     * @return the number of written events.
+     */
+    @Description("Number of events written by the handler")
+    @ReadOnly
+    public long getWrittenEvents() {
+        return writtenEvents;
+    }
+
+    /**
+     * Returns the number of events the handler failed to write.
+     *
+     * @return the number of failed events.
+     */
+    @Description("Number of events the handler failed to write")
+    @ReadOnly
+    public long getFailedEvents() {
+        return failedEvents;
+    }
+
+    /**
+     * Returns the time taken to write the last batch of events.
+     *
+     * @return the last flush latency in milliseconds.
+     */
+    @Description("Time taken to write the last batch of events, in milliseconds")
+    @ReadOnly
+    public long getLastFlushLatency() {
+        return lastFlushLatency;
+    }
+
+    /**
+     * Returns the average time taken to write a batch of events.
+     *
+     * @return the average flush latency in milliseconds.
+     */
+    @Description("Average time taken to write a batch of events, in milliseconds")
+    @ReadOnly
+    public double getAverageFlushLatency() {
+        return averageFlushLatency;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.info.health.api;
+
+import org.forgerock.api.annotations.Description;
+import org.forgerock.api.annotations.ReadOnly;
+
+/**
+ * Api pojo for {@link org.forgerock.openidm.info.health.AuthInfoResourceProvider}
+ */
+public class AuthInfoResource {
+    private boolean enabled;
+    private int size;
+    private int maxEntries;
+    private long hits;
+    private long misses;
+    private double hitRatio;
+    private long evictions;
+    private long invalidations;
+
+    /**
+     * Returns whether the authorization cache is enabled.
+     *
+     * @return true if the security contexts are cached.
+     */
+    @Description("Whether the security contexts computed by the auth modules are cached")
+    @ReadOnly
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the number of cached security contexts.
+     *
+     * @return the number of entries.
+     */
+    @Description("Number of cached security contexts")
+    @ReadOnly
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the maximum number of cached security contexts.
+     *
+     * @return the cache capacity.
+     */
+    @Description("Maximum number of cached security contexts")
+    @ReadOnly
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Returns the number of authenticated requests served from the cache.
+     *
+     * @return the number of hits.
+     */
+    @Description("Number of authenticated requests served from the cache")
+    @ReadOnly
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of authenticated requests whose security context was computed.
+     *
+     * @return the number of misses.
+     */
+    @Description("Number of authenticated requests whose security context was computed")
+    @ReadOnly
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the ratio of hits over the cacheable authenticated requests.
+     *
+     * @return the hit ratio between 0 and 1.
+     */
+    @Description("Ratio of hits over the cacheable authenticated requests")
+    @ReadOnly
+    public double getHitRatio() {
+        return hitRatio;
+    }
+
+    /**
+     * Returns the number of entries removed because the cache was full.
+     *
+     * @return the number of evictions.
+     */
+    @Description("Number of entries removed because the cache was full")
+    @ReadOnly
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the number of entries removed because their resource was written.
+     *
+     * @return the number of invalidations.
+     */
+    @Description("Number of entries removed because their resource was written")
+    @ReadOnly
+    public long getInvalidations() {
+        return invalidations;
+    }
+}
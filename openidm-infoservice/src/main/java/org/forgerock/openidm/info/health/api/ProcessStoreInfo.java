@@ -0,0 +1,121 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.info.health.api;
+
+import org.forgerock.api.annotations.Description;
+import org.forgerock.api.annotations.ReadOnly;
+
+/**
+ * Api pojo for {@link SelfServiceInfoResource}
+ */
+public class ProcessStoreInfo {
+    private String name;
+    private String type;
+    private int size;
+    private int maxEntries;
+    private long evictions;
+    private long expirations;
+    private long hits;
+    private long repositoryReads;
+
+    /**
+     * Returns the name of the self-service process.
+     *
+     * @return the name of the self-service process.
+     */
+    @Description("Name of the self-service process")
+    @ReadOnly
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the type of the process store.
+     *
+     * @return "local" or "repo".
+     */
+    @Description("Type of the process store, local or repo")
+    @ReadOnly
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Returns the number of process states held in memory.
+     *
+     * @return the number of entries.
+     */
+    @Description("Number of process states held in memory")
+    @ReadOnly
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the maximum number of process states held in memory.
+     *
+     * @return the store capacity.
+     */
+    @Description("Maximum number of process states held in memory")
+    @ReadOnly
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Returns the number of process states removed from memory because the store was full.
+     *
+     * @return the number of evictions.
+     */
+    @Description("Number of process states removed from memory because the store was full")
+    @ReadOnly
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the number of process states discarded because the flow was abandoned.
+     *
+     * @return the number of expirations.
+     */
+    @Description("Number of process states discarded because the flow was abandoned")
+    @ReadOnly
+    public long getExpirations() {
+        return expirations;
+    }
+
+    /**
+     * Returns the number of process states taken from memory.
+     *
+     * @return the number of hits.
+     */
+    @Description("Number of process states taken from memory")
+    @ReadOnly
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of process states read from the repository.
+     *
+     * @return the number of repository reads.
+     */
+    @Description("Number of process states read from the repository")
+    @ReadOnly
+    public long getRepositoryReads() {
+        return repositoryReads;
+    }
+}
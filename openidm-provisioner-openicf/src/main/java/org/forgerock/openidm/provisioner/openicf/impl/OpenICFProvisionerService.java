@@ -14,7 +14,7 @@
  * "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2011-2016 ForgeRock AS.
- * Portions Copyright 2018-2020 Wren Security.
+ * Portions Copyright 2018-2026 Wren Security.
  */
 package org.forgerock.openidm.provisioner.openicf.impl;
 
@@ -132,6 +132,8 @@ public class OpenICFProvisionerService implements ProvisionerService, SingletonR
 
     private static final Logger logger = LoggerFactory.getLogger(OpenICFProvisionerService.class);
 
+    private static final int DEFAULT_LIVE_SYNC_MAX_PENDING_DELTAS = 1000;
+
     private SimpleSystemIdentifier systemIdentifier = null;
     private OperationHelperBuilder operationHelperBuilder = null;
     private Promise<ConnectorInfo, RuntimeException> connectorFacadeCallback = null;
@@ -139,6 +141,10 @@ public class OpenICFProvisionerService implements ProvisionerService, SingletonR
     private JsonValue jsonConfiguration = null;
     private ConnectorReference connectorReference = null;
     private SyncFailureHandler syncFailureHandler = null;
+    /** Number of lanes processing liveSync deltas in parallel, 1 to process them inline */
+    private int liveSyncLanes = 1;
+    /** Maximum number of liveSync deltas queued on the lanes */
+    private int liveSyncMaxPendingDeltas = DEFAULT_LIVE_SYNC_MAX_PENDING_DELTAS;
     private String factoryPid = null;
 
     /** use null-object activity logger until/unless ConnectionFactory binder updates it */
@@ -237,6 +243,11 @@ public class OpenICFProvisionerService implements ProvisionerService, SingletonR
 
             syncFailureHandler = syncFailureHandlerFactory.create(jsonConfiguration.get("syncFailureHandler"));
 
+            final JsonValue liveSyncConfig = jsonConfiguration.get("liveSync");
+            liveSyncLanes = liveSyncConfig.get("lanes").defaultTo(1).asInteger();
+            liveSyncMaxPendingDeltas = liveSyncConfig.get("maxPendingDeltas")
+                    .defaultTo(DEFAULT_LIVE_SYNC_MAX_PENDING_DELTAS).asInteger();
+
             final OpenICFProvisionerService provisionerService = this;
             connectorInfoProvider.findConnectorInfoAsync(connectorReference).thenOnResult(
                     new org.forgerock.util.promise.ResultHandler<ConnectorInfo>() {
@@ -788,6 +799,11 @@ public class OpenICFProvisionerService implements ProvisionerService, SingletonR
      * <p>
      * The {@code previousStage} object is the previously returned value of this
      * method.
+     * <p>
+     * If {@code liveSync/lanes} is configured above 1, the changes are processed
+     * in parallel by {@link SyncDeltaLanes}, keeping the changes to an object in
+     * order, and the new token is the one of the last change of the contiguous run
+     * of processed changes.
      *
      * @see     ConnectorUtil#convertToSyncToken(org.forgerock.json.JsonValue)
      *          or any exception happed inside the connector.
@@ -846,14 +862,27 @@ public class OpenICFProvisionerService implements ProvisionerService, SingletonR
                     logger.debug("New LatestSyncToken has been fetched. New token is: {}", token);
                 } else {
                     final SyncToken[] lastToken = new SyncToken[]{token};
-                    final String[] failedRecord = new String[1];
                     OperationOptionsBuilder operationOptionsBuilder =
                             helper.getOperationOptionsBuilder(SyncApiOp.class, null, previousStage);
 
+                    // deltas are processed inline unless liveSync lanes are configured
+                    final SyncDeltaLanes lanes = liveSyncLanes > 1
+                            ? new SyncDeltaLanes(objectType, liveSyncLanes, liveSyncMaxPendingDeltas,
+                                    new SyncDeltaLanes.DeltaProcessor() {
+                                        @Override
+                                        public boolean process(long sequence, SyncDelta syncDelta) {
+                                            return processSyncDelta(context, objectType, helper, stage, sequence,
+                                                    syncDelta, syncRetry);
+                                        }
+                                    }, syncRetry)
+                            : null;
+
                     try {
                         logger.debug("Execute sync(ObjectClass:{}, SyncToken:{})",
                                 new Object[] { helper.getObjectClass().getObjectClassValue(), token });
-                        SyncToken syncToken = operation.sync(helper.getObjectClass(), token,
+                        final SyncToken syncToken;
+                        try {
+                            syncToken = operation.sync(helper.getObjectClass(), token,
                                 new SyncResultsHandler() {
                                     /**
                                      * Called to handle a delta in the stream. The Connector framework will call
@@ -870,116 +899,48 @@ public class OpenICFProvisionerService implements ProvisionerService, SingletonR
                                      * stop iteration and the exception will propagate to the application.
                                      */
                                     @Override
-                                    @SuppressWarnings("fallthrough")
                                     public boolean handle(SyncDelta syncDelta) {
-                                        try {
-                                            // Q: are we going to encode ids?
-                                            final String resourceId = syncDelta.getUid().getUidValue();
-                                            final String objectTypeName = getObjectTypeName(syncDelta.getObjectClass());
-                                            final String resourceContainer = getSource(objectTypeName == null ? objectType : objectTypeName);
-                                            final JsonValue content = new JsonValue(new LinkedHashMap<String, Object>(2));
-
-                                            //rebuild the OperationHelper if the helper is for the __ALL__ object class
-                                            final OperationHelper syncDeltaOperationHelper = helper.getObjectClass().equals(ObjectClass.ALL)
-                                                    ? operationHelperBuilder.build(objectTypeName, stage, cryptoService)
-                                                    : helper;
-
-                                            switch (syncDelta.getDeltaType()) {
-                                                case CREATE: {
-                                                    JsonValue deltaObject = syncDeltaOperationHelper.build(syncDelta.getObject());
-                                                    content.put("oldValue", null);
-                                                    content.put("newValue", deltaObject.getObject());
-                                                    // TODO import SynchronizationService.Action.notifyCreate and ACTION_PARAM_ constants
-                                                    ActionRequest onCreateRequest = Requests.newActionRequest("sync", "notifyCreate")
-                                                            .setAdditionalParameter("resourceContainer", resourceContainer)
-                                                            .setAdditionalParameter("resourceId", resourceId)
-                                                            .setContent(content);
-                                                    connectionFactory.getConnection().action(context, onCreateRequest);
-
-                                                    activityLogger.log(context, onCreateRequest,
-                                                                    "sync-create", onCreateRequest.getResourcePath(),
-                                                                    deltaObject, deltaObject, Status.SUCCESS);
-                                                    break;
-                                                }
-                                                case UPDATE:
-                                                case CREATE_OR_UPDATE: {
-                                                    JsonValue deltaObject = syncDeltaOperationHelper.build(syncDelta.getObject());
-                                                    content.put("oldValue", null);
-                                                    content.put("newValue", deltaObject.getObject());
-                                                    if (null != syncDelta.getPreviousUid()) {
-                                                        deltaObject.put("_previous-id", syncDelta.getPreviousUid().getUidValue());
-                                                    }
-                                                    // TODO import SynchronizationService.Action.notifyUpdate and ACTION_PARAM_ constants
-                                                    ActionRequest onUpdateRequest = Requests.newActionRequest("sync", "notifyUpdate")
-                                                            .setAdditionalParameter("resourceContainer", resourceContainer)
-                                                            .setAdditionalParameter("resourceId", resourceId)
-                                                            .setContent(content);
-                                                    connectionFactory.getConnection().action(context, onUpdateRequest);
-
-                                                    activityLogger.log(context, onUpdateRequest,
-                                                            "sync-update", onUpdateRequest.getResourcePath(),
-                                                            deltaObject, deltaObject, Status.SUCCESS);
-                                                    break;
-                                                }
-                                                case DELETE:
-                                                    // TODO Pass along the old deltaObject - do we have it?
-                                                    content.put("oldValue", null);
-                                                    // TODO import SynchronizationService.Action.notifyDelete and ACTION_PARAM_ constants
-                                                    ActionRequest onDeleteRequest = Requests.newActionRequest("sync", "notifyDelete")
-                                                            .setAdditionalParameter("resourceContainer", resourceContainer)
-                                                            .setAdditionalParameter("resourceId", resourceId)
-                                                            .setContent(content);
-                                                    connectionFactory.getConnection().action(context, onDeleteRequest);
-
-                                                    activityLogger.log(context, onDeleteRequest,
-                                                            "sync-delete", onDeleteRequest.getResourcePath(),
-                                                            null, null, Status.SUCCESS);
-                                                    break;
-                                            }
-                                        } catch (Exception e) {
-                                            failedRecord[0] = SerializerUtil.serializeXmlObject(syncDelta, true);
-                                            logger.debug("Failed to synchronize {} object, handle failure using {}",
-                                                    syncDelta.getUid(), syncFailureHandler, e);
-                                            Map<String, Object> syncFailureMap = new HashMap<>(6);
-                                            syncFailureMap.put("token", syncDelta.getToken().getValue());
-                                            syncFailureMap.put("systemIdentifier", systemIdentifier.getName());
-                                            syncFailureMap.put("objectType", objectType);
-                                            syncFailureMap.put("uid", syncDelta.getUid().getUidValue());
-                                            syncFailureMap.put("failedRecord", failedRecord[0]);
+                                        if (lanes != null) {
                                             try {
-                                                syncFailureHandler.invoke(context, syncFailureMap, e);
-                                            } catch (SyncHandlerException syncHandlerException) {
-                                                // Current contract of the failure handler is that throwing this exception indicates
-                                                // that it should retry for this entry
-                                                syncRetry.setValue(true);
-                                                syncRetry.setThrowable(syncHandlerException);
-                                                logger.debug("Sync failure handler indicated to stop current change set processing until retry handling: {}",
-                                                        syncHandlerException.getMessage(), syncHandlerException);
+                                                return lanes.submit(syncDelta);
+                                            } catch (InterruptedException e) {
+                                                Thread.currentThread().interrupt();
+                                                lanes.abort();
+                                                return false;
                                             }
                                         }
-
-                                        if (syncRetry.getValue()) {
-                                            // Stop the processing of this result set. Next retry will start again after last token.
-                                            return false;
-                                        } else {
-                                            // success (either by original sync or by failure handler)
+                                        // inline processing stops at the first delta to retry
+                                        if (processSyncDelta(context, objectType, helper, stage, 0, syncDelta,
+                                                syncRetry)) {
                                             // Continue the processing of the rest of the result set
                                             lastToken[0] = syncDelta.getToken();
                                             return true;
+                                        } else {
+                                            // Stop the processing of this result set. Next retry will start again after last token.
+                                            return false;
                                         }
                                     }
-                        }, operationOptionsBuilder.build());
+                            }, operationOptionsBuilder.build());
+                        } finally {
+                            if (lanes != null) {
+                                // checkpoint the highest contiguous run of processed deltas
+                                final SyncToken checkpointToken = lanes.close();
+                                if (checkpointToken != null) {
+                                    lastToken[0] = checkpointToken;
+                                }
+                            }
+                        }
                         if (syncRetry.getValue()) {
                             Throwable throwable = syncRetry.getThrowable();
                             Map<String, Object> lastException = new LinkedHashMap<>(2);
                             lastException.put("throwable", throwable.getMessage());
-                            if (null != failedRecord[0]) {
-                                lastException.put("syncDelta", failedRecord[0]);
+                            if (null != syncRetry.getFailedRecord()) {
+                                lastException.put("syncDelta", syncRetry.getFailedRecord());
                             }
                             stage.put("lastException", lastException);
                             logger.debug("Live synchronization of {} failed on {}",
                                     new Object[] { objectType, systemIdentifier.getName() }, throwable);
-                        } else {
+                        } else if (lanes == null || !lanes.isStopped()) {
                             if (syncToken != null) {
                                 lastToken[0] = syncToken;
                             }
@@ -1006,6 +967,112 @@ public class OpenICFProvisionerService implements ProvisionerService, SingletonR
         return stage;
     }
 
+    /**
+     * Sends a liveSync delta to the synchronization service, handing a failure to the sync failure handler.
+     *
+     * @param context the request context of the liveSync
+     * @param objectType the synchronized object type
+     * @param helper the operation helper of the synchronized object type
+     * @param stage the stage of the liveSync
+     * @param sequence the sequence number of the delta in the liveSync run
+     * @param syncDelta the delta
+     * @param syncRetry set if the failure handler asks for the delta to be retried, with the failed delta of the
+     *        lowest sequence number
+     * @return true if the delta is processed, false if it must be retried
+     */
+    @SuppressWarnings("fallthrough")
+    private boolean processSyncDelta(final Context context, final String objectType, final OperationHelper helper,
+            final JsonValue stage, final long sequence, final SyncDelta syncDelta, final SyncRetry syncRetry) {
+        try {
+            // Q: are we going to encode ids?
+            final String resourceId = syncDelta.getUid().getUidValue();
+            final String objectTypeName = getObjectTypeName(syncDelta.getObjectClass());
+            final String resourceContainer = getSource(objectTypeName == null ? objectType : objectTypeName);
+            final JsonValue content = new JsonValue(new LinkedHashMap<String, Object>(2));
+
+            //rebuild the OperationHelper if the helper is for the __ALL__ object class
+            final OperationHelper syncDeltaOperationHelper = helper.getObjectClass().equals(ObjectClass.ALL)
+                    ? operationHelperBuilder.build(objectTypeName, stage, cryptoService)
+                    : helper;
+
+            switch (syncDelta.getDeltaType()) {
+                case CREATE: {
+                    JsonValue deltaObject = syncDeltaOperationHelper.build(syncDelta.getObject());
+                    content.put("oldValue", null);
+                    content.put("newValue", deltaObject.getObject());
+                    // TODO import SynchronizationService.Action.notifyCreate and ACTION_PARAM_ constants
+                    ActionRequest onCreateRequest = Requests.newActionRequest("sync", "notifyCreate")
+                            .setAdditionalParameter("resourceContainer", resourceContainer)
+                            .setAdditionalParameter("resourceId", resourceId)
+                            .setContent(content);
+                    connectionFactory.getConnection().action(context, onCreateRequest);
+
+                    activityLogger.log(context, onCreateRequest,
+                                    "sync-create", onCreateRequest.getResourcePath(),
+                                    deltaObject, deltaObject, Status.SUCCESS);
+                    break;
+                }
+                case UPDATE:
+                case CREATE_OR_UPDATE: {
+                    JsonValue deltaObject = syncDeltaOperationHelper.build(syncDelta.getObject());
+                    content.put("oldValue", null);
+                    content.put("newValue", deltaObject.getObject());
+                    if (null != syncDelta.getPreviousUid()) {
+                        deltaObject.put("_previous-id", syncDelta.getPreviousUid().getUidValue());
+                    }
+                    // TODO import SynchronizationService.Action.notifyUpdate and ACTION_PARAM_ constants
+                    ActionRequest onUpdateRequest = Requests.newActionRequest("sync", "notifyUpdate")
+                            .setAdditionalParameter("resourceContainer", resourceContainer)
+                            .setAdditionalParameter("resourceId", resourceId)
+                            .setContent(content);
+                    connectionFactory.getConnection().action(context, onUpdateRequest);
+
+                    activityLogger.log(context, onUpdateRequest,
+                            "sync-update", onUpdateRequest.getResourcePath(),
+                            deltaObject, deltaObject, Status.SUCCESS);
+                    break;
+                }
+                case DELETE:
+                    // TODO Pass along the old deltaObject - do we have it?
+                    content.put("oldValue", null);
+                    // TODO import SynchronizationService.Action.notifyDelete and ACTION_PARAM_ constants
+                    ActionRequest onDeleteRequest = Requests.newActionRequest("sync", "notifyDelete")
+                            .setAdditionalParameter("resourceContainer", resourceContainer)
+                            .setAdditionalParameter("resourceId", resourceId)
+                            .setContent(content);
+                    connectionFactory.getConnection().action(context, onDeleteRequest);
+
+                    activityLogger.log(context, onDeleteRequest,
+                            "sync-delete", onDeleteRequest.getResourcePath(),
+                            null, null, Status.SUCCESS);
+                    break;
+            }
+        } catch (Exception e) {
+            final String record = SerializerUtil.serializeXmlObject(syncDelta, true);
+            logger.debug("Failed to synchronize {} object, handle failure using {}",
+                    syncDelta.getUid(), syncFailureHandler, e);
+            Map<String, Object> syncFailureMap = new HashMap<>(6);
+            syncFailureMap.put("token", syncDelta.getToken().getValue());
+            syncFailureMap.put("systemIdentifier", systemIdentifier.getName());
+            syncFailureMap.put("objectType", objectType);
+            syncFailureMap.put("uid", syncDelta.getUid().getUidValue());
+            syncFailureMap.put("failedRecord", record);
+            try {
+                syncFailureHandler.invoke(context, syncFailureMap, e);
+            } catch (SyncHandlerException syncHandlerException) {
+                // Current contract of the failure handler is that throwing this exception indicates
+                // that it should retry for this entry
+                syncRetry.retry(sequence, syncHandlerException, record);
+                logger.debug("Sync failure handler indicated to stop current change set processing until retry handling: {}",
+                        syncHandlerException.getMessage(), syncHandlerException);
+                return false;
+            }
+        }
+        // success (either by original sync or by failure handler)
+        return true;
+
+    }
+
     /**
      * Package level setter to allow unit tests to set the logger.
      * @param activityLogger the new activity logger
@@ -0,0 +1,239 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.provisioner.openicf.impl;
+
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.identityconnectors.framework.common.objects.SyncDelta;
+import org.identityconnectors.framework.common.objects.SyncToken;
+import org.identityconnectors.framework.common.serializer.SerializerUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Processes the deltas of a liveSync run on a fixed number of ordered lanes.
+ * <p>
+ * Deltas are assigned to a lane by hashing their object class and UID, so the changes to an object are processed in
+ * the order the connector returned them while changes to different objects are processed in parallel. A delta
+ * renaming an object (carrying a previous UID) is processed once all the earlier deltas have completed, as the
+ * changes to the previous UID may be queued on another lane.
+ * <p>
+ * The checkpoint is the token of the last delta of the highest contiguous run of completed deltas: a delta that
+ * asks for a retry stops the lanes from processing any later delta, and the checkpoint never moves past it, so the
+ * next run resumes with the first delta that was not completed. Deltas after the checkpoint that did complete are
+ * delivered again by the next run. A delta whose processing throws is recorded in the {@link SyncRetry} of the run
+ * and retried the same way.
+ */
+class SyncDeltaLanes {
+
+    private static final Logger logger = LoggerFactory.getLogger(SyncDeltaLanes.class);
+
+    /**
+     * Processes a single delta.
+     */
+    interface DeltaProcessor {
+        /**
+         * Processes a delta.
+         *
+         * @param sequence the sequence number of the delta in the liveSync run
+         * @param syncDelta the delta
+         * @return true if the delta is completed, false if it must be retried
+         */
+        boolean process(long sequence, SyncDelta syncDelta);
+    }
+
+    private final ExecutorService[] lanes;
+    private final DeltaProcessor processor;
+    private final SyncRetry syncRetry;
+    private final int maxPendingDeltas;
+    private final Semaphore pendingDeltas;
+
+    /** Sequence number of the next submitted delta, only used by the submitting thread */
+    private long nextSequence = 0;
+
+    /** Lowest sequence number of a delta to retry, no delta after it is processed */
+    private volatile long stopSequence = Long.MAX_VALUE;
+
+    /** Sequence number of the last delta of the contiguous run of completed deltas, guarded by this */
+    private long checkpoint = -1;
+    /** Token of the checkpoint delta, guarded by this */
+    private SyncToken checkpointToken;
+    /** Tokens of the deltas completed after the checkpoint by sequence number, guarded by this */
+    private final TreeMap<Long, SyncToken> completed = new TreeMap<>();
+
+    /**
+     * Creates the lanes of a liveSync run.
+     *
+     * @param name name of the synchronized object type, used to name the lane threads
+     * @param lanes number of lanes
+     * @param maxPendingDeltas maximum number of deltas submitted and not yet processed
+     * @param processor processes the deltas
+     * @param syncRetry records the delta to retry when processing a delta throws
+     */
+    SyncDeltaLanes(final String name, final int lanes, final int maxPendingDeltas, final DeltaProcessor processor,
+            final SyncRetry syncRetry) {
+        this.processor = processor;
+        this.syncRetry = syncRetry;
+        this.maxPendingDeltas = Math.max(1, maxPendingDeltas);
+        this.pendingDeltas = new Semaphore(this.maxPendingDeltas);
+        this.lanes = new ExecutorService[Math.max(1, lanes)];
+        for (int i = 0; i < this.lanes.length; i++) {
+            final String threadName = "liveSync-" + name + "-" + i;
+            this.lanes[i] = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    final Thread thread = new Thread(runnable, threadName);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+
+    /**
+     * Queues a delta on its lane, waiting for room if the maximum number of pending deltas is reached.
+     *
+     * @param syncDelta the delta
+     * @return false if a delta must be retried, in which case the delta was not queued and no more deltas should be
+     *         submitted
+     * @throws InterruptedException if interrupted waiting for room
+     */
+    boolean submit(final SyncDelta syncDelta) throws InterruptedException {
+        if (isStopped()) {
+            return false;
+        }
+        if (syncDelta.getPreviousUid() != null) {
+            awaitPendingDeltas();
+            if (isStopped()) {
+                return false;
+            }
+        }
+        pendingDeltas.acquire();
+        final long sequence = nextSequence++;
+        try {
+            lanes[getLane(syncDelta)].execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        process(sequence, syncDelta);
+                    } finally {
+                        pendingDeltas.release();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            pendingDeltas.release();
+            throw e;
+        }
+        return true;
+    }
+
+    /**
+     * Waits for the queued deltas to be processed and stops the lanes.
+     *
+     * @return the token of the checkpoint delta, null if no delta was completed in order
+     * @throws InterruptedException if interrupted waiting for the lanes
+     */
+    SyncToken close() throws InterruptedException {
+        for (final ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+        for (final ExecutorService lane : lanes) {
+            while (!lane.awaitTermination(1, TimeUnit.MINUTES)) {
+                logger.debug("Waiting for liveSync deltas to be processed");
+            }
+        }
+        return getCheckpointToken();
+    }
+
+    /**
+     * Stops the lanes without waiting for the queued deltas.
+     */
+    void abort() {
+        stopSequence = -1;
+        for (final ExecutorService lane : lanes) {
+            lane.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns whether a delta must be retried.
+     *
+     * @return true if no more deltas are processed
+     */
+    boolean isStopped() {
+        return stopSequence != Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns the token of the last delta of the contiguous run of completed deltas.
+     *
+     * @return the checkpoint token, null if no delta was completed in order
+     */
+    synchronized SyncToken getCheckpointToken() {
+        return checkpointToken;
+    }
+
+    private int getLane(final SyncDelta syncDelta) {
+        final int hash = 31 * syncDelta.getObjectClass().hashCode() + syncDelta.getUid().getUidValue().hashCode();
+        return (hash & Integer.MAX_VALUE) % lanes.length;
+    }
+
+    private void awaitPendingDeltas() throws InterruptedException {
+        pendingDeltas.acquire(maxPendingDeltas);
+        pendingDeltas.release(maxPendingDeltas);
+    }
+
+    private void process(final long sequence, final SyncDelta syncDelta) {
+        if (sequence > stopSequence) {
+            // an earlier delta is to be retried, this one is delivered again by the next run
+            return;
+        }
+        boolean processed;
+        try {
+            processed = processor.process(sequence, syncDelta);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to process sync delta of {}, it is retried by the next liveSync run",
+                    syncDelta.getUid().getUidValue(), e);
+            syncRetry.retry(sequence, e, SerializerUtil.serializeXmlObject(syncDelta, true));
+            processed = false;
+        }
+        if (processed) {
+            complete(sequence, syncDelta.getToken());
+        } else {
+            stop(sequence);
+        }
+    }
+
+    private synchronized void complete(final long sequence, final SyncToken token) {
+        completed.put(sequence, token);
+        while (!completed.isEmpty() && completed.firstKey() == checkpoint + 1) {
+            checkpoint++;
+            checkpointToken = completed.remove(checkpoint);
+        }
+    }
+
+    private synchronized void stop(final long sequence) {
+        if (sequence < stopSequence) {
+            stopSequence = sequence;
+        }
+    }
+}
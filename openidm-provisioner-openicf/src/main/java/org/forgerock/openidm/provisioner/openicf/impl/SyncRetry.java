@@ -12,6 +12,7 @@
  * own identifying information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.openidm.provisioner.openicf.impl;
@@ -31,6 +32,16 @@ class SyncRetry {
      */
     Throwable throwable;
 
+    /**
+     * The sequence number of the delta to retry, the lowest one when deltas are processed in parallel.
+     */
+    long sequence = Long.MAX_VALUE;
+
+    /**
+     * The serialized delta to retry.
+     */
+    String failedRecord;
+
     public SyncRetry() {
         value = false;
         throwable = null;
@@ -71,4 +82,30 @@ class SyncRetry {
     public void setThrowable(Throwable throwable) {
         this.throwable = throwable;
     }
-}
\ No newline at end of file
+
+    /**
+     * Records a delta to retry, unless a delta with a lower sequence number is already to be retried: the next run
+     * resumes with the earliest delta that failed.
+     *
+     * @param sequence the sequence number of the delta in the liveSync run
+     * @param throwable the {@link Throwable} associated with the failure
+     * @param failedRecord the serialized delta
+     */
+    public synchronized void retry(long sequence, Throwable throwable, String failedRecord) {
+        if (!value || sequence < this.sequence) {
+            this.value = true;
+            this.sequence = sequence;
+            this.throwable = throwable;
+            this.failedRecord = failedRecord;
+        }
+    }
+
+    /**
+     * Returns the serialized delta to retry.
+     *
+     * @return the serialized delta, null if none
+     */
+    public synchronized String getFailedRecord() {
+        return failedRecord;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.provisioner.openicf.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.identityconnectors.framework.common.objects.ObjectClass;
+import org.identityconnectors.framework.common.objects.SyncDelta;
+import org.identityconnectors.framework.common.objects.SyncDeltaBuilder;
+import org.identityconnectors.framework.common.objects.SyncDeltaType;
+import org.identityconnectors.framework.common.objects.SyncToken;
+import org.identityconnectors.framework.common.objects.Uid;
+import org.testng.annotations.Test;
+
+public class SyncDeltaLanesTest {
+
+    @Test
+    public void testChangesToAnObjectAreProcessedInOrder() throws Exception {
+        final ConcurrentMap<String, List<Integer>> processed = new ConcurrentHashMap<>();
+        final SyncDeltaLanes lanes = new SyncDeltaLanes("account", 4, 8, new SyncDeltaLanes.DeltaProcessor() {
+            @Override
+            public boolean process(long sequence, SyncDelta syncDelta) {
+                final List<Integer> tokens = new ArrayList<>();
+                final List<Integer> existing = processed.putIfAbsent(syncDelta.getUid().getUidValue(), tokens);
+                final List<Integer> target = existing != null ? existing : tokens;
+                synchronized (target) {
+                    target.add((Integer) syncDelta.getToken().getValue());
+                }
+                return true;
+            }
+        }, new SyncRetry());
+        for (int i = 0; i < 100; i++) {
+            assertThat(lanes.submit(delta(i, "uid" + (i % 10)))).isTrue();
+        }
+
+        assertThat(lanes.close().getValue()).isEqualTo(99);
+        assertThat(processed).hasSize(10);
+        for (final List<Integer> tokens : processed.values()) {
+            assertThat(tokens).hasSize(10).isSorted();
+        }
+    }
+
+    @Test
+    public void testCheckpointStopsBeforeRetriedDelta() throws Exception {
+        final SyncDeltaLanes lanes = new SyncDeltaLanes("account", 4, 100, new SyncDeltaLanes.DeltaProcessor() {
+            @Override
+            public boolean process(long sequence, SyncDelta syncDelta) {
+                return !syncDelta.getToken().getValue().equals(5);
+            }
+        }, new SyncRetry());
+        for (int i = 0; i < 20; i++) {
+            if (!lanes.submit(delta(i, "uid" + i))) {
+                break;
+            }
+        }
+
+        assertThat(lanes.close().getValue()).isEqualTo(4);
+        assertThat(lanes.isStopped()).isTrue();
+        assertThat(lanes.submit(delta(20, "uid20"))).isFalse();
+    }
+
+    @Test
+    public void testNoCheckpointWhenFirstDeltaIsRetried() throws Exception {
+        final SyncDeltaLanes lanes = new SyncDeltaLanes("account", 2, 10, new SyncDeltaLanes.DeltaProcessor() {
+            @Override
+            public boolean process(long sequence, SyncDelta syncDelta) {
+                return !syncDelta.getToken().getValue().equals(0);
+            }
+        }, new SyncRetry());
+        lanes.submit(delta(0, "uid0"));
+        lanes.submit(delta(1, "uid1"));
+
+        assertThat(lanes.close()).isNull();
+    }
+
+    @Test
+    public void testLowestFailedDeltaIsRetried() throws Exception {
+        final SyncRetry syncRetry = new SyncRetry();
+        final SyncDeltaLanes lanes = new SyncDeltaLanes("account", 4, 100, new SyncDeltaLanes.DeltaProcessor() {
+            @Override
+            public boolean process(long sequence, SyncDelta syncDelta) {
+                final int token = (Integer) syncDelta.getToken().getValue();
+                if (token == 3 || token == 7) {
+                    if (token == 3) {
+                        // let the later delta fail first
+                        sleep(100);
+                    }
+                    syncRetry.retry(sequence, new Exception(), "delta" + token);
+                    return false;
+                }
+                return true;
+            }
+        }, syncRetry);
+        for (int i = 0; i < 10; i++) {
+            lanes.submit(delta(i, "uid" + i));
+        }
+
+        assertThat(lanes.close().getValue()).isEqualTo(2);
+        assertThat(syncRetry.getValue()).isTrue();
+        assertThat(syncRetry.getFailedRecord()).isEqualTo("delta3");
+    }
+
+    @Test
+    public void testThrowingDeltaIsRecordedForRetry() throws Exception {
+        final SyncRetry syncRetry = new SyncRetry();
+        final IllegalStateException failure = new IllegalStateException("failure handler failed");
+        final SyncDeltaLanes lanes = new SyncDeltaLanes("account", 2, 10, new SyncDeltaLanes.DeltaProcessor() {
+            @Override
+            public boolean process(long sequence, SyncDelta syncDelta) {
+                if (syncDelta.getToken().getValue().equals(1)) {
+                    throw failure;
+                }
+                return true;
+            }
+        }, syncRetry);
+        lanes.submit(delta(0, "uid0"));
+        lanes.submit(delta(1, "uid1"));
+
+        assertThat(lanes.close().getValue()).isEqualTo(0);
+        assertThat(lanes.isStopped()).isTrue();
+        assertThat(syncRetry.getValue()).isTrue();
+        assertThat(syncRetry.getThrowable()).isSameAs(failure);
+        assertThat(syncRetry.getFailedRecord()).contains("uid1");
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static SyncDelta delta(int token, String uid) {
+        return new SyncDeltaBuilder()
+                .setToken(new SyncToken(token))
+                .setDeltaType(SyncDeltaType.DELETE)
+                .setObjectClass(ObjectClass.ACCOUNT)
+                .setUid(new Uid(uid))
+                .build();
+    }
+}
@@ -12,21 +12,21 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2012-2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 package org.forgerock.openidm.quartz.impl;
 
 import static org.forgerock.json.JsonValue.*;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.NoSuchElementException;
 import java.util.Set;
-import java.util.TreeSet;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.forgerock.json.JsonValue;
@@ -85,10 +85,18 @@ public class RepoJobStore implements JobStore, ClusterEventListener {
     private static final String JOB_GROUP_NAMES_RESOURCE_PATH = SCHEDULER_RESOURCE_PATH + "jobGroupNames";
     private static final String JOB_PAUSED_GROUP_NAMES_RESOURCE_PATH =
             SCHEDULER_RESOURCE_PATH + "jobPausedGroupNames";
-    private static final String WAITING_TRIGGERS_RESOURCE_PATH = SCHEDULER_RESOURCE_PATH + "waitingTriggers";
+    private static final String WAITING_TRIGGERS_RESOURCE_PATH = SCHEDULER_RESOURCE_PATH + "waitingTriggers-";
     private static final String ACQUIRED_TRIGGERS_RESOURCE_PATH =
             SCHEDULER_RESOURCE_PATH + "acquiredTriggers";
 
+    /**
+     * The property holding the number of shards of the waiting trigger index, all nodes of a cluster must use
+     * the same value.
+     */
+    public static final String WAITING_TRIGGER_SHARDS_PROPERTY = "openidm.scheduler.repo.waitingTriggerShards";
+
+    private static final int DEFAULT_WAITING_TRIGGER_SHARDS = 16;
+
     /**
      * An identifier used to create unique keys for Jobs and Triggers.
      */
@@ -134,10 +142,15 @@ public class RepoJobStore implements JobStore, ClusterEventListener {
      */
     private int writeRetries = -1;
 
+    /**
+     * Number of shards of the waiting trigger index (defaults to 16).
+     */
+    private int waitingTriggerShards = DEFAULT_WAITING_TRIGGER_SHARDS;
+
     /**
      * A list of all "blocked" jobs.
      */
-    private List<String> blockedJobs = new ArrayList<>();
+    private List<String> blockedJobs = Collections.synchronizedList(new ArrayList<String>());
 
     /**
      * An AtomicLong used for creating record IDs
@@ -175,6 +188,8 @@ public class RepoJobStore implements JobStore, ClusterEventListener {
         this.loadHelper = loadHelper;
         // Set the number of retries for failed writes to the repository
         this.writeRetries = Integer.parseInt(IdentityServer.getInstance().getProperty("openidm.scheduler.repo.retry", "-1"));
+        // Set the number of shards of the waiting trigger index
+        this.waitingTriggerShards = getWaitingTriggerShards();
     }
 
     public boolean setClusterService() {
@@ -268,6 +283,26 @@ public class RepoJobStore implements JobStore, ClusterEventListener {
         return JOB_GROUPS_RESOURCE_PATH.concat(groupName);
     }
 
+    /**
+     * Gets the repository ID of a shard of the waiting trigger index.
+     *
+     * @param shard the shard number
+     * @return  the repository ID
+     */
+    public static String getWaitingTriggersRepoId(int shard) {
+        return WAITING_TRIGGERS_RESOURCE_PATH.concat(String.valueOf(shard));
+    }
+
+    /**
+     * Gets the configured number of shards of the waiting trigger index.
+     *
+     * @return  the number of shards
+     */
+    public static int getWaitingTriggerShards() {
+        return Math.max(1, Integer.parseInt(IdentityServer.getInstance().getProperty(WAITING_TRIGGER_SHARDS_PROPERTY,
+                String.valueOf(DEFAULT_WAITING_TRIGGER_SHARDS))));
+    }
+
     /**
      * Gets the Trigger ID.
      *
@@ -485,57 +520,63 @@ public class RepoJobStore implements JobStore, ClusterEventListener {
         }
     }
 
+    /**
+     * Acquires the next due trigger without holding the store lock. The entry of the trigger is claimed from its
+     * shard of the waiting trigger index against the revision the shard was read at, and the trigger is marked
+     * acquired against the revision it was read at, so concurrent scheduler threads and cluster nodes competing
+     * for the same trigger only ever let one of them acquire it.
+     */
     @Override
     public Trigger acquireNextTrigger(SchedulingContext context, long noLaterThan)
             throws JobPersistenceException {
-        synchronized (lock) {
-            logger.debug("Attempting to acquire the next trigger");
-            Trigger trigger = null;
-            WaitingTriggers waitingTriggers = null;
-            while (trigger == null && !shutdown) {
-                try {
-                    waitingTriggers = getWaitingTriggers();
-                    trigger = waitingTriggers.getTriggers().first();
-                } catch (NoSuchElementException e1) {
-                    logger.debug("No waiting triggers to acquire");
-                    return null;
-                }
+        logger.debug("Attempting to acquire the next trigger");
+        while (!shutdown) {
+            List<WaitingTrigger> waitingTriggers = getWaitingTriggers();
+            if (waitingTriggers.isEmpty()) {
+                logger.debug("No waiting triggers to acquire");
+                return null;
+            }
 
-                if (trigger == null) {
-                    logger.debug("No waiting triggers to acquire");
-                    return null;
+            // Whether the waiting triggers changed under the scan, in which case they are read again
+            boolean changed = false;
+            for (WaitingTrigger entry : waitingTriggers) {
+                if (noLaterThan > 0 && entry.getFireTime() > noLaterThan) {
+                    logger.debug("Trigger fire time {} is later than {}, not acquiring",
+                            new Date(entry.getFireTime()), new Date(noLaterThan));
+                    break;
                 }
 
-                Date nextFireTime = trigger.getNextFireTime();
-                if (nextFireTime == null) {
-                    logger.debug("Trigger next fire time = null, removing");
-                    removeWaitingTrigger(trigger);
-                    trigger = null;
+                String group = getGroupFromId(entry.getId());
+                String name = getNameFromId(entry.getId());
+                TriggerWrapper tw = getTriggerWrapper(group, name);
+                Trigger trigger = tw != null ? tw.getTrigger() : null;
+                if (trigger == null || trigger.getNextFireTime() == null || tw.getState() != Trigger.STATE_NORMAL) {
+                    logger.debug("Trigger {} is not waiting to be fired, removing", entry.getId());
+                    updateWaitingTrigger(entry.getId(), entry, null);
+                    changed = true;
                     continue;
                 }
-
-                if (noLaterThan > 0) {
-                    if (nextFireTime.getTime() > noLaterThan) {
-                        logger.debug("Trigger fire time {} is later than {}, not acquiring",
-                                nextFireTime, new Date(noLaterThan));
-                        return null;
-                    }
+                if (!entry.isFiredAt(trigger.getNextFireTime())) {
+                    logger.debug("Trigger {} has been rescheduled, updating", entry.getId());
+                    updateWaitingTrigger(entry.getId(), entry, new WaitingTrigger(entry.getId(), trigger));
+                    changed = true;
+                    continue;
                 }
 
-                if(!removeWaitingTrigger(trigger)) {
-                    trigger = null;
+                if (!updateWaitingTrigger(entry.getId(), entry, null)) {
+                    logger.debug("Trigger {} has been acquired by another scheduler", entry.getId());
+                    changed = true;
                     continue;
                 }
 
-                TriggerWrapper tw = getTriggerWrapper(trigger.getGroup(), trigger.getName());
-
                 if (hasTriggerMisfired(trigger)) {
                     logger.debug("Attempting to process misfired trigger");
                     processTriggerMisfired(tw);
-                    if (trigger.getNextFireTime() != null) {
-                        addWaitingTrigger(trigger);
+                    Trigger updated = tw.getTrigger();
+                    if (updated.getNextFireTime() != null) {
+                        addWaitingTrigger(updated);
                     }
-                    trigger = null;
+                    changed = true;
                     continue;
                 }
 
@@ -551,39 +592,47 @@ public class RepoJobStore implements JobStore, ClusterEventListener {
                     throw new JobPersistenceException("Error serializing trigger", e);
                 }
 
-                updateTriggerInRepo(trigger.getGroup(), trigger.getName(), tw, tw.getRevision());
+                if (!tryUpdateTriggerInRepo(group, name, tw, tw.getRevision())) {
+                    // The trigger changed since it was read, queue it again unless it is no longer waiting
+                    logger.debug("Trigger {} changed while being acquired", entry.getId());
+                    TriggerWrapper current = getTriggerWrapper(group, name);
+                    if (current != null && current.getState() == Trigger.STATE_NORMAL
+                            && current.getTrigger().getNextFireTime() != null) {
+                        addWaitingTrigger(current.getTrigger());
+                    }
+                    changed = true;
+                    continue;
+                }
 
                 addAcquiredTrigger(trigger, instanceId);
 
                 logger.debug("Acquired next trigger {} to be fired at {}", trigger.getName(), trigger.getNextFireTime());
-                tw.setNodeId(instanceId);
                 return (Trigger)trigger.clone();
             }
-            logger.debug("No waiting triggers to acquire");
-            return null;
+            if (!changed) {
+                break;
+            }
         }
+        logger.debug("No waiting triggers to acquire");
+        return null;
     }
 
-
-
     @Override
     public void releaseAcquiredTrigger(SchedulingContext arg0, Trigger trigger)
             throws JobPersistenceException {
-        synchronized (lock) {
-            TriggerWrapper tw = getTriggerWrapper(trigger.getGroup(), trigger.getName());
-            if (tw == null) {
-                logger.debug("Cannot release acquired trigger {} in group {}, trigger does not exist", trigger.getName(), trigger.getGroup());
-                return;
-            }
-            if (tw.isAcquired()) {
-                tw.setAcquired(false);
-                tw.setNodeId(null);
-                updateTriggerInRepo(trigger.getGroup(), trigger.getName(), tw, tw.getRevision());
-                addWaitingTrigger(trigger);
-                removeAcquiredTrigger(trigger, instanceId);
-            } else {
-                logger.warn("Cannot release acquired trigger {} in group {}, trigger has not been acquired", trigger.getName(), trigger.getGroup());
-            }
+        TriggerWrapper tw = getTriggerWrapper(trigger.getGroup(), trigger.getName());
+        if (tw == null) {
+            logger.debug("Cannot release acquired trigger {} in group {}, trigger does not exist", trigger.getName(), trigger.getGroup());
+            return;
+        }
+        if (tw.isAcquired()) {
+            tw.setAcquired(false);
+            tw.setNodeId(null);
+            updateTriggerInRepo(trigger.getGroup(), trigger.getName(), tw, tw.getRevision());
+            addWaitingTrigger(trigger);
+            removeAcquiredTrigger(trigger, instanceId);
+        } else {
+            logger.warn("Cannot release acquired trigger {} in group {}, trigger has not been acquired", trigger.getName(), trigger.getGroup());
         }
     }
 
@@ -764,19 +813,17 @@ public class RepoJobStore implements JobStore, ClusterEventListener {
     @Override
     public Trigger[] getTriggersForJob(SchedulingContext context, String jobName, String groupName)
             throws JobPersistenceException {
-        synchronized (lock) {
-            String[] triggerNames = getTriggerNames(context, groupName);
-            List<Trigger> triggers = new ArrayList<Trigger>();
-            for (String name : triggerNames) {
-                TriggerWrapper tw = getTriggerWrapper(groupName, name);
-                Trigger trigger = tw.getTrigger();
-                if (trigger.getJobName().equals(jobName)) {
-                    triggers.add(trigger);
-                }
+        String[] triggerNames = getTriggerNames(context, groupName);
+        List<Trigger> triggers = new ArrayList<Trigger>();
+        for (String name : triggerNames) {
+            TriggerWrapper tw = getTriggerWrapper(groupName, name);
+            Trigger trigger = tw.getTrigger();
+            if (trigger.getJobName().equals(jobName)) {
+                triggers.add(trigger);
             }
-            logger.debug("Found {} triggers for group {}", triggers.size(), groupName);
-            return triggers.toArray(new Trigger[triggers.size()]);
         }
+        logger.debug("Found {} triggers for group {}", triggers.size(), groupName);
+        return triggers.toArray(new Trigger[triggers.size()]);
     }
 
     @Override
@@ -1193,39 +1240,35 @@ public class RepoJobStore implements JobStore, ClusterEventListener {
     @Override
     public Calendar retrieveCalendar(SchedulingContext context, String name)
             throws JobPersistenceException {
-        synchronized (lock) {
-            if (name != null) {
-                CalendarWrapper cw = getCalendarWrapper(name);
-                if (cw != null) {
-                    try {
-                        return cw.getCalendar();
-                    } catch (Exception e) {
-                        logger.warn("Error retrieving calendar", e);
-                        throw new JobPersistenceException("Error retrieving calendar", e);
-                    }
+        if (name != null) {
+            CalendarWrapper cw = getCalendarWrapper(name);
+            if (cw != null) {
+                try {
+                    return cw.getCalendar();
+                } catch (Exception e) {
+                    logger.warn("Error retrieving calendar", e);
+                    throw new JobPersistenceException("Error retrieving calendar", e);
                 }
             }
-            return null;
         }
+        return null;
     }
 
     @Override
     public JobDetail retrieveJob(SchedulingContext context, String jobName,
             String jobGroup) throws JobPersistenceException {
-        synchronized (lock) {
-            if (logger.isTraceEnabled()) {
-                logger.trace("Getting job {}", getJobsRepoId(jobGroup, jobName));
-            }
-            JobWrapper jw = getJobWrapper(jobGroup, jobName);
-            if (jw == null) {
-                return null;
-            }
-            try {
-                return jw.getJobDetail();
-            } catch (Exception e) {
-                logger.warn("Error retrieving job", e);
-                throw new JobPersistenceException("Error retrieving job", e);
-            }
+        if (logger.isTraceEnabled()) {
+            logger.trace("Getting job {}", getJobsRepoId(jobGroup, jobName));
+        }
+        JobWrapper jw = getJobWrapper(jobGroup, jobName);
+        if (jw == null) {
+            return null;
+        }
+        try {
+            return jw.getJobDetail();
+        } catch (Exception e) {
+            logger.warn("Error retrieving job", e);
+            throw new JobPersistenceException("Error retrieving job", e);
         }
     }
 
@@ -1251,213 +1294,205 @@ public class RepoJobStore implements JobStore, ClusterEventListener {
 
     public CalendarWrapper getCalendarWrapper(String name)
             throws JobPersistenceException {
-        synchronized (lock) {
-            try {
-                if (logger.isTraceEnabled()) {
-                    logger.trace("Getting calendar {}", getCalendarsRepoId(name));
-                }
-                Map<String, Object> calMap = readFromRepo(getCalendarsRepoId(name)).asMap();
-                if (calMap == null) {
-                    return null;
-                }
-                CalendarWrapper cal = new CalendarWrapper(calMap);
-                return cal;
-            } catch (ResourceException e) {
-                logger.warn("Error retrieving calendar", e);
-                throw new JobPersistenceException("Error retrieving calendar", e);
-            } catch (Exception e) {
-                logger.warn("Error retrieving calendar", e);
-                throw new JobPersistenceException("Error retrieving calendar", e);
+        try {
+            if (logger.isTraceEnabled()) {
+                logger.trace("Getting calendar {}", getCalendarsRepoId(name));
+            }
+            Map<String, Object> calMap = readFromRepo(getCalendarsRepoId(name)).asMap();
+            if (calMap == null) {
+                return null;
             }
+            CalendarWrapper cal = new CalendarWrapper(calMap);
+            return cal;
+        } catch (ResourceException e) {
+            logger.warn("Error retrieving calendar", e);
+            throw new JobPersistenceException("Error retrieving calendar", e);
+        } catch (Exception e) {
+            logger.warn("Error retrieving calendar", e);
+            throw new JobPersistenceException("Error retrieving calendar", e);
         }
     }
 
     @Override
     public Trigger retrieveTrigger(SchedulingContext context, String triggerName, String triggerGroup)
             throws JobPersistenceException {
-        synchronized (lock) {
-            try {
-                TriggerWrapper tw = getTriggerWrapper(triggerGroup, triggerName);
-                if (tw == null) {
-                    return null;
-                }
-                return tw.getTrigger();
-            } catch (Exception e) {
-                logger.warn("Error retrieving trigger", e);
-                throw new JobPersistenceException("Error retrieving trigger", e);
+        try {
+            TriggerWrapper tw = getTriggerWrapper(triggerGroup, triggerName);
+            if (tw == null) {
+                return null;
             }
+            return tw.getTrigger();
+        } catch (Exception e) {
+            logger.warn("Error retrieving trigger", e);
+            throw new JobPersistenceException("Error retrieving trigger", e);
         }
     }
 
     @Override
     public TriggerFiredBundle triggerFired(SchedulingContext context, Trigger trigger)
             throws JobPersistenceException {
-        synchronized (lock) {
-            logger.debug("Trigger {} has fired", trigger.getFullName());
-            TriggerWrapper tw;
-            try {
-                tw = getTriggerWrapper(trigger.getGroup(), trigger.getName());
-            } catch (Exception e) {
-                logger.warn("Error setting trigger fired", e);
-                throw new JobPersistenceException("Error setting trigger fired", e);
-            }
-            if (tw == null) {
-                logger.warn("Error setting trigger fired, trigger does not exist");
+        logger.debug("Trigger {} has fired", trigger.getFullName());
+        TriggerWrapper tw;
+        try {
+            tw = getTriggerWrapper(trigger.getGroup(), trigger.getName());
+        } catch (Exception e) {
+            logger.warn("Error setting trigger fired", e);
+            throw new JobPersistenceException("Error setting trigger fired", e);
+        }
+        if (tw == null) {
+            logger.warn("Error setting trigger fired, trigger does not exist");
+            return null;
+        }
+        if (!tw.isAcquired()) {
+            logger.warn("Error setting trigger fired, trigger was not in acquired state");
+        }
+        Trigger localTrigger;
+        try {
+            localTrigger = tw.getTrigger();
+        } catch (Exception e) {
+            logger.warn("Error setting trigger fired", e);
+            throw new JobPersistenceException("Error setting trigger fired", e);
+        }
+        Calendar triggerCalendar = null;
+        if (localTrigger.getCalendarName() != null) {
+            CalendarWrapper cw = getCalendarWrapper(localTrigger.getCalendarName());
+            if (cw == null) {
+                logger.warn("Error setting trigger fired, cannot find trigger's calendar");
                 return null;
-            }
-            if (!tw.isAcquired()) {
-                logger.warn("Error setting trigger fired, trigger was not in acquired state");
-            }
-            Trigger localTrigger;
-            try {
-                localTrigger = tw.getTrigger();
-            } catch (Exception e) {
-                logger.warn("Error setting trigger fired", e);
-                throw new JobPersistenceException("Error setting trigger fired", e);
-            }
-            Calendar triggerCalendar = null;
-            if (localTrigger.getCalendarName() != null) {
-                CalendarWrapper cw = getCalendarWrapper(localTrigger.getCalendarName());
-                if (cw == null) {
-                    logger.warn("Error setting trigger fired, cannot find trigger's calendar");
-                    return null;
-                } else {
-                    try {
-                        triggerCalendar = cw.getCalendar();
-                    } catch (Exception e) {
-                        logger.warn("Error retrieving calendar", e);
-                        throw new JobPersistenceException("Error retrieving calendar", e);
-                    }
+            } else {
+                try {
+                    triggerCalendar = cw.getCalendar();
+                } catch (Exception e) {
+                    logger.warn("Error retrieving calendar", e);
+                    throw new JobPersistenceException("Error retrieving calendar", e);
                 }
             }
+        }
 
-            Date previousFireTime = trigger.getPreviousFireTime();
-            removeWaitingTrigger(trigger);
+        Date previousFireTime = trigger.getPreviousFireTime();
+        removeWaitingTrigger(trigger);
 
-            localTrigger.triggered(triggerCalendar);
-            tw.updateTrigger(localTrigger);
-            updateTriggerInRepo(localTrigger.getGroup(), localTrigger.getName(), tw, tw.getRevision());
+        localTrigger.triggered(triggerCalendar);
+        tw.updateTrigger(localTrigger);
+        updateTriggerInRepo(localTrigger.getGroup(), localTrigger.getName(), tw, tw.getRevision());
 
-            trigger.triggered(triggerCalendar);
+        trigger.triggered(triggerCalendar);
 
-            // Set trigger into the normal/waiting state
-            tw.setState(Trigger.STATE_NORMAL);
-            TriggerFiredBundle tfb = new TriggerFiredBundle(retrieveJob(context, trigger.getJobName(),
-                    trigger.getJobGroup()),
-                    trigger,
-                    triggerCalendar,
-                    false,
-                    new Date(),
-                    trigger.getPreviousFireTime(),
-                    previousFireTime,
-                    trigger.getNextFireTime());
+        // Set trigger into the normal/waiting state
+        tw.setState(Trigger.STATE_NORMAL);
+        TriggerFiredBundle tfb = new TriggerFiredBundle(retrieveJob(context, trigger.getJobName(),
+                trigger.getJobGroup()),
+                trigger,
+                triggerCalendar,
+                false,
+                new Date(),
+                trigger.getPreviousFireTime(),
+                previousFireTime,
+                trigger.getNextFireTime());
 
-            JobDetail job = tfb.getJobDetail();
+        JobDetail job = tfb.getJobDetail();
 
-            if (job.isStateful()) {
-                Trigger[] triggers = getTriggersForJob(context, job.getName(), job.getGroup());
-                for (Trigger t : triggers) {
-                    TriggerWrapper tmpTw = getTriggerWrapper(t.getGroup(), t.getName());
-                    if (tmpTw != null) {
-                        if (tmpTw.getState() == Trigger.STATE_NORMAL || tmpTw.getState() == Trigger.STATE_PAUSED) {
-                            tmpTw.block();
-                        }
-                        // update trigger in repo
-                        updateTriggerInRepo(t.getGroup(), tmpTw.getName(), tmpTw, tmpTw.getRevision());
-                        removeWaitingTrigger(t);
+        if (job.isStateful()) {
+            Trigger[] triggers = getTriggersForJob(context, job.getName(), job.getGroup());
+            for (Trigger t : triggers) {
+                TriggerWrapper tmpTw = getTriggerWrapper(t.getGroup(), t.getName());
+                if (tmpTw != null) {
+                    if (tmpTw.getState() == Trigger.STATE_NORMAL || tmpTw.getState() == Trigger.STATE_PAUSED) {
+                        tmpTw.block();
                     }
+                    // update trigger in repo
+                    updateTriggerInRepo(t.getGroup(), tmpTw.getName(), tmpTw, tmpTw.getRevision());
+                    removeWaitingTrigger(t);
                 }
-                blockedJobs.add(getJobNameKey(job));
-            } else if (localTrigger.getNextFireTime() != null) {
-                addWaitingTrigger(localTrigger);
             }
-            return tfb;
+            blockedJobs.add(getJobNameKey(job));
+        } else if (localTrigger.getNextFireTime() != null) {
+            addWaitingTrigger(localTrigger);
         }
+        return tfb;
     }
 
     @Override
     public void triggeredJobComplete(SchedulingContext context, Trigger trigger,
             JobDetail jobDetail, int triggerInstCode) throws JobPersistenceException {
-        synchronized(lock) {
-            logger.debug("Job {} has completed", jobDetail.getFullName());
-            String jobKey = getJobNameKey(jobDetail);
-            JobWrapper jw = getJobWrapper(jobDetail.getGroup(), jobDetail.getName());
-            JsonValue triggerValue = getTriggerFromRepo(trigger.getGroup(), trigger.getName());
-            TriggerWrapper tw = null;
-            if (triggerValue != null && !triggerValue.isNull()) {
-                tw = new TriggerWrapper(triggerValue);
-            }
+        logger.debug("Job {} has completed", jobDetail.getFullName());
+        String jobKey = getJobNameKey(jobDetail);
+        JobWrapper jw = getJobWrapper(jobDetail.getGroup(), jobDetail.getName());
+        JsonValue triggerValue = getTriggerFromRepo(trigger.getGroup(), trigger.getName());
+        TriggerWrapper tw = null;
+        if (triggerValue != null && !triggerValue.isNull()) {
+            tw = new TriggerWrapper(triggerValue);
+        }
 
-            // Remove the acquired trigger (if acquired)
-            removeAcquiredTrigger(trigger, instanceId);
-            if (tw != null) {
-                tw.setAcquired(false);
-                tw.setNodeId(null);
-            }
+        // Remove the acquired trigger (if acquired)
+        removeAcquiredTrigger(trigger, instanceId);
+        if (tw != null) {
+            tw.setAcquired(false);
+            tw.setNodeId(null);
+        }
 
-            if (jw != null) {
-                JobDetail jd;
-                try {
-                    jd = jw.getJobDetail();
-                } catch (Exception e) {
-                    throw new JobPersistenceException("Error triggering job complete", e);
+        if (jw != null) {
+            JobDetail jd;
+            try {
+                jd = jw.getJobDetail();
+            } catch (Exception e) {
+                throw new JobPersistenceException("Error triggering job complete", e);
+            }
+            if (jd.isStateful()) {
+                JobDataMap newData = jobDetail.getJobDataMap();
+                if (newData != null) {
+                    newData = (JobDataMap)newData.clone();
+                    newData.clearDirtyFlag();
                 }
-                if (jd.isStateful()) {
-                    JobDataMap newData = jobDetail.getJobDataMap();
-                    if (newData != null) {
-                        newData = (JobDataMap)newData.clone();
-                        newData.clearDirtyFlag();
-                    }
-                    jd.setJobDataMap(newData);
-                    blockedJobs.remove(getJobNameKey(jd));
-                    Trigger[] triggers = getTriggersForJob(context, jd.getName(), jd.getGroup());
-                    for (Trigger t : triggers) {
-                        TriggerWrapper tmpTw = getTriggerWrapper(t.getGroup(), t.getName());
-                        if (tmpTw != null) {
-                            if (tmpTw.getState() == Trigger.STATE_BLOCKED) {
-                                tmpTw.unblock();
-                            }
-                            tmpTw.setAcquired(false);
-                            tmpTw.setNodeId(null);
-                            // update trigger in repo
-                            updateTriggerInRepo(t.getGroup(), tmpTw.getName(), tmpTw, tmpTw.getRevision());
-                            if (!tmpTw.isPaused()) {
-                                addWaitingTrigger(t);
-                            }
+                jd.setJobDataMap(newData);
+                blockedJobs.remove(getJobNameKey(jd));
+                Trigger[] triggers = getTriggersForJob(context, jd.getName(), jd.getGroup());
+                for (Trigger t : triggers) {
+                    TriggerWrapper tmpTw = getTriggerWrapper(t.getGroup(), t.getName());
+                    if (tmpTw != null) {
+                        if (tmpTw.getState() == Trigger.STATE_BLOCKED) {
+                            tmpTw.unblock();
+                        }
+                        tmpTw.setAcquired(false);
+                        tmpTw.setNodeId(null);
+                        // update trigger in repo
+                        updateTriggerInRepo(t.getGroup(), tmpTw.getName(), tmpTw, tmpTw.getRevision());
+                        if (!tmpTw.isPaused()) {
+                            addWaitingTrigger(t);
                         }
                     }
-                    schedulerSignaler.signalSchedulingChange(0L);
                 }
-            } else {
-                blockedJobs.remove(jobKey);
+                schedulerSignaler.signalSchedulingChange(0L);
             }
+        } else {
+            blockedJobs.remove(jobKey);
+        }
 
-            if (tw != null) {
-                if (triggerInstCode == Trigger.INSTRUCTION_DELETE_TRIGGER) {
-                    if (trigger.getNextFireTime() == null) {
-                        if (tw.getTrigger().getNextFireTime() == null) {
-                            removeTrigger(context, trigger.getName(), trigger.getGroup());
-                        }
-                    } else {
+        if (tw != null) {
+            if (triggerInstCode == Trigger.INSTRUCTION_DELETE_TRIGGER) {
+                if (trigger.getNextFireTime() == null) {
+                    if (tw.getTrigger().getNextFireTime() == null) {
                         removeTrigger(context, trigger.getName(), trigger.getGroup());
-                        schedulerSignaler.signalSchedulingChange(0L);
                     }
-                } else if (triggerInstCode == Trigger.INSTRUCTION_SET_TRIGGER_COMPLETE) {
-                    tw.setState(Trigger.STATE_COMPLETE);
-                    removeWaitingTrigger(tw.getTrigger());
-                    schedulerSignaler.signalSchedulingChange(0L);
-                } else if (triggerInstCode == Trigger.INSTRUCTION_SET_TRIGGER_ERROR) {
-                    logger.debug("Trigger {} set to ERROR state.", trigger.getFullName());
-                    tw.setState(Trigger.STATE_ERROR);
-                    schedulerSignaler.signalSchedulingChange(0L);
-                } else if (triggerInstCode == Trigger.INSTRUCTION_SET_ALL_JOB_TRIGGERS_ERROR) {
-                    logger.debug("All triggers of Job {} set to ERROR state.", trigger.getFullJobName());
-                    setAllTriggersOfJobToState(trigger.getJobName(), trigger.getJobGroup(), Trigger.STATE_ERROR);
-                    schedulerSignaler.signalSchedulingChange(0L);
-                } else if (triggerInstCode == Trigger.INSTRUCTION_SET_ALL_JOB_TRIGGERS_COMPLETE) {
-                    setAllTriggersOfJobToState(trigger.getJobName(), trigger.getJobGroup(), Trigger.STATE_COMPLETE);
+                } else {
+                    removeTrigger(context, trigger.getName(), trigger.getGroup());
                     schedulerSignaler.signalSchedulingChange(0L);
                 }
+            } else if (triggerInstCode == Trigger.INSTRUCTION_SET_TRIGGER_COMPLETE) {
+                tw.setState(Trigger.STATE_COMPLETE);
+                removeWaitingTrigger(tw.getTrigger());
+                schedulerSignaler.signalSchedulingChange(0L);
+            } else if (triggerInstCode == Trigger.INSTRUCTION_SET_TRIGGER_ERROR) {
+                logger.debug("Trigger {} set to ERROR state.", trigger.getFullName());
+                tw.setState(Trigger.STATE_ERROR);
+                schedulerSignaler.signalSchedulingChange(0L);
+            } else if (triggerInstCode == Trigger.INSTRUCTION_SET_ALL_JOB_TRIGGERS_ERROR) {
+                logger.debug("All triggers of Job {} set to ERROR state.", trigger.getFullJobName());
+                setAllTriggersOfJobToState(trigger.getJobName(), trigger.getJobGroup(), Trigger.STATE_ERROR);
+                schedulerSignaler.signalSchedulingChange(0L);
+            } else if (triggerInstCode == Trigger.INSTRUCTION_SET_ALL_JOB_TRIGGERS_COMPLETE) {
+                setAllTriggersOfJobToState(trigger.getJobName(), trigger.getJobGroup(), Trigger.STATE_COMPLETE);
+                schedulerSignaler.signalSchedulingChange(0L);
             }
         }
 
@@ -1582,59 +1617,61 @@ public class RepoJobStore implements JobStore, ClusterEventListener {
     }
 
     /**
-     * Adds a Trigger to the list of waiting triggers.
+     * Adds a Trigger to the waiting trigger index, replacing any entry queued for an earlier fire time.
      *
      * @param trigger   the Trigger to add
      * @throws JobPersistenceException
-     * @throws ResourceException
      */
     private void addWaitingTrigger(Trigger trigger) throws JobPersistenceException {
-        synchronized (lock) {
-            try {
-                int retries = 0;
-                while (writeRetries == -1 || retries <= writeRetries && !shutdown) {
-                    try {
-                        // update repo
-                        addRepoListName(getTriggerId(trigger.getGroup(), trigger.getName()),
-                                WAITING_TRIGGERS_RESOURCE_PATH, "names");
-                        break;
-                    } catch (PreconditionFailedException e) {
-                        logger.debug("Adding waiting trigger failed {}, retrying", e);
-                        retries++;
-                    }
-                }
-            } catch (ResourceException e) {
-                throw new JobPersistenceException("Error adding waiting trigger", e);
-            }
-        }
+        String id = getTriggerId(trigger.getGroup(), trigger.getName());
+        updateWaitingTrigger(id, null, new WaitingTrigger(id, trigger));
     }
 
     /**
-     * Removes a Trigger from the list of waiting triggers.
+     * Removes a Trigger from the waiting trigger index.
      *
      * @param trigger   the Trigger to remove
+     * @return  true if the Trigger was removed, false otherwise (the Trigger may not have been waiting)
      * @throws JobPersistenceException
-     * @throws ResourceException
      */
     private boolean removeWaitingTrigger(Trigger trigger) throws JobPersistenceException {
-        synchronized (lock) {
-            try {
-                boolean result = false;
-                int retries = 0;
-                while (writeRetries == -1 || retries <= writeRetries && !shutdown) {
-                    try {
-                        result = removeRepoListName(getTriggerId(trigger.getGroup(), trigger.getName()),
-                                WAITING_TRIGGERS_RESOURCE_PATH, "names");
-                        break;
-                    } catch (PreconditionFailedException e) {
-                        logger.debug("Removing waiting trigger failed {}, retrying", e);
-                        retries++;
+        return updateWaitingTrigger(getTriggerId(trigger.getGroup(), trigger.getName()), null, null);
+    }
+
+    /**
+     * Updates the entry of a Trigger in its shard of the waiting trigger index, see
+     * {@link WaitingTrigger#update(JsonValue, String, WaitingTrigger, WaitingTrigger)}. The shard is written back
+     * with the revision it was read at and the update is retried on conflicting writes.
+     *
+     * @param id            the Trigger ID
+     * @param expected      the entry the shard must hold for the update to be made, or null
+     * @param replacement   the new entry of the Trigger, or null to remove it
+     * @return  true if an entry of the Trigger was removed, false otherwise
+     * @throws JobPersistenceException
+     */
+    private boolean updateWaitingTrigger(String id, WaitingTrigger expected, WaitingTrigger replacement)
+            throws JobPersistenceException {
+        String repoId = getWaitingTriggersRepoId(WaitingTrigger.getShard(id, waitingTriggerShards));
+        try {
+            int retries = 0;
+            while (writeRetries == -1 || retries <= writeRetries && !shutdown) {
+                try {
+                    JsonValue shard = getOrCreateRepo(repoId);
+                    String rev = shard.get("_rev").asString();
+                    boolean removed = WaitingTrigger.update(shard, id, expected, replacement);
+                    // an expected entry is always removed when the shard is changed
+                    if (removed || (replacement != null && expected == null)) {
+                        getRepositoryService().update(Requests.newUpdateRequest(repoId, shard).setRevision(rev));
                     }
+                    return removed;
+                } catch (PreconditionFailedException e) {
+                    logger.debug("Updating waiting trigger {} failed, retrying", id, e);
+                    retries++;
                 }
-                return result;
-            } catch (ResourceException e) {
-                throw new JobPersistenceException("Error removing waiting trigger", e);
             }
+            return false;
+        } catch (ResourceException e) {
+            throw new JobPersistenceException("Error updating waiting trigger", e);
         }
     }
 
@@ -1647,23 +1684,21 @@ public class RepoJobStore implements JobStore, ClusterEventListener {
      * @throws ResourceException
      */
     private void addAcquiredTrigger(Trigger trigger, String instanceId) throws JobPersistenceException {
-        synchronized (lock) {
-            try {
-                logger.debug("Adding acquired trigger {} for instance {}", trigger.getName(), instanceId);
-                int retries = 0;
-                while (writeRetries == -1 || retries <= writeRetries && !shutdown) {
-                    try {
-                        addRepoListName(getTriggerId(trigger.getGroup(), trigger.getName()),
-                                ACQUIRED_TRIGGERS_RESOURCE_PATH, instanceId);
-                        break;
-                    } catch (PreconditionFailedException e) {
-                        logger.debug("Adding acquired trigger failed {}, retrying", e);
-                        retries++;
-                    }
+        try {
+            logger.debug("Adding acquired trigger {} for instance {}", trigger.getName(), instanceId);
+            int retries = 0;
+            while (writeRetries == -1 || retries <= writeRetries && !shutdown) {
+                try {
+                    addRepoListName(getTriggerId(trigger.getGroup(), trigger.getName()),
+                            ACQUIRED_TRIGGERS_RESOURCE_PATH, instanceId);
+                    break;
+                } catch (PreconditionFailedException e) {
+                    logger.debug("Adding acquired trigger failed {}, retrying", e);
+                    retries++;
                 }
-            } catch (ResourceException e) {
-                throw new JobPersistenceException("Error adding waiting trigger", e);
             }
+        } catch (ResourceException e) {
+            throw new JobPersistenceException("Error adding waiting trigger", e);
         }
     }
 
@@ -1676,25 +1711,23 @@ public class RepoJobStore implements JobStore, ClusterEventListener {
      * @throws ResourceException
      */
     private boolean removeAcquiredTrigger(Trigger trigger, String instanceId) throws JobPersistenceException {
-        synchronized (lock) {
-            try {
-                logger.debug("Removing acquired trigger {} for instance {}", trigger.getName(), instanceId);
-                boolean result = false;
-                int retries = 0;
-                while (writeRetries == -1 || retries <= writeRetries && !shutdown) {
-                    try {
-                        result = removeRepoListName(getTriggerId(trigger.getGroup(), trigger.getName()),
-                                ACQUIRED_TRIGGERS_RESOURCE_PATH, instanceId);
-                        break;
-                    } catch (PreconditionFailedException e) {
-                        logger.debug("Removing acquired trigger failed {}, retrying", e);
-                        retries++;
-                    }
+        try {
+            logger.debug("Removing acquired trigger {} for instance {}", trigger.getName(), instanceId);
+            boolean result = false;
+            int retries = 0;
+            while (writeRetries == -1 || retries <= writeRetries && !shutdown) {
+                try {
+                    result = removeRepoListName(getTriggerId(trigger.getGroup(), trigger.getName()),
+                            ACQUIRED_TRIGGERS_RESOURCE_PATH, instanceId);
+                    break;
+                } catch (PreconditionFailedException e) {
+                    logger.debug("Removing acquired trigger failed {}, retrying", e);
+                    retries++;
                 }
-                return result;
-            } catch (ResourceException e) {
-                throw new JobPersistenceException("Error removing waiting trigger", e);
             }
+            return result;
+        } catch (ResourceException e) {
+            throw new JobPersistenceException("Error removing waiting trigger", e);
         }
     }
 
@@ -1752,57 +1785,23 @@ public class RepoJobStore implements JobStore, ClusterEventListener {
     }
 
     /**
-     * Returns the a WaitingTriggers object which wraps the Tree of all triggers in the "waiting" state
+     * Returns the entries of all triggers in the "waiting" state, read from all shards of the waiting trigger index
      *
-     * @return  the WaitingTriggers object
+     * @return  the entries ordered by fire time
      * @throws JobPersistenceException
      */
-    private WaitingTriggers getWaitingTriggers() throws JobPersistenceException {
-        TreeSet<Trigger> waitingTriggers = new TreeSet<>(new TriggerComparator());
-        List<String> waitingTriggersRepoList = null;
-        final String repoId = WAITING_TRIGGERS_RESOURCE_PATH;
-        String revision = null;
-        JsonValue map;
+    private List<WaitingTrigger> getWaitingTriggers() throws JobPersistenceException {
+        List<WaitingTrigger> waitingTriggers = new ArrayList<>();
         try {
-            try {
-                map = getRepositoryService().read(Requests.newReadRequest(repoId)).getContent();
-            } catch (NotFoundException e) {
-                logger.debug("repo list {} not found, lets create it", "names");
-                map = null;
-            }
-            if (map == null || map.isNull()) {
-                map = json(object());
-                waitingTriggersRepoList = new ArrayList<>();
-                map.put("names", waitingTriggersRepoList);
-                // create in repo
-                map = getRepositoryService().create(getCreateRequest(repoId, map)).getContent();
-                revision = map.get("_rev").asString();
-            } else {
-                // else check if list exists in map
-                waitingTriggersRepoList = map.get("names").asList(String.class);
-                revision = map.get("_rev").asString();
-                if (waitingTriggersRepoList == null) {
-                    waitingTriggersRepoList = new ArrayList<>();
-                    map.put("names", waitingTriggersRepoList);
-                    JsonValue updatedValue = getRepositoryService().update(Requests.newUpdateRequest(repoId, map)
-                                    .setRevision(revision)).getContent();
-                    revision = updatedValue.get("_rev").asString();
-                }
-            }
-            for (String id : waitingTriggersRepoList) {
-                TriggerWrapper tw = getTriggerWrapper(getGroupFromId(id), getNameFromId(id));
-                if (tw == null) {
-                    logger.warn("Could not add {} to list of waiting Triggers. Trigger not found in repo", id);
-                } else {
-                    logger.debug("Found waiting trigger {} in group {}", tw.getName(),tw.getGroup());
-                    waitingTriggers.add(tw.getTrigger());
-                }
+            for (int shard = 0; shard < waitingTriggerShards; shard++) {
+                waitingTriggers.addAll(WaitingTrigger.read(readFromRepo(getWaitingTriggersRepoId(shard))));
             }
-            return new WaitingTriggers(waitingTriggers, revision);
         } catch (ResourceException e) {
-            logger.warn("Error initializing waiting triggers", e);
-            throw new JobPersistenceException("Error initializing waiting triggers", e);
+            logger.warn("Error reading waiting triggers", e);
+            throw new JobPersistenceException("Error reading waiting triggers", e);
         }
+        Collections.sort(waitingTriggers);
+        return waitingTriggers;
     }
 
     /**
@@ -1838,23 +1837,21 @@ public class RepoJobStore implements JobStore, ClusterEventListener {
      */
     private void addRepoListName(String name, String id, String list)
             throws JobPersistenceException, ResourceException {
-        synchronized (lock) {
-            logger.trace("Adding name: {} to {}", name, id);
-            JsonValue map = getOrCreateRepo(id);
-            String rev = map.get("_rev").asString();
+        logger.trace("Adding name: {} to {}", name, id);
+        JsonValue map = getOrCreateRepo(id);
+        String rev = map.get("_rev").asString();
 
-            List<String> names = map.get(list).asList(String.class);
-            if (names == null) {
-                names = new ArrayList<>();
-                map.put(list, names);
-            }
-            if (!names.contains(name)) {
-                names.add(name);
-            }
-            // update repo
-            getRepositoryService().update(Requests.newUpdateRequest(id, map)
-                            .setRevision(rev));
+        List<String> names = map.get(list).asList(String.class);
+        if (names == null) {
+            names = new ArrayList<>();
+            map.put(list, names);
         }
+        if (!names.contains(name)) {
+            names.add(name);
+        }
+        // update repo
+        getRepositoryService().update(Requests.newUpdateRequest(id, map)
+                        .setRevision(rev));
 
     }
 
@@ -1869,72 +1866,66 @@ public class RepoJobStore implements JobStore, ClusterEventListener {
      */
      private boolean removeRepoListName(String name, String id, String list)
             throws JobPersistenceException, ResourceException {
-        synchronized (lock) {
-            logger.trace("Removing name: {} from {}", name, id);
-            JsonValue map = getOrCreateRepo(id);
-            String rev = map.get("_rev").asString();
+        logger.trace("Removing name: {} from {}", name, id);
+        JsonValue map = getOrCreateRepo(id);
+        String rev = map.get("_rev").asString();
 
-            List<String> names = map.get(list).asList(String.class);
-            if (names == null) {
-                names = new ArrayList<>();
-                map.put(list, names);
-            }
-            boolean result = names.remove(name);
-            if (result) {
-                // update repo
-                getRepositoryService().update(Requests.newUpdateRequest(id, map).setRevision(rev));
-            }
-            return result;
+        List<String> names = map.get(list).asList(String.class);
+        if (names == null) {
+            names = new ArrayList<>();
+            map.put(list, names);
         }
+        boolean result = names.remove(name);
+        if (result) {
+            // update repo
+            getRepositoryService().update(Requests.newUpdateRequest(id, map).setRevision(rev));
+        }
+        return result;
 
     }
 
 
     private JsonValue getOrCreateRepo(String repoId) throws JobPersistenceException, ResourceException {
-        synchronized (lock) {
-            JsonValue map = readFromRepo(repoId);
+        JsonValue map = readFromRepo(repoId);
 
-            if (map.isNull()) {
-                map = json(object());
-                // create in repo
-                logger.debug("Creating repo {}", repoId);
-                map = getRepositoryService().create(getCreateRequest(repoId, map)).getContent();
-            }
-            return map;
+        if (map.isNull()) {
+            map = json(object());
+            // create in repo
+            logger.debug("Creating repo {}", repoId);
+            map = getRepositoryService().create(getCreateRequest(repoId, map)).getContent();
         }
+        return map;
     }
 
     private List<String> getOrCreateRepoList(String repoId, String listId)
             throws JobPersistenceException, ResourceException {
-        synchronized (lock) {
-            List<String> list = null;
-            JsonValue map;
-            String revision;
-            try {
-                map = getRepositoryService().read(Requests.newReadRequest(repoId)).getContent();
-            } catch (NotFoundException e) {
-                logger.debug("repo list {} not found, lets create it", listId);
-                map = null;
-            }
-            if (map == null || map.isNull()) {
-                map = json(object());
+        List<String> list = null;
+        JsonValue map;
+        String revision;
+        try {
+            map = getRepositoryService().read(Requests.newReadRequest(repoId)).getContent();
+        } catch (NotFoundException e) {
+            logger.debug("repo list {} not found, lets create it", listId);
+            map = null;
+        }
+        if (map == null || map.isNull()) {
+            map = json(object());
+            list = new ArrayList<>();
+            map.put(listId, list);
+            // create in repo
+            getRepositoryService().create(getCreateRequest(repoId, map));
+        } else {
+            // else check if list exists in map
+            list = map.get(listId).asList(String.class);
+            if (list == null) {
                 list = new ArrayList<>();
                 map.put(listId, list);
-                // create in repo
-                getRepositoryService().create(getCreateRequest(repoId, map));
-            } else {
-                // else check if list exists in map
-                list = map.get(listId).asList(String.class);
-                if (list == null) {
-                    list = new ArrayList<>();
-                    map.put(listId, list);
-                    revision = map.get("_rev").asString();
-                    getRepositoryService().update(Requests.newUpdateRequest(repoId, map)
-                                    .setRevision(revision));
-                }
+                revision = map.get("_rev").asString();
+                getRepositoryService().update(Requests.newUpdateRequest(repoId, map)
+                                .setRevision(revision));
             }
-            return list;
         }
+        return list;
     }
 
     /**
@@ -1946,14 +1937,12 @@ public class RepoJobStore implements JobStore, ClusterEventListener {
      * @throws JobPersistenceException
      */
     private JsonValue getTriggerFromRepo(String group, String name) throws JobPersistenceException {
-        synchronized (lock) {
-            try {
-                logger.trace("Getting trigger {} in group {} from repo", name, group);
-                return readFromRepo(getTriggersRepoId(group, name));
-            } catch (ResourceException e) {
-                logger.warn("Error getting trigger from repo", e);
-                throw new JobPersistenceException("Error getting trigger from repo", e);
-            }
+        try {
+            logger.trace("Getting trigger {} in group {} from repo", name, group);
+            return readFromRepo(getTriggersRepoId(group, name));
+        } catch (ResourceException e) {
+            logger.warn("Error getting trigger from repo", e);
+            throw new JobPersistenceException("Error getting trigger from repo", e);
         }
     }
 
@@ -1967,19 +1956,41 @@ public class RepoJobStore implements JobStore, ClusterEventListener {
      */
     private void updateTriggerInRepo(String group, String name, TriggerWrapper tw, String rev)
             throws JobPersistenceException {
-        synchronized (lock) {
-            try {
-                if (logger.isTraceEnabled()) {
-                    logger.trace("Getting trigger {}", getTriggersRepoId(group, name));
-                }
-                String repoId = getTriggersRepoId(group, name);
-                UpdateRequest r = Requests.newUpdateRequest(repoId, tw.getValue());
-                r.setRevision(rev);
-                getRepositoryService().update(r);
-            } catch (ResourceException e) {
-                logger.warn("Error updating trigger in repo", e);
-                throw new JobPersistenceException("Error updating trigger in repo", e);
+        try {
+            if (logger.isTraceEnabled()) {
+                logger.trace("Getting trigger {}", getTriggersRepoId(group, name));
             }
+            String repoId = getTriggersRepoId(group, name);
+            UpdateRequest r = Requests.newUpdateRequest(repoId, tw.getValue());
+            r.setRevision(rev);
+            getRepositoryService().update(r);
+        } catch (ResourceException e) {
+            logger.warn("Error updating trigger in repo", e);
+            throw new JobPersistenceException("Error updating trigger in repo", e);
+        }
+    }
+
+    /**
+     * Updates a trigger in the repo unless it has been updated since it was read.
+     *
+     * @param name the name of the trigger
+     * @param group the group id of the trigger
+     * @param tw the TriggerWrapper representing the updated trigger
+     * @param rev the revision the trigger was read at
+     * @return true if the trigger was updated, false if the revision is out of date
+     * @throws JobPersistenceException
+     */
+    private boolean tryUpdateTriggerInRepo(String group, String name, TriggerWrapper tw, String rev)
+            throws JobPersistenceException {
+        try {
+            getRepositoryService().update(Requests.newUpdateRequest(getTriggersRepoId(group, name), tw.getValue())
+                    .setRevision(rev));
+            return true;
+        } catch (PreconditionFailedException e) {
+            return false;
+        } catch (ResourceException e) {
+            logger.warn("Error updating trigger in repo", e);
+            throw new JobPersistenceException("Error updating trigger in repo", e);
         }
     }
 
@@ -2081,11 +2092,16 @@ public class RepoJobStore implements JobStore, ClusterEventListener {
                     }
                 }
 
-                // Ignore triggers which are already present in the waiting list.
-                WaitingTriggers wt = getWaitingTriggers();
-                TreeSet<Trigger> waitingTriggers = wt.getTriggers();
-                for (Trigger t : waitingTriggers) {
-                    storedTriggers.remove(t);
+                // Ignore triggers which are already present in the waiting trigger index.
+                Set<String> waitingTriggerIds = new HashSet<>();
+                for (WaitingTrigger entry : getWaitingTriggers()) {
+                    waitingTriggerIds.add(entry.getId());
+                }
+                for (Iterator<Trigger> it = storedTriggers.iterator(); it.hasNext();) {
+                    Trigger t = it.next();
+                    if (waitingTriggerIds.contains(getTriggerId(t.getGroup(), t.getName()))) {
+                        it.remove();
+                    }
                 }
                 
                 // Process and release any triggers which are acquired
@@ -2135,43 +2151,6 @@ public class RepoJobStore implements JobStore, ClusterEventListener {
         }
     }
 
-    /**
-     * A wrapper for the tree of waiting triggers
-     */
-    protected class WaitingTriggers {
-
-        private TreeSet<Trigger> triggers;
-        private String revision;
-
-        public WaitingTriggers(TreeSet<Trigger> triggers, String rev) {
-            this.triggers = triggers;
-            revision = rev;
-        }
-
-        public TreeSet<Trigger> getTriggers() {
-            return triggers;
-        }
-
-        public String getRevision() {
-            return revision;
-        }
-
-        public void setRevision(String rev) {
-            revision = rev;
-        }
-
-        public List<String> getTriggerNamesList() {
-            List<String> names = new ArrayList<String>();
-            Iterator<Trigger> iterator = triggers.iterator();
-            while (iterator.hasNext()) {
-                Trigger t = iterator.next();
-                names.add(getTriggerId(t.getGroup(), t.getName()));
-            }
-            return names;
-        }
-
-    }
-
     /**
      * A wrapper for the list of acquired triggers
      */
@@ -0,0 +1,188 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.quartz.impl;
+
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.object;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+import org.forgerock.json.JsonValue;
+import org.quartz.Trigger;
+
+/**
+ * An entry of the waiting trigger index.
+ * <p>
+ * The index is split into shards, each a repository object holding the entries of the triggers hashed to it
+ * ordered by fire time, so triggers can be queued and claimed without contending on a single object.
+ */
+public final class WaitingTrigger implements Comparable<WaitingTrigger> {
+
+    /** The list of entries of a waiting trigger shard */
+    static final String TRIGGERS = "triggers";
+
+    private static final String ID = "id";
+    private static final String FIRE_TIME = "fireTime";
+    private static final String PRIORITY = "priority";
+
+    private final String id;
+    private final long fireTime;
+    private final int priority;
+
+    /**
+     * Creates the entry of a trigger.
+     *
+     * @param id the trigger id, see {@link RepoJobStore#getTriggerId(String, String)}
+     * @param trigger the trigger
+     */
+    WaitingTrigger(String id, Trigger trigger) {
+        this(id, trigger.getNextFireTime() != null ? trigger.getNextFireTime().getTime() : 0L,
+                trigger.getPriority());
+    }
+
+    private WaitingTrigger(String id, long fireTime, int priority) {
+        this.id = id;
+        this.fireTime = fireTime;
+        this.priority = priority;
+    }
+
+    /**
+     * @return the trigger id
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return the next fire time of the trigger when it was queued, 0 if none
+     */
+    long getFireTime() {
+        return fireTime;
+    }
+
+    /**
+     * Returns whether the entry is up to date with the trigger.
+     *
+     * @param nextFireTime the next fire time of the trigger
+     * @return true if the entry was queued for the fire time
+     */
+    boolean isFiredAt(Date nextFireTime) {
+        return nextFireTime != null && nextFireTime.getTime() == fireTime;
+    }
+
+    /**
+     * Orders entries as the {@link RepoJobStore.TriggerComparator} orders triggers: by fire time, then by
+     * descending priority, then by id.
+     */
+    @Override
+    public int compareTo(WaitingTrigger other) {
+        if (fireTime != other.fireTime) {
+            return fireTime < other.fireTime ? -1 : 1;
+        }
+        if (priority != other.priority) {
+            return other.priority - priority;
+        }
+        return id.compareTo(other.id);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof WaitingTrigger)) {
+            return false;
+        }
+        final WaitingTrigger other = (WaitingTrigger) o;
+        return id.equals(other.id) && fireTime == other.fireTime && priority == other.priority;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * id.hashCode() + (int) (fireTime ^ (fireTime >>> 32))) + priority;
+    }
+
+    private Object toJson() {
+        return object(field(ID, id), field(FIRE_TIME, fireTime), field(PRIORITY, priority));
+    }
+
+    /**
+     * Returns the shard of the waiting trigger index holding the entry of a trigger.
+     *
+     * @param id the trigger id
+     * @param shards the number of shards
+     * @return the shard number
+     */
+    static int getShard(String id, int shards) {
+        return (id.hashCode() & Integer.MAX_VALUE) % shards;
+    }
+
+    /**
+     * Reads the entries of a waiting trigger shard.
+     *
+     * @param shard the shard object from the repository
+     * @return the entries, ordered by fire time
+     */
+    public static List<WaitingTrigger> read(JsonValue shard) {
+        final List<WaitingTrigger> entries = new ArrayList<>();
+        if (shard.get(TRIGGERS).isList()) {
+            for (JsonValue entry : shard.get(TRIGGERS)) {
+                entries.add(new WaitingTrigger(entry.get(ID).asString(), entry.get(FIRE_TIME).asLong(),
+                        entry.get(PRIORITY).defaultTo(Trigger.DEFAULT_PRIORITY).asInteger()));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Removes the entry of a trigger from a waiting trigger shard, and adds the replacement in fire time order.
+     * <p>
+     * If an expected entry is given the shard is only changed if it holds that very entry, so an entry read
+     * earlier can be claimed or replaced without overwriting a newer entry of the trigger.
+     *
+     * @param shard the shard object from the repository, updated in place
+     * @param id the trigger id
+     * @param expected the entry the shard must hold, or null to update the shard unconditionally
+     * @param replacement the new entry of the trigger, or null to only remove the entry
+     * @return true if an entry of the trigger was removed from the shard
+     */
+    static boolean update(JsonValue shard, String id, WaitingTrigger expected, WaitingTrigger replacement) {
+        final List<WaitingTrigger> entries = read(shard);
+        if (expected != null && !entries.contains(expected)) {
+            return false;
+        }
+        boolean removed = false;
+        for (Iterator<WaitingTrigger> it = entries.iterator(); it.hasNext();) {
+            if (it.next().id.equals(id)) {
+                it.remove();
+                removed = true;
+            }
+        }
+        if (replacement != null) {
+            int index = 0;
+            while (index < entries.size() && entries.get(index).compareTo(replacement) < 0) {
+                index++;
+            }
+            entries.add(index, replacement);
+        }
+        final List<Object> list = new ArrayList<>(entries.size());
+        for (WaitingTrigger entry : entries) {
+            list.add(entry.toJson());
+        }
+        shard.put(TRIGGERS, list);
+        return removed;
+    }
+}
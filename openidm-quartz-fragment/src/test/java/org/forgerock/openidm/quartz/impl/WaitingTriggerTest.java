@@ -0,0 +1,84 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.quartz.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+
+import java.util.Date;
+import java.util.List;
+
+import org.forgerock.json.JsonValue;
+import org.quartz.SimpleTrigger;
+import org.quartz.Trigger;
+import org.testng.annotations.Test;
+
+public class WaitingTriggerTest {
+
+    @Test
+    public void testUpdateKeepsFireTimeOrder() throws Exception {
+        JsonValue shard = json(object());
+        WaitingTrigger.update(shard, "late", null, entry("late", 3000L, Trigger.DEFAULT_PRIORITY));
+        WaitingTrigger.update(shard, "early", null, entry("early", 1000L, Trigger.DEFAULT_PRIORITY));
+        WaitingTrigger.update(shard, "urgent", null, entry("urgent", 3000L, 10));
+
+        assertThat(ids(WaitingTrigger.read(shard))).containsExactly("early", "urgent", "late");
+
+        // rescheduling replaces the entry of the trigger
+        WaitingTrigger.update(shard, "early", null, entry("early", 4000L, Trigger.DEFAULT_PRIORITY));
+        assertThat(ids(WaitingTrigger.read(shard))).containsExactly("urgent", "late", "early");
+    }
+
+    @Test
+    public void testUpdateWithExpectedEntry() throws Exception {
+        JsonValue shard = json(object());
+        WaitingTrigger queued = entry("trigger", 1000L, Trigger.DEFAULT_PRIORITY);
+        WaitingTrigger.update(shard, "trigger", null, queued);
+        WaitingTrigger.update(shard, "trigger", null, entry("trigger", 2000L, Trigger.DEFAULT_PRIORITY));
+
+        // the entry read earlier is no longer in the shard, it must not be claimed
+        assertThat(WaitingTrigger.update(shard, "trigger", queued, null)).isFalse();
+        assertThat(WaitingTrigger.read(shard)).hasSize(1);
+
+        WaitingTrigger current = WaitingTrigger.read(shard).get(0);
+        assertThat(WaitingTrigger.update(shard, "trigger", current, null)).isTrue();
+        assertThat(WaitingTrigger.read(shard)).isEmpty();
+    }
+
+    @Test
+    public void testShardIsStable() {
+        int shard = WaitingTrigger.getShard("group_$x$x$_name", 16);
+        assertThat(shard).isBetween(0, 15);
+        assertThat(WaitingTrigger.getShard("group_$x$x$_name", 16)).isEqualTo(shard);
+        assertThat(WaitingTrigger.getShard("group_$x$x$_name", 1)).isEqualTo(0);
+    }
+
+    private static WaitingTrigger entry(String id, long fireTime, int priority) {
+        SimpleTrigger trigger = new SimpleTrigger(id, "group", new Date(fireTime));
+        trigger.setNextFireTime(new Date(fireTime));
+        trigger.setPriority(priority);
+        return new WaitingTrigger(id, trigger);
+    }
+
+    private static String[] ids(List<WaitingTrigger> entries) {
+        String[] ids = new String[entries.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = entries.get(i).getId();
+        }
+        return ids;
+    }
+}
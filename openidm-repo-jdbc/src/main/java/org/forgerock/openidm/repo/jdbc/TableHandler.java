@@ -2,6 +2,7 @@
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
  * Copyright © 2011-2015 ForgeRock AS. All rights reserved.
+ * Portions Copyright 2026 Wren Security.
  *
  * The contents of this file are subject to the terms
  * of the Common Development and Distribution License
@@ -30,6 +31,7 @@ import java.util.List;
 import java.util.Map;
 
 import org.forgerock.json.JsonPointer;
+import org.forgerock.json.JsonValue;
 import org.forgerock.json.resource.BadRequestException;
 import org.forgerock.json.resource.ConflictException;
 import org.forgerock.json.resource.ForbiddenException;
@@ -38,6 +40,7 @@ import org.forgerock.json.resource.NotFoundException;
 import org.forgerock.json.resource.PreconditionFailedException;
 import org.forgerock.json.resource.ResourceResponse;
 import org.forgerock.json.resource.ResourceException;
+import org.forgerock.json.resource.SortKey;
 import org.forgerock.util.query.QueryFilter;
 
 public interface TableHandler {
@@ -157,6 +160,27 @@ public interface TableHandler {
     public List<Map<String, Object>> query(String type, Map<String, Object> params, Connection connection)
                 throws SQLException, ResourceException;
 
+    /**
+     * Performs the query on the specified object, handing each result record to the handler as it is read
+     * instead of collecting the results.
+     * <p>
+     * The statement is closed once the results are exhausted or the handler returned false. Whether rows are
+     * fetched from the database incrementally depends on the driver; some drivers only honor the fetch size
+     * within a transaction.
+     *
+     * @param type identifies the object to query.
+     * @param params the parameters of the query to perform.
+     * @param connection
+     * @param fetchSize the number of rows to fetch from the database at a time, or 0 for the driver default
+     * @param handler the handler of the result records
+     * @throws BadRequestException if the specified params contain invalid arguments, e.g. a query id that is not
+     * configured, a query expression that is invalid, or missing query substitution tokens.
+     * @throws InternalServerErrorException if the operation failed because of a (possibly transient) failure
+     * @throws java.sql.SQLException
+     */
+    public void query(String type, Map<String, Object> params, Connection connection, int fetchSize,
+            QueryResultHandler handler) throws SQLException, ResourceException;
+
     /**
      * Performs the command on the specified target and returns the number of affected objects
      * <p>
@@ -195,6 +219,25 @@ public interface TableHandler {
      * @return the raw query String
      */
     public String renderQueryFilter(QueryFilter<JsonPointer> filter, Map<String, Object> replacementTokens, Map<String, Object> params);
+
+    /**
+     * Builds the keyset of a query filter result, from which the following page of a keyset paged
+     * query is sought.
+     *
+     * @param result the last result of a page
+     * @param sortKeys the sort keys of the query, or null
+     * @return the sort key values, null where the result has no value, followed by the object id, or null
+     *         if the query can not be keyset paged
+     */
+    public List<String> getPagedResultsKeyset(JsonValue result, List<SortKey> sortKeys);
+
+    /**
+     * Returns whether a query filter query with the given sort keys can be keyset paged.
+     *
+     * @param sortKeys the sort keys of the query, or null
+     * @return true if the query can be keyset paged
+     */
+    public boolean isKeysetPageable(List<SortKey> sortKeys);
     
     /**
      * Query if a given exception signifies a well known error type
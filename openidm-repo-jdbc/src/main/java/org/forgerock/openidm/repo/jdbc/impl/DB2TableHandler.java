@@ -5,7 +5,7 @@
  *
  * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
  * specific language governing permission and limitations under the License.
- * Portions Copyright 2018 Wren Security.
+ * Portions Copyright 2018-2026 Wren Security.
  *
  * When distributing Covered Software, include this CDDL Header Notice in each file and include
  * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
@@ -16,7 +16,6 @@
  */
 package org.forgerock.openidm.repo.jdbc.impl;
 
-import static org.forgerock.openidm.repo.QueryConstants.PAGED_RESULTS_OFFSET;
 import static org.forgerock.openidm.repo.QueryConstants.PAGE_SIZE;
 import static org.forgerock.openidm.repo.QueryConstants.SORT_KEYS;
 import static org.forgerock.openidm.repo.util.Clauses.where;
@@ -81,7 +80,10 @@ public class DB2TableHandler extends GenericTableHandler {
     // blatantly copied from OracleTableHandler...
     @Override
     public String renderQueryFilter(QueryFilter<JsonPointer> filter, Map<String, Object> replacementTokens, Map<String, Object> params) {
-        final int offsetParam = Integer.parseInt((String)params.get(PAGED_RESULTS_OFFSET));
+        // JsonValue-cheat to avoid an unchecked cast
+        final List<SortKey> sortKeys = new JsonValue(params).get(SORT_KEYS).asList(SortKey.class);
+        final List<String> keyset = getPagedResultsKeyset(params, sortKeys);
+        final int offsetParam = getPagedResultsOffset(params, keyset);
         final int pageSizeParam = Integer.parseInt((String)params.get(PAGE_SIZE));
 
         // Create custom builder which overrides SQL output syntax
@@ -128,14 +130,15 @@ public class DB2TableHandler extends GenericTableHandler {
         // other half of OPENIDM-2773 fix
         replacementTokens.put("otype", params.get("_resource"));
 
-        // JsonValue-cheat to avoid an unchecked cast
-        final List<SortKey> sortKeys = new JsonValue(params).get(SORT_KEYS).asList(SortKey.class);
         // Check for sort keys and build up order-by syntax
         if (sortKeys != null && sortKeys.size() > 0) {
             prepareSortKeyStatements(builder, sortKeys, replacementTokens);
-        } else {
+        } else if (keyset == null) {
             builder.orderBy("obj.id", false);
         }
+        if (keyset != null) {
+            prepareKeysetStatements(builder, keyset, replacementTokens);
+        }
 
         return builder.toSQL();
     }
@@ -165,7 +168,7 @@ public class DB2TableHandler extends GenericTableHandler {
         PreparedStatement readForUpdateStatement = null;
         ResultSet rs = null;
         try {
-            long typeId = readTypeId(type, connection);
+            long typeId = lookupTypeId(type, connection);
             if (typeId < 0) {
                 throw new NotFoundException("Object " + fullId + " not found. No id could be retrieved for type " + type);
             }
@@ -186,4 +189,12 @@ public class DB2TableHandler extends GenericTableHandler {
             CleanupHelper.loggedClose(readForUpdateStatement);
         }
     }
+
+    /**
+     * NULL sorts above every value, so last in ascending order.
+     */
+    @Override
+    protected boolean isNullSortedLow() {
+        return false;
+    }
 }
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2011-2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 package org.forgerock.openidm.repo.jdbc.impl;
 
@@ -27,6 +28,7 @@ import java.util.Map;
 
 import org.forgerock.json.JsonPointer;
 import org.forgerock.json.JsonValue;
+import org.forgerock.openidm.repo.jdbc.QueryResultHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -82,7 +84,27 @@ public class GenericResultSetMapper implements ResultSetMapper {
      */
     @Override
     public List<Map<String, Object>> mapToObject(ResultSet rs, String queryId, String type, Map<String, Object> params) throws SQLException, IOException {
-        List<Map<String, Object>> result = new ArrayList<>();
+        final List<Map<String, Object>> result = new ArrayList<>();
+        mapToObject(rs, queryId, type, params, new QueryResultHandler() {
+            @Override
+            public boolean handleResult(Map<String, Object> obj) {
+                result.add(obj);
+                return true;
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Maps the rows of the ResultSet representing the OpenIDM object, handing each to the handler as soon
+     * as it is read.
+     *
+     * The implementation of this method moves the cursor until it is positioned after the last row, or
+     * the handler returned false.
+     */
+    @Override
+    public void mapToObject(ResultSet rs, String queryId, String type, Map<String, Object> params,
+            QueryResultHandler handler) throws SQLException, IOException {
         ResultSetMetaData rsMetaData = rs.getMetaData();
         boolean hasFullObject = hasColumn(rsMetaData, "fullobject");
         boolean hasId = false;
@@ -97,13 +119,14 @@ public class GenericResultSetMapper implements ResultSetMapper {
             hasPropValue = hasColumn(rsMetaData, "propvalue");
             hasTotal = hasColumn(rsMetaData, "total");
         }
-        while (rs.next()) {
+        boolean proceed = true;
+        while (proceed && rs.next()) {
             if (hasFullObject) {
                 String objString = rs.getString("fullobject");
                 Map<String, Object> obj = mapper.readValue(objString, typeRef);
                 // TODO: remove data logging
                 logger.trace("Query result for queryId: {} type: {} converted obj: {}", new Object[]{queryId, type, obj});
-                result.add(obj);
+                proceed = handler.handleResult(obj);
             } else {
                 Map<String, Object> obj = new HashMap<String, Object>();
                 if (hasId) {
@@ -123,10 +146,9 @@ public class GenericResultSetMapper implements ResultSetMapper {
                     JsonValue wrapped = new JsonValue(obj);
                     wrapped.put(pointer, propValue);
                 }
-                result.add(obj);
+                proceed = handler.handleResult(obj);
             }
         }
-        return result;
     }
     
     /**
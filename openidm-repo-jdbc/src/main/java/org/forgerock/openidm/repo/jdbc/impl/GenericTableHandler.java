@@ -5,7 +5,7 @@
  *
  * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
  * specific language governing permission and limitations under the License.
- * Portions Copyright 2018 Wren Security.
+ * Portions Copyright 2018-2026 Wren Security.
  *
  * When distributing Covered Software, include this CDDL Header Notice in each file and include
  * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
@@ -17,6 +17,7 @@
 package org.forgerock.openidm.repo.jdbc.impl;
 
 import static org.forgerock.json.resource.Responses.newResourceResponse;
+import static org.forgerock.openidm.repo.QueryConstants.PAGED_RESULTS_KEYSET;
 import static org.forgerock.openidm.repo.QueryConstants.PAGED_RESULTS_OFFSET;
 import static org.forgerock.openidm.repo.QueryConstants.PAGE_SIZE;
 import static org.forgerock.openidm.repo.QueryConstants.SORT_KEYS;
@@ -27,12 +28,16 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.lang3.StringUtils;
 import org.forgerock.json.JsonPointer;
@@ -45,6 +50,7 @@ import org.forgerock.json.resource.ResourceException;
 import org.forgerock.json.resource.SortKey;
 import org.forgerock.openidm.repo.jdbc.Constants;
 import org.forgerock.openidm.repo.jdbc.ErrorType;
+import org.forgerock.openidm.repo.jdbc.QueryResultHandler;
 import org.forgerock.openidm.repo.jdbc.SQLExceptionHandler;
 import org.forgerock.openidm.repo.jdbc.TableHandler;
 import org.forgerock.openidm.repo.jdbc.impl.query.TableQueries;
@@ -87,11 +93,15 @@ public class GenericTableHandler implements TableHandler {
 
     Map<QueryDefinition, String> queryMap;
 
+    // Ids of the rows of the objecttypes table by object type, types are never removed once inserted
+    final ConcurrentMap<String, Long> typeIds = new ConcurrentHashMap<>();
+
     final boolean enableBatching; // Whether to use JDBC statement batching.
     int maxBatchSize;       // The maximum number of statements to batch together. If max batch size is 1, do not use batching.
 
     public enum QueryDefinition {
         READTYPEQUERYSTR,
+        READTYPESQUERYSTR,
         CREATETYPEQUERYSTR,
         READFORUPDATEQUERYSTR,
         READQUERYSTR,
@@ -100,6 +110,9 @@ public class GenericTableHandler implements TableHandler {
         DELETEQUERYSTR,
         PROPCREATEQUERYSTR,
         PROPDELETEQUERYSTR,
+        PROPREADQUERYSTR,
+        PROPUPDATEKEYQUERYSTR,
+        PROPDELETEKEYQUERYSTR,
         QUERYALLIDS
     }
 
@@ -178,6 +191,7 @@ public class GenericTableHandler implements TableHandler {
         // objecttypes table
         result.put(QueryDefinition.CREATETYPEQUERYSTR, "INSERT INTO " + typeTable + " (objecttype) VALUES (?)");
         result.put(QueryDefinition.READTYPEQUERYSTR, "SELECT id FROM " + typeTable + " objtype WHERE objtype.objecttype = ?");
+        result.put(QueryDefinition.READTYPESQUERYSTR, "SELECT id, objecttype FROM " + typeTable);
 
         // Main object table
         result.put(QueryDefinition.READFORUPDATEQUERYSTR, "SELECT obj.* FROM " + mainTable + " obj INNER JOIN " + typeTable + " objtype ON obj.objecttypes_id = objtype.id AND objtype.objecttype = ? WHERE obj.objectid  = ? FOR UPDATE");
@@ -193,6 +207,9 @@ public class GenericTableHandler implements TableHandler {
         // Object properties table
         result.put(QueryDefinition.PROPCREATEQUERYSTR, "INSERT INTO " + propertyTable + " ( " + mainTableName + "_id, propkey, proptype, propvalue) VALUES (?,?,?,?)");
         result.put(QueryDefinition.PROPDELETEQUERYSTR, "DELETE prop FROM " + propertyTable + " prop INNER JOIN " + mainTable + " obj ON prop." + mainTableName + "_id = obj.id INNER JOIN " + typeTable + " objtype ON obj.objecttypes_id = objtype.id WHERE objtype.objecttype = ? AND obj.objectid = ?");
+        result.put(QueryDefinition.PROPREADQUERYSTR, "SELECT propkey, proptype, propvalue FROM " + propertyTable + " WHERE " + mainTableName + "_id = ?");
+        result.put(QueryDefinition.PROPUPDATEKEYQUERYSTR, "UPDATE " + propertyTable + " SET proptype = ?, propvalue = ? WHERE " + mainTableName + "_id = ? AND propkey = ?");
+        result.put(QueryDefinition.PROPDELETEKEYQUERYSTR, "DELETE FROM " + propertyTable + " WHERE " + mainTableName + "_id = ? AND propkey = ?");
         // Default object queries
         String tableVariable =  dbSchemaName == null ? "${_mainTable}" : "${_dbSchema}.${_mainTable}";
         result.put(QueryDefinition.QUERYALLIDS, "SELECT obj.objectid FROM " + tableVariable + " obj INNER JOIN " + typeTable + " objtype ON obj.objecttypes_id = objtype.id WHERE objtype.objecttype = ${_resource}");
@@ -237,6 +254,45 @@ public class GenericTableHandler implements TableHandler {
     @Override
     public void create(String fullId, String type, String localId, Map<String, Object> obj, Connection connection)
             throws SQLException, IOException, InternalServerErrorException {
+        long dbId = insertObject(fullId, type, localId, obj, connection);
+        writeValueProperties(fullId, dbId, localId, new JsonValue(obj), connection);
+    }
+
+    /**
+     * Creates an object, adding its properties to a batch of property inserts shared with other objects created in
+     * the same transaction.
+     *
+     * @param fullId the full URI of the resource
+     * @param type the resource component name
+     * @param localId the local identifier of the resource
+     * @param obj the object to create
+     * @param propertyBatch the batch of property inserts
+     * @throws SQLException if the insert failed
+     * @throws IOException if the object could not be serialized
+     * @throws InternalServerErrorException if the DB did not assign an id to the object
+     * @see #newPropertyBatch(Connection)
+     */
+    void create(String fullId, String type, String localId, Map<String, Object> obj, PropertyBatch propertyBatch)
+            throws SQLException, IOException, InternalServerErrorException {
+        long dbId = insertObject(fullId, type, localId, obj, propertyBatch.connection);
+        propertyBatch.add(fullId, dbId, localId, new JsonValue(obj));
+    }
+
+    /**
+     * Inserts an object into the main table.
+     *
+     * @param fullId the full URI of the resource
+     * @param type the resource component name
+     * @param localId the local identifier of the resource
+     * @param obj the object to create, its id and revision are set
+     * @param connection the DB connection
+     * @return the generated identifier of the main table record
+     * @throws SQLException if the insert failed
+     * @throws IOException if the object could not be serialized
+     * @throws InternalServerErrorException if the DB did not assign an id to the object
+     */
+    long insertObject(String fullId, String type, String localId, Map<String, Object> obj, Connection connection)
+            throws SQLException, IOException, InternalServerErrorException {
 
         long typeId = getTypeId(type, connection); // Note this call can commit and start a new transaction in some cases
 
@@ -267,13 +323,68 @@ public class GenericTableHandler implements TableHandler {
             long dbId = keys.getLong(1);
 
             logger.debug("Created object for id {} with rev {}", fullId, rev);
-            JsonValue jv = new JsonValue(obj);
-            writeValueProperties(fullId, dbId, localId, jv, connection);
+            return dbId;
         } finally {
             CleanupHelper.loggedClose(createStatement);
         }
     }
 
+    /**
+     * Opens a batch of property inserts to share between the objects created on a connection.
+     *
+     * @param connection the DB connection
+     * @return the batch, to be flushed before the transaction is committed and closed
+     * @throws SQLException if the insert statement could not be prepared
+     */
+    PropertyBatch newPropertyBatch(Connection connection) throws SQLException {
+        return new PropertyBatch(connection);
+    }
+
+    /**
+     * A JDBC batch of inserts into the properties table, spanning several objects.
+     */
+    final class PropertyBatch {
+        private final Connection connection;
+        private final PreparedStatement propCreateStatement;
+        private int batchingCount = 0;
+
+        private PropertyBatch(Connection connection) throws SQLException {
+            this.connection = connection;
+            this.propCreateStatement = getPreparedStatement(connection, QueryDefinition.PROPCREATEQUERYSTR);
+        }
+
+        /**
+         * Adds the properties of an object to the batch, executing the batch when it reaches the maximum batch size.
+         */
+        void add(String fullId, long dbId, String localId, JsonValue value) throws SQLException {
+            if (cfg.hasPossibleSearchableProperties()) {
+                batchingCount = writeValueProperties(fullId, dbId, localId, value, connection, propCreateStatement,
+                        batchingCount);
+            }
+        }
+
+        /**
+         * Executes the pending inserts.
+         */
+        void flush() throws SQLException {
+            if (enableBatching && batchingCount > 0) {
+                int[] numUpdates = propCreateStatement.executeBatch();
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Writing batch of objectproperties, updated: {}", Arrays.asList(numUpdates));
+                }
+                propCreateStatement.clearBatch();
+                batchingCount = 0;
+            }
+        }
+
+        /**
+         * Closes the batch, discarding the pending inserts.
+         */
+        void close() {
+            CleanupHelper.loggedClose(propCreateStatement);
+        }
+    }
+
     /**
      * Writes all properties of a given resource to the properties table and links them to the main table record.
      *
@@ -386,6 +497,10 @@ public class GenericTableHandler implements TableHandler {
     // Ensure type is in objecttypes table and get its assigned id
     // Callers should note that this may commit a transaction and start a new one if a new type gets added
     long getTypeId(String type, Connection connection) throws SQLException, InternalServerErrorException {
+        Long cachedTypeId = typeIds.get(type);
+        if (cachedTypeId != null) {
+            return cachedTypeId;
+        }
         Exception detectedEx = null;
         long typeId = readTypeId(type, connection);
         if (typeId < 0) {
@@ -404,9 +519,62 @@ public class GenericTableHandler implements TableHandler {
             }
             connection.setAutoCommit(false); // Start another transaction
         }
+        // the type was committed on its own, its id remains valid if the current transaction rolls back
+        typeIds.putIfAbsent(type, typeId);
+        return typeId;
+    }
+
+    /**
+     * Looks up the id of an object type, without adding the type if it does not exist.
+     *
+     * @param type       the object type URI
+     * @param connection the DB connection
+     * @return the typeId for the given type if exists, or -1 if does not exist
+     * @throws java.sql.SQLException
+     */
+    long lookupTypeId(String type, Connection connection) throws SQLException {
+        Long cachedTypeId = typeIds.get(type);
+        if (cachedTypeId != null) {
+            return cachedTypeId;
+        }
+        long typeId = readTypeId(type, connection);
+        if (typeId >= 0) {
+            typeIds.putIfAbsent(type, typeId);
+        }
         return typeId;
     }
 
+    /**
+     * Loads the ids of all object types from the objecttypes table, so that looking them up does not query the
+     * database.
+     *
+     * @param connection the DB connection
+     * @throws SQLException if the objecttypes table could not be read
+     */
+    public void loadTypeIds(Connection connection) throws SQLException {
+        ResultSet rs = null;
+        PreparedStatement readTypesStatement = null;
+        try {
+            readTypesStatement = getPreparedStatement(connection, QueryDefinition.READTYPESQUERYSTR);
+            logger.debug("Executing: {}", readTypesStatement);
+            rs = readTypesStatement.executeQuery();
+            while (rs.next()) {
+                typeIds.putIfAbsent(rs.getString("objecttype"), rs.getLong(Constants.RAW_ID));
+            }
+            logger.debug("Loaded {} object types", typeIds.size());
+        } finally {
+            CleanupHelper.loggedClose(rs);
+            CleanupHelper.loggedClose(readTypesStatement);
+        }
+    }
+
+    /**
+     * Discards the cached object type ids.
+     */
+    public void clearTypeIds() {
+        typeIds.clear();
+    }
+
     /**
      * @param type       the object type URI
      * @param connection the DB connection
@@ -513,7 +681,6 @@ public class GenericTableHandler implements TableHandler {
         obj.put("_rev", newRev); // Save the rev in the object, and return the changed rev from the create.
 
         PreparedStatement updateStatement = null;
-        PreparedStatement deletePropStatement = null;
         try {
             JsonValue result = new JsonValue(readForUpdate(fullId, type, localId, connection));
             String existingRev = result.get(Constants.RAW_OBJECT_REV).asString();
@@ -525,7 +692,6 @@ public class GenericTableHandler implements TableHandler {
                 throw new PreconditionFailedException("Update rejected as current Object revision " + existingRev + " is different than expected by caller (" + rev + "), the object has changed since retrieval.");
             }
             updateStatement = getPreparedStatement(connection, QueryDefinition.UPDATEQUERYSTR);
-            deletePropStatement = getPreparedStatement(connection, QueryDefinition.PROPDELETEQUERYSTR);
 
             // Support changing object identifier
             String newLocalId = (String) obj.get(Constants.OBJECT_ID);
@@ -550,20 +716,283 @@ public class GenericTableHandler implements TableHandler {
             }
 
             JsonValue jv = new JsonValue(obj);
-            // TODO: only update what changed?
+            updateValueProperties(fullId, dbId, type, localId, jv, connection);
+        } finally {
+            CleanupHelper.loggedClose(updateStatement);
+        }
+    }
+
+    /**
+     * Updates the properties of a given resource in the properties table. The rows stored for the resource are read
+     * and only those differing from the searchable properties of the new value are written, which also repairs the
+     * rows of properties made searchable, or no longer searchable, since the resource was last written. All the rows
+     * are rewritten if the stored rows hold a key twice or the driver does not report the rows an update affected.
+     *
+     * @param fullId the full URI of the resource the belongs to
+     * @param dbId the generated identifier to link the properties table with the main table (foreign key)
+     * @param type the resource component name
+     * @param localId the local identifier of the resource these properties belong to
+     * @param value the JSON value with the new properties
+     * @param connection the DB connection
+     * @throws SQLException if the update failed
+     */
+    void updateValueProperties(String fullId, long dbId, String type, String localId, JsonValue value,
+            Connection connection) throws SQLException {
+        if (!cfg.hasPossibleSearchableProperties()) {
+            deleteValueProperties(fullId, type, localId, connection);
+            return;
+        }
+        final Map<String, SearchableProperty> storedProperties = readValueProperties(dbId, connection);
+        if (storedProperties == null) {
+            logger.debug("Duplicate property rows for {}, rewriting all its properties", fullId);
+            rewriteValueProperties(fullId, dbId, type, localId, value, connection);
+            return;
+        }
+        final Map<String, SearchableProperty> properties =
+                collectValueProperties(value, new LinkedHashMap<String, SearchableProperty>());
+
+        final List<SearchableProperty> deleted = new ArrayList<>();
+        final List<SearchableProperty> changed = new ArrayList<>();
+        final List<SearchableProperty> added = new ArrayList<>();
+        for (SearchableProperty storedProperty : storedProperties.values()) {
+            if (!properties.containsKey(storedProperty.key)) {
+                deleted.add(storedProperty);
+            }
+        }
+        for (SearchableProperty property : properties.values()) {
+            final SearchableProperty storedProperty = storedProperties.get(property.key);
+            if (storedProperty == null) {
+                added.add(property);
+            } else if (!storedProperty.equals(property)) {
+                changed.add(property);
+            }
+        }
+        logger.trace("Properties of {}: {} deleted, {} changed, {} added", fullId, deleted.size(), changed.size(),
+                added.size());
+
+        if (!deleted.isEmpty()) {
+            executeProperties(QueryDefinition.PROPDELETEKEYQUERYSTR, dbId, deleted, connection);
+        }
+        if (!changed.isEmpty()) {
+            final List<SearchableProperty> missing =
+                    executeProperties(QueryDefinition.PROPUPDATEKEYQUERYSTR, dbId, changed, connection);
+            if (missing == null) {
+                logger.debug("Unknown property rows updated for {}, rewriting all its properties", fullId);
+                rewriteValueProperties(fullId, dbId, type, localId, value, connection);
+                return;
+            }
+            added.addAll(missing);
+        }
+        if (!added.isEmpty()) {
+            executeProperties(QueryDefinition.PROPCREATEQUERYSTR, dbId, added, connection);
+        }
+    }
+
+    /**
+     * Reads the rows of the properties table of a given resource.
+     *
+     * @param dbId the generated identifier to link the properties table with the main table (foreign key)
+     * @param connection the DB connection
+     * @return the stored properties by property key, or null if a key has more than one row
+     * @throws SQLException if the read failed
+     */
+    private Map<String, SearchableProperty> readValueProperties(long dbId, Connection connection)
+            throws SQLException {
+        final Map<String, SearchableProperty> properties = new LinkedHashMap<>();
+        final PreparedStatement readPropStatement = getPreparedStatement(connection, QueryDefinition.PROPREADQUERYSTR);
+        ResultSet rs = null;
+        try {
+            readPropStatement.setLong(1, dbId);
+            rs = readPropStatement.executeQuery();
+            while (rs.next()) {
+                final SearchableProperty property = new SearchableProperty(
+                        rs.getString("propkey"), rs.getString("proptype"), rs.getString("propvalue"));
+                if (properties.put(property.key, property) != null) {
+                    return null;
+                }
+            }
+        } finally {
+            CleanupHelper.loggedClose(rs);
+            CleanupHelper.loggedClose(readPropStatement);
+        }
+        return properties;
+    }
+
+    private void rewriteValueProperties(String fullId, long dbId, String type, String localId, JsonValue value,
+            Connection connection) throws SQLException {
+        deleteValueProperties(fullId, type, localId, connection);
+        writeValueProperties(fullId, dbId, localId, value, connection);
+    }
+
+    /**
+     * Deletes all properties of a given resource from the properties table.
+     *
+     * @param fullId the full URI of the resource the belongs to
+     * @param type the resource component name
+     * @param localId the local identifier of the resource these properties belong to
+     * @param connection the DB connection
+     * @throws SQLException if the delete failed
+     */
+    void deleteValueProperties(String fullId, String type, String localId, Connection connection)
+            throws SQLException {
+        PreparedStatement deletePropStatement = getPreparedStatement(connection, QueryDefinition.PROPDELETEQUERYSTR);
+        try {
             logger.trace("Populating prepared statement {} for {} {} {}", deletePropStatement, fullId, type, localId);
             deletePropStatement.setString(1, type);
             deletePropStatement.setString(2, localId);
             logger.debug("Update properties del statement: {}", deletePropStatement);
             int deleteCount = deletePropStatement.executeUpdate();
             logger.trace("Deleted child rows: {} for: {}", deleteCount, fullId);
-            writeValueProperties(fullId, dbId, localId, jv, connection);
         } finally {
-            CleanupHelper.loggedClose(updateStatement);
             CleanupHelper.loggedClose(deletePropStatement);
         }
     }
 
+    /**
+     * Executes a properties statement for each of the given properties, batching them if batching is enabled.
+     *
+     * @param queryDefinition the properties insert, update or delete statement
+     * @param dbId the generated identifier to link the properties table with the main table (foreign key)
+     * @param properties the properties
+     * @param connection the DB connection
+     * @return the properties for which no row was affected, or null if the driver did not report it for some
+     * @throws SQLException if the statement failed
+     */
+    private List<SearchableProperty> executeProperties(QueryDefinition queryDefinition, long dbId,
+            List<SearchableProperty> properties, Connection connection) throws SQLException {
+        final List<SearchableProperty> unaffected = new ArrayList<>();
+        final PreparedStatement statement = getPreparedStatement(connection, queryDefinition);
+        try {
+            final List<SearchableProperty> batch = new ArrayList<>();
+            for (SearchableProperty property : properties) {
+                switch (queryDefinition) {
+                case PROPDELETEKEYQUERYSTR:
+                    statement.setLong(1, dbId);
+                    statement.setString(2, property.key);
+                    break;
+                case PROPUPDATEKEYQUERYSTR:
+                    statement.setString(1, property.type);
+                    statement.setString(2, property.value);
+                    statement.setLong(3, dbId);
+                    statement.setString(4, property.key);
+                    break;
+                default:
+                    statement.setLong(1, dbId);
+                    statement.setString(2, property.key);
+                    statement.setString(3, property.type);
+                    statement.setString(4, property.value);
+                    break;
+                }
+                logger.debug("Executing: {}", statement);
+                if (enableBatching) {
+                    statement.addBatch();
+                    batch.add(property);
+                    if (batch.size() >= maxBatchSize) {
+                        if (!collectUnaffected(statement.executeBatch(), batch, unaffected)) {
+                            return null;
+                        }
+                        statement.clearBatch();
+                        batch.clear();
+                    }
+                } else if (statement.executeUpdate() == 0) {
+                    unaffected.add(property);
+                }
+            }
+            if (!batch.isEmpty() && !collectUnaffected(statement.executeBatch(), batch, unaffected)) {
+                return null;
+            }
+        } finally {
+            CleanupHelper.loggedClose(statement);
+        }
+        return unaffected;
+    }
+
+    /**
+     * Collects the properties of an executed batch for which no row was affected.
+     *
+     * @return false if the driver reported {@link Statement#SUCCESS_NO_INFO} rather than the number of affected rows
+     */
+    private static boolean collectUnaffected(int[] updateCounts, List<SearchableProperty> batch,
+            List<SearchableProperty> unaffected) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("Writing batch of objectproperties, updated: {}", Arrays.toString(updateCounts));
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            if (i >= updateCounts.length || updateCounts[i] == Statement.SUCCESS_NO_INFO) {
+                return false;
+            } else if (updateCounts[i] == 0) {
+                unaffected.add(batch.get(i));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Collects the searchable properties of a JSON value, as written to the properties table.
+     *
+     * @param value the JSON value
+     * @param properties the map to collect the properties into, by property key
+     * @return the properties map
+     */
+    Map<String, SearchableProperty> collectValueProperties(JsonValue value,
+            Map<String, SearchableProperty> properties) {
+        for (JsonValue entry : value) {
+            JsonPointer propPointer = entry.getPointer();
+            if (cfg.isSearchable(propPointer)) {
+                if (entry.isMap() || entry.isList()) {
+                    collectValueProperties(entry, properties);
+                } else {
+                    String propkey = propPointer.toString();
+                    String propvalue = null;
+                    Object val = entry.getObject();
+                    if (val != null) {
+                        propvalue = StringUtils.left(val.toString(), getSearchableLength());
+                    }
+                    String proptype = null;
+                    if (propvalue != null) {
+                        proptype = val.getClass().getName();
+                    }
+                    properties.put(propkey, new SearchableProperty(propkey, proptype, propvalue));
+                }
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * A row of the properties table.
+     */
+    static final class SearchableProperty {
+        final String key;
+        final String type;
+        final String value;
+
+        SearchableProperty(String key, String type, String value) {
+            this.key = key;
+            this.type = type;
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SearchableProperty)) {
+                return false;
+            }
+            final SearchableProperty other = (SearchableProperty) o;
+            return key.equals(other.key)
+                    && (type == null ? other.type == null : type.equals(other.type))
+                    && (value == null ? other.value == null : value.equals(other.value));
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode();
+        }
+    }
+
     /**
      * @see org.forgerock.openidm.repo.jdbc.impl.GenericTableHandler#delete(java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.sql.Connection)
      */
@@ -618,6 +1047,12 @@ public class GenericTableHandler implements TableHandler {
         return queries.query(type, params, connection);
     }
 
+    @Override
+    public void query(String type, Map<String, Object> params, Connection connection, int fetchSize,
+            QueryResultHandler handler) throws ResourceException {
+        queries.query(type, params, connection, fetchSize, handler);
+    }
+
     @Override
     public Integer command(String type, Map<String, Object> params, Connection connection) throws SQLException, ResourceException {
         return queries.command(type, params, connection);
@@ -642,7 +1077,10 @@ public class GenericTableHandler implements TableHandler {
      */
     @Override
     public String renderQueryFilter(QueryFilter<JsonPointer> filter, Map<String, Object> replacementTokens, Map<String, Object> params) {
-        final int offsetParam = Integer.parseInt((String) params.get(PAGED_RESULTS_OFFSET));
+        // JsonValue-cheat to avoid an unchecked cast
+        final List<SortKey> sortKeys = new JsonValue(params).get(SORT_KEYS).asList(SortKey.class);
+        final List<String> keyset = getPagedResultsKeyset(params, sortKeys);
+        final int offsetParam = getPagedResultsOffset(params, keyset);
         final int pageSizeParam = Integer.parseInt((String) params.get(PAGE_SIZE));
 
         SQLBuilder builder = new SQLBuilder() {
@@ -673,14 +1111,121 @@ public class GenericTableHandler implements TableHandler {
         // other half of OPENIDM-2773 fix
         replacementTokens.put("otype", params.get("_resource"));
 
-        // JsonValue-cheat to avoid an unchecked cast
-        final List<SortKey> sortKeys = new JsonValue(params).get(SORT_KEYS).asList(SortKey.class);
         // Check for sort keys and build up order-by syntax
         prepareSortKeyStatements(builder, sortKeys, replacementTokens);
+        if (keyset != null) {
+            prepareKeysetStatements(builder, keyset, replacementTokens);
+        }
 
         return builder.toSQL();
     }
 
+    @Override
+    public List<String> getPagedResultsKeyset(JsonValue result, List<SortKey> sortKeys) {
+        if (!isKeysetPageable(sortKeys)) {
+            return null;
+        }
+        final List<String> keyset = new ArrayList<>();
+        if (sortKeys != null) {
+            for (SortKey sortKey : sortKeys) {
+                final JsonValue value = result.get(sortKey.getField());
+                if (value == null || value.isNull()) {
+                    // no property row, the sort key is NULL
+                    keyset.add(null);
+                    continue;
+                }
+                if (!(value.isString() || value.isNumber() || value.isBoolean())) {
+                    return null;
+                }
+                // the value as written to the properties table, an empty value is a null on some databases
+                final String propvalue = StringUtils.left(value.getObject().toString(), getSearchableLength());
+                if (propvalue.isEmpty()) {
+                    return null;
+                }
+                keyset.add(propvalue);
+            }
+        }
+        final String objectId = result.get(ResourceResponse.FIELD_CONTENT_ID).asString();
+        if (objectId == null) {
+            return null;
+        }
+        keyset.add(objectId);
+        return keyset;
+    }
+
+    @Override
+    public boolean isKeysetPageable(List<SortKey> sortKeys) {
+        return true;
+    }
+
+    /**
+     * Returns whether the database sorts NULL below every value, so first in ascending order.
+     *
+     * @return true if NULL sorts first in ascending order
+     */
+    protected boolean isNullSortedLow() {
+        return true;
+    }
+
+    /**
+     * Returns the keyset of the last result of the previous page for a keyset paged query.
+     *
+     * @param params a map containing query parameters
+     * @param sortKeys the sort keys of the query, or null
+     * @return the sort key values, null where the key is NULL, followed by the object id, empty for the first
+     *         page, or null if the query is not keyset paged
+     */
+    protected List<String> getPagedResultsKeyset(Map<String, Object> params, List<SortKey> sortKeys) {
+        if (!isKeysetPageable(sortKeys)) {
+            return null;
+        }
+        final List<String> keyset = new JsonValue(params).get(PAGED_RESULTS_KEYSET).asList(String.class);
+        if (keyset != null && !keyset.isEmpty() && keyset.size() != (sortKeys != null ? sortKeys.size() : 0) + 1) {
+            // the cookie was issued for different sort keys
+            return null;
+        }
+        return keyset;
+    }
+
+    /**
+     * Returns the offset of the first result to return, which is zero when seeking past a keyset.
+     *
+     * @param params a map containing query parameters
+     * @param keyset the keyset of the last result of the previous page, or null
+     * @return the offset of the first result
+     */
+    protected int getPagedResultsOffset(Map<String, Object> params, List<String> keyset) {
+        return keyset != null && !keyset.isEmpty()
+                ? 0
+                : Integer.parseInt((String) params.get(PAGED_RESULTS_OFFSET));
+    }
+
+    /**
+     * Orders the results by object id after the sort keys, so that every result has a distinct keyset,
+     * and seeks past the keyset of the previous page.
+     *
+     * @param builder the SQL builder
+     * @param keyset the keyset of the last result of the previous page, empty for the first page
+     * @param replacementTokens a {@link java.util.Map} containing replacement tokens for the {@link java.sql.PreparedStatement}
+     */
+    protected void prepareKeysetStatements(SQLBuilder builder, List<String> keyset, Map<String, Object> replacementTokens) {
+        builder.orderBy("obj.objectid", true);
+        if (keyset.isEmpty()) {
+            return;
+        }
+        final List<String> placeholders = new ArrayList<>();
+        for (int i = 0; i < keyset.size(); i++) {
+            if (keyset.get(i) == null) {
+                placeholders.add(null);
+                continue;
+            }
+            final String tokenName = "keyset" + i;
+            replacementTokens.put(tokenName, keyset.get(i));
+            placeholders.add("${" + tokenName + "}");
+        }
+        builder.seek(placeholders, isNullSortedLow());
+    }
+
     /**
      * Loops through sort keys constructing the inner join and key statements.
      *
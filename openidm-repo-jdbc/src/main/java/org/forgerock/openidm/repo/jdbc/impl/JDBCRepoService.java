@@ -12,7 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2011-2016 ForgeRock AS.
- * Portions Copyright 2020 Wren Security
+ * Portions Copyright 2020-2026 Wren Security
  */
 package org.forgerock.openidm.repo.jdbc.impl;
 
@@ -28,6 +28,7 @@ import static org.forgerock.json.resource.ResourceResponse.FIELD_CONTENT_REVISIO
 import static org.forgerock.json.resource.Responses.newActionResponse;
 import static org.forgerock.json.resource.Responses.newQueryResponse;
 import static org.forgerock.json.resource.Responses.newResourceResponse;
+import static org.forgerock.openidm.repo.QueryConstants.PAGED_RESULTS_KEYSET;
 import static org.forgerock.openidm.repo.QueryConstants.PAGED_RESULTS_OFFSET;
 import static org.forgerock.openidm.repo.QueryConstants.PAGE_SIZE;
 import static org.forgerock.openidm.repo.QueryConstants.QUERY_EXPRESSION;
@@ -39,13 +40,17 @@ import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.forgerock.json.JsonValue;
+import org.forgerock.json.JsonValueException;
 import org.forgerock.json.resource.ActionRequest;
 import org.forgerock.json.resource.ActionResponse;
 import org.forgerock.json.resource.BadRequestException;
@@ -65,6 +70,7 @@ import org.forgerock.json.resource.RequestHandler;
 import org.forgerock.json.resource.Requests;
 import org.forgerock.json.resource.ResourceException;
 import org.forgerock.json.resource.ResourceResponse;
+import org.forgerock.json.resource.SortKey;
 import org.forgerock.json.resource.UpdateRequest;
 import org.forgerock.openidm.config.enhanced.EnhancedConfig;
 import org.forgerock.openidm.config.enhanced.InvalidException;
@@ -75,6 +81,7 @@ import org.forgerock.openidm.repo.RepoBootService;
 import org.forgerock.openidm.repo.RepositoryService;
 import org.forgerock.openidm.repo.jdbc.DatabaseType;
 import org.forgerock.openidm.repo.jdbc.ErrorType;
+import org.forgerock.openidm.repo.jdbc.QueryResultHandler;
 import org.forgerock.openidm.repo.jdbc.TableHandler;
 import org.forgerock.openidm.smartevent.EventEntry;
 import org.forgerock.openidm.smartevent.Name;
@@ -117,12 +124,20 @@ public class JDBCRepoService implements RequestHandler, RepoBootService, Reposit
 
     public static final String PID = "org.forgerock.openidm.repo.jdbc";
     private static final String ACTION_COMMAND = "command";
+    private static final String ACTION_BULK = "bulk";
 
     // Keys in the JSON configuration
     public static final String CONFIG_USE_DATASOURCE = "useDataSource";
     public static final String CONFIG_DB_TYPE = "dbType";
     public static final String CONFIG_MAX_TX_RETRY = "maxTxRetry";
     public static final String CONFIG_MAX_BATCH_SIZE = "maxBatchSize";
+    public static final String CONFIG_QUERY_FETCH_SIZE = "queryFetchSize";
+    public static final String CONFIG_STATEMENT_CACHE_SIZE = "statementCacheSize";
+    public static final String CONFIG_BULK_TRANSACTION_SIZE = "bulkTransactionSize";
+
+    private static final int DEFAULT_QUERY_FETCH_SIZE = 1000;
+    private static final int DEFAULT_STATEMENT_CACHE_SIZE = 50;
+    private static final int DEFAULT_BULK_TRANSACTION_SIZE = 1000;
 
     Map<String, TableHandler> tableHandlers;
     TableHandler defaultTableHandler;
@@ -131,6 +146,16 @@ public class JDBCRepoService implements RequestHandler, RepoBootService, Reposit
 
     private JsonValue config;
     private int maxTxRetry = 5;
+    /**
+     * Number of rows fetched from the database at a time, and of results read per connection by query filter
+     * queries, or 0 to read results at once. MySQL only fetches incrementally with useCursorFetch=true in the
+     * jdbcUrl of the datasource.
+     */
+    private int queryFetchSize = DEFAULT_QUERY_FETCH_SIZE;
+    private int bulkTransactionSize = DEFAULT_BULK_TRANSACTION_SIZE;
+
+    /** Prepared statements cached per connection, null if disabled */
+    private volatile StatementCache statementCache;
 
     /** CryptoService for detecting whether a value is encrypted */
     @Reference
@@ -212,6 +237,8 @@ public class JDBCRepoService implements RequestHandler, RepoBootService, Reposit
     @Deactivate
     void deactivate(ComponentContext compContext) {
         logger.debug("Deactivating Service {}", compContext);
+        clearStatementCache();
+        clearTypeIds();
         logger.info("Repository stopped.");
     }
 
@@ -582,30 +609,39 @@ public class JDBCRepoService implements RequestHandler, RepoBootService, Reposit
 
             final boolean pagedResultsRequested = requestPageSize > 0;
 
-            // index of first record (used for SKIP/OFFSET)
+            // index of first record (used for SKIP/OFFSET and counting)
             final int firstResultIndex;
 
+            // keyset of the last record of the previous page, used to seek to the page of query filter queries
+            final List<String> keyset;
+
             if (pagedResultsRequested) {
                 if (!isNullOrEmpty(pagedResultsCookie)) {
-                    try {
-                        firstResultIndex = Integer.parseInt(pagedResultsCookie);
-                    } catch (final NumberFormatException e) {
+                    final PagedResultsCookie cookie = PagedResultsCookie.decode(pagedResultsCookie);
+                    firstResultIndex = cookie.getOffset();
+                    if (cookie.getKeyset() == null) {
+                        keyset = request.getQueryFilter() != null ? Collections.<String>emptyList() : null;
+                    } else if (request.getQueryFilter() != null
+                            && cookie.getKeyset().size() == request.getSortKeys().size() + 1) {
+                        keyset = cookie.getKeyset();
+                    } else {
                         throw new BadRequestException("Invalid paged results cookie");
                     }
                 } else {
                     firstResultIndex = Math.max(0, request.getPagedResultsOffset());
+                    // an empty keyset selects the keyset order, so the next page can be sought
+                    keyset = request.getQueryFilter() != null ? Collections.<String>emptyList() : null;
                 }
             } else {
                 firstResultIndex = 0;
+                keyset = null;
             }
 
             // Once cookie is processed Queries.query() can rely on the offset.
             request.setPagedResultsOffset(firstResultIndex);
 
-            List<ResourceResponse> results = query(request);
-            for (ResourceResponse result : results) {
-                handler.handleResource(result);
-            }
+            final StreamedResults results = new StreamedResults(handler);
+            query(request, keyset, results);
 
             /*
              * Execute additional -count query if we are paging
@@ -652,14 +688,17 @@ public class JDBCRepoService implements RequestHandler, RepoBootService, Reposit
                         break;
                 }
 
-                if (results.size() < requestPageSize) {
+                if (results.count < requestPageSize) {
                     nextCookie = null;
                 } else {
-                    final int remainingResults = resultCount - (firstResultIndex + results.size());
+                    final int remainingResults = resultCount - (firstResultIndex + results.count);
                     if (remainingResults == 0) {
                         nextCookie = null;
                     } else {
-                        nextCookie = String.valueOf(firstResultIndex + requestPageSize);
+                        final List<String> nextKeyset = keyset != null
+                                ? tableHandler.getPagedResultsKeyset(results.last.getContent(), request.getSortKeys())
+                                : null;
+                        nextCookie = new PagedResultsCookie(firstResultIndex + requestPageSize, nextKeyset).encode();
                     }
                 }
             } else {
@@ -684,14 +723,7 @@ public class JDBCRepoService implements RequestHandler, RepoBootService, Reposit
         String fullId = request.getResourcePath();
         String type = trimStartingSlash(fullId);
         logger.trace("Full id: {} Extracted type: {}", fullId, type);
-        Map<String, Object> params = new HashMap<>();
-        params.putAll(request.getAdditionalParameters());
-        params.put(QUERY_ID, request.getQueryId());
-        params.put(QUERY_EXPRESSION, request.getQueryExpression());
-        params.put(QUERY_FILTER, request.getQueryFilter());
-        params.put(PAGE_SIZE, request.getPageSize());
-        params.put(PAGED_RESULTS_OFFSET, request.getPagedResultsOffset());
-        params.put(SORT_KEYS, request.getSortKeys());
+        Map<String, Object> params = getQueryParams(request, null);
 
         Connection connection = null;
         try {
@@ -707,11 +739,7 @@ public class JDBCRepoService implements RequestHandler, RepoBootService, Reposit
             List<Map<String, Object>> docs = tableHandler.query(type, params, connection);
             List<ResourceResponse> results = new ArrayList<>();
             for (Map<String, Object> resultMap : docs) {
-                String id = (String) resultMap.get("_id");
-                String rev = (String) resultMap.get("_rev");
-                JsonValue value = new JsonValue(resultMap);
-                ResourceResponse resultResource = newResourceResponse(id, rev, value);
-                results.add(resultResource);
+                results.add(toResourceResponse(resultMap));
             }
             return results;
         } catch (SQLException ex) {
@@ -728,11 +756,181 @@ public class JDBCRepoService implements RequestHandler, RepoBootService, Reposit
         }
     }
 
+    /**
+     * Queries the repository, handing each result to the handler as it is read.
+     * <p>
+     * Query filter queries on tables that can be keyset paged are read {@link #queryFetchSize} results at a
+     * time, each chunk seeking past the keyset of the last result of the previous one and handed to the
+     * handler once the connection it was read with has been released. Other queries are streamed from a
+     * connection held until the last result is handled, so handlers calling back into the repository use
+     * another connection of the pool.
+     *
+     * @param request the query request
+     * @param keyset the keyset of the last result of the previous page, empty to page by offset in keyset
+     *               order, or null to page by offset only
+     * @param handler the handler of the results, reading stops when it returns false
+     * @throws ResourceException if the query failed
+     */
+    private void query(QueryRequest request, List<String> keyset, QueryResultHandler handler)
+            throws ResourceException {
+        String fullId = request.getResourcePath();
+        String type = trimStartingSlash(fullId);
+        logger.trace("Full id: {} Extracted type: {}", fullId, type);
+
+        TableHandler tableHandler = getTableHandler(type);
+        if (tableHandler == null) {
+            throw newResourceException(ResourceException.INTERNAL_ERROR,
+                    "No handler configured for resource type " + type);
+        }
+        final List<SortKey> sortKeys = request.getSortKeys();
+        if (queryFetchSize <= 0 || request.getQueryFilter() == null || !tableHandler.isKeysetPageable(sortKeys)) {
+            query(tableHandler, type, getQueryParams(request, keyset), handler);
+            return;
+        }
+
+        int remaining = request.getPageSize() > 0 ? request.getPageSize() : Integer.MAX_VALUE;
+        List<String> seekKeyset = keyset != null ? keyset : Collections.<String>emptyList();
+        while (remaining > 0) {
+            final int chunkSize = Math.min(remaining, queryFetchSize);
+            final List<Map<String, Object>> results = new ArrayList<>(chunkSize);
+            query(tableHandler, type, getQueryParams(request, seekKeyset, chunkSize), new QueryResultHandler() {
+                @Override
+                public boolean handleResult(Map<String, Object> result) {
+                    results.add(result);
+                    return true;
+                }
+            });
+
+            // the next chunk is sought past the last result a keyset can be built from
+            List<String> nextKeyset = null;
+            int last = results.size() - 1;
+            if (results.size() == chunkSize) {
+                while (last >= 0) {
+                    nextKeyset = tableHandler.getPagedResultsKeyset(new JsonValue(results.get(last)), sortKeys);
+                    if (nextKeyset != null) {
+                        break;
+                    }
+                    last--;
+                }
+                if (nextKeyset == null) {
+                    // no result of the chunk can be sought past, stream the rest
+                    query(tableHandler, type, getQueryParams(request, seekKeyset, remaining), handler);
+                    return;
+                }
+            }
+            for (int i = 0; i <= last; i++) {
+                if (!handler.handleResult(results.get(i))) {
+                    return;
+                }
+            }
+            if (nextKeyset == null) {
+                return;
+            }
+            remaining -= last + 1;
+            seekKeyset = nextKeyset;
+        }
+    }
+
+    /**
+     * Streams the results of a query to a handler, holding a connection of its own until the handler returns
+     * false or the last result is handled.
+     * <p>
+     * Rows are fetched {@link #queryFetchSize} at a time. As some drivers, e.g. PostgreSQL, only honor
+     * the fetch size within a transaction, the query runs in a transaction that is committed once the
+     * results are read, unless the fetch size is disabled.
+     *
+     * @param tableHandler the table handler of the queried type
+     * @param type the queried type
+     * @param params the parameters of the query
+     * @param handler the handler of the results, reading stops when it returns false
+     * @throws ResourceException if the query failed
+     */
+    private void query(TableHandler tableHandler, String type, Map<String, Object> params,
+            QueryResultHandler handler) throws ResourceException {
+        Connection connection = null;
+        try {
+            connection = getConnection();
+            connection.setAutoCommit(queryFetchSize <= 0);
+
+            tableHandler.query(type, params, connection, queryFetchSize, handler);
+
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+        } catch (SQLException ex) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("SQL Exception in query of {} with error code {}, sql state {}",
+                        type, ex.getErrorCode(), ex.getSQLState(), ex);
+            }
+            if (queryFetchSize > 0) {
+                rollback(connection);
+            }
+            throw new InternalServerErrorException("Querying failed: " + ex.getMessage(), ex);
+        } catch (ResourceException | RuntimeException ex) {
+            logger.debug("Exception in query of {}", type, ex);
+            if (queryFetchSize > 0) {
+                rollback(connection);
+            }
+            throw ex;
+        } finally {
+            CleanupHelper.loggedClose(connection);
+        }
+    }
+
+    private Map<String, Object> getQueryParams(QueryRequest request, List<String> keyset, int pageSize) {
+        Map<String, Object> params = getQueryParams(request, keyset);
+        params.put(PAGE_SIZE, pageSize);
+        return params;
+    }
+
+    private Map<String, Object> getQueryParams(QueryRequest request, List<String> keyset) {
+        Map<String, Object> params = new HashMap<>();
+        params.putAll(request.getAdditionalParameters());
+        params.put(QUERY_ID, request.getQueryId());
+        params.put(QUERY_EXPRESSION, request.getQueryExpression());
+        params.put(QUERY_FILTER, request.getQueryFilter());
+        params.put(PAGE_SIZE, request.getPageSize());
+        params.put(PAGED_RESULTS_OFFSET, request.getPagedResultsOffset());
+        params.put(SORT_KEYS, request.getSortKeys());
+        if (keyset != null) {
+            params.put(PAGED_RESULTS_KEYSET, keyset);
+        }
+        return params;
+    }
+
+    private static ResourceResponse toResourceResponse(Map<String, Object> resultMap) {
+        String id = (String) resultMap.get("_id");
+        String rev = (String) resultMap.get("_rev");
+        return newResourceResponse(id, rev, new JsonValue(resultMap));
+    }
+
+    /**
+     * Hands the streamed query results to the CREST query handler, keeping track of the page.
+     */
+    private static final class StreamedResults implements QueryResultHandler {
+        private final QueryResourceHandler handler;
+        private int count;
+        private ResourceResponse last;
+
+        StreamedResults(QueryResourceHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public boolean handleResult(Map<String, Object> result) {
+            last = toResourceResponse(result);
+            count++;
+            return handler.handleResource(last);
+        }
+    }
+
     @Override
     public Promise<ActionResponse, ResourceException> handleAction(Context context, ActionRequest request) {
         try {
             if (ACTION_COMMAND.equalsIgnoreCase(request.getAction())) {
                 return command(request).asPromise();
+            } else if (ACTION_BULK.equalsIgnoreCase(request.getAction())) {
+                return bulk(request).asPromise();
             } else {
                 throw new NotSupportedException("Action operations are not supported");
             }
@@ -805,6 +1003,274 @@ public class JDBCRepoService implements RequestHandler, RepoBootService, Reposit
         return newActionResponse(result);
     }
 
+    /**
+     * Performs a list of create, update and delete operations on objects of the type defined by the {@code request},
+     * committing them in transactions of up to {@link #CONFIG_BULK_TRANSACTION_SIZE} operations.
+     * <p>
+     * The request content is of the form
+     * <pre>
+     * {"operations" : [
+     *     {"operation" : "create", "_id" : "optional id", "value" : {...}},
+     *     {"operation" : "update", "_id" : "id", "_rev" : "optional revision", "value" : {...}},
+     *     {"operation" : "delete", "_id" : "id", "_rev" : "revision"}
+     * ]}
+     * </pre>
+     * and the response holds the result of each operation, in order: the id and revision of the object, or the error
+     * of a failed operation, including an invalid one. A failed operation does not prevent the other operations from
+     * being committed.
+     *
+     * @param request the request specifying the operations
+     * @return the results of the operations
+     * @throws ResourceException if the request has no list of operations
+     */
+    private ActionResponse bulk(ActionRequest request) throws ResourceException {
+        final String type = trimStartingSlash(request.getResourcePath());
+        final TableHandler handler = getTableHandler(type);
+        if (handler == null) {
+            throw newResourceException(ResourceException.INTERNAL_ERROR,
+                    "No handler configured for resource type " + type);
+        }
+
+        final List<BulkOperation> operations = new ArrayList<>();
+        final List<BulkOperation> valid = new ArrayList<>();
+        try {
+            for (JsonValue operation : request.getContent().get("operations").required().expect(List.class)) {
+                BulkOperation bulkOperation = new BulkOperation(operations.size(), operation);
+                operations.add(bulkOperation);
+                if (bulkOperation.result == null) {
+                    valid.add(bulkOperation);
+                }
+            }
+        } catch (JsonValueException ex) {
+            throw new BadRequestException("Invalid bulk operations: " + ex.getMessage(), ex);
+        }
+
+        final List<Object> results = new ArrayList<>(operations.size());
+        for (int i = 0; i < valid.size(); i += bulkTransactionSize) {
+            bulk(handler, type, valid.subList(i, Math.min(i + bulkTransactionSize, valid.size())));
+        }
+        for (BulkOperation operation : operations) {
+            results.add(operation.result.getObject());
+        }
+        return newActionResponse(json(object(field("results", results))));
+    }
+
+    /**
+     * Performs a list of operations in a single transaction, recording the result of each.
+     * <p>
+     * A failing operation rolls back the transaction. The operations preceding it are then committed in a transaction
+     * of their own, and the operations following it in the next one, so that an operation is executed at most twice
+     * whatever the number of failures. The properties of the objects created by a generic table handler are inserted
+     * as shared JDBC batches; as a failure of such a batch cannot be attributed to a single operation, the operations
+     * are then executed again without sharing them. Retryable failures are retried up to {@code maxTxRetry} times for
+     * the whole list, and any other failure of a transaction is recorded for all of its operations.
+     */
+    private void bulk(TableHandler handler, String type, List<BulkOperation> operations) {
+        final List<BulkOperation> pending = new ArrayList<>(operations);
+        boolean batchProperties = handler instanceof GenericTableHandler;
+        int retryCount = 0;
+        // the number of pending operations executed in the next transaction
+        int count = pending.size();
+        while (!pending.isEmpty()) {
+            Connection connection = null;
+            GenericTableHandler.PropertyBatch propertyBatch = null;
+            // the position of the operation being executed, -1 outside of the operations
+            int position = -1;
+            try {
+                connection = getConnection();
+                if (handler instanceof GenericTableHandler) {
+                    // add a new type outside of the transaction, as adding it commits
+                    connection.setAutoCommit(true);
+                    ((GenericTableHandler) handler).getTypeId(type, connection);
+                }
+                connection.setAutoCommit(false);
+                if (batchProperties) {
+                    propertyBatch = ((GenericTableHandler) handler).newPropertyBatch(connection);
+                }
+                for (position = 0; position < count; position++) {
+                    pending.get(position).execute(handler, type, connection, propertyBatch);
+                }
+                position = -1;
+                if (propertyBatch != null) {
+                    propertyBatch.flush();
+                }
+                connection.commit();
+                logger.debug("Committed {} bulk operations on {}", count, type);
+                pending.subList(0, count).clear();
+                count = pending.size();
+            } catch (SQLException ex) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("SQL Exception in bulk operation on {} with error code {}, sql state {}",
+                            type, ex.getErrorCode(), ex.getSQLState(), ex);
+                }
+                rollback(connection);
+                if (retryCount < maxTxRetry && handler.isRetryable(ex, connection)) {
+                    retryCount++;
+                    logger.debug("Retryable exception encountered, retry attempt {} of {} : {}", retryCount, maxTxRetry, ex.getMessage());
+                } else if (batchProperties) {
+                    batchProperties = false;
+                } else if (position >= 0) {
+                    count = failPending(pending, position, count,
+                            handler.isErrorType(ex, ErrorType.DUPLICATE_KEY)
+                            ? new PreconditionFailedException("Create rejected as Object with same ID already exists. "
+                                    + "(" + ex.getErrorCode() + "-" + ex.getSQLState() + ")" + ex.getMessage(), ex)
+                            : new InternalServerErrorException("Operation failed (" + ex.getErrorCode() + "-"
+                                    + ex.getSQLState() + "): " + ex.getMessage(), ex));
+                } else {
+                    count = failPending(pending, position, count, new InternalServerErrorException(
+                            "Committing operations failed after " + (retryCount + 1) + " attempts: "
+                                    + ex.getMessage(), ex));
+                }
+            } catch (ResourceException ex) {
+                logger.debug("ResourceException in bulk operation on {}", type, ex);
+                rollback(connection);
+                count = failPending(pending, position, count, ex);
+            } catch (IOException ex) {
+                logger.debug("IO Exception in bulk operation on {}", type, ex);
+                rollback(connection);
+                count = failPending(pending, position, count,
+                        new InternalServerErrorException("Conversion of object failed", ex));
+            } catch (RuntimeException ex) {
+                logger.debug("Runtime Exception in bulk operation on {}", type, ex);
+                rollback(connection);
+                count = failPending(pending, position, count, new InternalServerErrorException(
+                        "Operation failed with unexpected failure: " + ex.getMessage(), ex));
+            } finally {
+                if (propertyBatch != null) {
+                    propertyBatch.close();
+                }
+                CleanupHelper.loggedClose(connection);
+            }
+        }
+    }
+
+    /**
+     * Records the failure of the pending operation at the given position, or of all the operations of the failed
+     * transaction if the failure is not attributable to one of them, and removes them from the pending operations.
+     *
+     * @param pending the pending operations
+     * @param position the position of the failed operation, -1 if the failure is not attributable to one
+     * @param count the number of pending operations executed in the failed transaction
+     * @param ex the failure
+     * @return the number of pending operations to execute in the next transaction
+     */
+    private static int failPending(List<BulkOperation> pending, int position, int count, ResourceException ex) {
+        if (position < 0) {
+            for (BulkOperation operation : pending.subList(0, count)) {
+                operation.fail(ex);
+            }
+            pending.subList(0, count).clear();
+            return pending.size();
+        }
+        pending.remove(position).fail(ex);
+        // commit the operations preceding the failed one on their own, then the following ones
+        return position > 0 ? position : pending.size();
+    }
+
+    /**
+     * An operation of a bulk action, and its result.
+     */
+    private static final class BulkOperation {
+        private final int index;
+        private String operation;
+        private String localId;
+        private String rev;
+        private JsonValue value;
+        private JsonValue result;
+
+        /**
+         * Reads an operation of the request, recording its failure if it is invalid.
+         *
+         * @param index the index of the operation in the request
+         * @param operation the operation
+         */
+        private BulkOperation(int index, JsonValue operation) {
+            this.index = index;
+            try {
+                parse(operation);
+            } catch (JsonValueException ex) {
+                fail(new BadRequestException("Invalid bulk operation at index " + index + ": " + ex.getMessage(), ex));
+            } catch (ResourceException ex) {
+                fail(ex);
+            }
+        }
+
+        private void parse(JsonValue operation) throws ResourceException {
+            this.operation = operation.get("operation").required().asString();
+            this.rev = operation.get(FIELD_CONTENT_REVISION).asString();
+            this.value = operation.get("value");
+            switch (this.operation) {
+            case "create":
+                this.localId = isNullOrEmpty(operation.get(FIELD_CONTENT_ID).asString())
+                        ? UUID.randomUUID().toString() // Generate ID server side.
+                        : operation.get(FIELD_CONTENT_ID).asString();
+                break;
+            case "update":
+            case "delete":
+                this.localId = operation.get(FIELD_CONTENT_ID).required().asString();
+                break;
+            default:
+                throw new BadRequestException("Unsupported bulk operation " + this.operation + " at index " + index);
+            }
+            if (!"delete".equals(this.operation) && !value.isMap()) {
+                throw new BadRequestException("Bulk operation at index " + index + " requires an object value");
+            }
+            if ("delete".equals(this.operation) && rev == null) {
+                throw new ConflictException(
+                        "Bulk delete at index " + index + " does not have the revision it expects set.");
+            }
+        }
+
+        private void execute(TableHandler handler, String type, Connection connection,
+                GenericTableHandler.PropertyBatch propertyBatch)
+                throws SQLException, IOException, ResourceException {
+            final String fullId = type + "/" + localId;
+            final Map<String, Object> obj = value.isMap() ? new HashMap<>(value.asMap()) : null;
+            switch (operation) {
+            case "create":
+                if (propertyBatch != null) {
+                    ((GenericTableHandler) handler).create(fullId, type, localId, obj, propertyBatch);
+                } else {
+                    handler.create(fullId, type, localId, obj, connection);
+                }
+                result = json(object(
+                        field(FIELD_CONTENT_ID, obj.get(FIELD_CONTENT_ID)),
+                        field(FIELD_CONTENT_REVISION, obj.get(FIELD_CONTENT_REVISION))));
+                break;
+            case "update":
+                if (propertyBatch != null) {
+                    // the property rows of objects created earlier in the transaction are compared by the update
+                    propertyBatch.flush();
+                }
+                final String expectedRev = rev != null
+                        ? rev
+                        : handler.read(fullId, type, localId, connection).getRevision();
+                handler.update(fullId, type, localId, expectedRev, obj, connection);
+                result = json(object(
+                        field(FIELD_CONTENT_ID, obj.get(FIELD_CONTENT_ID)),
+                        field(FIELD_CONTENT_REVISION, obj.get(FIELD_CONTENT_REVISION))));
+                break;
+            default:
+                if (propertyBatch != null) {
+                    propertyBatch.flush();
+                }
+                handler.delete(fullId, type, localId, rev, connection);
+                result = json(object(
+                        field(FIELD_CONTENT_ID, localId),
+                        field(FIELD_CONTENT_REVISION, rev)));
+                break;
+            }
+            result.put("operation", operation);
+        }
+
+        private void fail(ResourceException ex) {
+            result = ex.toJsonValue();
+            result.put(FIELD_CONTENT_ID, localId);
+            result.put("operation", operation);
+            logger.debug("Bulk operation {} at index {} failed", operation, index, ex);
+        }
+    }
+
     // Utility method to cleanly roll back including logging
     private void rollback(Connection connection) {
         if (connection != null) {
@@ -827,12 +1293,59 @@ public class JDBCRepoService implements RequestHandler, RepoBootService, Reposit
     Connection getConnection() throws SQLException {
         EventEntry measure = Publisher.start(Name.get("openidm/internal/JDBCRepoService/getConnection"), null, null);
         try {
-            return dataSourceService.getDataSource().getConnection();
+            Connection connection = dataSourceService.getDataSource().getConnection();
+            StatementCache cache = statementCache;
+            return cache != null ? cache.wrap(connection) : connection;
         } finally {
             measure.end();
         }
     }
 
+    private void clearStatementCache() {
+        StatementCache cache = statementCache;
+        statementCache = null;
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Loads the object type ids of the generic table handlers, so that creating objects does not query the
+     * objecttypes table.
+     */
+    private void loadTypeIds(Connection connection) {
+        for (GenericTableHandler handler : getGenericTableHandlers()) {
+            try {
+                handler.loadTypeIds(connection);
+            } catch (SQLException ex) {
+                logger.warn("Failed to load the object types, they are looked up on first use: " + ex.getMessage(), ex);
+                return;
+            }
+        }
+    }
+
+    private void clearTypeIds() {
+        for (GenericTableHandler handler : getGenericTableHandlers()) {
+            handler.clearTypeIds();
+        }
+    }
+
+    private Set<GenericTableHandler> getGenericTableHandlers() {
+        Set<GenericTableHandler> handlers =
+                Collections.newSetFromMap(new IdentityHashMap<GenericTableHandler, Boolean>());
+        if (defaultTableHandler instanceof GenericTableHandler) {
+            handlers.add((GenericTableHandler) defaultTableHandler);
+        }
+        if (tableHandlers != null) {
+            for (TableHandler handler : tableHandlers.values()) {
+                if (handler instanceof GenericTableHandler) {
+                    handlers.add((GenericTableHandler) handler);
+                }
+            }
+        }
+        return handlers;
+    }
+
     TableHandler getTableHandler(String type) {
         TableHandler handler = tableHandlers.get(type);
         if (handler != null) {
@@ -892,6 +1405,15 @@ public class JDBCRepoService implements RequestHandler, RepoBootService, Reposit
                     .as(enumConstant(DatabaseType.class));
             maxTxRetry = config.get(CONFIG_MAX_TX_RETRY).defaultTo(5).asInteger();
             int maxBatchSize = config.get(CONFIG_MAX_BATCH_SIZE).defaultTo(100).asInteger();
+            queryFetchSize = config.get(CONFIG_QUERY_FETCH_SIZE).defaultTo(DEFAULT_QUERY_FETCH_SIZE).asInteger();
+            bulkTransactionSize = Math.max(1,
+                    config.get(CONFIG_BULK_TRANSACTION_SIZE).defaultTo(DEFAULT_BULK_TRANSACTION_SIZE).asInteger());
+            int statementCacheSize =
+                    config.get(CONFIG_STATEMENT_CACHE_SIZE).defaultTo(DEFAULT_STATEMENT_CACHE_SIZE).asInteger();
+            clearStatementCache();
+            if (statementCacheSize > 0) {
+                statementCache = new StatementCache(statementCacheSize);
+            }
 
             JsonValue defaultMapping = config.get("resourceMapping").get("default");
             if (!defaultMapping.isNull()) {
@@ -968,6 +1490,7 @@ public class JDBCRepoService implements RequestHandler, RepoBootService, Reposit
             testConn = getConnection();
             testConn.setAutoCommit(true); // Ensure we do not implicitly start
                                           // transaction isolation
+            loadTypeIds(testConn);
         } catch (Exception ex) {
             logger.warn(
                     "JDBC Repository start-up experienced a failure getting a DB connection: "
@@ -12,7 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2011-2016 ForgeRock AS.
- * Portions Copyright 2018 Wren Security.
+ * Portions Copyright 2018-2026 Wren Security.
  */
 package org.forgerock.openidm.repo.jdbc.impl;
 
@@ -46,6 +46,7 @@ import org.forgerock.json.resource.SortKey;
 import org.forgerock.openidm.crypto.CryptoService;
 import org.forgerock.openidm.repo.jdbc.Constants;
 import org.forgerock.openidm.repo.jdbc.ErrorType;
+import org.forgerock.openidm.repo.jdbc.QueryResultHandler;
 import org.forgerock.openidm.repo.jdbc.SQLExceptionHandler;
 import org.forgerock.openidm.repo.jdbc.TableHandler;
 import org.forgerock.openidm.repo.jdbc.impl.query.TableQueries;
@@ -474,6 +475,12 @@ public class MappedTableHandler implements TableHandler {
         return queries.query(type, params, connection);
     }
 
+    @Override
+    public void query(String type, Map<String, Object> params, Connection connection, int fetchSize,
+            QueryResultHandler handler) throws ResourceException {
+        queries.query(type, params, connection, fetchSize, handler);
+    }
+
     @Override
     public Integer command(String type, Map<String, Object> params, Connection connection) throws SQLException, ResourceException {
         return queries.command(type, params, connection);
@@ -517,6 +524,22 @@ public class MappedTableHandler implements TableHandler {
                 + pageClause;
     }
 
+    /**
+     * Mapped tables are paged by offset.
+     */
+    @Override
+    public List<String> getPagedResultsKeyset(JsonValue result, List<SortKey> sortKeys) {
+        return null;
+    }
+
+    /**
+     * Mapped tables are paged by offset.
+     */
+    @Override
+    public boolean isKeysetPageable(List<SortKey> sortKeys) {
+        return false;
+    }
+
     /**
      * Loops through sort keys constructing the key statements.
      *
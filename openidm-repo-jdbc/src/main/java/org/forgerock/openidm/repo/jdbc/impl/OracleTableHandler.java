@@ -2,7 +2,7 @@
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
  * Copyright © 2012-2015 ForgeRock AS. All rights reserved.
- * Portions Copyright 2018 Wren Security.
+ * Portions Copyright 2018-2026 Wren Security.
  *
  * The contents of this file are subject to the terms
  * of the Common Development and Distribution License
@@ -24,7 +24,6 @@
  */
 package org.forgerock.openidm.repo.jdbc.impl;
 
-import static org.forgerock.openidm.repo.QueryConstants.PAGED_RESULTS_OFFSET;
 import static org.forgerock.openidm.repo.QueryConstants.PAGE_SIZE;
 import static org.forgerock.openidm.repo.QueryConstants.SORT_KEYS;
 import static org.forgerock.openidm.repo.util.Clauses.where;
@@ -59,12 +58,15 @@ public class OracleTableHandler extends GenericTableHandler {
     }
 
     @Override
-    public void create(String fullId, String type, String localId, Map<String, Object> obj, Connection connection)
+    long insertObject(String fullId, String type, String localId, Map<String, Object> obj, Connection connection)
             throws SQLException, IOException, InternalServerErrorException {
-        connection.setAutoCommit(true);
-        long typeId = getTypeId(type, connection);
+        Long typeId = typeIds.get(type);
+        if (typeId == null) {
+            connection.setAutoCommit(true);
+            typeId = getTypeId(type, connection);
 
-        connection.setAutoCommit(false);
+            connection.setAutoCommit(false);
+        }
 
         PreparedStatement createStatement = null;
         try {
@@ -98,8 +100,7 @@ public class OracleTableHandler extends GenericTableHandler {
             long dbId = keys.getLong(1);
 
             logger.debug("Created object for id {} with rev {}", fullId, rev);
-            JsonValue jv = new JsonValue(obj);
-            writeValueProperties(fullId, dbId, localId, jv, connection);
+            return dbId;
         } finally {
             CleanupHelper.loggedClose(createStatement);
         }
@@ -123,7 +124,10 @@ public class OracleTableHandler extends GenericTableHandler {
 
     @Override
     public String renderQueryFilter(QueryFilter<JsonPointer> filter, Map<String, Object> replacementTokens, Map<String, Object> params) {
-        final int offsetParam = Integer.parseInt((String)params.get(PAGED_RESULTS_OFFSET));
+        // JsonValue-cheat to avoid an unchecked cast
+        final List<SortKey> sortKeys = new JsonValue(params).get(SORT_KEYS).asList(SortKey.class);
+        final List<String> keyset = getPagedResultsKeyset(params, sortKeys);
+        final int offsetParam = getPagedResultsOffset(params, keyset);
         final int pageSizeParam = Integer.parseInt((String)params.get(PAGE_SIZE));
 
         // Create custom builder which overrides SQL output syntax
@@ -170,15 +174,24 @@ public class OracleTableHandler extends GenericTableHandler {
         // other half of OPENIDM-2773 fix
         replacementTokens.put("otype", params.get("_resource"));
 
-        // JsonValue-cheat to avoid an unchecked cast
-        final List<SortKey> sortKeys = new JsonValue(params).get(SORT_KEYS).asList(SortKey.class);
         // Check for sort keys and build up order-by syntax
         if (sortKeys != null && sortKeys.size() > 0) {
             prepareSortKeyStatements(builder, sortKeys, replacementTokens);
-        } else {
+        } else if (keyset == null) {
             builder.orderBy("obj.id", false);
         }
+        if (keyset != null) {
+            prepareKeysetStatements(builder, keyset, replacementTokens);
+        }
 
         return builder.toSQL();
     }
+
+    /**
+     * NULL sorts above every value, so last in ascending order.
+     */
+    @Override
+    protected boolean isNullSortedLow() {
+        return false;
+    }
 }
@@ -0,0 +1,124 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.repo.jdbc.impl;
+
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.object;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.forgerock.json.JsonValue;
+import org.forgerock.json.JsonValueException;
+import org.forgerock.json.resource.BadRequestException;
+import org.forgerock.util.encode.Base64url;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The paged results cookie of repository queries.
+ * <p>
+ * Offset paged queries use the plain offset of the next page as cookie. Keyset paged queries use an
+ * opaque, URL safe encoding of the offset together with the keyset of the last result, so the next page
+ * can be sought directly while the offset remains available for counting the remaining results.
+ */
+final class PagedResultsCookie {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final String OFFSET = "o";
+    private static final String KEYSET = "k";
+
+    private final int offset;
+    private final List<String> keyset;
+
+    /**
+     * Creates a cookie.
+     *
+     * @param offset the offset of the first result of the page
+     * @param keyset the keyset of the last result of the previous page, or null for offset paging
+     */
+    PagedResultsCookie(int offset, List<String> keyset) {
+        this.offset = offset;
+        this.keyset = keyset;
+    }
+
+    /**
+     * @return the offset of the first result of the page
+     */
+    int getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return the keyset of the last result of the previous page, or null for offset paging
+     */
+    List<String> getKeyset() {
+        return keyset;
+    }
+
+    /**
+     * Encodes the cookie.
+     *
+     * @return the cookie string
+     */
+    String encode() {
+        if (keyset == null) {
+            return String.valueOf(offset);
+        }
+        try {
+            return Base64url.encode(MAPPER.writeValueAsBytes(object(field(OFFSET, offset), field(KEYSET, keyset))));
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to encode paged results cookie", e);
+        }
+    }
+
+    /**
+     * Decodes a cookie returned by {@link #encode()}.
+     *
+     * @param cookie the cookie string
+     * @return the decoded cookie
+     * @throws BadRequestException if the cookie is not valid
+     */
+    static PagedResultsCookie decode(String cookie) throws BadRequestException {
+        try {
+            return new PagedResultsCookie(Integer.parseInt(cookie), null);
+        } catch (final NumberFormatException e) {
+            // not an offset cookie
+        }
+        final byte[] bytes = Base64url.decode(cookie);
+        if (bytes == null) {
+            throw new BadRequestException("Invalid paged results cookie");
+        }
+        try {
+            final JsonValue value = new JsonValue(MAPPER.readValue(bytes, Map.class));
+            final int offset = value.get(OFFSET).required().asInteger();
+            final List<String> keyset = new ArrayList<>();
+            for (JsonValue key : value.get(KEYSET).required().expect(List.class)) {
+                // sort key values may be NULL, the trailing object id may not
+                keyset.add(key.isNull() ? null : key.asString());
+            }
+            if (offset < 0 || keyset.isEmpty() || keyset.get(keyset.size() - 1) == null) {
+                throw new BadRequestException("Invalid paged results cookie");
+            }
+            return new PagedResultsCookie(offset, keyset);
+        } catch (IOException | JsonValueException e) {
+            throw new BadRequestException("Invalid paged results cookie", e);
+        }
+    }
+}
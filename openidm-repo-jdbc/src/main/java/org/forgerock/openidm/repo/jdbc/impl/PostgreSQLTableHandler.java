@@ -2,6 +2,7 @@
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
  * Copyright © 2012-2015 ForgeRock AS. All rights reserved.
+ * Portions Copyright 2026 Wren Security.
  *
  * The contents of this file are subject to the terms
  * of the Common Development and Distribution License
@@ -23,7 +24,6 @@
  */
 package org.forgerock.openidm.repo.jdbc.impl;
 
-import static org.forgerock.openidm.repo.QueryConstants.PAGED_RESULTS_OFFSET;
 import static org.forgerock.openidm.repo.QueryConstants.PAGE_SIZE;
 import static org.forgerock.openidm.repo.QueryConstants.SORT_KEYS;
 
@@ -144,12 +144,14 @@ public class PostgreSQLTableHandler extends GenericTableHandler {
     
     @Override
     public String renderQueryFilter(QueryFilter<JsonPointer> filter, Map<String, Object> replacementTokens, Map<String, Object> params) {
-        final String offsetParam = (String) params.get(PAGED_RESULTS_OFFSET);
-        final String pageSizeParam = (String) params.get(PAGE_SIZE);
-        String pageClause = " LIMIT " + pageSizeParam + " OFFSET " + offsetParam;
-        
         // JsonValue-cheat to avoid an unchecked cast
         final List<SortKey> sortKeys = new JsonValue(params).get(SORT_KEYS).asList(SortKey.class);
+        final List<String> keyset = getPagedResultsKeyset(params, sortKeys);
+        final int offsetParam = getPagedResultsOffset(params, keyset);
+        final String pageSizeParam = (String) params.get(PAGE_SIZE);
+        String pageClause = " LIMIT " + pageSizeParam + " OFFSET " + offsetParam;
+        String seekClause = "";
+
         // Check for sort keys and build up order-by syntax
         if (sortKeys != null && sortKeys.size() > 0) {
             List<String> keys = new ArrayList<String>();
@@ -160,13 +162,30 @@ public class PostgreSQLTableHandler extends GenericTableHandler {
                 replacementTokens.put(tokenName, sortKey.getField().toString().substring(1));
             }
             pageClause = " ORDER BY " + StringUtils.join(keys, ", ") + pageClause;
+        } else if (keyset != null) {
+            // keyset paging is only supported on the object id, see isKeysetPageable
+            pageClause = " ORDER BY obj.objectid ASC" + pageClause;
+            if (!keyset.isEmpty()) {
+                seekClause = " AND obj.objectid > ${keyset0}";
+                replacementTokens.put("keyset0", keyset.get(0));
+            }
         }
 
         replacementTokens.put("otype", params.get("_resource"));
         return "SELECT fullobject::text"
                 + " FROM ${_dbSchema}.${_mainTable} obj"
                 + " INNER JOIN ${_dbSchema}.objecttypes objtype ON objtype.id = obj.objecttypes_id AND objtype.objecttype = ${otype}"
-                + " WHERE "
-                + filter.accept(new JsonExtractPathQueryFilterVisitor(), replacementTokens).toSQL() + pageClause;
+                + " WHERE ("
+                + filter.accept(new JsonExtractPathQueryFilterVisitor(), replacementTokens).toSQL() + ")"
+                + seekClause + pageClause;
+    }
+
+    /**
+     * Sort keys are evaluated on the JSON object, where missing values sort as nulls and can not be sought past,
+     * so only queries ordered by object id are keyset paged.
+     */
+    @Override
+    public boolean isKeysetPageable(List<SortKey> sortKeys) {
+        return sortKeys == null || sortKeys.isEmpty();
     }
 }
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2011-2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 package org.forgerock.openidm.repo.jdbc.impl;
 
@@ -22,6 +23,7 @@ import java.util.List;
 import java.util.Map;
 
 import org.forgerock.json.resource.InternalServerErrorException;
+import org.forgerock.openidm.repo.jdbc.QueryResultHandler;
 
 /**
  * Handles the conversion of ResultSets into Object set results
@@ -32,6 +34,13 @@ public interface ResultSetMapper {
     List<Map<String, Object>> mapToObject(ResultSet rs, String queryId, String type, Map<String, Object> params)
             throws SQLException, IOException, InternalServerErrorException;
 
+    /**
+     * Maps the rows of the ResultSet to objects, handing each to the handler as soon as it is read.
+     * Stops reading when the handler returns false.
+     */
+    void mapToObject(ResultSet rs, String queryId, String type, Map<String, Object> params,
+            QueryResultHandler handler) throws SQLException, IOException, InternalServerErrorException;
+
     List<Map<String, Object>> mapToRawObject(ResultSet rs) throws SQLException,
             IOException, InternalServerErrorException;
 }
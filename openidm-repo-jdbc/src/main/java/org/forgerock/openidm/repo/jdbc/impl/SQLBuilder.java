@@ -2,6 +2,7 @@
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
  * Copyright 2015 ForgeRock AS. All rights reserved.
+ * Portions Copyright 2026 Wren Security.
  *
  * The contents of this file are subject to the terms
  * of the Common Development and Distribution License
@@ -24,6 +25,7 @@
 package org.forgerock.openidm.repo.jdbc.impl;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.apache.commons.lang3.StringUtils;
@@ -31,6 +33,7 @@ import org.forgerock.guava.common.base.Function;
 import org.forgerock.guava.common.collect.FluentIterable;
 import org.forgerock.openidm.config.enhanced.InternalErrorException;
 import org.forgerock.openidm.repo.util.Clause;
+import org.forgerock.openidm.repo.util.Clauses;
 import org.forgerock.openidm.repo.util.SQLRenderer;
 
 /**
@@ -187,8 +190,8 @@ abstract class SQLBuilder implements SQLRenderer<String> {
     private final List<SQLRenderer<String>> tables = new ArrayList<SQLRenderer<String>>();
     private final List<SQLRenderer<String>> joins = new ArrayList<SQLRenderer<String>>();
     // the where clause is not final because it is not set at build time
-    private SQLRenderer<String> whereClause = null;
-    private final List<SQLRenderer<String>> orderBys = new ArrayList<SQLRenderer<String>>();
+    private Clause whereClause = null;
+    private final List<OrderBy> orderBys = new ArrayList<OrderBy>();
 
     /**
      * Add a column.
@@ -314,6 +317,56 @@ abstract class SQLBuilder implements SQLRenderer<String> {
         return this;
     }
 
+    /**
+     * Restrict the where clause to the rows following the given position in the order of the order-by
+     * clauses, for keyset paging.  The order-by clauses must define a total order on the rows, the last
+     * one on a unique key that is never NULL, and must all have been added before calling this method.
+     * <p>
+     * The condition is expanded to {@code (k1 > ?) OR (k1 = ? AND k2 > ?) ...}, which supports mixed
+     * sort directions and databases without row value comparison.  Keys that are or may be NULL are
+     * compared according to where the database sorts NULL, so rows with NULL keys are not skipped.
+     *
+     * @param placeholders the placeholders of the key values of the last row, one per order-by clause,
+     *                     null where the key of the last row is NULL
+     * @param nullsLow whether the database sorts NULL below every value, so first in ascending order
+     * @return the builder
+     */
+    SQLBuilder seek(List<String> placeholders, boolean nullsLow) {
+        if (placeholders.size() != orderBys.size()) {
+            throw new InternalErrorException("Keyset of " + placeholders.size()
+                    + " values does not match " + orderBys.size() + " order-by clauses");
+        }
+        final List<Clause> seekClauses = new ArrayList<Clause>();
+        for (int i = 0; i < orderBys.size(); i++) {
+            final OrderBy orderBy = orderBys.get(i);
+            // NULL keys follow the other keys when they sort high ascending or low descending
+            final boolean nullsFollow = i < orderBys.size() - 1 && orderBy.ascending != nullsLow;
+            Clause clause;
+            if (placeholders.get(i) == null) {
+                if (nullsFollow) {
+                    // no key follows NULL
+                    continue;
+                }
+                clause = Clauses.where(orderBy.order + " IS NOT NULL");
+            } else {
+                clause = Clauses.where(orderBy.order + (orderBy.ascending ? " > " : " < ") + placeholders.get(i));
+                if (nullsFollow) {
+                    clause = clause.or(orderBy.order + " IS NULL");
+                }
+            }
+            for (int j = i - 1; j >= 0; j--) {
+                clause = Clauses.where(orderBys.get(j).order
+                        + (placeholders.get(j) == null ? " IS NULL" : " = " + placeholders.get(j))).and(clause);
+            }
+            seekClauses.add(clause);
+        }
+        final Clause seekClause = Clauses.or(seekClauses);
+        whereClause = whereClause == null
+                ? seekClause
+                : Clauses.and(Arrays.asList(whereClause, seekClause));
+        return this;
+    }
+
     /**
      * Add an order-by clause.
      *
@@ -0,0 +1,389 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.repo.jdbc.impl;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.forgerock.openidm.smartevent.Name;
+import org.forgerock.openidm.smartevent.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded, least recently used cache of prepared statements per physical database connection.
+ * <p>
+ * Connections handed out by {@link #wrap(Connection)} serve {@code prepareStatement} calls from the cache
+ * of the underlying physical connection, so statements survive the connection being returned to and
+ * taken from the pool again. Cached statements are prepared on the physical connection, out of reach of
+ * pools that close the statements of a connection when it is returned. Closing a cached statement resets
+ * it and returns it to the cache.
+ * <p>
+ * The cache of a physical connection is discarded once the connection is found closed, and all cached
+ * statements are closed by {@link #clear()}.
+ */
+class StatementCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(StatementCache.class);
+
+    /** Monitoring event names for prepared statements served from and missing in the cache */
+    static final Name EVENT_CACHE_HIT = Name.get("openidm/internal/repo/jdbc/statement-cache/hit");
+    static final Name EVENT_CACHE_MISS = Name.get("openidm/internal/repo/jdbc/statement-cache/miss");
+
+    private final int maxSize;
+
+    /** Statement caches by physical connection */
+    private final Map<Connection, ConnectionStatements> caches = new IdentityHashMap<>();
+
+    /**
+     * Creates the cache.
+     *
+     * @param maxSize the maximum number of cached statements per connection
+     */
+    StatementCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Wraps a connection taken from the data source so that its prepared statements are cached.
+     *
+     * @param connection the connection
+     * @return the connection serving prepared statements from the cache
+     */
+    Connection wrap(Connection connection) {
+        final Connection physical = getPhysicalConnection(connection);
+        ConnectionStatements statements;
+        synchronized (caches) {
+            statements = caches.get(physical);
+            if (statements == null) {
+                // A new physical connection, the pool may have retired others
+                purgeClosedConnections();
+                statements = new ConnectionStatements(physical);
+                caches.put(physical, statements);
+            }
+        }
+        return (Connection) Proxy.newProxyInstance(StatementCache.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, new CachingConnection(connection, statements));
+    }
+
+    /**
+     * Closes all cached statements.
+     */
+    void clear() {
+        synchronized (caches) {
+            for (ConnectionStatements statements : caches.values()) {
+                statements.close();
+            }
+            caches.clear();
+        }
+    }
+
+    private void purgeClosedConnections() {
+        for (Iterator<Map.Entry<Connection, ConnectionStatements>> it = caches.entrySet().iterator(); it.hasNext();) {
+            final Map.Entry<Connection, ConnectionStatements> entry = it.next();
+            if (isClosed(entry.getKey())) {
+                // the statements have been closed along with the connection
+                it.remove();
+            }
+        }
+    }
+
+    private static boolean isClosed(Connection connection) {
+        try {
+            return connection.isClosed();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Returns the driver connection behind a pooled connection, or the connection itself if it does not
+     * wrap one.
+     */
+    private static Connection getPhysicalConnection(Connection connection) {
+        try {
+            if (connection.isWrapperFor(Connection.class)) {
+                final Connection physical = connection.unwrap(Connection.class);
+                if (physical != null) {
+                    return physical;
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            logger.trace("Connection {} can not be unwrapped", connection, e);
+        }
+        return connection;
+    }
+
+    /**
+     * Identifies a statement by its SQL and how its generated keys are returned.
+     */
+    private static final class Key {
+        private final String sql;
+        private final int autoGeneratedKeys;
+        private final List<String> columnNames;
+
+        Key(String sql, int autoGeneratedKeys, String[] columnNames) {
+            this.sql = sql;
+            this.autoGeneratedKeys = autoGeneratedKeys;
+            this.columnNames = columnNames != null ? Arrays.asList(columnNames) : null;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return sql.equals(other.sql)
+                    && autoGeneratedKeys == other.autoGeneratedKeys
+                    && (columnNames == null ? other.columnNames == null : columnNames.equals(other.columnNames));
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * sql.hashCode() + autoGeneratedKeys) + (columnNames != null ? columnNames.hashCode() : 0);
+        }
+    }
+
+    /**
+     * A statement in the cache of a connection.
+     */
+    private static final class CachedStatement {
+        private final PreparedStatement statement;
+        private final int fetchSize;
+        private boolean inUse;
+        private boolean evicted;
+        /** Whether rows may have been added to the batch and not executed or cleared since */
+        private boolean batchPending;
+
+        CachedStatement(PreparedStatement statement) throws SQLException {
+            this.statement = statement;
+            this.fetchSize = statement.getFetchSize();
+        }
+    }
+
+    /**
+     * The statement cache of a physical connection. A connection is used by one thread at a time,
+     * the synchronization only guards against misbehaving pools.
+     */
+    private final class ConnectionStatements {
+        private final Connection physical;
+        private final LinkedHashMap<Key, CachedStatement> statements =
+                new LinkedHashMap<Key, CachedStatement>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<Key, CachedStatement> eldest) {
+                        if (size() > maxSize) {
+                            evict(eldest.getValue());
+                            return true;
+                        }
+                        return false;
+                    }
+                };
+
+        ConnectionStatements(Connection physical) {
+            this.physical = physical;
+        }
+
+        /**
+         * Takes the cached statement for the key, or prepares and caches a new one.
+         *
+         * @return the statement, or null if the statement for the key is in use
+         */
+        synchronized PreparedStatement take(Key key) throws SQLException {
+            CachedStatement cached = statements.get(key);
+            if (cached != null && cached.statement.isClosed()) {
+                statements.remove(key);
+                cached = null;
+            }
+            if (cached == null) {
+                Publisher.start(EVENT_CACHE_MISS, key.sql, null).end();
+                cached = new CachedStatement(prepare(physical, key));
+                statements.put(key, cached);
+            } else if (cached.inUse) {
+                return null;
+            } else {
+                Publisher.start(EVENT_CACHE_HIT, key.sql, null).end();
+            }
+            cached.inUse = true;
+            return (PreparedStatement) Proxy.newProxyInstance(StatementCache.class.getClassLoader(),
+                    new Class<?>[] { PreparedStatement.class }, new CachedStatementHandler(this, cached));
+        }
+
+        /**
+         * Resets a statement and returns it to the cache.
+         */
+        synchronized void release(CachedStatement cached) {
+            cached.inUse = false;
+            if (cached.evicted) {
+                CleanupHelper.loggedClose(cached.statement);
+                return;
+            }
+            try {
+                if (cached.batchPending) {
+                    // left by a failure between addBatch and executeBatch, must not be executed by the next user
+                    cached.statement.clearBatch();
+                    cached.batchPending = false;
+                }
+                cached.statement.clearParameters();
+                cached.statement.clearWarnings();
+                if (cached.statement.getFetchSize() != cached.fetchSize) {
+                    cached.statement.setFetchSize(cached.fetchSize);
+                }
+            } catch (SQLException e) {
+                logger.debug("Failed to reset cached statement, discarding it", e);
+                cached.evicted = true;
+                statements.values().remove(cached);
+                CleanupHelper.loggedClose(cached.statement);
+            }
+        }
+
+        private void evict(CachedStatement cached) {
+            cached.evicted = true;
+            if (!cached.inUse) {
+                CleanupHelper.loggedClose(cached.statement);
+            }
+        }
+
+        synchronized void close() {
+            for (CachedStatement cached : new ArrayList<>(statements.values())) {
+                evict(cached);
+            }
+            statements.clear();
+        }
+    }
+
+    private static PreparedStatement prepare(Connection connection, Key key) throws SQLException {
+        if (key.columnNames != null) {
+            return connection.prepareStatement(key.sql, key.columnNames.toArray(new String[0]));
+        } else if (key.autoGeneratedKeys != Statement.NO_GENERATED_KEYS) {
+            return connection.prepareStatement(key.sql, key.autoGeneratedKeys);
+        } else {
+            return connection.prepareStatement(key.sql);
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Serves {@code prepareStatement(String)}, {@code prepareStatement(String, int)} and
+     * {@code prepareStatement(String, String[])} from the cache and delegates everything else.
+     */
+    private static final class CachingConnection implements InvocationHandler {
+        private final Connection connection;
+        private final ConnectionStatements statements;
+
+        CachingConnection(Connection connection, ConnectionStatements statements) {
+            this.connection = connection;
+            this.statements = statements;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if ("prepareStatement".equals(method.getName())) {
+                final Key key = getKey(method, args);
+                if (key != null) {
+                    final PreparedStatement statement = statements.take(key);
+                    if (statement != null) {
+                        return statement;
+                    }
+                    // Same SQL still open on this connection, use an uncached statement
+                    Publisher.start(EVENT_CACHE_MISS, key.sql, null).end();
+                }
+            }
+            return StatementCache.invoke(connection, method, args);
+        }
+
+        private Key getKey(Method method, Object[] args) {
+            final Class<?>[] types = method.getParameterTypes();
+            if (types.length == 1) {
+                return new Key((String) args[0], Statement.NO_GENERATED_KEYS, null);
+            } else if (types.length == 2 && types[1] == int.class) {
+                return new Key((String) args[0], (Integer) args[1], null);
+            } else if (types.length == 2 && types[1] == String[].class) {
+                return new Key((String) args[0], Statement.NO_GENERATED_KEYS, (String[]) args[1]);
+            }
+            // result set type and concurrency variants are not cached
+            return null;
+        }
+    }
+
+    /**
+     * Returns the statement to the cache on close and delegates everything else.
+     */
+    private static final class CachedStatementHandler implements InvocationHandler {
+        private final ConnectionStatements statements;
+        private final CachedStatement cached;
+        private boolean closed;
+
+        CachedStatementHandler(ConnectionStatements statements, CachedStatement cached) {
+            this.statements = statements;
+            this.cached = cached;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        statements.release(cached);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || cached.statement.isClosed();
+                case "addBatch":
+                    if (closed) {
+                        throw new SQLException("Statement is closed");
+                    }
+                    cached.batchPending = true;
+                    return StatementCache.invoke(cached.statement, method, args);
+                case "executeBatch":
+                case "clearBatch":
+                    if (closed) {
+                        throw new SQLException("Statement is closed");
+                    }
+                    // a failed execution may leave the batch as is
+                    final Object result = StatementCache.invoke(cached.statement, method, args);
+                    cached.batchPending = false;
+                    return result;
+                default:
+                    if (closed) {
+                        throw new SQLException("Statement is closed");
+                    }
+                    return StatementCache.invoke(cached.statement, method, args);
+            }
+        }
+    }
+}
@@ -12,7 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2011-2016 ForgeRock AS.
- * Portions Copyright 2018 Wren Security.
+ * Portions Copyright 2018-2026 Wren Security.
  */
 package org.forgerock.openidm.repo.jdbc.impl.query;
 
@@ -43,6 +43,7 @@ import org.forgerock.json.resource.BadRequestException;
 import org.forgerock.json.resource.InternalServerErrorException;
 import org.forgerock.json.resource.ResourceException;
 import org.forgerock.openidm.core.ServerConstants;
+import org.forgerock.openidm.repo.jdbc.QueryResultHandler;
 import org.forgerock.openidm.repo.jdbc.TableHandler;
 import org.forgerock.openidm.repo.jdbc.impl.CleanupHelper;
 import org.forgerock.openidm.repo.jdbc.impl.GenericTableHandler.QueryDefinition;
@@ -220,12 +221,8 @@ public class TableQueries {
      */
     public PreparedStatement getPreparedStatement(Connection connection, String sql,
             boolean autoGeneratedKeys) throws SQLException {
-        // This is where local prepared statement caching could be added for
-        // stand-alone operation.
-
-        // In the context of a (JavaEE) container rely on its built-in prepared
-        // statement caching
-        // rather than doing it explicitly here.
+        // Connections of the repository service cache their prepared
+        // statements, see StatementCache.
         if (autoGeneratedKeys) {
             return connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
         } else {
@@ -287,6 +284,102 @@ public class TableQueries {
             throws ResourceException {
 
         List<Map<String, Object>> result = null;
+        final PreparedStatement foundQuery = prepareQuery(type, params, con);
+        final String queryId = (String) params.get(QUERY_ID);
+
+        Name eventName = getEventName(queryId);
+        EventEntry measure = Publisher.start(eventName, foundQuery, null);
+        ResultSet rs = null;
+        try {
+            rs = foundQuery.executeQuery();
+            result = resultMapper.mapToObject(rs, queryId, type, params);
+            measure.setResult(result);
+        } catch (SQLException ex) {
+            logger.debug("DB reported failure executing query " +
+                            "{} with params: {} error code: {} sqlstate: {} message: {}",
+                    foundQuery.toString(), params, ex.getErrorCode(), ex.getSQLState(), ex.getMessage(), ex);
+            throw new InternalServerErrorException("DB reported failure executing query.");
+        } catch (IOException ex) {
+            throw new InternalServerErrorException("Failed to convert result objects for query "
+                    + foundQuery.toString() + " with params: " + params + " message: "
+                    + ex.getMessage(), ex);
+        } finally {
+            CleanupHelper.loggedClose(rs);
+            CleanupHelper.loggedClose(foundQuery);
+            measure.end();
+        }
+        return result;
+    }
+
+    /**
+     * Execute a query like {@link #query(String, Map, Connection)}, handing each result record to the
+     * handler as soon as it is read instead of collecting the result set.
+     *
+     * @param type
+     *            the resource component name targeted by the URI
+     * @param params
+     *            the parameters which include the query id, or the query
+     *            expression, as well as the token key/value pairs to replace in
+     *            the query
+     * @param con
+     *            a handle to a database connection newBuilder for exclusive use
+     *            by the query method whilst it is executing.
+     * @param fetchSize
+     *            the number of rows to fetch from the database at a time, or 0
+     *            for the driver default
+     * @param handler
+     *            the handler of the result records, reading stops when it
+     *            returns false
+     * @throws BadRequestException
+     *             if the passed request parameters are invalid, e.g. missing
+     *             query id or query expression or tokens.
+     * @throws InternalServerErrorException
+     *             if the preparing or executing the query fails because of
+     *             configuration or DB issues
+     */
+    public void query(final String type, Map<String, Object> params, Connection con, int fetchSize,
+            final QueryResultHandler handler) throws ResourceException {
+        final PreparedStatement foundQuery = prepareQuery(type, params, con);
+        final String queryId = (String) params.get(QUERY_ID);
+
+        Name eventName = getEventName(queryId);
+        EventEntry measure = Publisher.start(eventName, foundQuery, null);
+        ResultSet rs = null;
+        final int[] count = new int[1];
+        try {
+            if (fetchSize > 0) {
+                foundQuery.setFetchSize(fetchSize);
+            }
+            rs = foundQuery.executeQuery();
+            resultMapper.mapToObject(rs, queryId, type, params, new QueryResultHandler() {
+                @Override
+                public boolean handleResult(Map<String, Object> result) {
+                    count[0]++;
+                    return handler.handleResult(result);
+                }
+            });
+            measure.setResult(count[0]);
+        } catch (SQLException ex) {
+            logger.debug("DB reported failure executing query " +
+                            "{} with params: {} error code: {} sqlstate: {} message: {}",
+                    foundQuery.toString(), params, ex.getErrorCode(), ex.getSQLState(), ex.getMessage(), ex);
+            throw new InternalServerErrorException("DB reported failure executing query.");
+        } catch (IOException ex) {
+            throw new InternalServerErrorException("Failed to convert result objects for query "
+                    + foundQuery.toString() + " with params: " + params + " message: "
+                    + ex.getMessage(), ex);
+        } finally {
+            CleanupHelper.loggedClose(rs);
+            CleanupHelper.loggedClose(foundQuery);
+            measure.end();
+        }
+    }
+
+    /**
+     * Prepares the statement of a query filter, query expression or pre-configured query.
+     */
+    private PreparedStatement prepareQuery(final String type, Map<String, Object> params, Connection con)
+            throws ResourceException {
         params.put(ServerConstants.RESOURCE_NAME, type);
 
         // If paged results are requested then decode the cookie in order to determine
@@ -340,29 +433,7 @@ public class TableQueries {
                     queryDescription, params, ex.getErrorCode(), ex.getSQLState(), ex.getMessage(), ex);
             throw new InternalServerErrorException("DB reported failure preparing query.");
         }
-
-        Name eventName = getEventName(queryId);
-        EventEntry measure = Publisher.start(eventName, foundQuery, null);
-        ResultSet rs = null;
-        try {
-            rs = foundQuery.executeQuery();
-            result = resultMapper.mapToObject(rs, queryId, type, params);
-            measure.setResult(result);
-        } catch (SQLException ex) {
-            logger.debug("DB reported failure executing query " +
-                            "{} with params: {} error code: {} sqlstate: {} message: {}",
-                    foundQuery.toString(), params, ex.getErrorCode(), ex.getSQLState(), ex.getMessage(), ex);
-            throw new InternalServerErrorException("DB reported failure executing query.");
-        } catch (IOException ex) {
-            throw new InternalServerErrorException("Failed to convert result objects for query "
-                    + foundQuery.toString() + " with params: " + params + " message: "
-                    + ex.getMessage(), ex);
-        } finally {
-            CleanupHelper.loggedClose(rs);
-            CleanupHelper.loggedClose(foundQuery);
-            measure.end();
-        }
-        return result;
+        return foundQuery;
     }
 
     public Integer command(final String type, Map<String, Object> params, Connection con)
@@ -0,0 +1,76 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.repo.jdbc.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.forgerock.openidm.repo.jdbc.QueryResultHandler;
+import org.testng.annotations.Test;
+
+public class GenericResultSetMapperTest {
+
+    @Test
+    public void testMapToObjectStopsWhenHandlerDeclines() throws Exception {
+        ResultSet rs = createResultSet();
+        final List<Map<String, Object>> handled = new ArrayList<>();
+
+        new GenericResultSetMapper().mapToObject(rs, "query-all", "managed/user",
+                Collections.<String, Object>emptyMap(), new QueryResultHandler() {
+                    @Override
+                    public boolean handleResult(Map<String, Object> result) {
+                        handled.add(result);
+                        return false;
+                    }
+                });
+
+        assertThat(handled).hasSize(1);
+        assertThat(handled.get(0)).containsEntry("_id", "1");
+        verify(rs, times(1)).next();
+    }
+
+    @Test
+    public void testMapToObjectReadsAllRows() throws Exception {
+        ResultSet rs = createResultSet();
+
+        List<Map<String, Object>> result = new GenericResultSetMapper().mapToObject(rs, "query-all", "managed/user",
+                Collections.<String, Object>emptyMap());
+
+        assertThat(result).hasSize(2);
+        assertThat(result.get(1)).containsEntry("_id", "2");
+    }
+
+    private ResultSet createResultSet() throws Exception {
+        ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+        when(metaData.getColumnCount()).thenReturn(1);
+        when(metaData.getColumnName(1)).thenReturn("fullobject");
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getMetaData()).thenReturn(metaData);
+        when(rs.next()).thenReturn(true, true, false);
+        when(rs.getString("fullobject")).thenReturn("{\"_id\":\"1\"}", "{\"_id\":\"2\"}");
+        return rs;
+    }
+}
@@ -0,0 +1,341 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.repo.jdbc.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.forgerock.json.JsonPointer;
+import org.forgerock.json.JsonValue;
+import org.forgerock.json.resource.SortKey;
+import org.forgerock.openidm.repo.QueryConstants;
+import org.forgerock.util.query.QueryFilter;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class GenericTableHandlerTest {
+
+    private static final String STORED_OBJECT =
+            "{\"_id\":\"bjensen\",\"userName\":\"bjensen\",\"mail\":\"bjensen@example.com\",\"sn\":\"Jensen\"}";
+
+    private GenericTableHandler handler;
+    private Connection connection;
+    private PreparedStatement insert;
+    private PreparedStatement update;
+    private PreparedStatement delete;
+    private PreparedStatement deleteAll;
+    private PreparedStatement read;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        JsonValue tableConfig = json(object(
+                field("mainTable", "managedobjects"),
+                field("propertiesTable", "managedobjectproperties"),
+                field("searchableDefault", true)));
+        handler = new GenericTableHandler(tableConfig, "openidm", null, null, 100, null);
+
+        connection = mock(Connection.class);
+        insert = mock(PreparedStatement.class);
+        update = mock(PreparedStatement.class);
+        delete = mock(PreparedStatement.class);
+        deleteAll = mock(PreparedStatement.class);
+        read = mock(PreparedStatement.class);
+        PreparedStatement other = mock(PreparedStatement.class);
+        when(connection.prepareStatement(anyString())).thenReturn(other);
+        when(connection.prepareStatement(query(GenericTableHandler.QueryDefinition.PROPCREATEQUERYSTR)))
+                .thenReturn(insert);
+        when(connection.prepareStatement(query(GenericTableHandler.QueryDefinition.PROPUPDATEKEYQUERYSTR)))
+                .thenReturn(update);
+        when(connection.prepareStatement(query(GenericTableHandler.QueryDefinition.PROPDELETEKEYQUERYSTR)))
+                .thenReturn(delete);
+        when(connection.prepareStatement(query(GenericTableHandler.QueryDefinition.PROPDELETEQUERYSTR)))
+                .thenReturn(deleteAll);
+        when(connection.prepareStatement(query(GenericTableHandler.QueryDefinition.PROPREADQUERYSTR)))
+                .thenReturn(read);
+        storedRows(parse(STORED_OBJECT));
+        when(insert.executeBatch()).thenReturn(new int[] { 1 });
+        when(update.executeBatch()).thenReturn(new int[] { 1 });
+        when(delete.executeBatch()).thenReturn(new int[] { 1 });
+    }
+
+    @Test
+    public void testUpdateWritesOnlyChangedProperties() throws Exception {
+        JsonValue value = json(object(
+                field("_id", "bjensen"),
+                field("userName", "bjensen"),
+                field("mail", "babs@example.com"),
+                field("givenName", "Barbara")));
+
+        handler.updateValueProperties("managed/user/bjensen", 42L, "managed/user", "bjensen", value, connection);
+
+        verify(delete).setLong(1, 42L);
+        verify(delete).setString(2, "/sn");
+        verify(delete, times(1)).addBatch();
+        verify(update).setString(2, "babs@example.com");
+        verify(update).setString(4, "/mail");
+        verify(update, times(1)).addBatch();
+        verify(insert).setString(2, "/givenName");
+        verify(insert).setString(4, "Barbara");
+        verify(insert, times(1)).addBatch();
+        verify(deleteAll, never()).executeUpdate();
+    }
+
+    @Test
+    public void testUpdateOfUnchangedObjectWritesNothing() throws Exception {
+        handler.updateValueProperties("managed/user/bjensen", 42L, "managed/user", "bjensen", parse(STORED_OBJECT),
+                connection);
+
+        verify(insert, never()).addBatch();
+        verify(update, never()).addBatch();
+        verify(delete, never()).addBatch();
+        verify(deleteAll, never()).executeUpdate();
+    }
+
+    @Test
+    public void testMissingPropertyRowIsInserted() throws Exception {
+        when(update.executeBatch()).thenReturn(new int[] { 0 });
+        JsonValue value = json(object(
+                field("_id", "bjensen"),
+                field("userName", "bjensen"),
+                field("mail", "babs@example.com"),
+                field("sn", "Jensen")));
+
+        handler.updateValueProperties("managed/user/bjensen", 42L, "managed/user", "bjensen", value, connection);
+
+        verify(update, times(1)).addBatch();
+        verify(insert).setString(2, "/mail");
+        verify(insert, times(1)).addBatch();
+    }
+
+    @Test
+    public void testRowsOfChangedSearchablePropertiesAreRepaired() throws Exception {
+        // sn made searchable and legacy no longer searchable since the object was written
+        storedRows(json(object(
+                field("_id", "bjensen"),
+                field("userName", "bjensen"),
+                field("mail", "bjensen@example.com"),
+                field("legacy", "value"))));
+
+        handler.updateValueProperties("managed/user/bjensen", 42L, "managed/user", "bjensen", parse(STORED_OBJECT),
+                connection);
+
+        verify(read).setLong(1, 42L);
+        verify(delete).setString(2, "/legacy");
+        verify(delete, times(1)).addBatch();
+        verify(insert).setString(2, "/sn");
+        verify(insert, times(1)).addBatch();
+        verify(update, never()).addBatch();
+        verify(deleteAll, never()).executeUpdate();
+    }
+
+    @Test
+    public void testUnknownUpdateCountRewritesAllProperties() throws Exception {
+        when(update.executeBatch()).thenReturn(new int[] { Statement.SUCCESS_NO_INFO });
+        when(insert.executeBatch()).thenReturn(new int[] { Statement.SUCCESS_NO_INFO });
+        JsonValue value = json(object(
+                field("_id", "bjensen"),
+                field("userName", "bjensen"),
+                field("mail", "babs@example.com"),
+                field("sn", "Jensen")));
+
+        handler.updateValueProperties("managed/user/bjensen", 42L, "managed/user", "bjensen", value, connection);
+
+        verify(update, times(1)).addBatch();
+        verify(deleteAll).setString(1, "managed/user");
+        verify(deleteAll).setString(2, "bjensen");
+        verify(deleteAll).executeUpdate();
+        verify(insert).setString(2, "/userName");
+        verify(insert, times(4)).addBatch();
+    }
+
+    private JsonValue parse(String object) throws Exception {
+        return new JsonValue(new ObjectMapper().readValue(object, Map.class));
+    }
+
+    private void storedRows(JsonValue object) throws Exception {
+        final List<GenericTableHandler.SearchableProperty> properties = new ArrayList<>(handler
+                .collectValueProperties(object, new LinkedHashMap<String, GenericTableHandler.SearchableProperty>())
+                .values());
+        final int[] row = { -1 };
+        final ResultSet rows = mock(ResultSet.class);
+        when(rows.next()).thenAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) {
+                return ++row[0] < properties.size();
+            }
+        });
+        when(rows.getString(anyString())).thenAnswer(new Answer<String>() {
+            @Override
+            public String answer(InvocationOnMock invocation) {
+                final GenericTableHandler.SearchableProperty property = properties.get(row[0]);
+                final String column = (String) invocation.getArguments()[0];
+                return "propkey".equals(column) ? property.key
+                        : "proptype".equals(column) ? property.type
+                        : property.value;
+            }
+        });
+        when(read.executeQuery()).thenReturn(rows);
+    }
+
+    private String query(GenericTableHandler.QueryDefinition queryDefinition) {
+        return handler.initializeQueryMap().get(queryDefinition);
+    }
+
+    @Test
+    public void testLoadedTypeIdsAreNotQueriedAgain() throws Exception {
+        PreparedStatement readTypes = mock(PreparedStatement.class);
+        ResultSet types = mock(ResultSet.class);
+        when(connection.prepareStatement(query(GenericTableHandler.QueryDefinition.READTYPESQUERYSTR)))
+                .thenReturn(readTypes);
+        when(readTypes.executeQuery()).thenReturn(types);
+        when(types.next()).thenReturn(true, false);
+        when(types.getString("objecttype")).thenReturn("managed/user");
+        when(types.getLong("id")).thenReturn(7L);
+
+        handler.loadTypeIds(connection);
+
+        assertThat(handler.getTypeId("managed/user", connection)).isEqualTo(7L);
+        assertThat(handler.lookupTypeId("managed/user", connection)).isEqualTo(7L);
+        verify(connection, never()).prepareStatement(query(GenericTableHandler.QueryDefinition.READTYPEQUERYSTR));
+        verify(connection, never()).setAutoCommit(true);
+    }
+
+    @Test
+    public void testNewTypeIdIsCached() throws Exception {
+        PreparedStatement readType = mock(PreparedStatement.class);
+        ResultSet missing = mock(ResultSet.class);
+        ResultSet found = mock(ResultSet.class);
+        when(connection.prepareStatement(query(GenericTableHandler.QueryDefinition.READTYPEQUERYSTR)))
+                .thenReturn(readType);
+        when(readType.executeQuery()).thenReturn(missing, found);
+        when(found.next()).thenReturn(true);
+        when(found.getLong("id")).thenReturn(8L);
+
+        assertThat(handler.getTypeId("managed/role", connection)).isEqualTo(8L);
+        assertThat(handler.getTypeId("managed/role", connection)).isEqualTo(8L);
+
+        verify(readType, times(2)).executeQuery();
+        verify(connection, times(1)).setAutoCommit(true);
+    }
+
+    @Test
+    public void testPropertyBatchIsSharedBetweenCreatedObjects() throws Exception {
+        PreparedStatement create = mock(PreparedStatement.class);
+        ResultSet keys = mock(ResultSet.class);
+        when(connection.prepareStatement(eq(query(GenericTableHandler.QueryDefinition.CREATEQUERYSTR)),
+                eq(Statement.RETURN_GENERATED_KEYS))).thenReturn(create);
+        when(create.getGeneratedKeys()).thenReturn(keys);
+        when(keys.next()).thenReturn(true);
+        when(keys.getLong(1)).thenReturn(1L, 2L);
+        when(insert.executeBatch()).thenReturn(new int[] { 1, 1, 1, 1, 1, 1 });
+        handler.typeIds.put("managed/user", 7L);
+
+        GenericTableHandler.PropertyBatch propertyBatch = handler.newPropertyBatch(connection);
+        handler.create("managed/user/a", "managed/user", "a", user("a"), propertyBatch);
+        handler.create("managed/user/b", "managed/user", "b", user("b"), propertyBatch);
+        verify(insert, never()).executeBatch();
+        propertyBatch.flush();
+        propertyBatch.close();
+
+        verify(connection, times(1)).prepareStatement(query(GenericTableHandler.QueryDefinition.PROPCREATEQUERYSTR));
+        verify(create, times(2)).executeUpdate();
+        verify(insert, times(3)).setLong(1, 1L);
+        verify(insert, times(3)).setLong(1, 2L);
+        verify(insert, times(6)).addBatch();
+        verify(insert, times(1)).executeBatch();
+    }
+
+    @Test
+    public void testKeysetOfResultWithoutSortProperty() {
+        List<String> keyset = handler.getPagedResultsKeyset(
+                json(object(field("_id", "bjensen"), field("userName", "bjensen"))),
+                Arrays.asList(SortKey.ascendingOrder("sn")));
+
+        assertThat(keyset).containsExactly(null, "bjensen");
+    }
+
+    @Test
+    public void testSeekPastPropertyValueIncludesNullSortKeys() {
+        JsonValue tableConfig = json(object(
+                field("mainTable", "managedobjects"),
+                field("propertiesTable", "managedobjectproperties")));
+        GenericTableHandler oracle = new OracleTableHandler(tableConfig, "openidm", null, null, 100, null);
+        Map<String, Object> tokens = new HashMap<>();
+
+        String sql = oracle.renderQueryFilter(QueryFilter.<JsonPointer>alwaysTrue(), tokens,
+                keysetParams("Jensen", "bjensen"));
+
+        // NULL sorts last ascending on Oracle, so objects without a surname follow every page of surnames
+        assertThat(sql).contains("((orderby0.propvalue > ${keyset0} OR orderby0.propvalue IS NULL)"
+                + " OR (orderby0.propvalue = ${keyset0} AND obj.objectid > ${keyset1}))");
+        assertThat(tokens).containsEntry("keyset0", "Jensen").containsEntry("keyset1", "bjensen");
+    }
+
+    @Test
+    public void testSeekPastNullSortKey() {
+        Map<String, Object> tokens = new HashMap<>();
+
+        String sql = handler.renderQueryFilter(QueryFilter.<JsonPointer>alwaysTrue(), tokens,
+                keysetParams(null, "bjensen"));
+
+        // NULL sorts first ascending, so every object with a surname follows the objects without one
+        assertThat(sql).contains("(orderby0.propvalue IS NOT NULL"
+                + " OR (orderby0.propvalue IS NULL AND obj.objectid > ${keyset1}))");
+        assertThat(sql).endsWith(" LIMIT 10 OFFSET 0");
+        assertThat(tokens).doesNotContainKey("keyset0").containsEntry("keyset1", "bjensen");
+    }
+
+    private static Map<String, Object> keysetParams(String surname, String objectId) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("_resource", "managed/user");
+        params.put(QueryConstants.SORT_KEYS, Arrays.asList(SortKey.ascendingOrder("sn")));
+        params.put(QueryConstants.PAGE_SIZE, "10");
+        params.put(QueryConstants.PAGED_RESULTS_OFFSET, "10");
+        params.put(QueryConstants.PAGED_RESULTS_KEYSET, Arrays.asList(surname, objectId));
+        return params;
+    }
+
+    private static Map<String, Object> user(String userName) {
+        Map<String, Object> user = new HashMap<>();
+        user.put("userName", userName);
+        return user;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.repo.jdbc.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+
+import org.forgerock.json.resource.BadRequestException;
+import org.testng.annotations.Test;
+
+public class PagedResultsCookieTest {
+
+    @Test
+    public void testOffsetCookie() throws Exception {
+        String cookie = new PagedResultsCookie(100, null).encode();
+        assertThat(cookie).isEqualTo("100");
+
+        PagedResultsCookie decoded = PagedResultsCookie.decode(cookie);
+        assertThat(decoded.getOffset()).isEqualTo(100);
+        assertThat(decoded.getKeyset()).isNull();
+    }
+
+    @Test
+    public void testKeysetCookie() throws Exception {
+        String cookie = new PagedResultsCookie(200, Arrays.asList("smith", "4f0c-b2")).encode();
+
+        PagedResultsCookie decoded = PagedResultsCookie.decode(cookie);
+        assertThat(decoded.getOffset()).isEqualTo(200);
+        assertThat(decoded.getKeyset()).containsExactly("smith", "4f0c-b2");
+    }
+
+    @Test
+    public void testKeysetCookieWithNullSortKey() throws Exception {
+        String cookie = new PagedResultsCookie(200, Arrays.asList(null, "4f0c-b2")).encode();
+
+        PagedResultsCookie decoded = PagedResultsCookie.decode(cookie);
+        assertThat(decoded.getKeyset()).containsExactly(null, "4f0c-b2");
+    }
+
+    @Test(expectedExceptions = BadRequestException.class)
+    public void testKeysetCookieWithoutObjectId() throws Exception {
+        PagedResultsCookie.decode(new PagedResultsCookie(200, Arrays.asList("smith", null)).encode());
+    }
+
+    @Test(expectedExceptions = BadRequestException.class)
+    public void testInvalidCookie() throws Exception {
+        PagedResultsCookie.decode("not a cookie");
+    }
+}
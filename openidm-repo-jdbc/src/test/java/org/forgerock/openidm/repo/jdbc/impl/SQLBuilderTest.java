@@ -0,0 +1,96 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.repo.jdbc.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+
+import org.forgerock.openidm.repo.util.Clauses;
+import org.testng.annotations.Test;
+
+public class SQLBuilderTest {
+
+    @Test
+    public void testSeek() {
+        SQLBuilder builder = new SQLBuilder() {
+            @Override
+            public String toSQL() {
+                return "SELECT " + getColumns().toSQL()
+                        + getFromClause().toSQL()
+                        + getWhereClause().toSQL()
+                        + getOrderByClause().toSQL();
+            }
+        };
+        builder.addColumn("obj.*")
+                .from("managedobjects", "obj")
+                .where(Clauses.where("obj.rev = ${v1}"))
+                .orderBy("orderby0.propvalue", false)
+                .orderBy("obj.objectid", true)
+                .seek(Arrays.asList("${keyset0}", "${keyset1}"), false);
+
+        assertThat(builder.toSQL()).isEqualTo("SELECT obj.* FROM managedobjects obj"
+                + " WHERE (obj.rev = ${v1} AND (orderby0.propvalue < ${keyset0}"
+                + " OR (orderby0.propvalue = ${keyset0} AND obj.objectid > ${keyset1})))"
+                + " ORDER BY orderby0.propvalue DESC, obj.objectid ASC");
+    }
+
+    @Test
+    public void testSeekIncludesFollowingNullKeys() {
+        SQLBuilder builder = newBuilder()
+                .orderBy("orderby0.propvalue", false)
+                .orderBy("obj.objectid", true)
+                .seek(Arrays.asList("${keyset0}", "${keyset1}"), true);
+
+        assertThat(builder.toSQL()).isEqualTo("SELECT obj.* FROM managedobjects obj"
+                + " WHERE ((orderby0.propvalue < ${keyset0} OR orderby0.propvalue IS NULL)"
+                + " OR (orderby0.propvalue = ${keyset0} AND obj.objectid > ${keyset1}))"
+                + " ORDER BY orderby0.propvalue DESC, obj.objectid ASC");
+    }
+
+    @Test
+    public void testSeekPastNullKey() {
+        SQLBuilder nullsLow = newBuilder()
+                .orderBy("orderby0.propvalue", true)
+                .orderBy("obj.objectid", true)
+                .seek(Arrays.asList(null, "${keyset1}"), true);
+        SQLBuilder nullsHigh = newBuilder()
+                .orderBy("orderby0.propvalue", true)
+                .orderBy("obj.objectid", true)
+                .seek(Arrays.asList(null, "${keyset1}"), false);
+
+        assertThat(nullsLow.toSQL()).isEqualTo("SELECT obj.* FROM managedobjects obj"
+                + " WHERE (orderby0.propvalue IS NOT NULL"
+                + " OR (orderby0.propvalue IS NULL AND obj.objectid > ${keyset1}))"
+                + " ORDER BY orderby0.propvalue ASC, obj.objectid ASC");
+        assertThat(nullsHigh.toSQL()).isEqualTo("SELECT obj.* FROM managedobjects obj"
+                + " WHERE ((orderby0.propvalue IS NULL AND obj.objectid > ${keyset1}))"
+                + " ORDER BY orderby0.propvalue ASC, obj.objectid ASC");
+    }
+
+    private static SQLBuilder newBuilder() {
+        SQLBuilder builder = new SQLBuilder() {
+            @Override
+            public String toSQL() {
+                return "SELECT " + getColumns().toSQL()
+                        + getFromClause().toSQL()
+                        + getWhereClause().toSQL()
+                        + getOrderByClause().toSQL();
+            }
+        };
+        return builder.addColumn("obj.*").from("managedobjects", "obj");
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.repo.jdbc.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.mockito.InOrder;
+import org.testng.annotations.Test;
+
+public class StatementCacheTest {
+
+    @Test
+    public void testReusesClosedStatement() throws Exception {
+        Connection connection = mock(Connection.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(connection.prepareStatement("SELECT 1")).thenReturn(statement);
+        StatementCache cache = new StatementCache(10);
+
+        Connection wrapped = cache.wrap(connection);
+        PreparedStatement first = wrapped.prepareStatement("SELECT 1");
+        first.setString(1, "a");
+        first.close();
+        assertThat(first.isClosed()).isTrue();
+
+        PreparedStatement second = cache.wrap(connection).prepareStatement("SELECT 1");
+        second.close();
+
+        verify(connection, times(1)).prepareStatement("SELECT 1");
+        verify(statement).setString(1, "a");
+        verify(statement, times(2)).clearParameters();
+        verify(statement, never()).close();
+    }
+
+    @Test
+    public void testPendingBatchIsClearedOnRelease() throws Exception {
+        Connection connection = mock(Connection.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(connection.prepareStatement("INSERT 1")).thenReturn(statement);
+        StatementCache cache = new StatementCache(10);
+
+        PreparedStatement first = cache.wrap(connection).prepareStatement("INSERT 1");
+        try {
+            first.setString(1, "a");
+            first.addBatch();
+            throw new SQLException("failure before executeBatch");
+        } catch (SQLException e) {
+            first.close();
+        }
+        verify(statement).clearBatch();
+
+        PreparedStatement second = cache.wrap(connection).prepareStatement("INSERT 1");
+        second.setString(1, "b");
+        second.addBatch();
+        second.executeBatch();
+        second.close();
+
+        // the executed batch is not cleared again, and only one statement was ever prepared
+        verify(statement, times(1)).clearBatch();
+        verify(connection, times(1)).prepareStatement("INSERT 1");
+        InOrder inOrder = inOrder(statement);
+        inOrder.verify(statement).clearBatch();
+        inOrder.verify(statement).setString(1, "b");
+        inOrder.verify(statement).executeBatch();
+    }
+
+    @Test
+    public void testStatementInUseIsNotShared() throws Exception {
+        Connection connection = mock(Connection.class);
+        PreparedStatement cached = mock(PreparedStatement.class);
+        PreparedStatement uncached = mock(PreparedStatement.class);
+        when(connection.prepareStatement("SELECT 1")).thenReturn(cached, uncached);
+        StatementCache cache = new StatementCache(10);
+
+        Connection wrapped = cache.wrap(connection);
+        PreparedStatement first = wrapped.prepareStatement("SELECT 1");
+        PreparedStatement second = wrapped.prepareStatement("SELECT 1");
+
+        assertThat(second).isSameAs(uncached);
+        first.close();
+        verify(cached, never()).close();
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws Exception {
+        Connection connection = mock(Connection.class);
+        PreparedStatement one = mock(PreparedStatement.class);
+        PreparedStatement two = mock(PreparedStatement.class);
+        when(connection.prepareStatement("SELECT 1")).thenReturn(one);
+        when(connection.prepareStatement("SELECT 2")).thenReturn(two);
+        StatementCache cache = new StatementCache(1);
+
+        Connection wrapped = cache.wrap(connection);
+        wrapped.prepareStatement("SELECT 1").close();
+        wrapped.prepareStatement("SELECT 2").close();
+
+        verify(one).close();
+        verify(two, never()).close();
+
+        cache.clear();
+        verify(two).close();
+    }
+}
@@ -20,6 +20,8 @@
  * with the fields enclosed by brackets [] replaced by
  * your own identifying information:
  * "Portions Copyrighted [year] [name of copyright owner]"
+ *
+ * Portions Copyright 2026 Wren Security.
  */
 package org.forgerock.openidm.repo.orientdb.impl;
 
@@ -28,6 +30,8 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.lang3.StringUtils;
 import org.forgerock.json.JsonValue;
@@ -55,6 +59,7 @@ import com.orientechnologies.orient.core.storage.OStorage;
 
 import java.util.Collection;
 import java.util.Set;
+import java.util.function.Function;
 
 import static org.forgerock.json.JsonValue.array;
 import static org.forgerock.json.JsonValue.json;
@@ -67,7 +72,11 @@ import static org.forgerock.json.JsonValue.object;
 public class DBHelper {
     final static Logger logger = LoggerFactory.getLogger(DBHelper.class);
 
-    private static Map<String, ODatabaseDocumentPool> pools = new HashMap<String, ODatabaseDocumentPool>();
+    private static final ConcurrentMap<String, ODatabaseDocumentPool> pools =
+            new ConcurrentHashMap<String, ODatabaseDocumentPool>();
+
+    // Serializes checking and setting up the DB, which is not needed to look up an existing pool
+    private static final Object setupLock = new Object();
 
     /**
      * Get the DB pool for the given URL. May return an existing pool instance.
@@ -89,28 +98,34 @@ public class DBHelper {
      * @return the pool
      * @throws org.forgerock.openidm.config.enhanced.InvalidException
      */
-    public synchronized static ODatabaseDocumentPool getPool(String dbURL, String user, String password,
-            int minSize, int maxSize, JsonValue completeConfig, boolean setupDB) throws InvalidException {
-
-        ODatabaseDocumentTx setupDbConn = null;
-        ODatabaseDocumentPool pool = null;
-        try {
-            if (setupDB) {
-                logger.debug("Check DB exists in expected state for pool {}", dbURL);
-                setupDbConn = checkDB(dbURL, user, password, completeConfig);
-            }
-            logger.debug("Getting pool {}", dbURL);
-            pool = pools.get(dbURL);
-            if (pool == null) {
-                pool = initPool(dbURL, user, password, minSize, maxSize);
-                pools.put(dbURL, pool);
-            }
-        } finally {
-            if (setupDbConn != null) {
-                setupDbConn.close();
+    public static ODatabaseDocumentPool getPool(final String dbURL, final String user, final String password,
+            final int minSize, final int maxSize, JsonValue completeConfig, boolean setupDB) throws InvalidException {
+
+        if (setupDB) {
+            synchronized (setupLock) {
+                ODatabaseDocumentTx setupDbConn = null;
+                try {
+                    logger.debug("Check DB exists in expected state for pool {}", dbURL);
+                    setupDbConn = checkDB(dbURL, user, password, completeConfig);
+                } finally {
+                    if (setupDbConn != null) {
+                        setupDbConn.close();
+                    }
+                }
             }
         }
 
+        logger.debug("Getting pool {}", dbURL);
+        ODatabaseDocumentPool pool = pools.get(dbURL);
+        if (pool == null) {
+            // Only the first caller for a URL initializes its pool, the others wait for it
+            pool = pools.computeIfAbsent(dbURL, new Function<String, ODatabaseDocumentPool>() {
+                @Override
+                public ODatabaseDocumentPool apply(String url) {
+                    return initPool(url, user, password, minSize, maxSize);
+                }
+            });
+        }
         return pool;
     }
 
@@ -148,9 +163,14 @@ public class DBHelper {
      * Closes all pools managed by this helper
      * Call at application shut-down to cleanly shut down the pools.
      */
-    public synchronized static void closePools() {
+    public static void closePools() {
         logger.debug("Close DB pools");
-        for (ODatabaseDocumentPool pool : pools.values()) {
+        for (Map.Entry<String, ODatabaseDocumentPool> entry : pools.entrySet()) {
+            ODatabaseDocumentPool pool = entry.getValue();
+            // release our reference before closing, so no new caller gets the closed pool
+            if (!pools.remove(entry.getKey(), pool)) {
+                continue;
+            }
             try {
                 pool.close();
                 logger.trace("Closed pool {}", pool);
@@ -158,18 +178,15 @@ public class DBHelper {
                 logger.info("Faillure reported in closing pool {}", pool, ex);
             }
         }
-        // release all our closed pool references
-        pools.clear();
-        pools = new HashMap<String, ODatabaseDocumentPool>();
     }
 
     /**
      * Close and remove a pool managed by this helper
      */
-    public synchronized static void closePool(String dbUrl, ODatabaseDocumentPool pool) {
+    public static void closePool(String dbUrl, ODatabaseDocumentPool pool) {
         logger.debug("Close DB pool for {} {}", dbUrl, pool);
         try {
-            pools.remove(dbUrl);
+            pools.remove(dbUrl, pool);
             pool.close();
             logger.trace("Closed pool for {} {}", dbUrl, pool);
         } catch (Exception ex) {
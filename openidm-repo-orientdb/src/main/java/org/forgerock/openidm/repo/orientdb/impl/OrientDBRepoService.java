@@ -12,7 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2011-2016 ForgeRock AS.
- * Portions Copyright 2018-2020 Wren Security.
+ * Portions Copyright 2018-2026 Wren Security.
  */
 package org.forgerock.openidm.repo.orientdb.impl;
 
@@ -64,6 +64,9 @@ import org.forgerock.openidm.repo.orientdb.impl.query.Commands;
 import org.forgerock.openidm.repo.orientdb.impl.query.PredefinedQueries;
 import org.forgerock.openidm.repo.orientdb.impl.query.Queries;
 import org.forgerock.openidm.router.IDMConnectionFactory;
+import org.forgerock.openidm.smartevent.EventEntry;
+import org.forgerock.openidm.smartevent.Name;
+import org.forgerock.openidm.smartevent.Publisher;
 import org.forgerock.services.context.Context;
 import org.forgerock.util.Reject;
 import org.forgerock.util.promise.Promise;
@@ -136,18 +139,22 @@ public class OrientDBRepoService implements RequestHandler, RepositoryService, R
     @Reference(policy = ReferencePolicy.DYNAMIC)
     private volatile EnhancedConfig enhancedConfig;
 
-    private ODatabaseDocumentPool pool;
+    /** Monitoring event name prefix */
+    private static final String EVENT_PREFIX = "openidm/internal/repo/orientdb/";
+
+    /** Monitoring event of acquiring a connection from the pool, its result is the number of connections in use */
+    private static final Name EVENT_POOL_ACQUIRE = Name.get(EVENT_PREFIX + "pool/acquire");
 
     private static final int DEFAULT_POOL_MIN_SIZE = 5;
     private static final int DEFAULT_POOL_MAX_SIZE = 20;
 
-    private String dbURL;
-    private String user;
-    private String password;
+    /** The database URL, credentials and pool, replaced together on re-initialization */
+    private volatile Database database;
     private int poolMinSize;
-    private int poolMaxSize;
+    private volatile int poolMaxSize;
 
-    // Used to synchronize operations on the DB that require user/password credentials
+    // Used to synchronize operations on the DB that require user/password credentials, and re-initialization.
+    // Acquiring connections does not lock, the pool is thread-safe.
     private static Object dbLock = new Object();
 
     private static OrientDBRepoService bootRepo = null;
@@ -461,7 +468,9 @@ public class OrientDBRepoService implements RequestHandler, RepositoryService, R
                         return adapt(new BadRequestException("Expecting 'user' and 'password' parameters")).asPromise();
                     }
                     synchronized (dbLock) {
-                        DBHelper.updateDbCredentials(dbURL, user, password, newUser, newPassword);
+                        final Database current = database;
+                        DBHelper.updateDbCredentials(current.url, current.user, current.password, newUser,
+                                newPassword);
                         JsonValue config = connectionFactory.getConnection().read(context, Requests.newReadRequest("config", PID)).getContent();
                         config.put("user", newUser);
                         config.put("password", newPassword);
@@ -699,11 +708,13 @@ public class OrientDBRepoService implements RequestHandler, RepositoryService, R
         int maxRetry = 100; // give it up to approx 10 seconds to recover
         int retryCount = 0;
 
-        synchronized (dbLock) {
+        final Database current = database;
+        EventEntry measure = Publisher.start(EVENT_POOL_ACQUIRE, null, null);
+        try {
             while (db == null && retryCount < maxRetry) {
                 retryCount++;
                 try {
-                    db = pool.acquire(dbURL, user, password);
+                    db = current.pool.acquire(current.url, current.user, current.password);
                     if (retryCount > 1) {
                         logger.info("Succeeded in acquiring connection from pool in retry attempt {}", retryCount);
                     }
@@ -726,6 +737,9 @@ public class OrientDBRepoService implements RequestHandler, RepositoryService, R
                     }
                 }
             }
+            measure.setResult(poolMaxSize - current.pool.getAvailableConnections(current.url, current.user));
+        } finally {
+            measure.end();
         }
         return db;
     }
@@ -842,6 +856,9 @@ public class OrientDBRepoService implements RequestHandler, RepositoryService, R
      */
     void init (JsonValue config) {
         synchronized (dbLock) {
+        final String dbURL;
+        final String user;
+        final String password;
         try {
             dbURL = getDBUrl(config);
             logger.info("Use DB at dbURL: {}", dbURL);
@@ -865,7 +882,9 @@ public class OrientDBRepoService implements RequestHandler, RepositoryService, R
         }
 
         try {
-            pool = DBHelper.getPool(dbURL, user, password, poolMinSize, poolMaxSize, config, true);
+            ODatabaseDocumentPool pool =
+                    DBHelper.getPool(dbURL, user, password, poolMinSize, poolMaxSize, config, true);
+            database = new Database(dbURL, user, password, pool);
             logger.debug("Obtained pool {}", pool);
         } catch (RuntimeException ex) {
             logger.warn("Initializing database pool failed", ex);
@@ -946,10 +965,11 @@ public class OrientDBRepoService implements RequestHandler, RepositoryService, R
             // The embedded server configuration has changed so re-initialize it.
             embeddedServer.modified(newConfig);
         }
-        if (existingConfig != null
-                && user.equals(getUser(newConfig))
-                && password.equals(getPassword(newConfig))
-                && dbURL.equals(getDBUrl(newConfig))
+        final Database current = database;
+        if (existingConfig != null && current != null
+                && current.user.equals(getUser(newConfig))
+                && current.password.equals(getPassword(newConfig))
+                && current.url.equals(getDBUrl(newConfig))
                 && poolMinSize == getPoolMinSize(newConfig)
                 && poolMaxSize == getPoolMaxSize(newConfig)) {
             // If the DB pool settings don't change keep the existing pool
@@ -957,7 +977,9 @@ public class OrientDBRepoService implements RequestHandler, RepositoryService, R
         } else {
             // If the DB pool settings changed do a more complete re-initialization
             logger.info("Re-initialize repository with latest configuration - including DB pool setting changes.");
-            DBHelper.closePool(dbURL, pool);
+            if (current != null) {
+                DBHelper.closePool(current.url, current.pool);
+            }
         }
         init(newConfig);
 
@@ -985,4 +1007,22 @@ public class OrientDBRepoService implements RequestHandler, RepositoryService, R
     void cleanup() {
         DBHelper.closePools();
     }
+
+    /**
+     * The database URL and the credentials the pool was obtained with, so that connections are always acquired
+     * with matching settings.
+     */
+    private static final class Database {
+        private final String url;
+        private final String user;
+        private final String password;
+        private final ODatabaseDocumentPool pool;
+
+        Database(String url, String user, String password, ODatabaseDocumentPool pool) {
+            this.url = url;
+            this.user = user;
+            this.password = password;
+            this.pool = pool;
+        }
+    }
 }
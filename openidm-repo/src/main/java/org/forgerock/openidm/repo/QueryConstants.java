@@ -2,7 +2,7 @@
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
  * Copyright 2011-2015 ForgeRock AS.
- * Portions Copyright 2018 Wren Security.
+ * Portions Copyright 2018-2026 Wren Security.
  *
  * The contents of this file are subject to the terms
  * of the Common Development and Distribution License
@@ -133,6 +133,12 @@ public final class QueryConstants {
      * Page size requested. Generally used in a LIMIT clause.
      */
     public static final String PAGE_SIZE = HttpUtils.PARAM_PAGE_SIZE;
+
+    /**
+     * Sort key values of the last result of the previous page, used to seek to the requested page
+     * instead of skipping over the preceding results. An empty list requests the first page in keyset order.
+     */
+    public static final String PAGED_RESULTS_KEYSET = "_pagedResultsKeyset";
     
     /**
      * Sort keys used for sorting the results of the query.
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 package org.forgerock.openidm.scheduler;
 
@@ -32,10 +33,6 @@ import org.slf4j.LoggerFactory;
 class RepoProxyRequestHandler extends AbstractRequestHandler {
     private static final Logger logger = LoggerFactory.getLogger(RepoProxyRequestHandler.class);
 
-    /**
-     * The resource path for waiting triggers.
-     */
-    static final String WAITING_TRIGGERS_RESOURCE_PATH = "/waitingTriggers";
     /**
      * The resource path for the acquired triggers.
      */
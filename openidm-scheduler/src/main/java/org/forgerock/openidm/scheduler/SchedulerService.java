@@ -14,7 +14,7 @@
  * "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2012-2016 ForgeRock AS.
- * Portions Copyright 2018-2020 Wren Security.
+ * Portions Copyright 2018-2026 Wren Security.
  */
 package org.forgerock.openidm.scheduler;
 
@@ -25,8 +25,8 @@ import static org.forgerock.json.JsonValue.object;
 import static org.forgerock.json.resource.Responses.newActionResponse;
 import static org.forgerock.openidm.scheduler.JobRequestHandler.JOB_RESOURCE_PATH;
 import static org.forgerock.openidm.scheduler.RepoProxyRequestHandler.ACQUIRED_TRIGGERS_RESOURCE_PATH;
-import static org.forgerock.openidm.scheduler.RepoProxyRequestHandler.WAITING_TRIGGERS_RESOURCE_PATH;
 import static org.forgerock.openidm.scheduler.TriggerRequestHandler.TRIGGER_RESOURCE_PATH;
+import static org.forgerock.openidm.scheduler.WaitingTriggersRequestHandler.WAITING_TRIGGERS_RESOURCE_PATH;
 import static org.quartz.CronExpression.isValidExpression;
 
 import java.text.ParseException;
@@ -124,8 +124,6 @@ public class SchedulerService implements RequestHandler {
 
     private static final String SCHEDULER_REPO_RESOURCE_PATH = "/repo/scheduler/";
 
-    private static final String WAITING_TRIGGERS_REPO_RESOURCE_PATH = SCHEDULER_REPO_RESOURCE_PATH + "waitingTriggers";
-
     private static final String ACQUIRED_TRIGGERS_REPO_RESOURCE_PATH = SCHEDULER_REPO_RESOURCE_PATH + "acquiredTriggers";
 
     /**
@@ -227,7 +225,7 @@ public class SchedulerService implements RequestHandler {
         router.addRoute(STARTS_WITH, Router.uriTemplate(TRIGGER_RESOURCE_PATH),
                 new TriggerRequestHandler(connectionFactory));
         router.addRoute(STARTS_WITH, Router.uriTemplate(WAITING_TRIGGERS_RESOURCE_PATH),
-                new RepoProxyRequestHandler(WAITING_TRIGGERS_REPO_RESOURCE_PATH, connectionFactory));
+                new WaitingTriggersRequestHandler(connectionFactory));
         router.addRoute(STARTS_WITH, Router.uriTemplate(ACQUIRED_TRIGGERS_RESOURCE_PATH),
                 new RepoProxyRequestHandler(ACQUIRED_TRIGGERS_REPO_RESOURCE_PATH, connectionFactory));
     }
@@ -0,0 +1,93 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.scheduler;
+
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+import static org.forgerock.json.resource.Responses.newResourceResponse;
+import static org.forgerock.openidm.quartz.impl.RepoJobStore.getWaitingTriggerShards;
+import static org.forgerock.openidm.quartz.impl.RepoJobStore.getWaitingTriggersRepoId;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.forgerock.json.resource.AbstractRequestHandler;
+import org.forgerock.json.resource.Connection;
+import org.forgerock.json.resource.ConnectionFactory;
+import org.forgerock.json.resource.NotFoundException;
+import org.forgerock.json.resource.ReadRequest;
+import org.forgerock.json.resource.Requests;
+import org.forgerock.json.resource.ResourceException;
+import org.forgerock.json.resource.ResourceResponse;
+import org.forgerock.openidm.quartz.impl.WaitingTrigger;
+import org.forgerock.services.context.Context;
+import org.forgerock.util.promise.Promise;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the waiting trigger index of the {@link org.forgerock.openidm.quartz.impl.RepoJobStore}, merging its shards
+ * into the list of waiting trigger names ordered by fire time.
+ */
+class WaitingTriggersRequestHandler extends AbstractRequestHandler {
+    private static final Logger logger = LoggerFactory.getLogger(WaitingTriggersRequestHandler.class);
+
+    /**
+     * The resource path for waiting triggers.
+     */
+    static final String WAITING_TRIGGERS_RESOURCE_PATH = "/waitingTriggers";
+
+    private static final String REPO_RESOURCE_PATH = "/repo";
+
+    private final ConnectionFactory connectionFactory;
+
+    /**
+     * Constructs a {@link WaitingTriggersRequestHandler} given a {@link ConnectionFactory}.
+     * @param connectionFactory the {@link ConnectionFactory} to read the shards over.
+     */
+    WaitingTriggersRequestHandler(final ConnectionFactory connectionFactory) {
+        this.connectionFactory = connectionFactory;
+    }
+
+    @Override
+    public Promise<ResourceResponse, ResourceException> handleRead(Context context, ReadRequest readRequest) {
+        final List<WaitingTrigger> waitingTriggers = new ArrayList<>();
+        try {
+            final Connection connection = connectionFactory.getConnection();
+            final int shards = getWaitingTriggerShards();
+            for (int shard = 0; shard < shards; shard++) {
+                final ReadRequest request =
+                        Requests.newReadRequest(REPO_RESOURCE_PATH + getWaitingTriggersRepoId(shard));
+                try {
+                    waitingTriggers.addAll(WaitingTrigger.read(connection.read(context, request).getContent()));
+                } catch (final NotFoundException e) {
+                    // no trigger has been queued to this shard yet
+                }
+            }
+        } catch (final ResourceException e) {
+            logger.error("Unable to read waiting triggers", e);
+            return e.asPromise();
+        }
+        Collections.sort(waitingTriggers);
+        final List<String> names = new ArrayList<>(waitingTriggers.size());
+        for (final WaitingTrigger waitingTrigger : waitingTriggers) {
+            names.add(waitingTrigger.getId());
+        }
+        return newResourceResponse(null, null, json(object(field("names", names)))).asPromise();
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.scheduler.impl;
+
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.forgerock.json.JsonValue;
+import org.forgerock.json.resource.ConnectionFactory;
+import org.forgerock.json.resource.CreateRequest;
+import org.forgerock.json.resource.DeleteRequest;
+import org.forgerock.json.resource.NotFoundException;
+import org.forgerock.json.resource.Requests;
+import org.forgerock.json.resource.ResourceException;
+import org.forgerock.json.resource.ResourceResponse;
+import org.forgerock.json.resource.UpdateRequest;
+import org.forgerock.services.context.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tracks the pages of a task scan and persists the paged results cookie following the last page whose objects have
+ * all been processed, so an interrupted scan can resume from it.
+ * <p>
+ * Pages are processed concurrently, so the checkpoint only moves past a page once it and all of the pages before it
+ * are done. The checkpoint is kept in the repository until the scan completes; it is only used to resume a scan with
+ * the same scan configuration.
+ */
+class TaskScanCheckpoints {
+
+    private static final Logger logger = LoggerFactory.getLogger(TaskScanCheckpoints.class);
+
+    /** Repository container of the task scan checkpoints */
+    static final String CHECKPOINTS_RESOURCE_PATH = "repo/scheduler/taskscanCheckpoints";
+
+    private static final String FIELD_SCAN = "scan";
+    private static final String FIELD_PAGED_RESULTS_COOKIE = "pagedResultsCookie";
+
+    private final ConnectionFactory connectionFactory;
+    private final Context context;
+    private final String checkpointId;
+    private final JsonValue scan;
+
+    /** Pages not done yet, in query order, guarded by this */
+    private final Deque<Page> pages = new ArrayDeque<>();
+
+    /** Revision of the persisted checkpoint, null if none is persisted, guarded by this */
+    private String revision;
+
+    /**
+     * Creates the checkpoints of a task scan.
+     *
+     * @param connectionFactory the connection factory to read and write the checkpoint with
+     * @param context the context of the task scan
+     * @param scanName the name of the task scan, null to not persist checkpoints
+     * @param scan the scan configuration, a checkpoint of a different configuration is ignored
+     */
+    TaskScanCheckpoints(ConnectionFactory connectionFactory, Context context, String scanName, JsonValue scan) {
+        this.connectionFactory = connectionFactory;
+        this.context = context;
+        this.checkpointId = scanName != null ? scanName.replaceAll("[^A-Za-z0-9_.-]", "_") : null;
+        this.scan = scan;
+    }
+
+    /**
+     * Reads the paged results cookie to resume the scan from.
+     *
+     * @return the cookie, or null to start from the first page
+     * @throws ResourceException if the checkpoint could not be read
+     */
+    synchronized String load() throws ResourceException {
+        if (checkpointId == null) {
+            return null;
+        }
+        final ResourceResponse checkpoint;
+        try {
+            checkpoint = connectionFactory.getConnection().read(context,
+                    Requests.newReadRequest(CHECKPOINTS_RESOURCE_PATH, checkpointId));
+        } catch (NotFoundException e) {
+            return null;
+        }
+        revision = checkpoint.getRevision();
+        if (!scan.isEqualTo(checkpoint.getContent().get(FIELD_SCAN))) {
+            logger.debug("Ignoring checkpoint of task scan {} made with a different scan configuration",
+                    checkpointId);
+            return null;
+        }
+        return checkpoint.getContent().get(FIELD_PAGED_RESULTS_COOKIE).asString();
+    }
+
+    /**
+     * Starts tracking the next page of the scan.
+     *
+     * @return the page
+     */
+    synchronized Page startPage() {
+        final Page page = new Page();
+        pages.addLast(page);
+        return page;
+    }
+
+    /**
+     * Records that all of the objects of a page have been queued.
+     *
+     * @param page the page
+     * @param nextCookie the paged results cookie of the next page, null if it is the last page
+     */
+    synchronized void endPage(Page page, String nextCookie) {
+        page.ended = true;
+        page.nextCookie = nextCookie;
+        advance();
+    }
+
+    /**
+     * Records that an object of a page is about to be queued.
+     *
+     * @param page the page of the object
+     */
+    synchronized void objectQueued(Page page) {
+        page.remaining++;
+    }
+
+    /**
+     * Records that an object of a page has been processed.
+     *
+     * @param page the page of the object
+     */
+    synchronized void objectDone(Page page) {
+        page.remaining--;
+        advance();
+    }
+
+    /**
+     * Removes the persisted checkpoint, once the scan has completed.
+     */
+    synchronized void clear() {
+        if (revision == null) {
+            return;
+        }
+        try {
+            final DeleteRequest request = Requests.newDeleteRequest(CHECKPOINTS_RESOURCE_PATH, checkpointId);
+            request.setRevision(revision);
+            connectionFactory.getConnection().delete(context, request);
+        } catch (NotFoundException e) {
+            // already removed
+        } catch (ResourceException e) {
+            logger.warn("Failed to remove checkpoint of task scan {}", checkpointId, e);
+        }
+        revision = null;
+    }
+
+    /**
+     * Persists the cookie of the last page done, if its previous pages are done too.
+     */
+    private void advance() {
+        String checkpoint = null;
+        while (!pages.isEmpty() && pages.peekFirst().isDone()) {
+            checkpoint = pages.pollFirst().nextCookie;
+        }
+        if (checkpoint != null && checkpointId != null) {
+            save(checkpoint);
+        }
+    }
+
+    private void save(String cookie) {
+        final JsonValue content = json(object(
+                field(FIELD_SCAN, scan.getObject()),
+                field(FIELD_PAGED_RESULTS_COOKIE, cookie)));
+        try {
+            if (revision != null) {
+                final UpdateRequest request = Requests.newUpdateRequest(CHECKPOINTS_RESOURCE_PATH, checkpointId,
+                        content);
+                request.setRevision(revision);
+                revision = connectionFactory.getConnection().update(context, request).getRevision();
+            } else {
+                final CreateRequest request = Requests.newCreateRequest(CHECKPOINTS_RESOURCE_PATH, checkpointId,
+                        content);
+                revision = connectionFactory.getConnection().create(context, request).getRevision();
+            }
+        } catch (ResourceException e) {
+            // the scan goes on, it will resume from an earlier checkpoint if interrupted
+            logger.warn("Failed to save checkpoint of task scan {}", checkpointId, e);
+        }
+    }
+
+    /**
+     * A page of objects of the scan.
+     */
+    static final class Page {
+        /** Number of objects queued and not yet processed, guarded by the checkpoints */
+        private int remaining = 0;
+        /** Whether all objects of the page have been queued, guarded by the checkpoints */
+        private boolean ended = false;
+        /** The paged results cookie of the next page, guarded by the checkpoints */
+        private String nextCookie;
+
+        private boolean isDone() {
+            return ended && remaining == 0;
+        }
+    }
+}
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Portions copyright 2012-2015 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.openidm.scheduler.impl;
@@ -38,6 +39,8 @@ import org.joda.time.ReadablePeriod;
  */
 public class TaskScannerContext {
 
+    private static final int DEFAULT_PAGE_SIZE = 1000;
+
     enum TaskScannerState {
         INITIALIZED,
         ACTIVE,
@@ -201,6 +204,15 @@ public class TaskScannerContext {
         return numParams.asInteger();
     }
 
+    /**
+     * Returns the number of objects to fetch per query page, 0 to fetch all objects in a single query.
+     *
+     * @return the page size
+     */
+    public int getPageSize() {
+        return params.get("pageSize").defaultTo(DEFAULT_PAGE_SIZE).asInteger();
+    }
+
     public TaskScannerStatistic getStatistics() {
         return this.statistics;
     }
@@ -12,18 +12,25 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Portions copyright 2012-2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.openidm.scheduler.impl;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.Callable;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.script.ScriptException;
 
@@ -35,6 +42,7 @@ import org.forgerock.json.resource.ConnectionFactory;
 import org.forgerock.json.resource.PreconditionFailedException;
 import org.forgerock.json.resource.QueryRequest;
 import org.forgerock.json.resource.QueryResourceHandler;
+import org.forgerock.json.resource.QueryResponse;
 import org.forgerock.json.resource.Requests;
 import org.forgerock.json.resource.ResourceException;
 import org.forgerock.json.resource.ResourceResponse;
@@ -54,6 +62,7 @@ import org.slf4j.LoggerFactory;
 public class TaskScannerJob {
     private final static Logger logger = LoggerFactory.getLogger(TaskScannerJob.class);
     private final static DateUtil DATE_UTIL = DateUtil.getDateUtil(ServerConstants.TIME_ZONE_UTC);
+    private final static long QUEUE_POLL_MILLIS = 500;
 
     private ConnectionFactory connectionFactory;
     private TaskScannerContext taskScannerContext;
@@ -105,7 +114,7 @@ public class TaskScannerJob {
 
     /**
      * Performs the task associated with the task scanner event.
-     * Runs the query and executes the script across each resulting object.
+     * Streams the query results to worker threads executing the script across each object.
      *
      * @param executor ExecutorService in which to invoke this task.
      * @throws ExecutionException
@@ -116,51 +125,68 @@ public class TaskScannerJob {
         logger.info("Task {} started from {} with script {}",
                 new Object[] { taskScannerContext.getTaskScanID(), taskScannerContext.getInvokerName(), taskScannerContext.getScriptName() });
 
-        JsonValue results;
-        taskScannerContext.startQuery();
-        try {
-            results = fetchAllObjects();
-        } catch (ResourceException e1) {
-            throw new ExecutionException("Error during query", e1);
-        }
-        taskScannerContext.endQuery();
-        Integer maxRecords = taskScannerContext.getMaxRecords();
-        if (maxRecords == null) {
-            taskScannerContext.setNumberOfTasksToProcess(results.size());
-        } else {
-            taskScannerContext.setNumberOfTasksToProcess(Math.min(results.size(), maxRecords));
-        }
-        logger.debug("TaskScan {} query results: {}", taskScannerContext.getInvokerName(), results.size());
-        // TODO jump out early if it's empty?
+        final int numberOfThreads = taskScannerContext.getNumberOfThreads();
+        final int pageSize = taskScannerContext.getPageSize();
+        // Bound the objects fetched ahead of the workers to about a page
+        final BlockingQueue<QueuedObject> queue =
+                new ArrayBlockingQueue<QueuedObject>(Math.max(pageSize, numberOfThreads));
+        final AtomicBoolean fetching = new AtomicBoolean(true);
+        final TaskScanCheckpoints checkpoints = new TaskScanCheckpoints(connectionFactory,
+                taskScannerContext.getContext(), taskScannerContext.getScriptName(), taskScannerContext.getScanValue());
 
-        // Split and prune the result set according to our max and if we're synchronous or not
-        List<JsonValue> resultSets = splitResultsOverThreads(results, taskScannerContext.getNumberOfThreads(), maxRecords);
-        logger.debug("Split result set into {} units", resultSets.size());
-
-        List<Callable<Object>> todo = new ArrayList<Callable<Object>>();
-        for (final JsonValue result : resultSets) {
-            Runnable command = new Runnable() {
+        List<Future<?>> workers = new ArrayList<Future<?>>();
+        for (int i = 0; i < numberOfThreads; i++) {
+            workers.add(executor.submit(new Runnable() {
                 @Override
                 public void run() {
                     try {
-                        performTaskOverSet(result);
+                        processQueue(queue, fetching, checkpoints);
                     } catch (Exception ex) {
                         logger.warn("Taskscanner failed with unexpected exception", ex);
                     }
                 }
-            };
-            todo.add(Executors.callable(command));
+            }));
+        }
+
+        boolean fetchedAll = false;
+        ResourceException queryFailure = null;
+        taskScannerContext.startQuery();
+        try {
+            fetchedAll = fetchObjects(queue, checkpoints, pageSize);
+        } catch (ResourceException e) {
+            // Let the workers process the objects already queued
+            queryFailure = e;
+        } catch (InterruptedException e) {
+            // Mark it interrupted
+            taskScannerContext.interrupted();
+            logger.warn("Task scan '" + taskScannerContext.getTaskScanID() + "' interrupted");
+        } finally {
+            fetching.set(false);
+            taskScannerContext.endQuery();
         }
+        logger.debug("TaskScan {} queued {} objects", taskScannerContext.getInvokerName(),
+                taskScannerContext.getStatistics().getNumberOfTasksToProcess());
 
         try {
-            executor.invokeAll(todo);
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
         } catch (InterruptedException e) {
             // Mark it interrupted
+            cancelWorkers(workers);
             taskScannerContext.interrupted();
             logger.warn("Task scan '" + taskScannerContext.getTaskScanID() + "' interrupted");
+        } catch (java.util.concurrent.ExecutionException e) {
+            logger.warn("Taskscanner failed with unexpected exception", e.getCause());
+        }
+        if (queryFailure != null) {
+            throw new ExecutionException("Error during query", queryFailure);
         }
         // Don't mark the job as completed if its been deactivated
         if (!taskScannerContext.isInactive()) {
+            if (fetchedAll && !taskScannerContext.isCanceled()) {
+                checkpoints.clear();
+            }
             taskScannerContext.endJob();
         }
 
@@ -172,95 +198,213 @@ public class TaskScannerJob {
         });
     }
 
-    private List<JsonValue> splitResultsOverThreads(JsonValue results, int numberOfThreads, Integer max) {
-        List<List<Object>> resultSets = new ArrayList<List<Object>>();
-        for (int i = 0; i < numberOfThreads; i++) {
-            resultSets.add(new ArrayList<Object>());
-        }
-
-        int i = 0;
-        for (JsonValue obj : results) {
-            if (max != null && i >= max) {
-                break;
+    /**
+     * Queries the objects to process, page by page, and queues them for the workers as the query returns them.
+     * <p>
+     * Query filter scans are paged while the repository returns keyset cookies, which seek to the next page by
+     * key: the objects claimed and completed during the scan may leave the query results without shifting the
+     * pages. If the repository returns an offset cookie instead, the rest of the scan is read, like other scans, from
+     * a single unpaged query, skipping the objects of the first page. As the queue is bounded, a query is held back
+     * by the workers; it keeps one repository connection while the workers use others.
+     *
+     * @param queue the queue of objects to process
+     * @param checkpoints the checkpoints of the scan pages
+     * @param pageSize the number of objects per page, 0 to not page the query
+     * @return true if all objects have been queued, false if the scan was cancelled or reached its maximum
+     * @throws ResourceException if the query failed
+     * @throws InterruptedException if interrupted while waiting for the workers to take the queued objects
+     */
+    private boolean fetchObjects(final BlockingQueue<QueuedObject> queue, final TaskScanCheckpoints checkpoints,
+            int pageSize) throws ResourceException, InterruptedException {
+        JsonValue flatParams = flattenJson(taskScannerContext.getScanValue());
+        ConfigMacroUtil.expand(flatParams);
+        QueryRequest request =
+                RequestUtil.buildQueryRequestFromParameterMap(taskScannerContext.getObjectID(), flatParams.asMap());
+
+        boolean paged = pageSize > 0 && request.getQueryFilter() != null;
+        final Integer maxRecords = taskScannerContext.getMaxRecords();
+        final AtomicInteger queued = new AtomicInteger(0);
+        final AtomicBoolean stopped = new AtomicBoolean(false);
+        final AtomicBoolean interrupted = new AtomicBoolean(false);
+        String pagedResultsCookie = null;
+        if (paged) {
+            pagedResultsCookie = checkpoints.load();
+            if (pagedResultsCookie != null) {
+                logger.info("Task scan {} resuming from its last checkpoint", taskScannerContext.getScriptName());
             }
-            resultSets.get(i % numberOfThreads).add(obj.getObject());
-            i++;
-        }
-
-        List<JsonValue> jsonSets = new ArrayList<JsonValue>();
-        for (List<Object> set : resultSets) {
-            jsonSets.add(new JsonValue(set));
         }
-
-        return jsonSets;
-    }
-
-    private void performTaskOverSet(JsonValue results)
-                    throws ExecutionException {
-        for (JsonValue input : results) {
-            if (taskScannerContext.isCanceled()) {
-                logger.info("Task '" + taskScannerContext.getTaskScanID() + "' cancelled. Terminating execution.");
-                break; // Jump out quick since we've cancelled the job
+        // Ids of the objects queued from the first page, until its cookie is known to seek by key
+        Set<String> firstPageIds = paged && pagedResultsCookie == null ? new HashSet<String>() : null;
+        Set<String> skippedIds = null;
+
+        while (true) {
+            if (paged) {
+                request.setPageSize(pageSize);
+                request.setPagedResultsCookie(pagedResultsCookie);
             }
-            // Check if this object has a STARTED time already
-            JsonValue startTime = input.get(taskScannerContext.getStartField());
-            String startTimeString = null;
-            if (startTime != null && !startTime.isNull()) {
-                startTimeString = startTime.asString();
-                DateTime startedTime = DATE_UTIL.parseTimestamp(startTimeString);
-
-                // Skip if the startTime + interval has not been passed
-                ReadablePeriod period = taskScannerContext.getRecoveryTimeout();
-                DateTime expirationDate = startedTime.plus(period);
-                if (expirationDate.isAfterNow()) {
-                    logger.debug("Object already started and has not expired. Started at: {}. Timeout: {}. Expires at: {}",
-                            new Object[] {
-                            DATE_UTIL.formatDateTime(startedTime),
-                            period,
-                            DATE_UTIL.formatDateTime(expirationDate)});
-                    continue;
+            final TaskScanCheckpoints.Page page = checkpoints.startPage();
+            final Set<String> pageIds = firstPageIds;
+            final Set<String> skipIds = skippedIds;
+            QueryResponse response = connectionFactory.getConnection().query(taskScannerContext.getContext(), request,
+                    new QueryResourceHandler() {
+                        @Override
+                        public boolean handleResource(ResourceResponse resource) {
+                            if (skipIds != null && skipIds.contains(resource.getId())) {
+                                return true;
+                            }
+                            if (taskScannerContext.isCanceled()
+                                    || (maxRecords != null && queued.get() >= maxRecords)) {
+                                stopped.set(true);
+                                return false;
+                            }
+                            try {
+                                if (!enqueue(queue, new QueuedObject(resource.getContent(), page), checkpoints)) {
+                                    stopped.set(true);
+                                    return false;
+                                }
+                            } catch (InterruptedException e) {
+                                interrupted.set(true);
+                                return false;
+                            }
+                            if (pageIds != null) {
+                                pageIds.add(resource.getId());
+                            }
+                            taskScannerContext.setNumberOfTasksToProcess(queued.incrementAndGet());
+                            return true;
+                        }
+                    });
+            if (interrupted.get()) {
+                throw new InterruptedException();
+            }
+            String nextCookie = paged ? response.getPagedResultsCookie() : null;
+            if (nextCookie != null && !isKeysetCookie(nextCookie)) {
+                // Offset pages would shift as objects are completed, skipping objects
+                logger.debug("Task scan {} reads its objects from a single query, the repository does not page by key",
+                        taskScannerContext.getScriptName());
+                checkpoints.endPage(page, null);
+                if (stopped.get()) {
+                    return false;
                 }
+                paged = false;
+                request.setPageSize(0);
+                request.setPagedResultsCookie(null);
+                skippedIds = firstPageIds;
+                firstPageIds = null;
+                continue;
+            }
+            firstPageIds = null;
+            if (stopped.get()) {
+                return false;
+            }
+            checkpoints.endPage(page, nextCookie);
+            if (nextCookie == null) {
+                return true;
             }
+            pagedResultsCookie = nextCookie;
+        }
+    }
 
-            try {
-                claimAndExecScript(input, startTimeString);
-            } catch (ResourceException e) {
-                throw new ExecutionException("Error during claim and execution phase", e);
+    /**
+     * Queues an object for the workers, waiting for them to take queued objects unless the scan is cancelled.
+     *
+     * @param queue the queue of objects to process
+     * @param queuedObject the object and its page
+     * @param checkpoints the checkpoints of the scan pages
+     * @return false if the scan was cancelled
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private boolean enqueue(BlockingQueue<QueuedObject> queue, QueuedObject queuedObject,
+            TaskScanCheckpoints checkpoints) throws InterruptedException {
+        checkpoints.objectQueued(queuedObject.page);
+        while (!queue.offer(queuedObject, QUEUE_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (taskScannerContext.isCanceled()) {
+                return false;
             }
         }
+        return true;
     }
 
     /**
-     * Flatten a list of parameters and perform a query to fetch all objects from storage.
+     * Returns whether a paged results cookie seeks to the next page by key, rather than skipping to an offset.
+     * Offset cookies are plain integers, as returned by the OrientDB repository and by the JDBC repository for
+     * queries it can not page by key.
      *
-     * @return JsonValue containing a list of all the retrieved objects
-     * @throws ResourceException
+     * @param pagedResultsCookie the cookie
+     * @return true if the cookie is not an offset
      */
-    private JsonValue fetchAllObjects() throws ResourceException {
-        JsonValue flatParams = flattenJson(taskScannerContext.getScanValue());
-        ConfigMacroUtil.expand(flatParams);
-        return performQuery(taskScannerContext.getObjectID(), flatParams);
+    private static boolean isKeysetCookie(String pagedResultsCookie) {
+        try {
+            Integer.parseInt(pagedResultsCookie);
+            return false;
+        } catch (NumberFormatException e) {
+            return true;
+        }
     }
 
     /**
-     * Performs a query on a resource and returns the result set
-     * @param resourceID the identifier of the resource to query
-     * @param params parameters to supply to the query
-     * @return the set of results from the performed query
-     * @throws ResourceException
+     * Processes the queued objects until all have been queued and processed, or the scan is cancelled.
+     *
+     * @param queue the queue of objects to process
+     * @param fetching true while objects are being queued
+     * @param checkpoints the checkpoints of the scan pages
+     * @throws InterruptedException if interrupted while waiting for objects
      */
-    private JsonValue performQuery(String resourceID, JsonValue params) throws ResourceException {
-        final JsonValue queryResults = new JsonValue(new ArrayList<Map<String, Object>>());;
-
-        QueryRequest request = RequestUtil.buildQueryRequestFromParameterMap(resourceID, params.asMap());
-        connectionFactory.getConnection().query(taskScannerContext.getContext(), request, new QueryResourceHandler() {
-            @Override
-            public boolean handleResource(ResourceResponse resource) {
-                queryResults.add(resource.getContent().getObject());
-                return true;
+    private void processQueue(BlockingQueue<QueuedObject> queue, AtomicBoolean fetching,
+            TaskScanCheckpoints checkpoints) throws InterruptedException {
+        while (!taskScannerContext.isCanceled()) {
+            final QueuedObject queuedObject = queue.poll(QUEUE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+            if (queuedObject == null) {
+                if (!fetching.get() && queue.isEmpty()) {
+                    break;
+                }
+                continue;
             }
-        });
-        return queryResults;
+            try {
+                performTaskOverObject(queuedObject.object);
+                checkpoints.objectDone(queuedObject.page);
+            } catch (ExecutionException | RuntimeException ex) {
+                // The checkpoint stays before this page, the object is scanned again if the scan resumes
+                logger.warn("Taskscanner failed to process object " + queuedObject.object.get("_id").asString(), ex);
+            }
+        }
+        if (taskScannerContext.isCanceled()) {
+            logger.info("Task '" + taskScannerContext.getTaskScanID() + "' cancelled. Terminating execution.");
+        }
+    }
+
+    private void cancelWorkers(List<Future<?>> workers) {
+        for (Future<?> worker : workers) {
+            worker.cancel(true);
+        }
+    }
+
+    private void performTaskOverObject(JsonValue input)
+                    throws ExecutionException {
+        // Check if this object has a STARTED time already
+        JsonValue startTime = input.get(taskScannerContext.getStartField());
+        String startTimeString = null;
+        if (startTime != null && !startTime.isNull()) {
+            startTimeString = startTime.asString();
+            DateTime startedTime = DATE_UTIL.parseTimestamp(startTimeString);
+
+            // Skip if the startTime + interval has not been passed
+            ReadablePeriod period = taskScannerContext.getRecoveryTimeout();
+            DateTime expirationDate = startedTime.plus(period);
+            if (expirationDate.isAfterNow()) {
+                logger.debug("Object already started and has not expired. Started at: {}. Timeout: {}. Expires at: {}",
+                        new Object[] {
+                        DATE_UTIL.formatDateTime(startedTime),
+                        period,
+                        DATE_UTIL.formatDateTime(expirationDate)});
+                return;
+            }
+        }
+
+        try {
+            claimAndExecScript(input, startTimeString);
+        } catch (ResourceException e) {
+            throw new ExecutionException("Error during claim and execution phase", e);
+        }
     }
 
     /**
@@ -501,4 +645,17 @@ public class TaskScannerJob {
             refObj = refObj.get(p);
         }
     }
+
+    /**
+     * An object queued for the workers, with the page it was fetched in.
+     */
+    private static final class QueuedObject {
+        private final JsonValue object;
+        private final TaskScanCheckpoints.Page page;
+
+        private QueuedObject(JsonValue object, TaskScanCheckpoints.Page page) {
+            this.object = object;
+            this.page = page;
+        }
+    }
 }
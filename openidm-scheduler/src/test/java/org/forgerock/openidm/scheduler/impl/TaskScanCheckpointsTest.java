@@ -0,0 +1,140 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.scheduler.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+import static org.forgerock.json.resource.Responses.newResourceResponse;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.forgerock.json.JsonValue;
+import org.forgerock.json.resource.Connection;
+import org.forgerock.json.resource.ConnectionFactory;
+import org.forgerock.json.resource.CreateRequest;
+import org.forgerock.json.resource.DeleteRequest;
+import org.forgerock.json.resource.NotFoundException;
+import org.forgerock.json.resource.ReadRequest;
+import org.forgerock.json.resource.UpdateRequest;
+import org.forgerock.services.context.Context;
+import org.mockito.ArgumentCaptor;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TaskScanCheckpointsTest {
+
+    private static final JsonValue SCAN = json(object(
+            field("object", "managed/user"),
+            field("_queryFilter", "sunset/date lt \"${Time.now}\"")));
+
+    private Connection connection;
+    private Context context;
+    private TaskScanCheckpoints checkpoints;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+        connection = mock(Connection.class);
+        context = mock(Context.class);
+        when(connectionFactory.getConnection()).thenReturn(connection);
+        when(connection.create(any(Context.class), any(CreateRequest.class)))
+                .thenReturn(newResourceResponse("taskscan_sunset", "1", null));
+        when(connection.update(any(Context.class), any(UpdateRequest.class)))
+                .thenReturn(newResourceResponse("taskscan_sunset", "2", null));
+        checkpoints = new TaskScanCheckpoints(connectionFactory, context, "taskscan/sunset", SCAN);
+    }
+
+    @Test
+    public void testCheckpointWaitsForEarlierPages() throws Exception {
+        TaskScanCheckpoints.Page first = checkpoints.startPage();
+        checkpoints.objectQueued(first);
+        checkpoints.endPage(first, "cookie1");
+        TaskScanCheckpoints.Page second = checkpoints.startPage();
+        checkpoints.objectQueued(second);
+        checkpoints.endPage(second, "cookie2");
+
+        checkpoints.objectDone(second);
+        verify(connection, never()).create(any(Context.class), any(CreateRequest.class));
+
+        checkpoints.objectDone(first);
+        ArgumentCaptor<CreateRequest> created = ArgumentCaptor.forClass(CreateRequest.class);
+        verify(connection, times(1)).create(any(Context.class), created.capture());
+        assertThat(created.getValue().getNewResourceId()).isEqualTo("taskscan_sunset");
+        assertThat(created.getValue().getContent().get("pagedResultsCookie").asString()).isEqualTo("cookie2");
+    }
+
+    @Test
+    public void testCheckpointIsRemovedOnCompletion() throws Exception {
+        TaskScanCheckpoints.Page first = checkpoints.startPage();
+        checkpoints.objectQueued(first);
+        checkpoints.endPage(first, "cookie1");
+        checkpoints.objectDone(first);
+        TaskScanCheckpoints.Page last = checkpoints.startPage();
+        checkpoints.objectQueued(last);
+        checkpoints.endPage(last, null);
+        checkpoints.objectDone(last);
+
+        verify(connection, times(1)).create(any(Context.class), any(CreateRequest.class));
+        verify(connection, never()).update(any(Context.class), any(UpdateRequest.class));
+
+        checkpoints.clear();
+        ArgumentCaptor<DeleteRequest> deleted = ArgumentCaptor.forClass(DeleteRequest.class);
+        verify(connection).delete(any(Context.class), deleted.capture());
+        assertThat(deleted.getValue().getRevision()).isEqualTo("1");
+    }
+
+    @Test
+    public void testResumeFromCheckpointOfSameScan() throws Exception {
+        when(connection.read(any(Context.class), any(ReadRequest.class))).thenReturn(newResourceResponse(
+                "taskscan_sunset", "3", json(object(
+                        field("scan", SCAN.getObject()),
+                        field("pagedResultsCookie", "cookie3")))));
+
+        assertThat(checkpoints.load()).isEqualTo("cookie3");
+
+        TaskScanCheckpoints.Page page = checkpoints.startPage();
+        checkpoints.endPage(page, "cookie4");
+        ArgumentCaptor<UpdateRequest> updated = ArgumentCaptor.forClass(UpdateRequest.class);
+        verify(connection).update(any(Context.class), updated.capture());
+        assertThat(updated.getValue().getRevision()).isEqualTo("3");
+    }
+
+    @Test
+    public void testCheckpointOfOtherScanIsIgnored() throws Exception {
+        when(connection.read(any(Context.class), any(ReadRequest.class))).thenReturn(newResourceResponse(
+                "taskscan_sunset", "3", json(object(
+                        field("scan", object(field("object", "managed/role"))),
+                        field("pagedResultsCookie", "cookie3")))));
+
+        assertThat(checkpoints.load()).isNull();
+    }
+
+    @Test
+    public void testNoCheckpoint() throws Exception {
+        when(connection.read(any(Context.class), any(ReadRequest.class))).thenThrow(new NotFoundException());
+
+        assertThat(checkpoints.load()).isNull();
+        checkpoints.clear();
+
+        verify(connection, never()).delete(any(Context.class), any(DeleteRequest.class));
+    }
+}
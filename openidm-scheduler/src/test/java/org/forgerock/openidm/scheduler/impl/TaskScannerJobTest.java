@@ -0,0 +1,95 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.scheduler.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+import static org.forgerock.json.resource.Responses.newQueryResponse;
+import static org.forgerock.json.resource.Responses.newResourceResponse;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.forgerock.json.JsonValue;
+import org.forgerock.json.resource.Connection;
+import org.forgerock.json.resource.ConnectionFactory;
+import org.forgerock.json.resource.QueryRequest;
+import org.forgerock.json.resource.QueryResourceHandler;
+import org.forgerock.json.resource.QueryResponse;
+import org.forgerock.json.resource.ReadRequest;
+import org.forgerock.json.resource.ResourceResponse;
+import org.forgerock.json.resource.UpdateRequest;
+import org.forgerock.services.context.Context;
+import org.forgerock.services.context.RootContext;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.Test;
+
+public class TaskScannerJobTest {
+
+    @Test
+    public void testObjectsAreProcessedWhileTheQueryRuns() throws Exception {
+        final JsonValue user = json(object(field("_id", "bjensen"), field("_rev", "1")));
+        final CountDownLatch claimed = new CountDownLatch(1);
+        final AtomicBoolean claimedDuringQuery = new AtomicBoolean(false);
+        final ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+        final Connection connection = mock(Connection.class);
+        when(connectionFactory.getConnection()).thenReturn(connection);
+        when(connection.query(any(Context.class), any(QueryRequest.class), any(QueryResourceHandler.class)))
+                .thenAnswer(new Answer<QueryResponse>() {
+                    @Override
+                    public QueryResponse answer(InvocationOnMock invocation) throws InterruptedException {
+                        final QueryResourceHandler handler = (QueryResourceHandler) invocation.getArguments()[2];
+                        handler.handleResource(newResourceResponse("bjensen", "1", user.copy()));
+                        // the query goes on until a worker claimed the object it returned
+                        claimedDuringQuery.set(claimed.await(10, TimeUnit.SECONDS));
+                        return newQueryResponse();
+                    }
+                });
+        when(connection.update(any(Context.class), any(UpdateRequest.class))).thenAnswer(
+                new Answer<ResourceResponse>() {
+                    @Override
+                    public ResourceResponse answer(InvocationOnMock invocation) {
+                        claimed.countDown();
+                        return newResourceResponse("bjensen", "2", user.copy());
+                    }
+                });
+        when(connection.read(any(Context.class), any(ReadRequest.class)))
+                .thenReturn(newResourceResponse("bjensen", "1", user.copy()));
+
+        final TaskScannerContext context = new TaskScannerContext("test", null, json(object(
+                field("waitForCompletion", true),
+                field("numberOfThreads", 1),
+                field("scan", object(
+                        field("object", "managed/user"),
+                        field("_queryId", "scan-tasks"),
+                        field("taskState", object(
+                                field("started", "/started"),
+                                field("completed", "/completed"))))))),
+                new RootContext(), null);
+
+        new TaskScannerJob(connectionFactory, context).startTask();
+
+        assertThat(claimedDuringQuery.get()).isTrue();
+        assertThat(context.getStatistics().getNumberOfTasksToProcess()).isEqualTo(1);
+    }
+}
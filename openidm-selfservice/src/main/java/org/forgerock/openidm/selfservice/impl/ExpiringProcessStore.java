@@ -0,0 +1,446 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.selfservice.impl;
+
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+import static org.forgerock.json.resource.Requests.newCreateRequest;
+import static org.forgerock.json.resource.Requests.newDeleteRequest;
+import static org.forgerock.json.resource.Requests.newQueryRequest;
+import static org.forgerock.json.resource.Requests.newReadRequest;
+import static org.forgerock.json.resource.ResourcePath.resourcePath;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.forgerock.json.JsonException;
+import org.forgerock.json.JsonPointer;
+import org.forgerock.json.JsonValue;
+import org.forgerock.json.crypto.JsonCryptoException;
+import org.forgerock.json.resource.NotFoundException;
+import org.forgerock.json.resource.PreconditionFailedException;
+import org.forgerock.json.resource.ResourceException;
+import org.forgerock.json.resource.ResourcePath;
+import org.forgerock.json.resource.ResourceResponse;
+import org.forgerock.openidm.core.ServerConstants;
+import org.forgerock.openidm.crypto.CryptoService;
+import org.forgerock.openidm.repo.RepositoryService;
+import org.forgerock.selfservice.core.ProcessStore;
+import org.forgerock.util.query.QueryFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link ProcessStore} of the self-service processes using the {@code local} storage, in which the state of a flow
+ * is kept on the server between two requests.
+ * <p>
+ * The states are held in a concurrent map, bounded to {@code maxEntries} by evicting the oldest states, and are
+ * discarded once abandoned for longer than {@code ttlSeconds}. With the {@code repo} type, the states are also
+ * stored, encrypted, in the repository so that a flow can continue on another node of the cluster; the map then
+ * serves as a near cache sparing the repository read when the flow stays on the same node. A state is removed from
+ * the repository when it is taken, so it is taken at most once across the cluster, and the abandoned states are
+ * purged every {@code purgeIntervalSeconds}. The purge queries the states by {@code expireTime}, which must be
+ * searchable when {@code selfservice/process} is mapped to an explicit table or to a generic table that is not
+ * searchable by default.
+ * <pre>
+ * "processStore" : {
+ *     "type" : "repo",
+ *     "maxEntries" : 10000,
+ *     "ttlSeconds" : 900,
+ *     "purgeIntervalSeconds" : 60
+ * }
+ * </pre>
+ * The store statistics are registered as an MBean and reported by the health service.
+ */
+public class ExpiringProcessStore implements ProcessStore, ProcessStoreMBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExpiringProcessStore.class);
+
+    /** The configuration key of the store within the self-service configuration */
+    static final String CONFIG_KEY = "processStore";
+
+    /** Store type holding the states in memory only */
+    static final String TYPE_LOCAL = "local";
+
+    /** Store type holding the states in the repository */
+    static final String TYPE_REPO = "repo";
+
+    /** The repository container of the process states */
+    static final ResourcePath PROCESS_CONTAINER = resourcePath("selfservice/process");
+
+    private static final String MBEAN_NAME_PREFIX = "org.forgerock.openidm.selfservice:type=ProcessStore";
+
+    private static final String TYPE = "type";
+    private static final String MAX_ENTRIES = "maxEntries";
+    private static final String TTL_SECONDS = "ttlSeconds";
+    private static final String PURGE_INTERVAL_SECONDS = "purgeIntervalSeconds";
+
+    private static final int DEFAULT_MAX_ENTRIES = 10000;
+    private static final long DEFAULT_TTL_SECONDS = 900;
+    private static final long DEFAULT_PURGE_INTERVAL_SECONDS = 60;
+
+    /** Expiry time of a stored state, in milliseconds since the epoch */
+    private static final String FIELD_EXPIRE_TIME = "expireTime";
+
+    /** The encrypted state */
+    private static final String FIELD_STATE = "state";
+
+    private final String name;
+    private final String type;
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final long purgeIntervalMillis;
+    private final RepositoryService repoService;
+    private final CryptoService cryptoService;
+    private final String cryptoAlias;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /** The entries in the order they were added, which is their expiry order; may hold removed entries */
+    private final ConcurrentLinkedQueue<Entry> expiryQueue = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder repositoryReads = new LongAdder();
+
+    private ScheduledExecutorService purgeExecutor;
+
+    /**
+     * Creates the process store of a self-service process.
+     *
+     * @param name the name of the self-service process
+     * @param config the {@code processStore} configuration, null if not configured
+     * @param repoService the repository service
+     * @param cryptoService the crypto service encrypting the states stored in the repository
+     * @param cryptoAlias the alias of the key encrypting the states stored in the repository
+     */
+    public ExpiringProcessStore(String name, JsonValue config, RepositoryService repoService,
+            CryptoService cryptoService, String cryptoAlias) {
+        final JsonValue storeConfig = config != null ? config : new JsonValue(null);
+        this.name = name;
+        this.type = storeConfig.get(TYPE).defaultTo(TYPE_LOCAL).asString();
+        if (!TYPE_LOCAL.equals(type) && !TYPE_REPO.equals(type)) {
+            throw new IllegalArgumentException("Unknown process store type " + type);
+        }
+        this.maxEntries = storeConfig.get(MAX_ENTRIES).defaultTo(DEFAULT_MAX_ENTRIES).asInteger();
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(
+                storeConfig.get(TTL_SECONDS).defaultTo(DEFAULT_TTL_SECONDS).asLong());
+        this.purgeIntervalMillis = TimeUnit.SECONDS.toMillis(
+                storeConfig.get(PURGE_INTERVAL_SECONDS).defaultTo(DEFAULT_PURGE_INTERVAL_SECONDS).asLong());
+        this.repoService = TYPE_REPO.equals(type) ? repoService : null;
+        this.cryptoService = cryptoService;
+        this.cryptoAlias = cryptoAlias;
+    }
+
+    /**
+     * Registers the store MBean and schedules the purge of the abandoned states.
+     */
+    public synchronized void start() {
+        registerMBean();
+        purgeExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, "selfservice-process-purge-" + name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        purgeExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                purge();
+            }
+        }, purgeIntervalMillis, purgeIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Cancels the purge and unregisters the store MBean. The states stored in the repository are kept for the
+     * other nodes.
+     */
+    public synchronized void stop() {
+        if (purgeExecutor != null) {
+            purgeExecutor.shutdownNow();
+            purgeExecutor = null;
+        }
+        unregisterMBean();
+        entries.clear();
+        expiryQueue.clear();
+    }
+
+    @Override
+    public void add(String key, JsonValue state) {
+        final long expireTime = System.currentTimeMillis() + ttlMillis;
+        final String revision = repoService != null ? store(key, state, expireTime) : null;
+        final Entry entry = new Entry(key, state.copy(), revision, expireTime);
+        entries.put(key, entry);
+        expiryQueue.offer(entry);
+
+        expire(System.currentTimeMillis());
+        while (entries.size() > maxEntries) {
+            final Entry eldest = expiryQueue.poll();
+            if (eldest == null) {
+                break;
+            }
+            if (entries.remove(eldest.key, eldest)) {
+                // still available from the repository, if stored
+                evictions.increment();
+            }
+        }
+    }
+
+    @Override
+    public JsonValue remove(String key) {
+        final Entry entry = entries.remove(key);
+        if (entry != null && entry.isExpired(System.currentTimeMillis())) {
+            expirations.increment();
+            if (entry.revision != null) {
+                delete(key, entry.revision);
+            }
+            return null;
+        }
+        if (entry != null) {
+            hits.increment();
+            // the state is only valid if this request is the one taking it from the repository
+            return entry.revision == null || delete(key, entry.revision) != Deletion.TAKEN ? entry.state : null;
+        }
+        return repoService != null ? take(key) : null;
+    }
+
+    /**
+     * Stores a state in the repository.
+     *
+     * @return the revision of the stored state, null if it could not be stored
+     */
+    private String store(String key, JsonValue state, long expireTime) {
+        try {
+            final JsonValue content = json(object(
+                    field(FIELD_EXPIRE_TIME, expireTime),
+                    field(FIELD_STATE, cryptoService.encrypt(state,
+                            ServerConstants.SECURITY_CRYPTOGRAPHY_DEFAULT_CIPHER, cryptoAlias).getObject())));
+            return repoService.create(newCreateRequest(PROCESS_CONTAINER.toString(), key, content)).getRevision();
+        } catch (ResourceException | JsonCryptoException | JsonException e) {
+            logger.warn("Unable to store the state of self-service process {}, the flow can only continue on "
+                    + "this node", name, e);
+            return null;
+        }
+    }
+
+    /**
+     * Reads and deletes a state from the repository.
+     *
+     * @return the state, null if not found, expired or taken by a concurrent request
+     */
+    private JsonValue take(String key) {
+        repositoryReads.increment();
+        final ResourceResponse stored;
+        try {
+            stored = repoService.read(newReadRequest(PROCESS_CONTAINER.child(key).toString()));
+        } catch (NotFoundException e) {
+            return null;
+        } catch (ResourceException e) {
+            logger.warn("Unable to read the state of self-service process {}", name, e);
+            return null;
+        }
+        if (delete(key, stored.getRevision()) == Deletion.TAKEN) {
+            return null;
+        }
+        if (stored.getContent().get(FIELD_EXPIRE_TIME).asLong() <= System.currentTimeMillis()) {
+            expirations.increment();
+            return null;
+        }
+        try {
+            return cryptoService.decrypt(stored.getContent().get(FIELD_STATE));
+        } catch (JsonException e) {
+            logger.warn("Unable to decrypt the state of self-service process {}", name, e);
+            return null;
+        }
+    }
+
+    /**
+     * Deletes a state from the repository.
+     *
+     * @return whether the state was deleted, already taken by another request, or left to the purge
+     */
+    private Deletion delete(String key, String revision) {
+        try {
+            repoService.delete(newDeleteRequest(PROCESS_CONTAINER.child(key).toString()).setRevision(revision));
+            return Deletion.DELETED;
+        } catch (NotFoundException | PreconditionFailedException e) {
+            logger.debug("State of self-service process {} already taken", name);
+            return Deletion.TAKEN;
+        } catch (ResourceException e) {
+            // the flow continues; until purged, the state could also be taken on another node
+            logger.warn("Unable to delete the state of self-service process {}", name, e);
+            return Deletion.FAILED;
+        }
+    }
+
+    /**
+     * Discards the expired states held in memory.
+     */
+    private void expire(long now) {
+        Entry head;
+        while ((head = expiryQueue.peek()) != null) {
+            if (entries.get(head.key) != head) {
+                // already removed
+                expiryQueue.remove(head);
+            } else if (head.isExpired(now)) {
+                if (entries.remove(head.key, head)) {
+                    expirations.increment();
+                }
+                expiryQueue.remove(head);
+            } else {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Discards the expired states held in memory and deletes the expired states from the repository.
+     */
+    void purge() {
+        final long now = System.currentTimeMillis();
+        expire(now);
+        if (repoService == null) {
+            return;
+        }
+        try {
+            // the nodes of a cluster purge concurrently, a state deleted by another node is skipped
+            for (ResourceResponse stored : repoService.query(newQueryRequest(PROCESS_CONTAINER.toString())
+                    .setQueryFilter(QueryFilter.lessThan(new JsonPointer(FIELD_EXPIRE_TIME), now)))) {
+                try {
+                    repoService.delete(newDeleteRequest(PROCESS_CONTAINER.child(stored.getId()).toString())
+                            .setRevision(stored.getRevision()));
+                } catch (NotFoundException | PreconditionFailedException e) {
+                    logger.debug("Expired state {} already deleted", stored.getId());
+                }
+            }
+        } catch (ResourceException e) {
+            logger.warn("Unable to purge the expired states of self-service process {}", name, e);
+        }
+    }
+
+    private ObjectName getObjectName() throws Exception {
+        return new ObjectName(MBEAN_NAME_PREFIX + ",name=" + ObjectName.quote(name));
+    }
+
+    private void registerMBean() {
+        try {
+            final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName objectName = getObjectName();
+            if (mBeanServer.isRegistered(objectName)) {
+                // left over by the process being replaced
+                mBeanServer.unregisterMBean(objectName);
+            }
+            mBeanServer.registerMBean(this, objectName);
+        } catch (Exception e) {
+            logger.warn("Failed to register process store MBean of {}", name, e);
+        }
+    }
+
+    private void unregisterMBean() {
+        try {
+            final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName objectName = getObjectName();
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to unregister process store MBean of {}", name, e);
+        }
+    }
+
+    @Override
+    public String getType() {
+        return type;
+    }
+
+    @Override
+    public int getSize() {
+        expire(System.currentTimeMillis());
+        return entries.size();
+    }
+
+    @Override
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    @Override
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public long getExpirations() {
+        return expirations.sum();
+    }
+
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getRepositoryReads() {
+        return repositoryReads.sum();
+    }
+
+    /**
+     * The outcome of the deletion of a state from the repository.
+     */
+    private enum Deletion {
+        /** deleted by this request */
+        DELETED,
+        /** already deleted or replaced, the state was taken by another request */
+        TAKEN,
+        /** not deleted because the repository failed */
+        FAILED
+    }
+
+    /**
+     * A process state held in memory.
+     */
+    private static final class Entry {
+        private final String key;
+        private final JsonValue state;
+        /** the revision of the state stored in the repository, null if not stored */
+        private final String revision;
+        private final long expireTime;
+
+        private Entry(String key, JsonValue state, String revision, long expireTime) {
+            this.key = key;
+            this.state = state;
+            this.revision = revision;
+            this.expireTime = expireTime;
+        }
+
+        private boolean isExpired(long now) {
+            return expireTime <= now;
+        }
+    }
+}
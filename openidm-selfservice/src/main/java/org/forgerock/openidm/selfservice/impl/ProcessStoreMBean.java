@@ -0,0 +1,64 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.selfservice.impl;
+
+/**
+ * Provide JMX / MBean access for monitoring of the process store of a self-service process.
+ */
+public interface ProcessStoreMBean {
+
+    /**
+     * Gets the type of the process store.
+     * @return "local" if the process states are only held in memory, "repo" if they are stored in the repository.
+     */
+    String getType();
+
+    /**
+     * Gets the number of process states held in memory.
+     * @return the number of entries.
+     */
+    int getSize();
+
+    /**
+     * Gets the maximum number of process states held in memory.
+     * @return the store capacity.
+     */
+    int getMaxEntries();
+
+    /**
+     * Gets the number of process states removed from memory because the store was full.
+     * @return the number of evictions.
+     */
+    long getEvictions();
+
+    /**
+     * Gets the number of process states discarded because the flow was abandoned for longer than the time to live.
+     * @return the number of expirations.
+     */
+    long getExpirations();
+
+    /**
+     * Gets the number of process states taken from memory.
+     * @return the number of hits.
+     */
+    long getHits();
+
+    /**
+     * Gets the number of process states read from the repository, having been stored by another node or evicted.
+     * @return the number of repository reads.
+     */
+    long getRepositoryReads();
+}
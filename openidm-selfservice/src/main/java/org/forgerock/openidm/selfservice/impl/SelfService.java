@@ -12,7 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2015-2016 ForgeRock AS.
- * Portions Copyright 2018-2020 Wren Security.
+ * Portions Copyright 2018-2026 Wren Security.
  */
 
 package org.forgerock.openidm.selfservice.impl;
@@ -27,8 +27,6 @@ import java.lang.reflect.InvocationTargetException;
 import java.security.Key;
 import java.util.Collections;
 import java.util.Dictionary;
-import java.util.HashMap;
-import java.util.Map;
 
 import org.apache.commons.lang3.StringUtils;
 import org.forgerock.guava.common.base.Optional;
@@ -48,14 +46,15 @@ import org.forgerock.json.resource.ResourceException;
 import org.forgerock.openidm.config.enhanced.EnhancedConfig;
 import org.forgerock.openidm.core.IdentityServer;
 import org.forgerock.openidm.core.ServerConstants;
+import org.forgerock.openidm.crypto.CryptoService;
 import org.forgerock.openidm.idp.impl.IdentityProviderListener;
 import org.forgerock.openidm.idp.impl.IdentityProviderService;
 import org.forgerock.openidm.idp.impl.IdentityProviderServiceException;
 import org.forgerock.openidm.idp.impl.ProviderConfigMapper;
 import org.forgerock.openidm.keystore.SharedKeyService;
 import org.forgerock.openidm.osgi.ComponentContextUtil;
+import org.forgerock.openidm.repo.RepositoryService;
 import org.forgerock.openidm.selfservice.stage.SocialUserDetailsConfig;
-import org.forgerock.selfservice.core.ProcessStore;
 import org.forgerock.selfservice.core.ProgressStage;
 import org.forgerock.selfservice.core.ProgressStageProvider;
 import org.forgerock.selfservice.core.config.StageConfig;
@@ -115,6 +114,12 @@ public class SelfService implements IdentityProviderListener {
     /** config key present if config requires KBA questions */
     private static final String KBA_CONFIG = "kbaConfig";
 
+    /** config key of the storage type of the process states */
+    private static final String STORAGE = "storage";
+
+    /** storage type keeping the process states in the process store */
+    private static final String STORAGE_LOCAL = "local";
+
     // ----- Declarative Service Implementation
 
     /**
@@ -142,12 +147,21 @@ public class SelfService implements IdentityProviderListener {
     @Reference(policy = ReferencePolicy.STATIC)
     private PropertyMappingService mappingService;
 
+    /** The repository service. Used to share the process states of the "local" storage across the cluster. */
+    @Reference(policy = ReferencePolicy.STATIC)
+    private RepositoryService repositoryService;
+
+    /** The crypto service. Used to encrypt the process states stored in the repository. */
+    @Reference(policy = ReferencePolicy.STATIC)
+    private CryptoService cryptoService;
+
     private Dictionary<String, Object> properties = null;
     private JsonValue config;
     private RequestHandler processService;
     private ServiceRegistration<RequestHandler> serviceRegistration = null;
     private ComponentContext context;
     private ProgressStageProvider progressStageProvider;
+    private ExpiringProcessStore processStore;
 
     void bindIdentityProviderService(IdentityProviderService identityProviderService) {
         this.identityProviderService = identityProviderService;
@@ -197,10 +211,14 @@ public class SelfService implements IdentityProviderListener {
             properties.put(ServerConstants.ROUTER_PREFIX,
                     resourcePath(ROUTER_PREFIX).concat(resourcePath(factoryPid)).toString());
             progressStageProvider = newProgressStageProvider(newHttpClient());
+            processStore = new ExpiringProcessStore(factoryPid, config.get(ExpiringProcessStore.CONFIG_KEY),
+                    repositoryService, cryptoService, getSharedKeyAlias());
+            processStore.start();
             identityProviderConfigChanged();
 
         } catch (Exception ex) {
             LOGGER.warn("Configuration invalid, can not start self-service.", ex);
+            stopProcessStore();
             throw ex;
         }
         LOGGER.info("Self-service started.");
@@ -224,8 +242,13 @@ public class SelfService implements IdentityProviderListener {
             }
         }
 
-        // force storage type to stateless
-        config.put("storage", "stateless");
+        // the process store configuration is not part of the process configuration
+        config.remove(ExpiringProcessStore.CONFIG_KEY);
+
+        // force storage type to stateless, unless the process states are to be kept in the process store
+        if (!STORAGE_LOCAL.equals(config.get(STORAGE).asString())) {
+            config.put(STORAGE, "stateless");
+        }
     }
 
     private Client newHttpClient() throws HttpApplicationException {
@@ -320,21 +343,6 @@ public class SelfService implements IdentityProviderListener {
         }
     }
 
-    private ProcessStore newProcessStore() {
-        return new ProcessStore() {
-            final Map<String, JsonValue> store = new HashMap<>();
-            @Override
-            public void add(String s, JsonValue jsonValue) {
-                store.put(s, jsonValue);
-            }
-
-            @Override
-            public JsonValue remove(String s) {
-                return store.remove(s);
-            }
-        };
-    }
-
     @Deactivate
     void deactivate(ComponentContext compContext) {
         LOGGER.debug("Deactivating Service {}", compContext.getProperties());
@@ -347,12 +355,20 @@ public class SelfService implements IdentityProviderListener {
             /* Catch if the service was already removed */
             serviceRegistration = null;
         } finally {
+            stopProcessStore();
             processService = null;
             config = null;
             LOGGER.info("Self-service stopped.");
         }
     }
 
+    private void stopProcessStore() {
+        if (processStore != null) {
+            processStore.stop();
+            processStore = null;
+        }
+    }
+
     private void unregisterServiceRegistration() {
         if (null != serviceRegistration) {
             serviceRegistration.unregister();
@@ -388,7 +404,7 @@ public class SelfService implements IdentityProviderListener {
                 .withStageConfigMapping(SocialUserDetailsConfig.NAME, SocialUserDetailsConfig.class)
                 .withProgressStageProvider(progressStageProvider)
                 .withTokenHandlerFactory(newTokenHandlerFactory())
-                .withProcessStore(newProcessStore())
+                .withProcessStore(processStore)
                 .build();
 
         // service registration - register the AnonymousProcessService directly as a RequestHandler
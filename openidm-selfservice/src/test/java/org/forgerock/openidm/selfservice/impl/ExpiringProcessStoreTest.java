@@ -0,0 +1,220 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.selfservice.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
+import static org.forgerock.json.resource.Responses.newResourceResponse;
+import static org.mockito.AdditionalAnswers.returnsFirstArg;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.forgerock.json.JsonValue;
+import org.forgerock.json.resource.CreateRequest;
+import org.forgerock.json.resource.DeleteRequest;
+import org.forgerock.json.resource.NotFoundException;
+import org.forgerock.json.resource.ReadRequest;
+import org.forgerock.json.resource.ResourceException;
+import org.forgerock.json.resource.ResourceResponse;
+import org.forgerock.openidm.crypto.CryptoService;
+import org.forgerock.openidm.repo.RepositoryService;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests {@link ExpiringProcessStore}
+ */
+public class ExpiringProcessStoreTest {
+
+    private RepositoryService repoService;
+    private CryptoService cryptoService;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        repoService = mock(RepositoryService.class);
+        cryptoService = mock(CryptoService.class);
+        when(cryptoService.encrypt(any(JsonValue.class), anyString(), anyString())).then(returnsFirstArg());
+        when(cryptoService.decrypt(any(JsonValue.class))).then(returnsFirstArg());
+        when(repoService.create(any(CreateRequest.class))).thenAnswer(new Answer<ResourceResponse>() {
+            @Override
+            public ResourceResponse answer(InvocationOnMock invocation) {
+                final CreateRequest request = invocation.getArgument(0);
+                return newResourceResponse(request.getNewResourceId(), "0", request.getContent());
+            }
+        });
+    }
+
+    @Test
+    public void testStateIsTakenOnce() {
+        final ExpiringProcessStore store = newStore("local", 10, 60);
+
+        store.add("key", state(1));
+
+        assertThat(store.remove("key").get("stage").asInteger()).isEqualTo(1);
+        assertThat(store.remove("key")).isNull();
+        assertThat(store.getHits()).isEqualTo(1);
+        assertThat(store.getSize()).isEqualTo(0);
+    }
+
+    @Test
+    public void testOldestStateIsEvicted() {
+        final ExpiringProcessStore store = newStore("local", 2, 60);
+
+        store.add("key1", state(1));
+        store.add("key2", state(2));
+        store.add("key3", state(3));
+
+        assertThat(store.getSize()).isEqualTo(2);
+        assertThat(store.getEvictions()).isEqualTo(1);
+        assertThat(store.remove("key1")).isNull();
+        assertThat(store.remove("key3")).isNotNull();
+    }
+
+    @Test
+    public void testExpiredStateIsDiscarded() {
+        final ExpiringProcessStore store = newStore("local", 10, 0);
+
+        store.add("key", state(1));
+
+        assertThat(store.remove("key")).isNull();
+        assertThat(store.getExpirations()).isEqualTo(1);
+    }
+
+    @Test
+    public void testConcurrentFlows() throws Exception {
+        final ExpiringProcessStore store = newStore("local", 100000, 60);
+        final AtomicInteger taken = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                final int offset = thread * 1000;
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        for (int i = offset; i < offset + 1000; i++) {
+                            store.add("key" + i, state(i));
+                            if (store.remove("key" + i) != null) {
+                                taken.incrementAndGet();
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(taken.get()).isEqualTo(8000);
+        assertThat(store.getSize()).isEqualTo(0);
+    }
+
+    @Test
+    public void testRepoStateIsTakenFromNearCache() throws Exception {
+        final ExpiringProcessStore store = newStore("repo", 10, 60);
+
+        store.add("key", state(1));
+
+        assertThat(store.remove("key").get("stage").asInteger()).isEqualTo(1);
+        verify(repoService).delete(any(DeleteRequest.class));
+        verify(repoService, never()).read(any(ReadRequest.class));
+        assertThat(store.getHits()).isEqualTo(1);
+    }
+
+    @Test
+    public void testRepoStateIsTakenOnAnotherNode() throws Exception {
+        final ExpiringProcessStore node1 = newStore("repo", 10, 60);
+        final ExpiringProcessStore node2 = newStore("repo", 10, 60);
+        when(repoService.read(any(ReadRequest.class))).thenReturn(newResourceResponse("key", "0",
+                json(object(
+                        field("expireTime", System.currentTimeMillis() + 60000),
+                        field("state", state(1).getObject())))));
+
+        node1.add("key", state(1));
+
+        assertThat(node2.remove("key").get("stage").asInteger()).isEqualTo(1);
+        assertThat(node2.getRepositoryReads()).isEqualTo(1);
+    }
+
+    @Test
+    public void testRepoStateTakenByAnotherNodeIsNotReused() throws Exception {
+        final ExpiringProcessStore store = newStore("repo", 10, 60);
+        when(repoService.delete(any(DeleteRequest.class))).thenThrow(new NotFoundException());
+
+        store.add("key", state(1));
+
+        assertThat(store.remove("key")).isNull();
+    }
+
+    @Test
+    public void testRepoDeleteFailureKeepsFlow() throws Exception {
+        final ExpiringProcessStore store = newStore("repo", 10, 60);
+        when(repoService.delete(any(DeleteRequest.class)))
+                .thenThrow(ResourceException.newResourceException(503));
+
+        store.add("key", state(1));
+
+        assertThat(store.remove("key")).isNotNull();
+    }
+
+    @Test
+    public void testRepoFailureKeepsStateOnNode() throws Exception {
+        final ExpiringProcessStore store = newStore("repo", 10, 60);
+        when(repoService.create(any(CreateRequest.class))).thenThrow(ResourceException.newResourceException(500));
+
+        store.add("key", state(1));
+
+        assertThat(store.remove("key")).isNotNull();
+        verify(repoService, never()).delete(any(DeleteRequest.class));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testUnknownType() {
+        newStore("memcached", 10, 60);
+    }
+
+    private ExpiringProcessStore newStore(String type, int maxEntries, int ttlSeconds) {
+        return new ExpiringProcessStore("reset", json(object(
+                field("type", type),
+                field("maxEntries", maxEntries),
+                field("ttlSeconds", ttlSeconds))),
+                repoService, cryptoService, "openidm-selfservice-key");
+    }
+
+    private static JsonValue state(int stage) {
+        return json(object(field("stage", stage)));
+    }
+}
@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 package org.forgerock.openidm.selfservice.impl;
 
@@ -88,4 +89,17 @@ public class SelfServiceTest {
 
         assertThat(selfServiceRegistration.isEqualTo(amendedSelfServiceRegistration)).isTrue();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testAmendConfigKeepsLocalStorage() throws Exception {
+        final JsonValue localConfig = json(object(
+                field("stageConfigs", array()),
+                field("storage", "local"),
+                field("processStore", object(field("type", "repo")))));
+
+        new SelfService().amendConfig(localConfig);
+
+        assertThat(localConfig.get("storage").asString()).isEqualTo("local");
+        assertThat(localConfig.isDefined("processStore")).isFalse();
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.smartevent.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe histogram of non-negative values, typically latencies in nanoseconds, that records without retry
+ * loops under thread-contention and reports percentiles.
+ * <p>
+ * Values are counted in log-linear buckets, as in HdrHistogram: every power of two is split into
+ * {@value #SUB_BUCKETS} linear sub-buckets, so a percentile is reported within 1/{@value #SUB_BUCKETS} of the
+ * recorded value. Values below {@value #SUB_BUCKETS} are counted exactly, values of 2^46 and above (about 19.5
+ * hours in nanoseconds) share the highest bucket. Count, sum, minimum and maximum are exact.
+ * <p>
+ * Recording threads are spread over stripes by thread id and each stripe is allocated on its first use, so a
+ * histogram only recorded by one thread costs a single stripe. Stripes are merged when a {@link #snapshot()} is
+ * taken.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 45;
+    private static final int BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    /** Number of stripes, a power of two */
+    private static final int STRIPES =
+            Integer.highestOneBit(Math.min(Runtime.getRuntime().availableProcessors(), 8) * 2 - 1);
+
+    private volatile AtomicReferenceArray<Stripe> stripes = new AtomicReferenceArray<>(STRIPES);
+    private final LongAdder sum = new LongAdder();
+    private final DoubleAdder sumOfSquares = new DoubleAdder();
+
+    /**
+     * Records a value.
+     *
+     * @param value the value, non-negative
+     * @throws IllegalArgumentException if the value is negative
+     */
+    public void record(final long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("value must be non-negative");
+        }
+        stripe().record(value);
+        sum.add(value);
+        sumOfSquares.add((double) value * (double) value);
+    }
+
+    private Stripe stripe() {
+        final AtomicReferenceArray<Stripe> current = stripes;
+        final int index = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        Stripe stripe = current.get(index);
+        if (stripe == null) {
+            stripe = new Stripe();
+            if (!current.compareAndSet(index, null, stripe)) {
+                // another thread of the same stripe allocated it first
+                stripe = current.get(index);
+            }
+        }
+        return stripe;
+    }
+
+    /**
+     * Discards all recorded values. Values recorded concurrently may be partially discarded.
+     */
+    public void reset() {
+        stripes = new AtomicReferenceArray<>(STRIPES);
+        sum.reset();
+        sumOfSquares.reset();
+    }
+
+    /**
+     * Merges the values recorded so far. Values recorded concurrently may be partially included.
+     *
+     * @return the merged values
+     */
+    public Snapshot snapshot() {
+        final AtomicReferenceArray<Stripe> current = stripes;
+        final long[] counts = new long[BUCKETS];
+        long min = Long.MAX_VALUE;
+        long max = 0;
+        long count = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            final Stripe stripe = current.get(i);
+            if (stripe == null) {
+                continue;
+            }
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                final long bucketCount = stripe.counts.get(bucket);
+                counts[bucket] += bucketCount;
+                count += bucketCount;
+            }
+            min = Math.min(min, stripe.min.get());
+            max = Math.max(max, stripe.max.get());
+        }
+        return new Snapshot(counts, count, sum.sum(), sumOfSquares.sum(), count > 0 ? min : 0, max);
+    }
+
+    static int bucketIndex(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        final int shift = exponent - SUB_BUCKET_BITS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    static long highestEquivalentValue(final int bucketIndex) {
+        if (bucketIndex < SUB_BUCKETS) {
+            return bucketIndex;
+        }
+        final int shift = (bucketIndex - SUB_BUCKETS) / SUB_BUCKETS;
+        final long subBucket = SUB_BUCKETS + (bucketIndex - SUB_BUCKETS) % SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * Bucket counts and extremes of the threads sharing a stripe. Minimum and maximum only retry when another
+     * thread of the stripe moved them at the same time.
+     */
+    private static final class Stripe {
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong max = new AtomicLong();
+
+        void record(final long value) {
+            counts.incrementAndGet(bucketIndex(value));
+            long current;
+            while (value < (current = min.get()) && !min.compareAndSet(current, value)) {
+                // retry
+            }
+            while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+                // retry
+            }
+        }
+    }
+
+    /**
+     * Immutable merged view of the values of a histogram.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final double sumOfSquares;
+        private final long min;
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long sum, double sumOfSquares, long min, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.sumOfSquares = sumOfSquares;
+            this.min = min;
+            this.max = max;
+        }
+
+        /**
+         * @return the number of recorded values
+         */
+        public long count() {
+            return count;
+        }
+
+        /**
+         * @return the sum of the recorded values
+         */
+        public long sum() {
+            return sum;
+        }
+
+        /**
+         * @return the minimum recorded value, or 0 if none
+         */
+        public long min() {
+            return min;
+        }
+
+        /**
+         * @return the maximum recorded value, or 0 if none
+         */
+        public long max() {
+            return max;
+        }
+
+        /**
+         * @return the mean of the recorded values, or 0 if none
+         */
+        public long mean() {
+            return count > 0 ? sum / count : 0;
+        }
+
+        /**
+         * @return the sample standard-deviation of the recorded values, or 0 if less than two
+         */
+        public long stdDev() {
+            if (count < 2) {
+                return 0;
+            }
+            final double variance = (sumOfSquares - (double) sum * (double) sum / count) / (count - 1);
+            return variance > 0 ? (long) Math.sqrt(variance) : 0;
+        }
+
+        /**
+         * Gets the value below or at which the given percentage of the recorded values fall, within the bucket
+         * precision and never beyond the recorded minimum and maximum.
+         *
+         * @param percentile the percentage, between 0 and 100
+         * @return the value at the percentile, or 0 if none was recorded
+         */
+        public long percentile(final double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            final double fraction = Math.min(Math.max(percentile, 0.0), 100.0) / 100.0;
+            final long rank = Math.max(1, (long) Math.ceil(fraction * count));
+            long seen = 0;
+            for (int bucket = 0; bucket < counts.length; bucket++) {
+                seen += counts[bucket];
+                if (seen >= rank) {
+                    return Math.max(min, Math.min(max, highestEquivalentValue(bucket)));
+                }
+            }
+            return max;
+        }
+    }
+}
@@ -12,6 +12,7 @@
  * information: "Portions Copyrighted [year] [name of copyright owner]".
  *
  * Copyright © 2012 ForgeRock AS. All rights reserved.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.openidm.smartevent.core;
@@ -24,6 +25,20 @@ public class MonitoringInfo {
 
     public long totalInvokes;
     public long totalTime;
+    public final LatencyHistogram latencies = new LatencyHistogram();
+
+    /**
+     * Record an invocation
+     *
+     * @param duration the duration of the invocation, in nanoseconds
+     */
+    public void record(long duration) {
+        totalTime += duration;
+        totalInvokes++;
+        if (duration >= 0) {
+            latencies.record(duration);
+        }
+    }
 
     /**
      * Reset the statistics
@@ -31,11 +46,17 @@ public class MonitoringInfo {
     public void reset() {
         totalInvokes = 0;
         totalTime = 0;
+        latencies.reset();
     }
 
     public String toString() {
+        LatencyHistogram.Snapshot snapshot = latencies.snapshot();
         return "Invocations: " + totalInvokes + " total time: "
                 + StatisticsHandler.formatNsAsMs(totalTime) + " mean: "
-                + StatisticsHandler.formatNsAsMs(totalInvokes > 0 ? totalTime / totalInvokes : -1);
+                + StatisticsHandler.formatNsAsMs(totalInvokes > 0 ? totalTime / totalInvokes : -1)
+                + " p50: " + StatisticsHandler.formatNsAsMs(snapshot.percentile(50))
+                + " p95: " + StatisticsHandler.formatNsAsMs(snapshot.percentile(95))
+                + " p99: " + StatisticsHandler.formatNsAsMs(snapshot.percentile(99))
+                + " p999: " + StatisticsHandler.formatNsAsMs(snapshot.percentile(99.9));
     }
 }
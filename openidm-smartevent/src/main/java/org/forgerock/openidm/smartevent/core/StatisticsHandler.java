@@ -14,7 +14,7 @@
  * "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright © 2012 ForgeRock AS. All rights reserved.
- * Portions Copyright 2018 Wren Security.
+ * Portions Copyright 2018-2026 Wren Security.
  */
 package org.forgerock.openidm.smartevent.core;
 
@@ -240,8 +240,7 @@ public class StatisticsHandler implements EventHandler<DisruptorReferringEventEn
             entry = new MonitoringInfo();
             map.put(eventEntry.eventName.asString(), entry);
         }
-        entry.totalTime += diff;
-        entry.totalInvokes++;
+        entry.record(diff);
     }
 
     // TODO: more research on latency of batched end time option
@@ -279,8 +278,7 @@ public class StatisticsHandler implements EventHandler<DisruptorReferringEventEn
             entry = new MonitoringInfo();
             map.put(eventEntry.eventName.asString(), entry);
         }
-        entry.totalTime += diff;
-        entry.totalInvokes++;
+        entry.record(diff);
         if (endOfBatch) {
             newBatch = true;
         } else {
@@ -0,0 +1,144 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2026 Wren Security.
+ */
+package org.forgerock.openidm.smartevent.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testEmpty() {
+        final LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+
+        assertThat(snapshot.count()).isEqualTo(0);
+        assertThat(snapshot.sum()).isEqualTo(0);
+        assertThat(snapshot.min()).isEqualTo(0);
+        assertThat(snapshot.max()).isEqualTo(0);
+        assertThat(snapshot.mean()).isEqualTo(0);
+        assertThat(snapshot.stdDev()).isEqualTo(0);
+        assertThat(snapshot.percentile(99)).isEqualTo(0);
+    }
+
+    @Test
+    public void testExactStatistics() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 1000; value++) {
+            histogram.record(value * 1_000_000L);
+        }
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertThat(snapshot.count()).isEqualTo(1000);
+        assertThat(snapshot.sum()).isEqualTo(500_500_000_000L);
+        assertThat(snapshot.min()).isEqualTo(1_000_000L);
+        assertThat(snapshot.max()).isEqualTo(1_000_000_000L);
+        assertThat(snapshot.mean()).isEqualTo(500_500_000L);
+        // sample standard deviation of 1..1000 is 288.8194...
+        assertThat((double) snapshot.stdDev()).isCloseTo(288_819_436d, within(1_000d));
+    }
+
+    @Test
+    public void testPercentilesWithinBucketPrecision() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 1000; value++) {
+            histogram.record(value * 1_000_000L);
+        }
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertPercentile(snapshot.percentile(50), 500_000_000L);
+        assertPercentile(snapshot.percentile(95), 950_000_000L);
+        assertPercentile(snapshot.percentile(99), 990_000_000L);
+        assertPercentile(snapshot.percentile(99.9), 999_000_000L);
+        assertThat(snapshot.percentile(100)).isEqualTo(snapshot.max());
+        assertPercentile(snapshot.percentile(0), snapshot.min());
+    }
+
+    @Test
+    public void testSmallValuesAreExact() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 0; value < 10; value++) {
+            histogram.record(value);
+        }
+
+        assertThat(histogram.snapshot().percentile(50)).isEqualTo(4);
+        assertThat(histogram.snapshot().percentile(90)).isEqualTo(8);
+    }
+
+    @Test
+    public void testBucketBoundaries() {
+        long previous = -1;
+        for (int bucket = 0; bucket < 200; bucket++) {
+            final long highest = LatencyHistogram.highestEquivalentValue(bucket);
+            assertThat(highest).isGreaterThan(previous);
+            assertThat(LatencyHistogram.bucketIndex(highest)).isEqualTo(bucket);
+            assertThat(LatencyHistogram.bucketIndex(previous + 1)).isEqualTo(bucket);
+            previous = highest;
+        }
+        assertThat(LatencyHistogram.bucketIndex(Long.MAX_VALUE))
+                .isEqualTo(LatencyHistogram.bucketIndex(1L << 46));
+    }
+
+    @Test
+    public void testConcurrentRecording() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final ExecutorService executor = Executors.newFixedThreadPool(16);
+        for (int t = 0; t < 16; t++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    for (long value = 1; value <= 10_000; value++) {
+                        histogram.record(value);
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(1, TimeUnit.MINUTES)).isTrue();
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertThat(snapshot.count()).isEqualTo(160_000);
+        assertThat(snapshot.sum()).isEqualTo(16 * 50_005_000L);
+        assertThat(snapshot.min()).isEqualTo(1);
+        assertThat(snapshot.max()).isEqualTo(10_000);
+        assertPercentile(snapshot.percentile(50), 5_000);
+    }
+
+    @Test
+    public void testReset() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(42);
+        histogram.reset();
+
+        assertThat(histogram.snapshot().count()).isEqualTo(0);
+        assertThat(histogram.snapshot().sum()).isEqualTo(0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeValue() {
+        new LatencyHistogram().record(-1);
+    }
+
+    private static void assertPercentile(long actual, long expected) {
+        // buckets split each power of two in 16, so a value is reported at most 1/16 above it
+        assertThat(actual).isBetween(expected, expected + expected / 16);
+    }
+}
@@ -12,45 +12,29 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.openidm.util;
 
-import java.util.concurrent.atomic.AtomicLong;
-
-import org.forgerock.guava.common.util.concurrent.AtomicDouble;
+import org.forgerock.openidm.smartevent.core.LatencyHistogram;
 
 /**
  * Thread-safe statistics class for time-durations, that calculates accurate {@link #count() count}, {@link #min() min},
- * and {@link #max() max} values, and approximate {@link #mean() mean} and {@link #stdDev() standard-deviation},
- * with minimal memory consumption and low-latency under thread-contention.
+ * {@link #max() max} and {@link #mean() mean} values, {@link #stdDev() standard-deviation} and approximate
+ * {@link #percentile(double) percentiles}, with bounded memory consumption and low-latency under thread-contention.
  * <p>
- * Online mean and standard-deviation are calculated using the B. P. Welford (1962)
- * <a href="http://www.johndcook.com/blog/standard_deviation/">technique</a>.
+ * Durations are recorded in a {@link LatencyHistogram}, striped per recording thread and merged on read.
  */
 public class DurationStatistics {
 
-    private static final long INITIAL_DELTA_MIN = Long.MAX_VALUE;
-    private static final double POSITIVE_EPSILON = 0.00000001;
-    private static final double NEGATIVE_EPSILON = -POSITIVE_EPSILON;
-
-    private final AtomicLong deltaCount;
-    private final AtomicLong deltaSum;
-    private final AtomicLong deltaMax;
-    private final AtomicLong deltaMin;
-    private final AtomicDouble deltaMean;
-    private final AtomicDouble deltaStdDev;
+    private final LatencyHistogram histogram;
 
     /**
      * Creates a new instance.
      */
     public DurationStatistics() {
-        deltaCount = new AtomicLong();
-        deltaSum = new AtomicLong();
-        deltaMax = new AtomicLong();
-        deltaMin = new AtomicLong(INITIAL_DELTA_MIN);
-        deltaMean = new AtomicDouble();
-        deltaStdDev = new AtomicDouble();
+        histogram = new LatencyHistogram();
     }
 
     /**
@@ -78,65 +62,7 @@ public class DurationStatistics {
             // this would only happen if method-contract was violated
             throw new IllegalStateException("Unexpected large startNanoTime value");
         }
-        updateMean(deltaCount.incrementAndGet(), delta);
-        updateMin(delta);
-        updateMax(delta);
-        deltaSum.addAndGet(delta);
-    }
-
-    private void updateMean(long n, final long delta) {
-        final double value = (double) delta;
-        double oldMean;
-        double newMean;
-        while (true) {
-            oldMean = deltaMean.get();
-            newMean = oldMean + (value - oldMean) / (double) n;
-            if (!deltaMean.compareAndSet(oldMean, newMean)) {
-                // need to try-again, because deltaMean was updated by another thread
-                n = deltaCount.get();
-                continue;
-            }
-            break;
-        }
-
-        final double adjustment = (value - oldMean) * (value - newMean);
-        if (adjustment > POSITIVE_EPSILON || adjustment < NEGATIVE_EPSILON) {
-            // only update deltaStdDev when adjustment is non-zero, compared to epsilon
-            while (true) {
-                final double oldStDev = deltaStdDev.get();
-                if (!deltaStdDev.compareAndSet(oldStDev, oldStDev + adjustment)) {
-                    // need to try-again, because deltaStdDev was updated by another thread
-                    continue;
-                }
-                break;
-            }
-        }
-    }
-
-    private void updateMin(final long delta) {
-        while (true) {
-            final long min = deltaMin.get();
-            if (min > delta) {
-                if (!deltaMin.compareAndSet(min, delta)) {
-                    // need to try-again, because deltaMin was updated by another thread
-                    continue;
-                }
-            }
-            break;
-        }
-    }
-
-    private void updateMax(final long delta) {
-        while (true) {
-            final long max = deltaMax.get();
-            if (max < delta) {
-                if (!deltaMax.compareAndSet(max, delta)) {
-                    // need to try-again, because deltaMax was updated by another thread
-                    continue;
-                }
-            }
-            break;
-        }
+        histogram.record(delta);
     }
 
     /**
@@ -145,7 +71,7 @@ public class DurationStatistics {
      * @return Max time-delta, in nanoseconds
      */
     public long max() {
-        return deltaMax.get();
+        return histogram.snapshot().max();
     }
 
     /**
@@ -154,27 +80,44 @@ public class DurationStatistics {
      * @return Min time-delta, in nanoseconds
      */
     public long min() {
-        final long min = deltaMin.get();
-        return min == INITIAL_DELTA_MIN ? 0 : min;
+        return histogram.snapshot().min();
     }
 
     /**
-     * Get (approximate) running-average time-delta, in nanoseconds.
+     * Get running-average time-delta, in nanoseconds.
      *
-     * @return Approximate average time-delta, in nanoseconds
+     * @return Average time-delta, in nanoseconds
      */
     public long mean() {
-        return (long) deltaMean.get();
+        return histogram.snapshot().mean();
     }
 
     /**
-     * Get (approximate) running-standard-deviation of time-delta, in nanoseconds.
+     * Get running-standard-deviation of time-delta, in nanoseconds.
      *
-     * @return Approximate standard-deviation of time-delta, in nanoseconds
+     * @return Standard-deviation of time-delta, in nanoseconds
      */
     public long stdDev() {
-        final long m = deltaCount.get() - 1;
-        return m > 0 ? (long) Math.sqrt(deltaStdDev.get() / (double) m) : 0;
+        return histogram.snapshot().stdDev();
+    }
+
+    /**
+     * Get (approximate) time-delta below or at which the given percentage of the time-deltas fall, in nanoseconds.
+     *
+     * @param percentile Percentage, between 0 and 100
+     * @return Approximate time-delta at the percentile, in nanoseconds
+     */
+    public long percentile(final double percentile) {
+        return histogram.snapshot().percentile(percentile);
+    }
+
+    /**
+     * Get all statistics at once, which merges the per-thread records only once when reading several values.
+     *
+     * @return Statistics of the time-deltas recorded so far, in nanoseconds
+     */
+    public LatencyHistogram.Snapshot snapshot() {
+        return histogram.snapshot();
     }
 
     /**
@@ -183,7 +126,7 @@ public class DurationStatistics {
      * @return Number of data points recorded
      */
     public long count() {
-        return deltaCount.get();
+        return histogram.snapshot().count();
     }
 
     /**
@@ -192,7 +135,7 @@ public class DurationStatistics {
      * @return Summation of time-deltas, in nanoseconds
      */
     public long sum() {
-        return deltaSum.get();
+        return histogram.snapshot().sum();
     }
 
     /**
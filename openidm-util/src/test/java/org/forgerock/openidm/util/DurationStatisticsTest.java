@@ -12,6 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2016 ForgeRock AS.
+ * Portions Copyright 2026 Wren Security.
  */
 
 package org.forgerock.openidm.util;
@@ -88,6 +89,25 @@ public class DurationStatisticsTest {
         assertThat(statistics.stdDev()).isGreaterThan(0);
     }
 
+    @Test
+    public void testPercentiles() {
+        final DurationStatistics statistics = new DurationStatistics();
+
+        for (int i = 0; i < ITERATIONS; ++i) {
+            final long start = startNanoTime();
+            sleepOneMillis();
+            statistics.stopNanoTime(start);
+        }
+
+        assertThat(statistics.percentile(50)).isGreaterThan(0);
+        assertThat(statistics.percentile(50)).isLessThanOrEqualTo(statistics.percentile(95));
+        assertThat(statistics.percentile(95)).isLessThanOrEqualTo(statistics.percentile(99));
+        assertThat(statistics.percentile(99)).isLessThanOrEqualTo(statistics.percentile(99.9));
+        assertThat(statistics.percentile(99.9)).isLessThanOrEqualTo(statistics.max());
+        assertThat(statistics.percentile(50)).isGreaterThanOrEqualTo(statistics.min());
+        assertThat(statistics.snapshot().count()).isEqualTo(ITERATIONS);
+    }
+
     @Test(expectedExceptions = IllegalArgumentException.class)
     public void testStopNanoTimeNegativeArgument() {
         final DurationStatistics statistics = new DurationStatistics();